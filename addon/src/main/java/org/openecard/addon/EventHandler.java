@@ -23,8 +23,8 @@
 package org.openecard.addon;
 
 import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import org.openecard.common.event.EventType;
@@ -55,8 +55,9 @@ public class EventHandler implements EventCallback {
      * Create a new EventHandler.
      */
     public EventHandler() {
-	eventQueues = new HashMap<>();
-	timers = new HashMap<>();
+	// accessed by the shared timer as well
+	eventQueues = new ConcurrentHashMap<>();
+	timers = new ConcurrentHashMap<>();
     }
 
     /**
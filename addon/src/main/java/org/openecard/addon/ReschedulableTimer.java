@@ -22,53 +22,38 @@
 
 package org.openecard.addon;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.openecard.common.util.SharedTimer;
 
 
 /**
- * Extends Timer to make it reschedulable.
+ * Reschedulable timeout based on the {@link SharedTimer}.
  * @author Dirk Petrautzki
  *
  */
-class ReschedulableTimer extends Timer {
+class ReschedulableTimer {
 
     private Runnable task;
-    private TimerTask timerTask;
+    private ScheduledFuture<?> timerTask;
 
     /**
      * Schedules the specified task for execution after the specified delay.
      * @param runnable the task to execute after the delay
      * @param delay execution delay in milliseconds
      */
-    public void schedule(Runnable runnable, long delay) {
+    public synchronized void schedule(Runnable runnable, long delay) {
 	task = runnable;
-
-	timerTask = new TimerTask() {
-	    @Override
-	    public void run() {
-		task.run();
-	    };
-	};
-
-	super.schedule(timerTask, delay);
+	timerTask = SharedTimer.schedule(task, delay, TimeUnit.MILLISECONDS);
     }
 
     /**
      * Reschedule the timer with a new delay.
      * @param delay reschedule delay in milliseconds
      */
-    public void reschedule(long delay) {
-	timerTask.cancel();
-
-	timerTask = new TimerTask() {
-	    @Override
-	    public void run() {
-		task.run();
-	    };
-	};
-
-	super.schedule(timerTask, delay);
+    public synchronized void reschedule(long delay) {
+	timerTask.cancel(false);
+	timerTask = SharedTimer.schedule(task, delay, TimeUnit.MILLISECONDS);
     }
 
 }
@@ -126,7 +126,7 @@ public class TCTokenHandler {
 	if (LOG.isDebugEnabled()) {
 	    try {
 		WSMarshaller m = WSMarshallerFactory.createInstance();
-		LOG.debug("TCToken:\n{}", m.doc2str(m.marshal(token)));
+		LOG.debug("TCToken:\n{}", m.doc2str(m.marshal(token), true));
 	    } catch (TransformerException | WSMarshallerException ex) {
 		// it's no use
 	    }
@@ -29,7 +29,7 @@ import org.openecard.common.ECardConstants;
 import org.openecard.common.ECardException;
 import org.openecard.common.WSHelper;
 import org.openecard.common.apdu.ManageSecurityEnvironment;
-import org.openecard.common.apdu.common.CardCommandAPDU;
+import org.openecard.common.apdu.common.CardCommandBatch;
 import org.openecard.common.apdu.common.CardResponseAPDU;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.common.sal.Assert;
@@ -44,6 +44,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
+import java.util.List;
 import java.util.Map;
 
 
@@ -105,8 +106,10 @@ public class DecipherStep implements ProtocolStep<Decipher, DecipherResponse> {
 	    tagAlgorithmIdentifier.setValue(algorithmIdentifier);
 	    byte[] mseData = ByteUtils.concatenate(tagKeyReference.toBER(), tagAlgorithmIdentifier.toBER());
 
-	    CardCommandAPDU apdu = new ManageSecurityEnvironment((byte) 0x41, ManageSecurityEnvironment.CT, mseData);
-	    apdu.transmit(dispatcher, slotHandle);
+	    // the MSE and all decipher commands are independent of each other and sent in one batch
+	    // blocks exceeding the command length of the card are sent with command chaining
+	    CardCommandBatch batch = new CardCommandBatch(cardStateEntry.getCardEntry().getCardCapabilities(), false);
+	    batch.add(new ManageSecurityEnvironment((byte) 0x41, ManageSecurityEnvironment.CT, mseData));
 
 	    byte[] ciphertext = request.getCipherText();
 	    ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -123,8 +126,12 @@ public class DecipherStep implements ProtocolStep<Decipher, DecipherResponse> {
 	    // decrypt the ciphertext block for block
 	    for (int offset = 0; offset < ciphertext.length; offset += blocksize) {
 		byte[] ciphertextblock = ByteUtils.copy(ciphertext, offset, blocksize);
-		apdu = new PSODecipher(ByteUtils.concatenate(PADDING_INDICATOR_BYTE, ciphertextblock), (byte) blocksize);
-		CardResponseAPDU responseAPDU = apdu.transmit(dispatcher, slotHandle);
+		batch.add(new PSODecipher(ByteUtils.concatenate(PADDING_INDICATOR_BYTE, ciphertextblock), (byte) blocksize));
+	    }
+
+	    List<CardResponseAPDU> responses = batch.transmit(dispatcher, slotHandle);
+	    // skip the response of the MSE command
+	    for (CardResponseAPDU responseAPDU : responses.subList(1, responses.size())) {
 		baos.write(responseAPDU.getData());
 	    }
 
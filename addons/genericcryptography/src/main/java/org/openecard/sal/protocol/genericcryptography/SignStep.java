@@ -40,6 +40,7 @@ import org.openecard.common.apdu.InternalAuthenticate;
 import org.openecard.common.apdu.ManageSecurityEnvironment;
 import org.openecard.common.apdu.common.*;
 import org.openecard.common.apdu.exception.APDUException;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.apdu.utils.SALErrorUtils;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.common.sal.Assert;
@@ -65,6 +66,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 
 /**
@@ -117,7 +119,6 @@ public class SignStep implements ProtocolStep<Sign, SignResponse> {
 	    DIDStructureType didStructure = SALUtils.getDIDStructure(sign, didName, cardStateEntry, connectionHandle);
 	    CryptoMarkerType cryptoMarker = new CryptoMarkerType(didStructure.getDIDMarker());
 
-	    byte[] slotHandle = connectionHandle.getSlotHandle();
 	    byte[] applicationID = connectionHandle.getCardApplication();
 	    Assert.securityConditionDID(cardStateEntry.getCardEntry(), applicationID, didName, CryptographicServiceActionName.SIGN);
 
@@ -135,8 +136,9 @@ public class SignStep implements ProtocolStep<Sign, SignResponse> {
 	    }
 
 	    if (cryptoMarker.getSignatureGenerationInfo() != null) {
-		response = performSignature(cryptoMarker, keyReference, algorithmIdentifier, hashValue, slotHandle,
-			hashRef, hashInfo);
+		CardCapabilities caps = cardStateEntry.getCardEntry().getCardCapabilities();
+		response = performSignature(cryptoMarker, keyReference, algorithmIdentifier, hashValue, connectionHandle,
+			caps, hashRef, hashInfo);
 	    } else {
 		// assuming that legacySignatureInformation exists
 		BaseTemplateContext templateContext = new BaseTemplateContext();
@@ -175,7 +177,8 @@ public class SignStep implements ProtocolStep<Sign, SignResponse> {
      * @param keyReference A byte array containing the reference of the key to use.
      * @param algorithmIdentifier A byte array containing the identifier of the signing algorithm.
      * @param message The message to sign.
-     * @param slotHandle The slotHandle identifying the card.
+     * @param connectionHandle The connection handle identifying the card.
+     * @param caps Capabilities of the card, or {@code null} if they are unknown.
      * @param hashRef The variable contains the reference for the hash algorithm which have to be used.
      * @param hashInfo A HashGenerationInfo object which indicates how the hash computation is to perform.
      * @return A {@link SignResponse} object containing the signature of the <b>message</b>.
@@ -186,9 +189,11 @@ public class SignStep implements ProtocolStep<Sign, SignResponse> {
      * @throws org.openecard.common.WSHelper.WSException Thrown if the checkResults method of WSHelper failed.
      */
     private SignResponse performSignature(CryptoMarkerType cryptoMarker, byte[] keyReference, byte[] algorithmIdentifier,
-	    byte[] message, byte[] slotHandle, byte[] hashRef, HashGenerationInfoType hashInfo) throws TLVException,
-	    IncorrectParameterException, APDUException, WSHelper.WSException {
+	    byte[] message, ConnectionHandleType connectionHandle, @Nullable CardCapabilities caps, byte[] hashRef,
+	    HashGenerationInfoType hashInfo)
+	    throws TLVException, IncorrectParameterException, APDUException, WSHelper.WSException {
 	SignResponse response = WSHelper.makeResponse(SignResponse.class, WSHelper.makeResultOK());
+	byte[] slotHandle = connectionHandle.getSlotHandle();
 
 	TLV tagAlgorithmIdentifier = new TLV();
 	tagAlgorithmIdentifier.setTagNumWithClass(CARD_ALG_REF);
@@ -198,8 +203,10 @@ public class SignStep implements ProtocolStep<Sign, SignResponse> {
 	tagKeyReference.setTagNumWithClass(KEY_REFERENCE_PRIVATE_KEY);
 	tagKeyReference.setValue(keyReference);
 
-	CardCommandAPDU cmdAPDU = null;
-	CardResponseAPDU responseAPDU = null;
+	// the commands of the signature generation info are independent of each other and sent in one batch
+	// large messages are sent with command chaining if the card does not support them in a single APDU
+	CardCommandBatch batch = new CardCommandBatch(caps, false);
+	CardCommandAPDU cmdAPDU;
 
 	String[] signatureGenerationInfo = cryptoMarker.getSignatureGenerationInfo();
 	for (String command : signatureGenerationInfo) {
@@ -253,9 +260,11 @@ public class SignStep implements ProtocolStep<Sign, SignResponse> {
 		throw new IncorrectParameterException(msg);
 	    }
 
-	    responseAPDU = cmdAPDU.transmit(dispatcher, slotHandle, Collections.<byte[]>emptyList());
+	    batch.add(cmdAPDU, Collections.<byte[]>emptyList());
 	}
 
+	List<CardResponseAPDU> responses = batch.transmit(dispatcher, slotHandle);
+	CardResponseAPDU responseAPDU = responses.get(responses.size() - 1);
 	byte[] signedMessage = responseAPDU.getData();
 
 	// check if further response data is available
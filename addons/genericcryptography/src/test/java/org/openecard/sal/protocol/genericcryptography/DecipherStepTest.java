@@ -0,0 +1,146 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.sal.protocol.genericcryptography;
+
+import iso.std.iso_iec._24727.tech.schema.CardInfoType;
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
+import iso.std.iso_iec._24727.tech.schema.Decipher;
+import iso.std.iso_iec._24727.tech.schema.DecipherResponse;
+import iso.std.iso_iec._24727.tech.schema.Transmit;
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse;
+import jakarta.xml.bind.JAXBElement;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.mockito.Mockito;
+import org.openecard.common.ECardConstants;
+import org.openecard.common.WSHelper;
+import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.sal.state.CardEntry;
+import org.openecard.common.sal.state.SalStateManager;
+import org.openecard.common.sal.state.StateEntry;
+import org.openecard.common.sal.state.cif.CardInfoWrapper;
+import org.openecard.common.util.StringUtils;
+import org.openecard.ws.marshal.WSMarshaller;
+import org.openecard.ws.marshal.WSMarshallerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+
+/**
+ * Tests the DecipherStep with a connection handle as it is created by the SAL for a card without extended length
+ * support.
+ *
+ * @author Tobias Wich
+ */
+public class DecipherStepTest {
+
+    private static final byte[] CTX = new byte[] { 0x01, 0x02, 0x03, 0x04 };
+    private static final byte[] SLOT_HANDLE = new byte[] { 0x0A, 0x0B, 0x0C };
+    private static final byte[] MF = new byte[] { 0x3F, 0x00 };
+    // ATR with card capabilities stating no support for extended length
+    private static final byte[] ATR = StringUtils.toByteArray("3B 88 00 00 73 00 00 80 00 90 00", true);
+    // size of one RSA block of the key in the CardInfo
+    private static final int BLOCK_SIZE = 256;
+
+    private List<byte[]> sentApdus;
+    private Dispatcher dispatcher;
+    private StateEntry state;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+	sentApdus = new ArrayList<>();
+	dispatcher = mock(Dispatcher.class);
+	Mockito.when(dispatcher.safeDeliver(any(Transmit.class))).thenAnswer(invocation -> {
+	    Transmit t = (Transmit) invocation.getArguments()[0];
+	    TransmitResponse res = WSHelper.makeResponse(TransmitResponse.class, WSHelper.makeResultOK());
+	    for (int i = 0; i < t.getInputAPDUInfo().size(); i++) {
+		byte[] apdu = t.getInputAPDUInfo().get(i).getInputAPDU();
+		sentApdus.add(apdu);
+		boolean chained = (apdu[0] & 0x10) != 0;
+		if (apdu[1] == (byte) 0x2A && ! chained) {
+		    // the last part of a PSO:Decipher yields the plain text
+		    res.getOutputAPDU().add(new byte[] { (byte) i, (byte) 0x90, 0x00 });
+		} else {
+		    res.getOutputAPDU().add(new byte[] { (byte) 0x90, 0x00 });
+		}
+	    }
+	    return res;
+	});
+
+	// register and connect the card as the SAL does it
+	SalStateManager states = new SalStateManager();
+	CardInfoWrapper cif = new CardInfoWrapper(loadCif(), ECardConstants.IFD.Protocol.T1);
+	CardEntry card = states.addCard(CTX, "Reader 1", BigInteger.ZERO, cif, ATR);
+	state = states.createSession(CTX);
+	state.setConnectedCard(SLOT_HANDLE, MF, card);
+    }
+
+    @Test
+    public void testChainingWithoutExtendedLength() {
+	assertNotNull(state.getCardEntry().getCardCapabilities());
+	assertFalse(state.getCardEntry().getCardCapabilities().isExtendedLengthSupported());
+
+	DecipherResponse res = decipher(new byte[2 * BLOCK_SIZE]);
+	assertEquals(res.getResult().getResultMajor(), ECardConstants.Major.OK);
+
+	// MSE followed by two decipher commands, each split into two parts
+	assertEquals(sentApdus.size(), 5);
+	assertEquals(sentApdus.get(0)[1], (byte) 0x22);
+	for (int i = 1; i < 5; i++) {
+	    byte[] apdu = sentApdus.get(i);
+	    assertEquals(apdu[1], (byte) 0x2A);
+	    boolean chained = (apdu[0] & 0x10) != 0;
+	    assertEquals(chained, i % 2 == 1);
+	    // no part exceeds the short length
+	    assertTrue(apdu.length <= 5 + 255 + 1);
+	}
+	// only the responses of the last parts are contained in the plain text
+	assertEquals(res.getPlainText(), new byte[] { 2, 4 });
+    }
+
+    private DecipherResponse decipher(byte[] ciphertext) {
+	ConnectionHandleType handle = state.copyHandle();
+	Decipher req = new Decipher();
+	req.setConnectionHandle(handle);
+	req.setDIDName("EncryptionKey");
+	req.setCipherText(ciphertext);
+
+	Map<String, Object> internalData = new HashMap<>();
+	internalData.put("cardState", state);
+	return new DecipherStep(dispatcher).perform(req, internalData);
+    }
+
+    private static CardInfoType loadCif() throws Exception {
+	InputStream in = DecipherStepTest.class.getResourceAsStream("/CardInfo_short-length.xml");
+	WSMarshaller m = WSMarshallerFactory.createInstance();
+	JAXBElement<CardInfoType> cif = m.unmarshal(m.str2doc(in), CardInfoType.class);
+	return cif.getValue();
+    }
+
+}
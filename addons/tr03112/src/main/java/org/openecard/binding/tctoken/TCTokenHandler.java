@@ -51,7 +51,9 @@ import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.xml.transform.TransformerException;
+import javax.xml.validation.Schema;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -95,6 +97,25 @@ public class TCTokenHandler {
     // Translation constants
     private static final String ERROR_CARD_REMOVED = "action.error.card.removed";
 
+    /**
+     * Validator accepting all documents, used when schema validation is disabled by {@code legacy.invalid_schema}.
+     */
+    public static final DocumentSchemaValidator NO_VALIDATION = new DocumentSchemaValidator() {
+	@Override
+	public void validate(Document doc) throws DocumentValidatorException {
+	}
+
+	@Override
+	public void validate(Element doc) throws DocumentValidatorException {
+	}
+
+	@Nullable
+	@Override
+	public Schema getSchema() {
+	    return null;
+	}
+    };
+
     private final String pin;
     private final String puk;
     private final EventDispatcher evtDispatcher;
@@ -127,15 +148,7 @@ public class TCTokenHandler {
 	    }
 	    // always valid
 	    LOG.warn("Schema validation is disabled.");
-	    return new DocumentSchemaValidator() {
-		@Override
-		public void validate(Document doc) throws DocumentValidatorException {
-		}
-
-		@Override
-		public void validate(Element doc) throws DocumentValidatorException {
-		}
-	    };
+	    return NO_VALIDATION;
 	});
     }
 
@@ -290,7 +303,7 @@ public class TCTokenHandler {
 	if (LOG.isDebugEnabled()) {
 	    try {
 		WSMarshaller m = WSMarshallerFactory.createInstance();
-		LOG.debug("TCToken:\n{}", m.doc2str(m.marshal(token)));
+		LOG.debug("TCToken:\n{}", m.doc2str(m.marshal(token), true));
 	    } catch (TransformerException | WSMarshallerException ex) {
 		// it's no use
 	    }
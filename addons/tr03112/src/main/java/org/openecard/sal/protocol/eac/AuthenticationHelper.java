@@ -83,11 +83,8 @@ public class AuthenticationHelper {
 	caKey.decodePublicKey(key);
 	byte[] compKey = caKey.getEncodedCompressedPublicKey();
 
-	// TA: Step 4 - MSE SET AT
-	ta.mseSetAT(oid, chr, compKey, aad);
-
-	// TA: Step 4 - External Authentication
-	ta.externalAuthentication(signature);
+	// TA: Step 4 - MSE SET AT and External Authentication
+	ta.authenticate(oid, chr, compKey, aad, signature);
 	/////////////////////////////////////////////////////////////////////
 	// END TA PART
 	/////////////////////////////////////////////////////////////////////
@@ -98,13 +95,10 @@ public class AuthenticationHelper {
 	// Read EF.CardSecurity
 	byte[] efCardSecurity = ca.readEFCardSecurity();
 
-	// CA: Step 1 - MSE:SET AT
+	// CA: Step 1 and 2 - MSE:SET AT and General Authenticate
 	byte[] oID = ObjectIdentifierUtils.getValue(cas.getCAInfo().getProtocol());
 	byte[] keyID = IntegerUtils.toByteArray(cas.getCAInfo().getKeyID());
-	ca.mseSetAT(oID, keyID);
-
-	// CA: Step 2 - General Authenticate
-	byte[] responseData = ca.generalAuthenticate(key);
+	byte[] responseData = ca.authenticate(oID, keyID, key);
 
 	TLV tlv = TLV.fromBER(responseData);
 	byte[] nonce = tlv.findChildTags(0x81).get(0).getValue();
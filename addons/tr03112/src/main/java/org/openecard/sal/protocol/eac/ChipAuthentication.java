@@ -22,11 +22,17 @@
 
 package org.openecard.sal.protocol.eac;
 
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
 import iso.std.iso_iec._24727.tech.schema.DestroyChannel;
+import java.util.List;
+import javax.annotation.Nullable;
 import org.openecard.common.apdu.GeneralAuthenticate;
 import org.openecard.common.apdu.common.CardCommandAPDU;
+import org.openecard.common.apdu.common.CardCommandBatch;
 import org.openecard.common.apdu.common.CardResponseAPDU;
 import org.openecard.common.apdu.exception.APDUException;
+import org.openecard.common.apdu.utils.CardCapabilities;
+import org.openecard.common.apdu.utils.CardFileCache;
 import org.openecard.common.apdu.utils.CardUtils;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.common.sal.protocol.exception.ProtocolException;
@@ -53,6 +59,9 @@ public class ChipAuthentication {
 
     private final Dispatcher dispatcher;
     private final byte[] slotHandle;
+    @Nullable
+    private final ConnectionHandleType handle;
+    private final CardCapabilities caps;
 
     /**
      * Creates a new Chip Authentication.
@@ -63,6 +72,23 @@ public class ChipAuthentication {
     public ChipAuthentication(Dispatcher dispatcher, byte[] slotHandle) {
 	this.dispatcher = dispatcher;
 	this.slotHandle = slotHandle;
+	this.handle = null;
+	this.caps = CardCapabilities.shortLength();
+    }
+
+    /**
+     * Creates a new Chip Authentication.
+     * EF.CardSecurity is saved in the {@link CardFileCache} for the card referenced by the handle.
+     *
+     * @param dispatcher Dispatcher
+     * @param handle Connection handle of the card
+     * @param caps Capabilities of the card used to read EF.CardSecurity, or {@code null} if they are unknown
+     */
+    public ChipAuthentication(Dispatcher dispatcher, ConnectionHandleType handle, @Nullable CardCapabilities caps) {
+	this.dispatcher = dispatcher;
+	this.slotHandle = handle.getSlotHandle();
+	this.handle = handle;
+	this.caps = caps != null ? caps : CardCapabilities.shortLength();
     }
 
     /**
@@ -94,10 +120,7 @@ public class ChipAuthentication {
      */
     public byte[] generalAuthenticate(byte[] key) throws ProtocolException {
 	try {
-	    if (key[0] != (byte) 0x04) {
-		key = ByteUtils.concatenate((byte) 0x04, key);
-	    }
-	    CardCommandAPDU generalAuthenticate = new GeneralAuthenticate((byte) 0x80, key);
+	    CardCommandAPDU generalAuthenticate = makeGeneralAuthenticate(key);
 	    CardResponseAPDU response = generalAuthenticate.transmit(dispatcher, slotHandle);
 
 	    return response.getData();
@@ -106,6 +129,38 @@ public class ChipAuthentication {
 	}
     }
 
+    /**
+     * Performs the Chip Authentication.
+     * Sends the MSE:Set AT APDU and the General Authenticate APDU in one batch. (Protocol steps 1 and 2)
+     * See BSI-TR-03110, version 2.10, part 3, B.11.1.
+     * See BSI-TR-03110, version 2.10, part 3, B.11.2.
+     *
+     * @param oID Chip Authentication object identifier
+     * @param keyID Key identifier
+     * @param key Ephemeral Public Key
+     * @return Response data of the General Authenticate APDU
+     * @throws ProtocolException
+     */
+    public byte[] authenticate(byte[] oID, byte[] keyID, byte[] key) throws ProtocolException {
+	try {
+	    CardCommandBatch batch = new CardCommandBatch();
+	    batch.add(new MSESetATCA(oID, keyID));
+	    batch.add(makeGeneralAuthenticate(key));
+	    List<CardResponseAPDU> responses = batch.transmit(dispatcher, slotHandle);
+
+	    return responses.get(1).getData();
+	} catch (APDUException e) {
+	    throw new ProtocolException(e.getResult());
+	}
+    }
+
+    private static CardCommandAPDU makeGeneralAuthenticate(byte[] key) {
+	if (key[0] != (byte) 0x04) {
+	    key = ByteUtils.concatenate((byte) 0x04, key);
+	}
+	return new GeneralAuthenticate((byte) 0x80, key);
+    }
+
     /**
      * Reads the EFCardSecurity from the card.
      *
@@ -115,10 +170,22 @@ public class ChipAuthentication {
     public byte[] readEFCardSecurity() throws ProtocolException {
 	try {
 	    byte[] file = ShortUtils.toByteArray(EACConstants.EF_CARDSECURITY_FID);
+	    // the file is signed by the document signer, so it is the same every time it is read
+	    String cacheName = CardFileCache.fileName(file);
+	    if (handle != null) {
+		byte[] cached = CardFileCache.getInstance().get(handle, cacheName);
+		if (cached != null) {
+		    return cached;
+		}
+	    }
+
 	    CardResponseAPDU resp = CardUtils.selectFileWithOptions(dispatcher, slotHandle, file, null,
 		    CardUtils.FCP_RESPONSE_DATA);
 	    FCP efCardSecurityFCP = new FCP(TLV.fromBER(resp.getData()));
-	    byte[] efCardSecurity = CardUtils.readFile(efCardSecurityFCP, dispatcher, slotHandle);
+	    byte[] efCardSecurity = CardUtils.readFile(efCardSecurityFCP, dispatcher, slotHandle, caps);
+	    if (handle != null) {
+		CardFileCache.getInstance().put(handle, cacheName, efCardSecurity);
+	    }
 	    return efCardSecurity;
 	} catch (APDUException ex) {
 	    throw new ProtocolException(ex.getResult());
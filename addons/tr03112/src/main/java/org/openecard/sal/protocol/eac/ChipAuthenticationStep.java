@@ -22,6 +22,7 @@
 
 package org.openecard.sal.protocol.eac;
 
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
 import iso.std.iso_iec._24727.tech.schema.DIDAuthenticate;
 import iso.std.iso_iec._24727.tech.schema.DIDAuthenticateResponse;
 import java.util.Map;
@@ -33,7 +34,10 @@ import org.openecard.binding.tctoken.TR03112Keys;
 import org.openecard.common.DynamicContext;
 import org.openecard.common.ECardException;
 import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.sal.state.StateEntry;
+import org.openecard.common.sal.util.SALUtils;
 import org.openecard.common.tlv.TLVException;
 import org.openecard.sal.protocol.eac.anytype.EAC2OutputType;
 import org.openecard.sal.protocol.eac.anytype.EACAdditionalInputType;
@@ -74,15 +78,18 @@ public class ChipAuthenticationStep implements ProtocolStep<DIDAuthenticate, DID
 	DIDAuthenticateResponse response = WSHelper.makeResponse(DIDAuthenticateResponse.class, WSHelper.makeResultOK());
 	//EACProtocol.setEmptyResponseData(response);
 
-	byte[] slotHandle = didAuthenticate.getConnectionHandle().getSlotHandle();
 	DynamicContext dynCtx = DynamicContext.getInstance(TR03112Keys.INSTANCE_KEY);
 
 	try {
 	    EACAdditionalInputType eacAdditionalInput = new EACAdditionalInputType(didAuthenticate.getAuthenticationProtocolData());
 	    EAC2OutputType eac2Output = eacAdditionalInput.getOutputType();
 
-	    TerminalAuthentication ta = new TerminalAuthentication(dispatcher, slotHandle);
-	    ChipAuthentication ca = new ChipAuthentication(dispatcher, slotHandle);
+	    // the handle of the eService does not necessarily contain the card identifier needed for the file cache
+	    StateEntry cardState = SALUtils.getCardStateEntry(internalData, didAuthenticate.getConnectionHandle());
+	    ConnectionHandleType handle = cardState.copyHandle();
+	    CardCapabilities caps = cardState.getCardEntry().getCardCapabilities();
+	    TerminalAuthentication ta = new TerminalAuthentication(dispatcher, handle.getSlotHandle(), caps);
+	    ChipAuthentication ca = new ChipAuthentication(dispatcher, handle, caps);
 
 	    // save signature, it is needed in the authentication step
 	    byte[] signature = eacAdditionalInput.getSignature();
@@ -22,11 +22,14 @@
 
 package org.openecard.sal.protocol.eac;
 
+import javax.annotation.Nullable;
 import org.openecard.common.apdu.ExternalAuthentication;
 import org.openecard.common.apdu.GetChallenge;
 import org.openecard.common.apdu.common.CardCommandAPDU;
+import org.openecard.common.apdu.common.CardCommandBatch;
 import org.openecard.common.apdu.common.CardResponseAPDU;
 import org.openecard.common.apdu.exception.APDUException;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.common.sal.protocol.exception.ProtocolException;
 import org.openecard.crypto.common.asn1.cvc.CardVerifiableCertificate;
@@ -47,6 +50,8 @@ public class TerminalAuthentication {
 
     private final Dispatcher dispatcher;
     private final byte[] slotHandle;
+    @Nullable
+    private final CardCapabilities caps;
 
     /**
      * Creates a new Terminal Authentication.
@@ -57,6 +62,21 @@ public class TerminalAuthentication {
     public TerminalAuthentication(Dispatcher dispatcher, byte[] slotHandle) {
 	this.dispatcher = dispatcher;
 	this.slotHandle = slotHandle;
+	this.caps = null;
+    }
+
+    /**
+     * Creates a new Terminal Authentication.
+     * Commands exceeding the length supported by the card are sent with command chaining.
+     *
+     * @param dispatcher Dispatcher
+     * @param slotHandle Slot handle
+     * @param caps Capabilities of the card, or {@code null} if they are unknown
+     */
+    public TerminalAuthentication(Dispatcher dispatcher, byte[] slotHandle, @Nullable CardCapabilities caps) {
+	this.dispatcher = dispatcher;
+	this.slotHandle = slotHandle;
+	this.caps = caps;
     }
 
     /**
@@ -70,14 +90,16 @@ public class TerminalAuthentication {
      */
     public void verifyCertificates(CardVerifiableCertificateChain certificateChain) throws ProtocolException {
 	try {
+	    // the commands do not depend on each other, so the whole chain is sent in one batch
+	    // TA is always performed in the secure messaging channel established by PACE
+	    CardCommandBatch batch = new CardCommandBatch(caps, true);
 	    for (CardVerifiableCertificate cvc : certificateChain.getCertificates()) {
 		// MSE:SetDST APDU
-		CardCommandAPDU mseSetDST = new MSESetDST(cvc.getCAR().toByteArray());
-		mseSetDST.transmit(dispatcher, slotHandle);
+		batch.add(new MSESetDST(cvc.getCAR().toByteArray()));
 		// PSO:Verify Certificate  APDU
-		CardCommandAPDU psovc = new PSOVerifyCertificate(cvc.getCertificate().getValue());
-		psovc.transmit(dispatcher, slotHandle);
+		batch.add(new PSOVerifyCertificate(cvc.getCertificate().getValue()));
 	    }
+	    batch.transmit(dispatcher, slotHandle);
 	} catch (APDUException e) {
 	    throw new ProtocolException(e.getResult());
 	}
@@ -120,6 +142,31 @@ public class TerminalAuthentication {
 	}
     }
 
+    /**
+     * Performs the Terminal Authentication with an already computed terminal signature.
+     * Sends the MSE:Set AT APDU and the External Authentication APDU in one batch. (Protocol steps 2 and 4)
+     * See BSI-TR-03110, version 2.10, part 3, B.11.1.
+     * See BSI-TR-03110, version 2.10, part 3, B.11.7.
+     *
+     * @param oID Terminal Authentication object identifier
+     * @param chr Certificate Holder Reference (CHR)
+     * @param key Ephemeral public key
+     * @param aad Authenticated Auxiliary Data (AAD)
+     * @param terminalSignature Terminal signature
+     * @throws ProtocolException
+     */
+    public void authenticate(byte[] oID, byte[] chr, byte[] key, byte[] aad, byte[] terminalSignature)
+	    throws ProtocolException {
+	try {
+	    CardCommandBatch batch = new CardCommandBatch(caps, true);
+	    batch.add(new MSESetATTA(oID, chr, key, aad));
+	    batch.add(new ExternalAuthentication(terminalSignature));
+	    batch.transmit(dispatcher, slotHandle);
+	} catch (APDUException e) {
+	    throw new ProtocolException(e.getResult());
+	}
+    }
+
     /**
      * Gets a challenge from the PICC.
      * Sends a Get Challenge APDU. (Protocol step 3)
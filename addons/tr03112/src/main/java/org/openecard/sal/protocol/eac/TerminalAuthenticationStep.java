@@ -22,6 +22,7 @@
 
 package org.openecard.sal.protocol.eac;
 
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
 import iso.std.iso_iec._24727.tech.schema.DIDAuthenticate;
 import iso.std.iso_iec._24727.tech.schema.DIDAuthenticateResponse;
 import java.util.Map;
@@ -33,7 +34,10 @@ import org.openecard.common.DynamicContext;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.ECardException;
 import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.sal.state.StateEntry;
+import org.openecard.common.sal.util.SALUtils;
 import org.openecard.crypto.common.asn1.cvc.CardVerifiableCertificate;
 import org.openecard.crypto.common.asn1.cvc.CardVerifiableCertificateChain;
 import org.openecard.sal.protocol.eac.anytype.EAC2InputType;
@@ -78,13 +82,15 @@ public class TerminalAuthenticationStep implements ProtocolStep<DIDAuthenticate,
 	//EACProtocol.setEmptyResponseData(response);
 	DynamicContext dynCtx = DynamicContext.getInstance(TR03112Keys.INSTANCE_KEY);
 
-	byte[] slotHandle = didAuthenticate.getConnectionHandle().getSlotHandle();
-
 	try {
 	    EAC2InputType eac2Input = new EAC2InputType(didAuthenticate.getAuthenticationProtocolData());
 	    EAC2OutputType eac2Output = eac2Input.getOutputType();
 
-	    TerminalAuthentication ta = new TerminalAuthentication(dispatcher, slotHandle);
+	    // the handle of the eService does not necessarily contain the card identifier needed for the file cache
+	    StateEntry cardState = SALUtils.getCardStateEntry(internalData, didAuthenticate.getConnectionHandle());
+	    ConnectionHandleType handle = cardState.copyHandle();
+	    CardCapabilities caps = cardState.getCardEntry().getCardCapabilities();
+	    TerminalAuthentication ta = new TerminalAuthentication(dispatcher, handle.getSlotHandle(), caps);
 
 	    // Build certificate chain
 	    CardVerifiableCertificateChain certificateChain;
@@ -122,7 +128,7 @@ public class TerminalAuthenticationStep implements ProtocolStep<DIDAuthenticate,
 		LOG.trace("Signature has been provided in EAC2InputType.");
 
 		// perform TA and CA authentication
-		ChipAuthentication ca = new ChipAuthentication(dispatcher, slotHandle);
+		ChipAuthentication ca = new ChipAuthentication(dispatcher, handle, caps);
 		AuthenticationHelper auth = new AuthenticationHelper(ta, ca);
 		eac2Output = auth.performAuth(eac2Output, internalData);
 
@@ -41,6 +41,7 @@ import org.openecard.common.tlv.TLVException;
 import org.openecard.common.util.ByteUtils;
 import org.openecard.common.util.SecureRandomFactory;
 import org.openecard.crypto.common.asn1.eac.CADomainParameter;
+import org.openecard.crypto.common.asn1.eac.StandardizedDomainParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -132,7 +133,7 @@ public final class CAKey {
 	    ECDomainParameters ecp = new ECDomainParameters(p.getCurve(), p.getG(), p.getN(), p.getH());
 
 	    sk = new ECPrivateKeyParameters(d, ecp);
-	    pk = new ECPublicKeyParameters(ecp.getG().multiply(d), ecp);
+	    pk = new ECPublicKeyParameters(StandardizedDomainParameters.multiplyGenerator(p, d), ecp);
 	} else {
 	    throw new IllegalArgumentException();
 	}
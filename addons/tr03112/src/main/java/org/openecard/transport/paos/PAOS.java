@@ -32,22 +32,27 @@ import iso.std.iso_iec._24727.tech.schema.StartPAOS;
 import iso.std.iso_iec._24727.tech.schema.StartPAOSResponse;
 import iso.std.iso_iec._24727.tech.schema.Transmit;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.TransformerException;
 import oasis.names.tc.dss._1_0.core.schema.ResponseBaseType;
 import oasis.names.tc.dss._1_0.core.schema.Result;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.protocol.BasicHttpContext;
@@ -70,13 +75,10 @@ import org.openecard.ws.marshal.WSMarshaller;
 import org.openecard.ws.marshal.WSMarshallerException;
 import org.openecard.ws.marshal.WSMarshallerFactory;
 import org.openecard.ws.soap.SOAPException;
-import org.openecard.ws.soap.SOAPHeader;
-import org.openecard.ws.soap.SOAPMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import static org.openecard.binding.tctoken.ex.ErrorTranslations.*;
 import org.openecard.common.DynamicContext;
 import org.openecard.common.interfaces.DocumentSchemaValidator;
@@ -90,6 +92,11 @@ import org.openecard.common.util.ValueGenerators;
  * PAOS implementation for JAXB types.
  * This implementation can be configured to speak TLS by creating the instance with a TlsClient. The dispatcher instance
  * is used to deliver the messages to the instances implementing the webservice interfaces.
+ * <p>
+ * SOAP messages are read and written with StAX. The JAXB objects are marshalled and unmarshalled directly from the
+ * message streams and validated against the schema at the same time, so each message is processed in a single pass
+ * and no DOM representation of the messages is created.
+ * </p>
  *
  * @author Johannes Schmoelz
  * @author Tobias Wich
@@ -114,6 +121,20 @@ public class PAOS {
     public static final QName PAOS_METADATA = new QName(ECardConstants.PAOS_VERSION_20, "MetaData");
     public static final QName PAOS_SERVICETYPE = new QName(ECardConstants.PAOS_VERSION_20, "ServiceType");
 
+    private static final String SOAP_PREFIX = "soap";
+
+    private static final XMLInputFactory INPUT_FACTORY;
+    private static final XMLOutputFactory OUTPUT_FACTORY;
+
+    static {
+	INPUT_FACTORY = XMLInputFactory.newInstance();
+	INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+	// XXE countermeasures
+	INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+	INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    }
+
     private final String headerValuePaos;
     private final MessageIdGenerator idGenerator;
     private final WSMarshaller m;
@@ -152,170 +173,172 @@ public class PAOS {
 	}
     }
 
-    private String getRelatesTo(SOAPMessage msg) throws SOAPException {
-	return getHeaderElement(msg, RELATES_TO);
-    }
-
-    private void setRelatesTo(SOAPMessage msg, String value) throws SOAPException {
-	Element elem = getHeaderElement(msg, RELATES_TO, true);
-	elem.setTextContent(value);
-    }
-
-    private String getHeaderElement(SOAPMessage msg, QName elem) throws SOAPException {
-	Element headerElem = getHeaderElement(msg, elem, false);
-	return (headerElem == null) ? null : headerElem.getTextContent().trim();
-    }
-
-    private Element getHeaderElement(SOAPMessage msg, QName elem, boolean create) throws SOAPException {
-	Element result = null;
-	SOAPHeader h = msg.getSOAPHeader();
-	// try to find a header
-	for (Element e : h.getChildElements()) {
-	    if (e.getLocalName().equals(elem.getLocalPart()) && e.getNamespaceURI().equals(elem.getNamespaceURI())) {
-		result = e;
-		break;
-	    }
-	}
-	// if no such element in header, create new
-	if (result == null && create) {
-	    result = h.addHeaderElement(elem);
-	}
-	return result;
-    }
-
-    private void addMessageIDs(SOAPMessage msg) throws SOAPException {
-	String otherID = idGenerator.getRemoteID();
-	String newID = idGenerator.createNewID(); // also swaps messages in
-	// MessageIdGenerator
-	if (otherID != null) {
-	    // add relatesTo element
-	    setRelatesTo(msg, otherID);
+    private void updateMessageID(@Nullable String id) throws PAOSException {
+	if (id == null) {
+	    throw new PAOSException(NO_MESSAGE_ID);
 	}
-	// add MessageID element
-	setMessageID(msg, newID);
-    }
-
-    private void updateMessageID(SOAPMessage msg) throws PAOSException {
-	try {
-	    String id = getMessageID(msg);
-	    if (id == null) {
-		throw new PAOSException(NO_MESSAGE_ID);
-	    }
-	    if (! idGenerator.setRemoteID(id)) {
-		// IDs don't match throw exception
-		throw new PAOSException(MESSAGE_ID_MISSMATCH);
-	    }
-	} catch (SOAPException e) {
-	    LOG.error(e.getMessage(), e);
-	    throw new PAOSException(e.getMessage(), e);
+	if (! idGenerator.setRemoteID(id)) {
+	    // IDs don't match throw exception
+	    throw new PAOSException(MESSAGE_ID_MISSMATCH);
 	}
     }
 
-    private String getMessageID(SOAPMessage msg) throws SOAPException {
-	return getHeaderElement(msg, MESSAGE_ID);
-    }
-
-    private void setMessageID(SOAPMessage msg, String value) throws SOAPException {
-	Element elem = getHeaderElement(msg, MESSAGE_ID, true);
-	elem.setTextContent(value);
-    }
-
-    private Object processPAOSRequest(InputStream content) throws PAOSException, DocumentValidatorException {
+    /**
+     * Reads the message received from the PAOS server.
+     * The content of the SOAP body is validated against the schema while it is unmarshalled, so the message is parsed
+     * only once.
+     *
+     * @param content The serialized SOAP message.
+     * @return The JAXB object contained in the SOAP body.
+     * @throws PAOSException Thrown in case the message can not be read or has an invalid message ID.
+     * @throws DocumentValidatorException Thrown in case the content of the SOAP body does not conform to the schema.
+     */
+    Object processPAOSRequest(byte[] content) throws PAOSException, DocumentValidatorException {
+	SOAPBodyReader reader = null;
 	try {
-	    Document doc = m.str2doc(content);
-	    SOAPMessage msg = m.doc2soap(doc);
-	    Element body = msg.getSOAPBody().getChildElements().get(0);
-	    updateMessageID(msg);
+	    reader = SOAPBodyReader.open(INPUT_FACTORY, content);
+	    updateMessageID(reader.getMessageID());
 
 	    if (LOG.isDebugEnabled()) {
-		try {
-		    LOG.debug("Message received:\n{}", m.doc2str(doc));
-		} catch (TransformerException ex) {
-		    LOG.warn("Failed to log PAOS request message.", ex);
-		}
+		LOG.debug("Message received:\n{}", toLogString(content));
 	    }
 
 	    // fix profile attribute if it is not present
 	    // while there are the eID-Servers to blame, some don't get it right and actually Profile is a useless attribute anyway
-	    if (body.getLocalName().equals("StartPAOSResponse") && ! body.hasAttribute("Profile")) {
+	    if ("StartPAOSResponse".equals(reader.getLocalName()) && reader.getAttributeValue(null, "Profile") == null) {
 		LOG.warn("Received message without Profile attribute, adding one for proper validation.");
-		body.setAttribute("Profile", ECardConstants.Profile.ECARD_1_1);
-
-		try {
-		    // copy or the validation produces strange errors
-		    String docStr = m.doc2str(body);
-		    Document newDoc = m.str2doc(docStr);
-		    body = newDoc.getDocumentElement();
-		} catch (SAXException | TransformerException ex) {
-		    throw new PAOSException("Failed to copy document.", ex);
-		}
+		reader.addAttribute("Profile", ECardConstants.Profile.ECARD_1_1);
 	    }
 
-	    // validate input message
-	    schemaValidator.validate(body);
-
-	    return m.unmarshal(body);
+	    // validate input message directly while it is unmarshalled, no schema means validation is disabled
+	    return m.unmarshal(reader, schemaValidator.getSchema());
 	} catch (MarshallingTypeException ex) {
+	    if (ex.getCause() instanceof SAXParseException) {
+		LOG.error("Validation of the input object failed.", ex.getCause());
+		throw new DocumentValidatorException("Failed to validate eCard message.", ex.getCause());
+	    }
 	    LOG.error(ex.getMessage(), ex);
 	    throw new PAOSException(ex.getMessage(), ex);
-	} catch (WSMarshallerException ex) {
-	    String msg = "Failed to read/process message from PAOS server.";
-	    LOG.error(msg, ex);
-	    throw new PAOSException(MARSHALLING_ERROR, ex);
-	} catch (IOException | SAXException ex) {
+	} catch (XMLStreamException | SOAPException ex) {
 	    String msg = "Failed to read/process message from PAOS server.";
 	    LOG.error(msg, ex);
 	    throw new PAOSException(SOAP_MESSAGE_FAILURE, ex);
+	} finally {
+	    closeReader(reader);
 	}
     }
 
-    private String createPAOSResponse(Object obj) throws MarshallingTypeException, SOAPException, TransformerException {
-	SOAPMessage msg = createSOAPMessage(obj);
-	String result = m.doc2str(msg.getDocument());
-
-	LOG.debug("Message sent:\n{}", result);
-
-	return result;
+    private Object unmarshalBody(byte[] content) throws XMLStreamException, SOAPException, MarshallingTypeException {
+	SOAPBodyReader reader = SOAPBodyReader.open(INPUT_FACTORY, content);
+	try {
+	    return m.unmarshal(reader);
+	} finally {
+	    closeReader(reader);
+	}
     }
 
-    private SOAPMessage createSOAPMessage(Object content) throws MarshallingTypeException, SOAPException {
-	Document contentDoc = m.marshal(content);
+    private static void closeReader(@Nullable SOAPBodyReader reader) {
+	if (reader != null) {
+	    try {
+		reader.close();
+	    } catch (XMLStreamException ex) {
+		LOG.debug("Failed to close reader of the PAOS message.", ex);
+	    }
+	}
+    }
 
+    /**
+     * Creates the SOAP message which is sent to the PAOS server.
+     * The given object is validated against the schema while it is marshalled into the SOAP body, unless validation
+     * is disabled. Violations of the schema are only logged, the message is sent nonetheless.
+     *
+     * @param obj The JAXB object to send in the SOAP body.
+     * @return The serialized SOAP message.
+     * @throws MarshallingTypeException Thrown in case the object can not be serialized.
+     */
+    byte[] createPAOSResponse(Object obj) throws MarshallingTypeException {
 	try {
-	    String docStr = m.doc2str(contentDoc);
-	    Document newDoc = m.str2doc(docStr);
-	    schemaValidator.validate(newDoc);
-	} catch (DocumentValidatorException ex) {
-	    LOG.warn("Schema validation of outgoing message failed.", ex);
-	} catch (SAXException | TransformerException ex) {
-	    throw new MarshallingTypeException("Failed to copy document.", ex);
+	    ByteArrayOutputStream out = new ByteArrayOutputStream(2048);
+	    XMLStreamWriter w = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+	    w.writeStartDocument("UTF-8", "1.0");
+	    w.writeStartElement(SOAP_PREFIX, "Envelope", ECardConstants.SOAP_ENVELOPE);
+	    w.writeNamespace(SOAP_PREFIX, ECardConstants.SOAP_ENVELOPE);
+	    w.writeStartElement(SOAP_PREFIX, "Header", ECardConstants.SOAP_ENVELOPE);
+	    writeHeader(w);
+	    w.writeEndElement();
+	    w.writeStartElement(SOAP_PREFIX, "Body", ECardConstants.SOAP_ENVELOPE);
+	    m.marshal(obj, w, schemaValidator.getSchema());
+	    w.writeEndElement();
+	    w.writeEndElement();
+	    w.writeEndDocument();
+	    w.close();
+
+	    byte[] result = out.toByteArray();
+	    if (LOG.isDebugEnabled()) {
+		LOG.debug("Message sent:\n{}", toLogString(result));
+	    }
+	    return result;
+	} catch (XMLStreamException ex) {
+	    throw new MarshallingTypeException("Failed to serialize PAOS message.", ex);
 	}
+    }
 
-	SOAPMessage msg = m.add2soap(contentDoc);
-	SOAPHeader header = msg.getSOAPHeader();
-
-	// fill header with paos stuff
-	Element paos = header.addHeaderElement(PAOS_PAOS);
-	paos.setAttributeNS(ECardConstants.SOAP_ENVELOPE, "actor", ECardConstants.ACTOR_NEXT);
-	paos.setAttributeNS(ECardConstants.SOAP_ENVELOPE, "mustUnderstand", "1");
+    /**
+     * Converts the message to an indented string for the log.
+     * Messages are exchanged without indentation, so the message is parsed again to produce a readable output.
+     *
+     * @param msg Serialized message.
+     * @return The indented message, or the message as is if it can not be parsed.
+     */
+    private String toLogString(byte[] msg) {
+	try {
+	    return m.doc2str(m.str2doc(new ByteArrayInputStream(msg)), true);
+	} catch (SAXException | IOException | TransformerException ex) {
+	    return new String(msg, StandardCharsets.UTF_8);
+	}
+    }
 
-	Element version = header.addChildElement(paos, PAOS_VERSION);
-	version.setTextContent(ECardConstants.PAOS_VERSION_20);
+    private void writeHeader(XMLStreamWriter w) throws XMLStreamException {
+	// paos stuff
+	w.writeStartElement("", PAOS_PAOS.getLocalPart(), PAOS_PAOS.getNamespaceURI());
+	w.writeDefaultNamespace(PAOS_PAOS.getNamespaceURI());
+	w.writeAttribute(SOAP_PREFIX, ECardConstants.SOAP_ENVELOPE, "actor", ECardConstants.ACTOR_NEXT);
+	w.writeAttribute(SOAP_PREFIX, ECardConstants.SOAP_ENVELOPE, "mustUnderstand", "1");
+	writeElement(w, PAOS_VERSION, ECardConstants.PAOS_VERSION_20);
+	w.writeStartElement("", PAOS_ENDPOINTREF.getLocalPart(), PAOS_ENDPOINTREF.getNamespaceURI());
+	writeElement(w, PAOS_ADDRESS, "http://www.projectliberty.org/2006/01/role/paos");
+	w.writeStartElement("", PAOS_METADATA.getLocalPart(), PAOS_METADATA.getNamespaceURI());
+	writeElement(w, PAOS_SERVICETYPE, ECardConstants.PAOS_NEXT);
+	w.writeEndElement();
+	w.writeEndElement();
+	w.writeEndElement();
+
+	w.writeStartElement("", REPLY_TO.getLocalPart(), REPLY_TO.getNamespaceURI());
+	w.writeDefaultNamespace(REPLY_TO.getNamespaceURI());
+	writeElement(w, ADDRESS, "http://www.projectliberty.org/2006/02/role/paos");
+	w.writeEndElement();
 
-	Element endpointReference = header.addChildElement(paos, PAOS_ENDPOINTREF);
-	Element address = header.addChildElement(endpointReference, PAOS_ADDRESS);
-	address.setTextContent("http://www.projectliberty.org/2006/01/role/paos");
-	Element metaData = header.addChildElement(endpointReference, PAOS_METADATA);
-	Element serviceType = header.addChildElement(metaData, PAOS_SERVICETYPE);
-	serviceType.setTextContent(ECardConstants.PAOS_NEXT);
+	// add message IDs
+	String otherID = idGenerator.getRemoteID();
+	String newID = idGenerator.createNewID(); // also swaps messages in MessageIdGenerator
+	if (otherID != null) {
+	    writeHeaderElement(w, RELATES_TO, otherID);
+	}
+	writeHeaderElement(w, MESSAGE_ID, newID);
+    }
 
-	Element replyTo = header.addHeaderElement(REPLY_TO);
-	address = header.addChildElement(replyTo, ADDRESS);
-	address.setTextContent("http://www.projectliberty.org/2006/02/role/paos");
+    private static void writeElement(XMLStreamWriter w, QName name, String value) throws XMLStreamException {
+	// the namespace of the element must already be declared as default namespace
+	w.writeStartElement("", name.getLocalPart(), name.getNamespaceURI());
+	w.writeCharacters(value);
+	w.writeEndElement();
+    }
 
-	// add message IDs
-	addMessageIDs(msg);
-	return msg;
+    private static void writeHeaderElement(XMLStreamWriter w, QName name, String value) throws XMLStreamException {
+	w.writeStartElement("", name.getLocalPart(), name.getNamespaceURI());
+	w.writeDefaultNamespace(name.getNamespaceURI());
+	w.writeCharacters(value);
+	w.writeEndElement();
     }
 
     /**
@@ -394,8 +417,8 @@ public class PAOS {
 
 			ContentType reqContentType = ContentType.create("application/vnd.paos+xml", "UTF-8");
 			HttpUtils.dumpHttpRequest(LOG, "before adding content", req);
-			String reqMsgStr = createPAOSResponse(msg);
-			StringEntity reqMsg = new StringEntity(reqMsgStr, reqContentType);
+			byte[] reqMsgData = createPAOSResponse(msg);
+			ByteArrayEntity reqMsg = new ByteArrayEntity(reqMsgData, reqContentType);
 			req.setEntity(reqMsg);
 			req.setHeader(reqMsg.getContentType());
 			req.setHeader("Content-Length", Long.toString(reqMsg.getContentLength()));
@@ -422,7 +445,7 @@ public class PAOS {
 			HttpUtils.dumpHttpResponse(LOG, response, entityData);
 			try {
 			    // consume entity
-			    Object requestObj = processPAOSRequest(new ByteArrayInputStream(entityData));
+			    Object requestObj = processPAOSRequest(entityData);
 
 			    // break when message is startpaosresponse
 			    if (requestObj instanceof StartPAOSResponse) {
@@ -477,7 +500,7 @@ public class PAOS {
 			    LOG.error("PAOS input message failed to validate.", ex);
 
 			    // the ecard API forces us to interpret the message because the response must be the equivalent message not a fault
-			    Object responseObj = synthesizeObj(new ByteArrayInputStream(entityData), ex);
+			    Object responseObj = synthesizeObj(entityData, ex);
 			    if (responseObj != null) {
 				msg = responseObj;
 				if (! validationError.isDelivered()) {
@@ -506,16 +529,12 @@ public class PAOS {
 	    }
 	} catch (HttpException ex) {
 	    throw new PAOSException(DELIVERY_FAILED, ex);
-	} catch (SOAPException ex) {
-	    throw new PAOSException(SOAP_MESSAGE_FAILURE, ex);
 	} catch (DocumentValidatorException ex) {
 	    throw new PAOSException(SCHEMA_VALIDATION_FAILED, ex);
 	} catch (MarshallingTypeException ex) {
 	    throw new PAOSDispatcherException(MARSHALLING_ERROR, ex);
 	} catch (InvocationTargetException ex) {
 	    throw new PAOSDispatcherException(DISPATCHER_ERROR, ex);
-	} catch (TransformerException ex) {
-	    throw new DispatcherException(ex);
 	} catch (WSException ex) {
 	    PAOSException newEx = new PAOSException(ex);
 	    if (firstOecMinorError != null) {
@@ -593,12 +612,9 @@ public class PAOS {
     }
 
     @Nullable
-    private Object synthesizeObj(ByteArrayInputStream content, DocumentValidatorException cause) {
+    private Object synthesizeObj(byte[] content, DocumentValidatorException cause) {
 	try {
-	    Document doc = m.str2doc(content);
-	    SOAPMessage msg = m.doc2soap(doc);
-	    Element body = msg.getSOAPBody().getChildElements().get(0);
-	    Object obj = m.unmarshal(body);
+	    Object obj = unmarshalBody(content);
 
 	    if (obj instanceof DIDAuthenticate) {
 		DIDAuthenticate didAuth = (DIDAuthenticate) obj;
@@ -617,7 +633,7 @@ public class PAOS {
 
 	    // no special case needed
 	    return null;
-	} catch (IOException | SAXException | WSMarshallerException ex) {
+	} catch (XMLStreamException | SOAPException | MarshallingTypeException ex) {
 	    // in case of error, just quit
 	    return null;
 	}
@@ -0,0 +1,289 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.transport.paos;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import org.openecard.ws.soap.SOAPConstants;
+import org.openecard.ws.soap.SOAPException;
+
+
+/**
+ * StAX reader for the content of the body of a SOAP message.
+ * The reader parses the SOAP envelope and header and is then positioned on the start tag of the first element in the
+ * SOAP body. The namespaces declared on the envelope and body element are also reported as declarations of the
+ * content element, so that the element can be processed on its own, e.g. by a schema validator.
+ * <p>
+ * The only evaluated header element is the WS-Addressing MessageID, all other header elements are skipped.
+ * </p>
+ *
+ * @author Tobias Wich
+ */
+final class SOAPBodyReader extends StreamReaderDelegate {
+
+    private final String messageId;
+    // namespaces inherited from the envelope and body elements, prefix -> uri
+    private final ArrayList<String[]> inheritedNamespaces;
+
+    // depth relative to the content element, 1 while positioned on its start tag
+    private int depth;
+    private boolean atContent;
+    private String addedAttrName;
+    private String addedAttrValue;
+
+    private SOAPBodyReader(XMLStreamReader reader, String messageId, ArrayList<String[]> inheritedNamespaces) {
+	super(reader);
+	this.messageId = messageId;
+	this.inheritedNamespaces = inheritedNamespaces;
+	this.depth = 1;
+	this.atContent = true;
+    }
+
+    /**
+     * Parses the given SOAP message up to the first element in the SOAP body.
+     *
+     * @param factory Factory used to create the underlying StAX reader.
+     * @param message The serialized SOAP message.
+     * @return The reader positioned on the start tag of the body content.
+     * @throws XMLStreamException Thrown in case the message is not well-formed XML.
+     * @throws SOAPException Thrown in case the message is not a SOAP message or the body is empty.
+     */
+    @Nonnull
+    static SOAPBodyReader open(@Nonnull XMLInputFactory factory, @Nonnull byte[] message) throws XMLStreamException,
+	    SOAPException {
+	XMLStreamReader r = factory.createXMLStreamReader(new ByteArrayInputStream(message));
+	Map<String, String> namespaces = new LinkedHashMap<>();
+
+	// envelope
+	r.nextTag();
+	String soapNs = r.getNamespaceURI();
+	if (! "Envelope".equals(r.getLocalName())) {
+	    throw new SOAPException("No Envelope element in SOAP message.");
+	} else if (! SOAPConstants.URI_NS_SOAP_1_1_ENVELOPE.equals(soapNs)
+		&& ! SOAPConstants.URI_NS_SOAP_1_2_ENVELOPE.equals(soapNs)) {
+	    throw new SOAPException("Unsupported SOAP protocol.");
+	}
+	addNamespaces(r, namespaces);
+
+	// optional header
+	String messageId = null;
+	r.nextTag();
+	if (isElement(r, soapNs, "Header")) {
+	    while (r.nextTag() == XMLStreamConstants.START_ELEMENT) {
+		if (PAOS.MESSAGE_ID.equals(r.getName())) {
+		    messageId = r.getElementText().trim();
+		} else {
+		    skipElement(r);
+		}
+	    }
+	    r.nextTag();
+	}
+
+	// body and its first child
+	if (! isElement(r, soapNs, "Body")) {
+	    throw new SOAPException("No Body element present in SOAP message.");
+	}
+	addNamespaces(r, namespaces);
+	if (r.nextTag() != XMLStreamConstants.START_ELEMENT) {
+	    throw new SOAPException("No content in SOAP body.");
+	}
+
+	// only keep namespaces not redeclared by the content element itself
+	for (int i = 0; i < r.getNamespaceCount(); i++) {
+	    namespaces.remove(normalize(r.getNamespacePrefix(i)));
+	}
+	ArrayList<String[]> inherited = new ArrayList<>(namespaces.size());
+	for (Map.Entry<String, String> e : namespaces.entrySet()) {
+	    inherited.add(new String[] { e.getKey(), e.getValue() });
+	}
+
+	return new SOAPBodyReader(r, messageId, inherited);
+    }
+
+    private static boolean isElement(XMLStreamReader r, String ns, String localName) {
+	return r.isStartElement() && ns.equals(r.getNamespaceURI()) && localName.equals(r.getLocalName());
+    }
+
+    private static void addNamespaces(XMLStreamReader r, Map<String, String> namespaces) {
+	for (int i = 0; i < r.getNamespaceCount(); i++) {
+	    namespaces.put(normalize(r.getNamespacePrefix(i)), r.getNamespaceURI(i));
+	}
+    }
+
+    private static void skipElement(XMLStreamReader r) throws XMLStreamException {
+	int depth = 1;
+	while (depth > 0) {
+	    int event = r.next();
+	    if (event == XMLStreamConstants.START_ELEMENT) {
+		depth++;
+	    } else if (event == XMLStreamConstants.END_ELEMENT) {
+		depth--;
+	    }
+	}
+    }
+
+    private static String normalize(String prefix) {
+	return prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix;
+    }
+
+
+    /**
+     * Gets the value of the MessageID element in the SOAP header.
+     *
+     * @return The message ID, or {@code null} if the header contains no MessageID element.
+     */
+    @Nullable
+    String getMessageID() {
+	return messageId;
+    }
+
+    /**
+     * Adds an unqualified attribute to the content element.
+     * This method must be called while the reader is positioned on the content element.
+     *
+     * @param localName Name of the attribute.
+     * @param value Value of the attribute.
+     */
+    void addAttribute(@Nonnull String localName, @Nonnull String value) {
+	if (! atContent || ! isStartElement()) {
+	    throw new IllegalStateException("Reader is not positioned on the content element anymore.");
+	}
+	addedAttrName = localName;
+	addedAttrValue = value;
+    }
+
+    private boolean isAddedAttr(int index) {
+	return atContent && addedAttrName != null && isStartElement() && index == super.getAttributeCount();
+    }
+
+    private boolean isInheritedNs(int index) {
+	return atContent && index >= super.getNamespaceCount();
+    }
+
+
+    @Override
+    public int next() throws XMLStreamException {
+	return update(super.next());
+    }
+
+    @Override
+    public int nextTag() throws XMLStreamException {
+	return update(super.nextTag());
+    }
+
+    private int update(int event) {
+	if (event == XMLStreamConstants.START_ELEMENT) {
+	    depth++;
+	} else if (event == XMLStreamConstants.END_ELEMENT) {
+	    depth--;
+	}
+	// the inherited namespaces are reported for the start and end tag of the content element
+	atContent = event == XMLStreamConstants.END_ELEMENT && depth == 0;
+	return event;
+    }
+
+    @Override
+    public int getNamespaceCount() {
+	int count = super.getNamespaceCount();
+	return atContent ? count + inheritedNamespaces.size() : count;
+    }
+
+    @Override
+    public String getNamespacePrefix(int index) {
+	if (isInheritedNs(index)) {
+	    String prefix = inheritedNamespaces.get(index - super.getNamespaceCount())[0];
+	    return prefix.isEmpty() ? null : prefix;
+	}
+	return super.getNamespacePrefix(index);
+    }
+
+    @Override
+    public String getNamespaceURI(int index) {
+	if (isInheritedNs(index)) {
+	    return inheritedNamespaces.get(index - super.getNamespaceCount())[1];
+	}
+	return super.getNamespaceURI(index);
+    }
+
+    @Override
+    public int getAttributeCount() {
+	int count = super.getAttributeCount();
+	return atContent && addedAttrName != null && isStartElement() ? count + 1 : count;
+    }
+
+    @Override
+    public QName getAttributeName(int index) {
+	return isAddedAttr(index) ? new QName(addedAttrName) : super.getAttributeName(index);
+    }
+
+    @Override
+    public String getAttributeNamespace(int index) {
+	return isAddedAttr(index) ? null : super.getAttributeNamespace(index);
+    }
+
+    @Override
+    public String getAttributeLocalName(int index) {
+	return isAddedAttr(index) ? addedAttrName : super.getAttributeLocalName(index);
+    }
+
+    @Override
+    public String getAttributePrefix(int index) {
+	return isAddedAttr(index) ? XMLConstants.DEFAULT_NS_PREFIX : super.getAttributePrefix(index);
+    }
+
+    @Override
+    public String getAttributeType(int index) {
+	return isAddedAttr(index) ? "CDATA" : super.getAttributeType(index);
+    }
+
+    @Override
+    public String getAttributeValue(int index) {
+	return isAddedAttr(index) ? addedAttrValue : super.getAttributeValue(index);
+    }
+
+    @Override
+    public boolean isAttributeSpecified(int index) {
+	return isAddedAttr(index) || super.isAttributeSpecified(index);
+    }
+
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+	if (atContent && addedAttrName != null && isStartElement() && addedAttrName.equals(localName)
+		&& (namespaceURI == null || namespaceURI.isEmpty())) {
+	    return addedAttrValue;
+	}
+	return super.getAttributeValue(namespaceURI, localName);
+    }
+
+}
@@ -0,0 +1,160 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.transport.paos;
+
+import iso.std.iso_iec._24727.tech.schema.InputAPDUInfoType;
+import iso.std.iso_iec._24727.tech.schema.StartPAOSResponse;
+import iso.std.iso_iec._24727.tech.schema.Transmit;
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import org.mockito.Mockito;
+import org.openecard.binding.tctoken.TCTokenHandler;
+import org.openecard.binding.tctoken.TlsConnectionHandler;
+import org.openecard.common.ECardConstants;
+import org.openecard.common.WSHelper;
+import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.interfaces.DocumentSchemaValidator;
+import org.openecard.common.interfaces.DocumentValidatorException;
+import org.openecard.common.util.JAXPSchemaValidator;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+
+/**
+ * Tests reading and writing of PAOS messages.
+ * The messages written by one PAOS instance are read by a second instance, which takes the role of the eID-Server.
+ *
+ * @author Tobias Wich
+ */
+public class PAOSTest {
+
+    private static final byte[] SLOT_HANDLE = new byte[] { 0x0A, 0x0B, 0x0C };
+    private static final byte[] APDU = new byte[] { 0x00, (byte) 0xA4, 0x00, 0x0C, 0x02, 0x3F, 0x00 };
+
+    private DocumentSchemaValidator validator;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+	validator = JAXPSchemaValidator.load("Management.xsd");
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+	PAOS client = createPAOS();
+	PAOS server = createPAOS();
+
+	Transmit transmit = new Transmit();
+	transmit.setSlotHandle(SLOT_HANDLE);
+	InputAPDUInfoType apduInfo = new InputAPDUInfoType();
+	apduInfo.setInputAPDU(APDU);
+	apduInfo.getAcceptableStatusCode().add(new byte[] { (byte) 0x90, 0x00 });
+	transmit.getInputAPDUInfo().add(apduInfo);
+
+	Object received = server.processPAOSRequest(client.createPAOSResponse(transmit));
+	assertTrue(received instanceof Transmit);
+	Transmit receivedTransmit = (Transmit) received;
+	assertEquals(receivedTransmit.getSlotHandle(), SLOT_HANDLE);
+	assertEquals(receivedTransmit.getInputAPDUInfo().size(), 1);
+	assertEquals(receivedTransmit.getInputAPDUInfo().get(0).getInputAPDU(), APDU);
+	assertEquals(receivedTransmit.getInputAPDUInfo().get(0).getAcceptableStatusCode().get(0),
+		new byte[] { (byte) 0x90, 0x00 });
+
+	// answer in the other direction
+	TransmitResponse response = WSHelper.makeResponse(TransmitResponse.class, WSHelper.makeResultOK());
+	response.getOutputAPDU().add(new byte[] { (byte) 0x90, 0x00 });
+
+	received = client.processPAOSRequest(server.createPAOSResponse(response));
+	assertTrue(received instanceof TransmitResponse);
+	TransmitResponse receivedResponse = (TransmitResponse) received;
+	assertEquals(receivedResponse.getResult().getResultMajor(), ECardConstants.Major.OK);
+	assertEquals(receivedResponse.getProfile(), ECardConstants.Profile.ECARD_1_1);
+	assertEquals(receivedResponse.getOutputAPDU().get(0), new byte[] { (byte) 0x90, 0x00 });
+    }
+
+    @Test
+    public void testMissingProfile() throws Exception {
+	String msg = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+		+ "<S:Envelope xmlns:S=\"http://schemas.xmlsoap.org/soap/envelope/\""
+		+ " xmlns:dss=\"urn:oasis:names:tc:dss:1.0:core:schema\">"
+		+ "<S:Header>"
+		+ "<MessageID xmlns=\"http://www.w3.org/2005/03/addressing\">urn:uuid:1234</MessageID>"
+		+ "</S:Header>"
+		+ "<S:Body>"
+		+ "<StartPAOSResponse xmlns=\"urn:iso:std:iso-iec:24727:tech:schema\">"
+		+ "<dss:Result><dss:ResultMajor>" + ECardConstants.Major.OK + "</dss:ResultMajor></dss:Result>"
+		+ "</StartPAOSResponse>"
+		+ "</S:Body>"
+		+ "</S:Envelope>";
+
+	Object received = createPAOS().processPAOSRequest(msg.getBytes(StandardCharsets.UTF_8));
+	assertTrue(received instanceof StartPAOSResponse);
+	StartPAOSResponse res = (StartPAOSResponse) received;
+	assertEquals(res.getProfile(), ECardConstants.Profile.ECARD_1_1);
+	assertEquals(res.getResult().getResultMajor(), ECardConstants.Major.OK);
+    }
+
+    @Test(expectedExceptions = DocumentValidatorException.class)
+    public void testInvalidMessage() throws Exception {
+	// the slot handle is required by the schema
+	Transmit transmit = new Transmit();
+	InputAPDUInfoType apduInfo = new InputAPDUInfoType();
+	apduInfo.setInputAPDU(APDU);
+	transmit.getInputAPDUInfo().add(apduInfo);
+
+	// invalid outgoing messages are sent nonetheless, but the receiver rejects them
+	byte[] msg = createPAOS().createPAOSResponse(transmit);
+	createPAOS().processPAOSRequest(msg);
+    }
+
+    @Test
+    public void testDisabledValidation() throws Exception {
+	// the slot handle is required by the schema, but nothing is validated
+	Transmit transmit = new Transmit();
+	InputAPDUInfoType apduInfo = new InputAPDUInfoType();
+	apduInfo.setInputAPDU(APDU);
+	transmit.getInputAPDUInfo().add(apduInfo);
+
+	PAOS client = createPAOS(TCTokenHandler.NO_VALIDATION);
+	PAOS server = createPAOS(TCTokenHandler.NO_VALIDATION);
+	Object received = server.processPAOSRequest(client.createPAOSResponse(transmit));
+	assertTrue(received instanceof Transmit);
+	Transmit receivedTransmit = (Transmit) received;
+	assertNull(receivedTransmit.getSlotHandle());
+	assertEquals(receivedTransmit.getInputAPDUInfo().get(0).getInputAPDU(), APDU);
+    }
+
+    private PAOS createPAOS() throws PAOSException {
+	return createPAOS(validator);
+    }
+
+    private PAOS createPAOS(DocumentSchemaValidator validator) throws PAOSException {
+	Dispatcher dispatcher = mock(Dispatcher.class);
+	Mockito.when(dispatcher.getFilter()).thenReturn(dispatcher);
+	Mockito.when(dispatcher.getServiceList()).thenReturn(Collections.<String>emptyList());
+	return new PAOS(dispatcher, mock(TlsConnectionHandler.class), validator);
+    }
+
+}
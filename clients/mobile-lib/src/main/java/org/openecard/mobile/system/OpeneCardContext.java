@@ -34,11 +34,13 @@ import org.openecard.addon.AddonManager;
 import org.openecard.common.ClientEnv;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.utils.CardFileCache;
 import org.openecard.common.event.EventDispatcherImpl;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.common.interfaces.EventDispatcher;
 import org.openecard.common.sal.CombinedCIFProvider;
 import org.openecard.common.util.ByteUtils;
+import org.openecard.crypto.common.EphemeralKeyPool;
 import org.openecard.gui.UserConsent;
 import org.openecard.gui.definition.ViewController;
 import org.openecard.mobile.ex.*;
@@ -166,6 +168,10 @@ public class OpeneCardContext {
 	    // Initialize and start the Event Dispatcher
 	    eventDispatcher.start();
 	    LOG.info("Event dispatcher started.");
+	    // drop cached card files when the cards are removed
+	    CardFileCache.getInstance().register(eventDispatcher);
+	    // pregenerate ephemeral keys for the PACE mapping if enabled
+	    EphemeralKeyPool.getInstance().start();
 	    env.setEventDispatcher(eventDispatcher);
 
 
@@ -293,6 +299,7 @@ public class OpeneCardContext {
 	    if (eventDispatcher != null) {
 		eventDispatcher.terminate();
 	    }
+	    EphemeralKeyPool.getInstance().stop();
 	    if (manager != null) {
 		manager.shutdown();
 	    }
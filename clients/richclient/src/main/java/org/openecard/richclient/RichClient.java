@@ -56,7 +56,9 @@ import org.openecard.common.ECardConstants;
 import org.openecard.common.I18n;
 import org.openecard.common.OpenecardProperties;
 import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.utils.CardFileCache;
 import org.openecard.control.binding.http.HttpBinding;
+import org.openecard.crypto.common.EphemeralKeyPool;
 import org.openecard.common.event.EventDispatcherImpl;
 import org.openecard.common.event.EventType;
 import org.openecard.common.sal.CombinedCIFProvider;
@@ -168,6 +170,10 @@ public final class RichClient {
 	    eventDispatcher = new EventDispatcherImpl();
 	    // start event dispatcher
 	    eventDispatcher.start();
+	    // drop cached card files when the cards are removed
+	    CardFileCache.getInstance().register(eventDispatcher);
+	    // pregenerate ephemeral keys for the PACE mapping if enabled
+	    EphemeralKeyPool.getInstance().start();
 
 	    env.setEventDispatcher(eventDispatcher);
 
@@ -360,6 +366,7 @@ public final class RichClient {
 	    if (eventDispatcher != null) {
 		eventDispatcher.terminate();
 	    }
+	    EphemeralKeyPool.getInstance().stop();
 
 	    // TODO: shutdown addon manager and related components?
 	    if (manager != null) {
@@ -228,7 +228,7 @@ public class LogSettingsGroup extends SettingsGroup {
 	    setLoglevel(conf, CG_KEY, val);
 	    try ( // write log to file
 		    FileWriter w = new FileWriter(confFile)) {
-		String confStr = m.doc2str(conf);
+		String confStr = m.doc2str(conf, true);
 		w.write(confStr);
 	    }
 	    // reload log config
@@ -29,7 +29,10 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import org.openecard.common.WSHelper;
 import org.openecard.common.WSHelper.WSException;
 import org.openecard.common.apdu.exception.APDUException;
@@ -49,6 +52,8 @@ public class CardCommandAPDU extends CardAPDU {
 
     private static final Logger LOG = LoggerFactory.getLogger(CardCommandAPDU.class);
 
+    private static final int MAX_SHORT_LC = 255;
+
     private final byte[] header = new byte[4];
     private int le = -1;
     private int lc = -1;
@@ -509,13 +514,59 @@ public class CardCommandAPDU extends CardAPDU {
     }
 
     /**
-     * Returns a iterator over the chaining APDUs.
+     * Returns an iterator over the chaining APDUs with short length data fields.
+     *
+     * @return Iterator containing the APDUs.
+     * @see #getChainingIterator(int)
+     */
+    public final Iterable<CardCommandAPDU> getChainingIterator() {
+	return getChainingIterator(MAX_SHORT_LC);
+    }
+
+    /**
+     * Returns an iterator over the chaining APDUs.
+     * The data field is split into parts of at most the given length. All but the last APDU indicate command chaining
+     * in the class byte and the LE field is only present in the last APDU. If the data field fits into one APDU, the
+     * iterator only contains this instance.
+     * See ISO/IEC 7816-4 Section 5.1.1.1
      *
+     * @param maxDataLength Maximum number of bytes in the data field of one APDU.
      * @return Iterator containing the APDUs.
      */
-    public final Iterable getChainingIterator() {
-	// TODO: Implemente the chaining iterator and add generic type to Iterable. I suppose it is this class.
-	throw new IllegalAccessError("Not implemented yet");
+    public final Iterable<CardCommandAPDU> getChainingIterator(final int maxDataLength) {
+	if (maxDataLength < 1) {
+	    throw new IllegalArgumentException("Maximum data length must be at least 1.");
+	}
+	if (data.length <= maxDataLength) {
+	    return Collections.singletonList(this);
+	}
+
+	return () -> new Iterator<CardCommandAPDU>() {
+	    private int offset = 0;
+
+	    @Override
+	    public boolean hasNext() {
+		return offset < data.length;
+	    }
+
+	    @Override
+	    public CardCommandAPDU next() {
+		if (! hasNext()) {
+		    throw new NoSuchElementException("No further chaining APDUs available.");
+		}
+		int length = Math.min(maxDataLength, data.length - offset);
+		CardCommandAPDU part = new CardCommandAPDU(header[0], header[1], header[2], header[3]);
+		part.setData(ByteUtils.copy(data, offset, length));
+		offset += length;
+
+		if (hasNext()) {
+		    part.setChaining();
+		} else {
+		    part.le = le;
+		}
+		return part;
+	    }
+	};
     }
 
     /**
@@ -0,0 +1,235 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.apdu.common;
+
+import iso.std.iso_iec._24727.tech.schema.InputAPDUInfoType;
+import iso.std.iso_iec._24727.tech.schema.Transmit;
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.openecard.common.WSHelper;
+import org.openecard.common.WSHelper.WSException;
+import org.openecard.common.apdu.exception.APDUException;
+import org.openecard.common.apdu.utils.CardCapabilities;
+import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.util.ByteUtils;
+
+
+/**
+ * Sequence of command APDUs which is sent to the card in a single Transmit request.
+ * The IFD processes the commands in the given order and stops at the first response whose status word is not
+ * contained in the acceptable status codes of its command. Compared to sending each APDU on its own, the overhead of
+ * the dispatcher call is only paid once per batch.
+ * <p>
+ * Only commands which do not depend on the response of a previous command of the same batch can be combined.
+ * </p>
+ * <p>
+ * When the card states that it does not support extended length, commands whose data field exceeds the short length
+ * are split into chained APDUs. The chained parts are sent in the same Transmit and only the response of the last
+ * part is returned for such a command. If secure messaging is performed by the IFD, the parts are made small enough
+ * to still fit into one APDU after they have been wrapped.
+ * </p>
+ *
+ * @author Tobias Wich
+ */
+public class CardCommandBatch {
+
+    private static final int MAX_SHORT_LC = 255;
+    private static final int MAX_EXTENDED_LC = 65535;
+    // block size of the secure messaging cipher, the data is always padded to a multiple of it
+    private static final int SM_BLOCK_SIZE = 16;
+    // largest encoding of DO87 header with padding indicator, DO97 and DO8E added by secure messaging
+    private static final int SM_DO_OVERHEAD = 5 + 4 + 10;
+
+    private final ArrayList<InputAPDUInfoType> commands = new ArrayList<>();
+    // index of the last transmitted APDU belonging to each added command
+    private final ArrayList<Integer> lastParts = new ArrayList<>();
+    private final int maxDataLength;
+
+    /**
+     * Creates a batch which sends the commands unmodified.
+     */
+    public CardCommandBatch() {
+	this(null, false);
+    }
+
+    /**
+     * Creates a batch which uses command chaining for commands not fitting into one APDU.
+     *
+     * @param caps Capabilities of the card, or {@code null} if they are unknown and the commands should be sent
+     *   unmodified.
+     * @param secureMessaging {@code true} if the commands are wrapped with secure messaging before they are sent to
+     *   the card.
+     */
+    public CardCommandBatch(@Nullable CardCapabilities caps, boolean secureMessaging) {
+	if (caps == null) {
+	    maxDataLength = Integer.MAX_VALUE;
+	} else {
+	    int maxLc = caps.isExtendedLengthSupported() ? MAX_EXTENDED_LC : MAX_SHORT_LC;
+	    int maxLength = Math.min(caps.getMaxCommandLength(), maxLc);
+	    if (secureMessaging) {
+		// at least one padding byte is added, so the largest fitting data is one byte less than the padded size
+		maxLength = ((maxLength - SM_DO_OVERHEAD) / SM_BLOCK_SIZE) * SM_BLOCK_SIZE - 1;
+	    }
+	    maxDataLength = maxLength;
+	}
+    }
+
+    /**
+     * Adds a command to the batch which must be answered with 0x9000.
+     *
+     * @param apdu Command APDU
+     * @return This instance.
+     */
+    public CardCommandBatch add(@Nonnull CardCommandAPDU apdu) {
+	return add(apdu, CardCommandStatus.responseOk());
+    }
+
+    /**
+     * Adds a command to the batch.
+     * If the list of responses is empty, any status word is accepted and the processing continues with the next
+     * command.
+     *
+     * @param apdu Command APDU
+     * @param responses List of positive responses
+     * @return This instance.
+     */
+    public CardCommandBatch add(@Nonnull CardCommandAPDU apdu, @Nonnull List<byte[]> responses) {
+	Iterator<CardCommandAPDU> parts = apdu.getChainingIterator(maxDataLength).iterator();
+	while (parts.hasNext()) {
+	    CardCommandAPDU next = parts.next();
+	    InputAPDUInfoType info = new InputAPDUInfoType();
+	    info.setInputAPDU(next.toByteArray());
+	    // intermediate parts of a chain must always be accepted
+	    info.getAcceptableStatusCode().addAll(parts.hasNext() ? CardCommandStatus.responseOk() : responses);
+	    commands.add(info);
+	}
+	lastParts.add(commands.size() - 1);
+	return this;
+    }
+
+    /**
+     * Gets the number of commands in the batch.
+     * Chained commands are counted only once.
+     *
+     * @return Number of commands.
+     */
+    public int size() {
+	return lastParts.size();
+    }
+
+    /**
+     * Creates a new Transmit message containing all commands of the batch.
+     *
+     * @param slotHandle Slot handle
+     * @return Transmit
+     */
+    public Transmit makeTransmit(byte[] slotHandle) {
+	Transmit t = new Transmit();
+	t.setSlotHandle(slotHandle);
+	t.getInputAPDUInfo().addAll(commands);
+	return t;
+    }
+
+    /**
+     * Transmits all commands of the batch.
+     * In case one of the commands yields an unexpected status word, the remaining commands are not sent and an
+     * exception is thrown. The response of the failed command is available via {@link APDUException#getResponseAPDU()}.
+     * It is {@code null} if the command failed without a response from the card, for example due to a transmission
+     * error.
+     *
+     * @param dispatcher Dispatcher
+     * @param slotHandle Slot handle
+     * @return Response APDUs in the order of the commands. For chained commands only the last response is contained.
+     * @throws APDUException Thrown in case the transmission failed or a command yielded an unexpected status word.
+     */
+    public List<CardResponseAPDU> transmit(Dispatcher dispatcher, byte[] slotHandle) throws APDUException {
+	if (commands.isEmpty()) {
+	    return Collections.emptyList();
+	}
+
+	TransmitResponse tr = null;
+	try {
+	    tr = (TransmitResponse) dispatcher.safeDeliver(makeTransmit(slotHandle));
+	    WSHelper.checkResult(tr);
+
+	    List<byte[]> outputs = tr.getOutputAPDU();
+	    if (outputs.size() != commands.size()) {
+		String msg = String.format("Received %d response APDUs for %d commands.", outputs.size(),
+			commands.size());
+		throw new APDUException(msg);
+	    }
+
+	    ArrayList<CardResponseAPDU> responses = new ArrayList<>(lastParts.size());
+	    for (int idx : lastParts) {
+		responses.add(new CardResponseAPDU(outputs.get(idx)));
+	    }
+	    return responses;
+	} catch (WSException ex) {
+	    throw new APDUException(ex, tr, getFailedResponse(tr));
+	} catch (APDUException ex) {
+	    throw ex;
+	} catch (Exception ex) {
+	    throw new APDUException(ex);
+	}
+    }
+
+    /**
+     * Gets the response of the command which caused the IFD to stop processing the batch.
+     * The IFD only appends a response for the failed command when the card answered it with an unexpected status
+     * word. If the last output is accepted by its command, the failure happened in the following command, which has no
+     * response.
+     *
+     * @param tr Response of the IFD containing an error.
+     * @return Response of the failed command, or {@code null} if it has none.
+     */
+    @Nullable
+    private CardResponseAPDU getFailedResponse(TransmitResponse tr) {
+	List<byte[]> outputs = tr.getOutputAPDU();
+	int lastIdx = outputs.size() - 1;
+	if (lastIdx < 0 || lastIdx >= commands.size()) {
+	    return null;
+	}
+	byte[] rapdu = outputs.get(lastIdx);
+	if (rapdu == null || rapdu.length < 2) {
+	    return null;
+	}
+	List<byte[]> accepted = commands.get(lastIdx).getAcceptableStatusCode();
+	if (accepted.isEmpty()) {
+	    return null;
+	}
+	byte[] sw = Arrays.copyOfRange(rapdu, rapdu.length - 2, rapdu.length);
+	for (byte[] code : accepted) {
+	    if (ByteUtils.isPrefix(code, sw)) {
+		return null;
+	    }
+	}
+	return new CardResponseAPDU(rapdu);
+    }
+
+}
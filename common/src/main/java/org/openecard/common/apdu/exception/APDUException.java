@@ -23,6 +23,7 @@
 package org.openecard.common.apdu.exception;
 
 import iso.std.iso_iec._24727.tech.schema.TransmitResponse;
+import java.util.List;
 import javax.annotation.Nullable;
 import oasis.names.tc.dss._1_0.core.schema.Result;
 import org.openecard.common.ECardException;
@@ -95,10 +96,7 @@ public final class APDUException extends ECardException {
     public APDUException(Throwable cause, TransmitResponse tr) {
 	this(cause);
 
-	transmitResponse = tr;
-	if (! tr.getOutputAPDU().isEmpty()) {
-	    responseAPDU = new CardResponseAPDU(tr);
-	}
+	setTransmitResponse(tr);
     }
 
     /**
@@ -110,9 +108,32 @@ public final class APDUException extends ECardException {
     public APDUException(WSHelper.WSException ex, TransmitResponse tr) {
 	this(ex);
 
+	setTransmitResponse(tr);
+    }
+
+    /**
+     * Creates a new APDUException for a command which failed within a sequence of commands.
+     * A command failing due to a transmission error yields no response, so the last response APDU in the
+     * TransmitResponse can belong to a previous command. Therefore the response of the failed command is given
+     * explicitly.
+     *
+     * @param ex WSException
+     * @param tr TransmitResponse
+     * @param responseAPDU Response of the failed command, or {@code null} if the command yielded no response.
+     */
+    public APDUException(WSHelper.WSException ex, TransmitResponse tr, @Nullable CardResponseAPDU responseAPDU) {
+	this(ex);
+
+	transmitResponse = tr;
+	this.responseAPDU = responseAPDU;
+    }
+
+    private void setTransmitResponse(TransmitResponse tr) {
 	transmitResponse = tr;
-	if (! tr.getOutputAPDU().isEmpty()) {
-	    responseAPDU = new CardResponseAPDU(tr);
+	// the last response belongs to the command which failed
+	List<byte[]> outputs = tr.getOutputAPDU();
+	if (! outputs.isEmpty()) {
+	    responseAPDU = new CardResponseAPDU(outputs.get(outputs.size() - 1));
 	}
     }
 
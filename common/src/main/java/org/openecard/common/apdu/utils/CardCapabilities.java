@@ -0,0 +1,162 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.apdu.utils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+
+/**
+ * Card capabilities relevant for the APDU encoding as advertised in the ATR.
+ * See ISO/IEC 7816-4 Section 8.1.1.2.7.
+ *
+ * @author Tobias Wich
+ */
+public class CardCapabilities {
+
+    /**
+     * Maximum number of bytes in a command or response data field when only short length is supported.
+     */
+    public static final int SHORT_LENGTH = 256;
+    /**
+     * Maximum number of bytes in a command or response data field when extended length is supported.
+     */
+    public static final int EXTENDED_LENGTH = 65536;
+
+    private static final CardCapabilities SHORT_ONLY = new CardCapabilities(false);
+
+    // compact-TLV tag of the card capabilities in the historical bytes
+    private static final int CARD_CAPABILITIES_TAG = 0x7;
+    // bit in the third software function table indicating extended Lc and Le fields
+    private static final int EXTENDED_LENGTH_BIT = 0x40;
+
+    private final boolean extendedLength;
+    private final int maxCommandLength;
+    private final int maxResponseLength;
+
+    public CardCapabilities(boolean extendedLength) {
+	this(extendedLength, extendedLength ? EXTENDED_LENGTH : SHORT_LENGTH,
+		extendedLength ? EXTENDED_LENGTH : SHORT_LENGTH);
+    }
+
+    public CardCapabilities(boolean extendedLength, int maxCommandLength, int maxResponseLength) {
+	this.extendedLength = extendedLength;
+	this.maxCommandLength = maxCommandLength;
+	this.maxResponseLength = maxResponseLength;
+    }
+
+    /**
+     * Gets capabilities which only allow short length APDUs.
+     * This is the safe assumption for response lengths when nothing is known about the card.
+     *
+     * @return Capabilities without extended length support.
+     */
+    @Nonnull
+    public static CardCapabilities shortLength() {
+	return SHORT_ONLY;
+    }
+
+    /**
+     * Evaluates the card capabilities in the historical bytes of the given ATR.
+     * Contactless cards report their ATS instead of an ATR, which usually does not contain the card capabilities. As
+     * the absence of the capabilities says nothing about the support of extended length, no capabilities are returned
+     * in this case.
+     *
+     * @param atr ATR of the card, may be {@code null}.
+     * @return Capabilities of the card, or {@code null} if the ATR is malformed or contains no card capabilities.
+     */
+    @Nullable
+    public static CardCapabilities fromATR(@Nullable byte[] atr) {
+	if (atr == null || atr.length < 2) {
+	    return null;
+	}
+
+	// skip interface bytes, T0 contains Y1 and the number of historical bytes
+	int numHistBytes = atr[1] & 0x0F;
+	int y = (atr[1] >> 4) & 0x0F;
+	int pos = 2;
+	while (true) {
+	    pos += Integer.bitCount(y & 0x07);
+	    if ((y & 0x08) != 0) {
+		if (pos >= atr.length) {
+		    return null;
+		}
+		y = (atr[pos++] >> 4) & 0x0F;
+	    } else {
+		break;
+	    }
+	}
+
+	int histEnd = pos + numHistBytes;
+	if (numHistBytes == 0 || histEnd > atr.length) {
+	    return null;
+	}
+
+	// category indicator, only compact-TLV encoded historical bytes are evaluated
+	int category = atr[pos++] & 0xFF;
+	if (category == 0x00) {
+	    // last three bytes are the status indicator
+	    histEnd -= 3;
+	} else if (category != 0x80) {
+	    return null;
+	}
+
+	while (pos < histEnd) {
+	    int tag = (atr[pos] >> 4) & 0x0F;
+	    int len = atr[pos] & 0x0F;
+	    pos++;
+	    if (pos + len > histEnd) {
+		break;
+	    }
+	    if (tag == CARD_CAPABILITIES_TAG) {
+		return new CardCapabilities(len >= 3 && (atr[pos + 2] & EXTENDED_LENGTH_BIT) != 0);
+	    }
+	    pos += len;
+	}
+
+	return null;
+    }
+
+    public boolean isExtendedLengthSupported() {
+	return extendedLength;
+    }
+
+    /**
+     * Gets the maximum number of bytes the card accepts in the data field of a command APDU.
+     *
+     * @return Maximum command data length.
+     */
+    public int getMaxCommandLength() {
+	return maxCommandLength;
+    }
+
+    /**
+     * Gets the maximum number of bytes the card is able to return in the data field of a response APDU.
+     *
+     * @return Maximum response data length.
+     */
+    public int getMaxResponseLength() {
+	return maxResponseLength;
+    }
+
+}
@@ -0,0 +1,257 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+
+package org.openecard.common.apdu.utils;
+
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType.RecognitionInfo;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.openecard.common.event.EventObject;
+import org.openecard.common.event.EventType;
+import org.openecard.common.event.IfdEventObject;
+import org.openecard.common.interfaces.EventCallback;
+import org.openecard.common.interfaces.EventDispatcher;
+import org.openecard.common.util.ByteUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Cache for the content of card files which can not change during the lifetime of a card.
+ * Examples are EF.CardSecurity or certificates of a card. The content is saved per card, which is identified by the
+ * terminal and slot it is inserted in together with its card identifier (ATR or ATS). As soon as the card or the
+ * terminal is removed, all files of the card are discarded.
+ * <p>
+ * The cache must be registered at the {@link EventDispatcher} with {@link #register(EventDispatcher)}. Without the
+ * removal events it is not possible to tell whether a different card has been inserted, so the cache does not save
+ * anything as long as it is not registered. The events are delivered asynchronously, so a card which is swapped
+ * quickly might be used before its insert event is processed. For that reason the card identifier of the handle is
+ * compared with the one of the saved card, and handles without a card identifier are not served at all. Event
+ * sources should additionally pass their events to {@link #signalEvent(EventType, EventObject)} directly, before
+ * handing them to the dispatcher.
+ * </p>
+ *
+ * @author Tobias Wich
+ */
+public class CardFileCache implements EventCallback {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CardFileCache.class);
+
+    private static final CardFileCache INSTANCE = new CardFileCache();
+
+    private final ConcurrentHashMap<CardKey, CardFiles> cards = new ConcurrentHashMap<>();
+    private volatile boolean enabled = false;
+
+    CardFileCache() {
+    }
+
+    /**
+     * Gets the process wide cache instance.
+     *
+     * @return The cache instance.
+     */
+    @Nonnull
+    public static CardFileCache getInstance() {
+	return INSTANCE;
+    }
+
+    /**
+     * Registers the cache for card and terminal events and enables it.
+     *
+     * @param dispatcher Event dispatcher delivering the IFD events.
+     */
+    public void register(@Nonnull EventDispatcher dispatcher) {
+	dispatcher.add(this, EventType.CARD_INSERTED, EventType.CARD_REMOVED, EventType.TERMINAL_REMOVED);
+	enabled = true;
+    }
+
+    /**
+     * Gets the content of a file of the card referenced by the handle.
+     *
+     * @param handle Handle containing at least the IFD name, slot index and card identifier of the card.
+     * @param fileName Name of the file, unique within the card.
+     * @return A copy of the file content, or {@code null} if the file is not in the cache.
+     */
+    @Nullable
+    public byte[] get(@Nonnull ConnectionHandleType handle, @Nonnull String fileName) {
+	CardKey key = CardKey.fromHandle(handle);
+	byte[] cardId = getCardIdentifier(handle);
+	if (! enabled || key == null || cardId == null) {
+	    return null;
+	}
+	CardFiles files = cards.get(key);
+	if (files != null && files.isSameCard(cardId)) {
+	    byte[] content = files.files.get(fileName);
+	    if (content != null) {
+		LOG.debug("Using cached content of file {} of card in {}.", fileName, key);
+		return content.clone();
+	    }
+	}
+	return null;
+    }
+
+    /**
+     * Saves the content of a file of the card referenced by the handle.
+     * Only files whose content is not modified as long as the card is inserted may be saved.
+     *
+     * @param handle Handle containing at least the IFD name, slot index and card identifier of the card.
+     * @param fileName Name of the file, unique within the card.
+     * @param content Content of the file.
+     */
+    public void put(@Nonnull ConnectionHandleType handle, @Nonnull String fileName, @Nonnull byte[] content) {
+	CardKey key = CardKey.fromHandle(handle);
+	byte[] cardId = getCardIdentifier(handle);
+	if (enabled && key != null && cardId != null) {
+	    // entries of a card which has been replaced without the removal being seen yet are discarded
+	    CardFiles files = cards.compute(key, (k, v) -> v != null && v.isSameCard(cardId) ? v : new CardFiles(cardId));
+	    files.files.put(fileName, content.clone());
+	}
+    }
+
+    @Nullable
+    private static byte[] getCardIdentifier(@Nonnull ConnectionHandleType handle) {
+	RecognitionInfo recInfo = handle.getRecognitionInfo();
+	return recInfo != null ? recInfo.getCardIdentifier() : null;
+    }
+
+    /**
+     * Gets the name of an elementary file in the cache.
+     *
+     * @param fileID File identifier of the file.
+     * @return The name of the file.
+     */
+    @Nonnull
+    public static String fileName(@Nonnull byte[] fileID) {
+	return "EF:" + ByteUtils.toHexString(fileID);
+    }
+
+    /**
+     * Gets the name of a data set in the cache.
+     *
+     * @param application Identifier of the card application containing the data set.
+     * @param dataSetName Name of the data set.
+     * @return The name of the file.
+     */
+    @Nonnull
+    public static String fileName(@Nullable byte[] application, @Nonnull String dataSetName) {
+	String appStr = application != null ? ByteUtils.toHexString(application) : "";
+	return "DS:" + appStr + "/" + dataSetName;
+    }
+
+    @Override
+    public void signalEvent(EventType eventType, EventObject eventData) {
+	if (! (eventData instanceof IfdEventObject)) {
+	    return;
+	}
+	ConnectionHandleType handle = ((IfdEventObject) eventData).getHandle();
+	String ifdName = handle.getIFDName();
+	if (ifdName == null) {
+	    return;
+	}
+
+	if (eventType == EventType.TERMINAL_REMOVED || handle.getSlotIndex() == null) {
+	    // remove all cards of the terminal
+	    Iterator<CardKey> it = cards.keySet().iterator();
+	    while (it.hasNext()) {
+		if (it.next().ifdName.equals(ifdName)) {
+		    it.remove();
+		}
+	    }
+	} else {
+	    // a newly inserted card can not have any entries, however events might have been missed
+	    cards.remove(new CardKey(ifdName, handle.getSlotIndex()));
+	}
+    }
+
+    void clear() {
+	cards.clear();
+    }
+
+
+    private static final class CardFiles {
+
+	private final byte[] cardId;
+	private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+
+	private CardFiles(@Nonnull byte[] cardId) {
+	    this.cardId = cardId.clone();
+	}
+
+	private boolean isSameCard(@Nonnull byte[] otherCardId) {
+	    return Arrays.equals(cardId, otherCardId);
+	}
+
+    }
+
+    private static final class CardKey {
+
+	private final String ifdName;
+	private final BigInteger slotIdx;
+
+	private CardKey(@Nonnull String ifdName, @Nonnull BigInteger slotIdx) {
+	    this.ifdName = ifdName;
+	    this.slotIdx = slotIdx;
+	}
+
+	@Nullable
+	private static CardKey fromHandle(@Nonnull ConnectionHandleType handle) {
+	    String ifdName = handle.getIFDName();
+	    BigInteger slotIdx = handle.getSlotIndex();
+	    if (ifdName == null || slotIdx == null) {
+		return null;
+	    }
+	    return new CardKey(ifdName, slotIdx);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    if (this == obj) {
+		return true;
+	    }
+	    if (! (obj instanceof CardKey)) {
+		return false;
+	    }
+	    CardKey other = (CardKey) obj;
+	    return ifdName.equals(other.ifdName) && slotIdx.equals(other.slotIdx);
+	}
+
+	@Override
+	public int hashCode() {
+	    return Objects.hash(ifdName, slotIdx);
+	}
+
+	@Override
+	public String toString() {
+	    return ifdName + "[" + slotIdx + "]";
+	}
+
+    }
+
+}
@@ -22,7 +22,6 @@
 package org.openecard.common.apdu.utils;
 
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -32,14 +31,18 @@ import org.openecard.common.apdu.Select;
 import org.openecard.common.apdu.Select.MasterFile;
 import org.openecard.common.apdu.UpdateRecord;
 import org.openecard.common.apdu.common.CardCommandAPDU;
+import org.openecard.common.apdu.common.CardCommandBatch;
 import org.openecard.common.apdu.common.CardCommandStatus;
 import org.openecard.common.apdu.common.CardResponseAPDU;
 import org.openecard.common.apdu.common.TrailerConstants;
 import org.openecard.common.apdu.exception.APDUException;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.common.tlv.TLVException;
+import org.openecard.common.tlv.TLVView;
 import org.openecard.common.tlv.iso7816.DataElements;
 import org.openecard.common.tlv.iso7816.FCP;
+import org.openecard.common.util.ByteUtils;
+import org.openecard.common.util.IntegerUtils;
 import org.openecard.common.util.ShortUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +65,16 @@ public class CardUtils {
     public static final int FCI_RESPONSE_DATA = 2;
     public static final int FMD_RESPONSE_DATA = 3;
 
+    // number of bytes requested in short length READ BINARY commands
+    private static final int SHORT_READ_LENGTH = 255;
+    // P1-P2 of READ BINARY encodes the offset in 15 bits
+    private static final int MAX_READ_OFFSET = 0x7FFF;
+    // READ BINARY with the offset in the command data field
+    private static final byte READ_BINARY_ODD_INS = (byte) 0xB1;
+    private static final long DISCRETIONARY_DATA_TAG = 0x53;
+    // number of READ BINARY commands sent in one Transmit
+    private static final int MAX_READ_BATCH_SIZE = 8;
+
     /**
      * Selects the Master File.
      *
@@ -236,86 +249,197 @@ public class CardUtils {
 
     /**
      * Reads a file.
+     * Only short length READ BINARY commands are used, as nothing is known about the capabilities of the card.
      *
      * @param dispatcher Dispatcher
      * @param slotHandle Slot handle
      * @param fcp File Control Parameters
      * @return File content
      * @throws APDUException
+     * @see #readFile(FCP, Dispatcher, byte[], CardCapabilities)
      */
     public static byte[] readFile(FCP fcp, Dispatcher dispatcher, byte[] slotHandle) throws APDUException {
-	ByteArrayOutputStream baos = new ByteArrayOutputStream();
-	// Read 255 bytes per APDU
-	byte length = (byte) 0xFF;
-	short numToRead = -1; // -1 indicates I don't know
+	return readFile(fcp, dispatcher, slotHandle, CardCapabilities.shortLength());
+    }
+
+    /**
+     * Reads a file.
+     * Transparent files are read with extended length READ BINARY commands if the card supports them. Otherwise the
+     * file is read in chunks of 255 bytes. When the size of the file is known from the FCP, multiple chunks are
+     * requested in one Transmit.
+     *
+     * @param dispatcher Dispatcher
+     * @param slotHandle Slot handle
+     * @param fcp File Control Parameters
+     * @param caps Capabilities of the card, e.g. evaluated from the ATR.
+     * @return File content
+     * @throws APDUException
+     */
+    public static byte[] readFile(FCP fcp, Dispatcher dispatcher, byte[] slotHandle, CardCapabilities caps)
+	    throws APDUException {
+	int numToRead = -1; // -1 indicates I don't know
 	if (fcp != null) {
 	    Long fcpNumBytes = fcp.getNumBytes();
-	    if (fcpNumBytes != null) {
-		// more than short is not possible and besides that very unrealistic
-		numToRead = fcpNumBytes.shortValue();
-		// reduce readout size
-		if (numToRead < 255) {
-		    length = (byte) numToRead;
-		}
+	    if (fcpNumBytes != null && fcpNumBytes >= 0) {
+		numToRead = (int) Math.min(fcpNumBytes, Integer.MAX_VALUE);
 	    }
 	}
 
-	boolean isRecord = isRecordEF(fcp);
-	byte i = (byte) (isRecord ? 1 : 0); // records start at index 1
-	short numRead = 0;
+	if (isRecordEF(fcp)) {
+	    return readRecords(dispatcher, slotHandle, numToRead);
+	} else if (numToRead == 0) {
+	    return new byte[0];
+	}
 
-	try {
-	    CardResponseAPDU response;
-	    byte[] trailer;
-	    int lastNumRead = 0;
-	    boolean goAgain;
-	    do {
-		if (! isRecord) {
-		    CardCommandAPDU readBinary = new ReadBinary(numRead, length);
-		    // 0x6A84 code for the estonian identity card. The card returns this code
-		    // after the last read process.
-		    response = readBinary.transmit(dispatcher, slotHandle, CardCommandStatus.response(0x9000, 0x6282,
-			    0x6A84, 0x6A83, 0x6A86, 0x6B00));
-		} else {
-		    CardCommandAPDU readRecord = new ReadRecord((byte) i);
-		    response = readRecord.transmit(dispatcher, slotHandle, CardCommandStatus.response(0x9000, 0x6282,
-			    0x6A84, 0x6A83));
+	int maxChunkLength = SHORT_READ_LENGTH;
+	if (caps.isExtendedLengthSupported()) {
+	    maxChunkLength = Math.min(caps.getMaxResponseLength(), CardCapabilities.EXTENDED_LENGTH);
+	}
+	// speculative reads are only sent in batches when the file size is known
+	int batchSize = numToRead != -1 && ! caps.isExtendedLengthSupported() ? MAX_READ_BATCH_SIZE : 1;
+	// 0x6A84 code for the estonian identity card. The card returns this code after the last read process.
+	List<byte[]> expectedResponses = CardCommandStatus.response(0x9000, 0x6282, 0x6A84, 0x6A83, 0x6A86, 0x6B00);
+
+	ByteArrayOutputStream baos = new ByteArrayOutputStream(numToRead != -1 ? Math.min(numToRead, MAX_READ_OFFSET) : 256);
+	int numRead = 0;
+	boolean goAgain;
+	do {
+	    // request the following chunks, offsets can only be encoded in 15 bits
+	    CardCommandBatch readCommands = new CardCommandBatch();
+	    int[] chunkLengths = new int[batchSize];
+	    int offset = numRead;
+	    boolean oddIns = false;
+	    while (readCommands.size() < batchSize) {
+		int length = maxChunkLength;
+		if (numToRead != -1) {
+		    length = Math.min(length, numToRead - offset);
+		    if (length <= 0) {
+			break;
+		    }
 		}
+		if (offset > MAX_READ_OFFSET) {
+		    // the offset does not fit into P1-P2, so it is sent in the data field of a single command
+		    if (readCommands.size() == 0) {
+			// the read bytes are wrapped in a data object whose header must fit into the response as well
+			int overhead = TLVView.getEncodedSize(DISCRETIONARY_DATA_TAG, maxChunkLength) - maxChunkLength;
+			length = Math.min(length, maxChunkLength - overhead);
+			chunkLengths[0] = length;
+			readCommands.add(makeReadBinaryOddIns(offset, length), expectedResponses);
+			oddIns = true;
+		    }
+		    break;
+		}
+		chunkLengths[readCommands.size()] = length;
+		readCommands.add(makeReadBinary(offset, length), expectedResponses);
+		offset += length;
+	    }
+	    if (readCommands.size() == 0) {
+		break;
+	    }
 
-		trailer = response.getTrailer();
-		if (! Arrays.equals(trailer, new byte[] {(byte) 0x6A, (byte) 0x84}) &&
-			! Arrays.equals(trailer, new byte[] {(byte) 0x6A, (byte) 0x83}) &&
-			! Arrays.equals(trailer, new byte[] {(byte) 0x6A, (byte) 0x86})) {
-		    byte[] data = response.getData();
+	    List<CardResponseAPDU> responses = readCommands.transmit(dispatcher, slotHandle);
+
+	    goAgain = false;
+	    for (int i = 0; i < responses.size(); i++) {
+		CardResponseAPDU response = responses.get(i);
+		byte[] trailer = response.getTrailer();
+		int lastNumRead = 0;
+		if (! isEndOfFileTrailer(trailer)) {
+		    byte[] data = oddIns ? getDiscretionaryData(response.getData()) : response.getData();
 		    // some cards are just pure shit and return 9000 when no bytes have been read
-		    baos.write(data);
+		    baos.write(data, 0, data.length);
 		    lastNumRead = data.length;
 		    numRead += lastNumRead;
 		}
-		i++;
 
-		// update length value
-		goAgain = response.isNormalProcessed() && lastNumRead != 0
-			|| (Arrays.equals(trailer, new byte[]{(byte) 0x62, (byte) 0x82}) && isRecord);
-		if (goAgain && numToRead != -1) {
+		goAgain = response.isNormalProcessed() && lastNumRead != 0;
+		if (goAgain && numToRead != -1 && numToRead - numRead <= 0) {
 		    // we have a limit, enforce it
-		    short remainingBytes = (short) (numToRead - numRead);
-		    if (remainingBytes <= 0) {
-			goAgain = false;
-		    } else if (remainingBytes < 255) {
-			// update length when we reached the area below 255
-			length = (byte) remainingBytes;
-		    }
+		    goAgain = false;
 		}
-	    } while (goAgain);
-	    baos.close();
-	} catch (IOException e) {
-	    throw new APDUException(e);
-	}
+		// the following commands assumed a complete chunk, so request the rest again if the card returned less
+		if (! goAgain || lastNumRead != chunkLengths[i]) {
+		    break;
+		}
+	    }
+	} while (goAgain);
+
+	return baos.toByteArray();
+    }
+
+    private static byte[] readRecords(Dispatcher dispatcher, byte[] slotHandle, int numToRead)
+	    throws APDUException {
+	ByteArrayOutputStream baos = new ByteArrayOutputStream();
+	byte i = 1; // records start at index 1
+	int numRead = 0;
+
+	CardResponseAPDU response;
+	byte[] trailer;
+	boolean goAgain;
+	do {
+	    CardCommandAPDU readRecord = new ReadRecord(i);
+	    response = readRecord.transmit(dispatcher, slotHandle, CardCommandStatus.response(0x9000, 0x6282,
+		    0x6A84, 0x6A83));
+
+	    int lastNumRead = 0;
+	    trailer = response.getTrailer();
+	    if (! isEndOfFileTrailer(trailer)) {
+		byte[] data = response.getData();
+		baos.write(data, 0, data.length);
+		lastNumRead = data.length;
+		numRead += lastNumRead;
+	    }
+	    i++;
+
+	    goAgain = response.isNormalProcessed() && lastNumRead != 0
+		    || Arrays.equals(trailer, new byte[]{(byte) 0x62, (byte) 0x82});
+	    if (goAgain && numToRead != -1 && numToRead - numRead <= 0) {
+		// we have a limit, enforce it
+		goAgain = false;
+	    }
+	} while (goAgain);
 
 	return baos.toByteArray();
     }
 
+    private static boolean isEndOfFileTrailer(byte[] trailer) {
+	return Arrays.equals(trailer, new byte[] {(byte) 0x6A, (byte) 0x84}) ||
+		Arrays.equals(trailer, new byte[] {(byte) 0x6A, (byte) 0x83}) ||
+		Arrays.equals(trailer, new byte[] {(byte) 0x6A, (byte) 0x86});
+    }
+
+    private static CardCommandAPDU makeReadBinary(int offset, int length) {
+	if (length <= CardCapabilities.SHORT_LENGTH) {
+	    return new ReadBinary((short) offset, (byte) length);
+	} else {
+	    return new ReadBinary((short) offset, (short) length);
+	}
+    }
+
+    private static CardCommandAPDU makeReadBinaryOddIns(int offset, int length) {
+	// P1-P2 = 0000 identifies the current EF, the offset is contained in the data object with tag 54
+	byte[] offsetBytes = IntegerUtils.toByteArray(offset);
+	byte[] data = ByteUtils.concatenate(new byte[] { 0x54, (byte) offsetBytes.length }, offsetBytes);
+	int le = TLVView.getEncodedSize(DISCRETIONARY_DATA_TAG, length);
+	return new CardCommandAPDU((byte) 0x00, READ_BINARY_ODD_INS, (byte) 0x00, (byte) 0x00, data, le);
+    }
+
+    private static byte[] getDiscretionaryData(byte[] responseData) throws APDUException {
+	if (responseData.length == 0) {
+	    return responseData;
+	}
+	// the read bytes are wrapped in the data object with tag 53
+	try {
+	    TLVView dataObject = TLVView.fromBER(responseData);
+	    if (dataObject.getTagNumWithClass() != DISCRETIONARY_DATA_TAG) {
+		throw new APDUException("Response of READ BINARY with odd INS does not contain a discretionary data object.");
+	    }
+	    return dataObject.getValue();
+	} catch (TLVException ex) {
+	    throw new APDUException(ex);
+	}
+    }
+
     /**
      * Selects and reads a file.
      *
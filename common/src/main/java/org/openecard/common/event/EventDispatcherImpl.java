@@ -22,14 +22,21 @@
 
 package org.openecard.common.event;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.openecard.common.interfaces.EventCallback;
 import org.openecard.common.interfaces.EventDispatcher;
@@ -41,6 +48,19 @@ import org.slf4j.LoggerFactory;
 /**
  * EventDispatcherImpl class distributing the events to all registered listeners.
  * Filtering is applied as requested at registration of the listener.
+ * <p>
+ * The registered callbacks are kept in an immutable table which is replaced on every change, so that notifications
+ * can be performed without locking. Callbacks registered with plain {@link EventTypeFilter}s are indexed by the event
+ * type, all other filters are evaluated for each event. The events are delivered by a thread pool shared by all
+ * callbacks, while the events for one callback are still delivered one after the other in the order of notification.
+ * </p>
+ * <p>
+ * Callbacks may block, e.g. while waiting for the user or the card. As each callback occupies at most one thread at
+ * a time, a blocking callback only delays its own events as long as there are free threads. The number of threads is
+ * limited nonetheless. When all threads are busy, further deliveries are queued until a thread becomes free. Events
+ * are never delivered by the notifying thread, so the producer of the events is not blocked by a callback. Idle
+ * threads are released after a while.
+ * </p>
  *
  * @author Tobias Wich
  * @author René Lottes
@@ -49,11 +69,14 @@ public class EventDispatcherImpl implements EventDispatcher {
 
     private static final Logger LOG = LoggerFactory.getLogger(EventDispatcherImpl.class);
 
+    static final int MAX_THREADS = 64;
+    private static final long THREAD_KEEPALIVE = 60;
+
     private final ThreadFactory threadFactory;
 
-    private ConcurrentHashMap<EventCallback, ArrayList<EventFilter>> eventFilter;
-    private HashMap<EventCallback, ExecutorService> threadPools;
-    private boolean initialized;
+    private volatile SubscriptionTable subscriptions;
+    private volatile ExecutorService executor;
+    private volatile boolean initialized;
 
     public EventDispatcherImpl() {
 	this.threadFactory = new ThreadFactory() {
@@ -73,23 +96,28 @@ public class EventDispatcherImpl implements EventDispatcher {
 
     @Override
     public synchronized void start() {
-	this.eventFilter = new ConcurrentHashMap<>();
-	this.threadPools = new HashMap<>();
-
+	// each callback uses at most one thread, see SerialExecutor, deliveries wait in the queue if all threads are busy
+	// tasks are only rejected after the pool has been shut down, they are discarded then
+	ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, THREAD_KEEPALIVE, TimeUnit.SECONDS,
+		new LinkedBlockingQueue<>(), threadFactory, new ThreadPoolExecutor.DiscardPolicy());
+	pool.allowCoreThreadTimeOut(true);
+	this.executor = pool;
+	this.subscriptions = new SubscriptionTable(Collections.emptyMap());
 	this.initialized = true;
     }
 
     @Override
     public synchronized void terminate() {
 	if (initialized) {
-	    // remove everything and thereby shutdown thread pools
-	    for (EventCallback entry : Collections.list(eventFilter.keys())) {
-		del(entry);
+	    initialized = false;
+	    // remove everything and thereby stop pending deliveries
+	    for (Subscription sub : subscriptions.byCallback.values()) {
+		sub.exec.cancel();
 	    }
+	    executor.shutdownNow();
 
-	    initialized = false;
-	    eventFilter = null;
-	    threadPools = null;
+	    subscriptions = null;
+	    executor = null;
 	}
     }
 
@@ -109,47 +137,193 @@ public class EventDispatcherImpl implements EventDispatcher {
     @Override
     public synchronized EventCallback add(EventCallback cb, EventFilter filter) {
 	if (initialized) {
-	    if (! eventFilter.containsKey(cb)) {
-		eventFilter.put(cb, new ArrayList<>());
+	    LinkedHashMap<EventCallback, Subscription> subs = new LinkedHashMap<>(subscriptions.byCallback);
+	    Subscription sub = subs.get(cb);
+	    if (sub == null) {
+		// each callback gets its own queue, so its events are delivered in order
+		sub = new Subscription(cb, Collections.singletonList(filter), new SerialExecutor(executor));
+	    } else {
+		sub = sub.withFilter(filter);
 	    }
-	    eventFilter.get(cb).add(filter);
-	    // create an executor service for each callback
-	    createExecutorService(cb);
+	    subs.put(cb, sub);
+	    subscriptions = new SubscriptionTable(subs);
 	}
 	return cb;
     }
 
     @Override
     public synchronized EventCallback del(EventCallback cb) {
-	if (initialized && eventFilter.containsKey(cb)) {
-	    eventFilter.remove(cb);
-	    ExecutorService exec = threadPools.remove(cb);
-	    exec.shutdownNow();
+	if (initialized && subscriptions.byCallback.containsKey(cb)) {
+	    LinkedHashMap<EventCallback, Subscription> subs = new LinkedHashMap<>(subscriptions.byCallback);
+	    Subscription sub = subs.remove(cb);
+	    subscriptions = new SubscriptionTable(subs);
+	    sub.exec.cancel();
 	}
 	return cb;
     }
 
     @Override
-    public synchronized void notify(EventType t, EventObject o) {
-	if (initialized) {
-	    for (Map.Entry<EventCallback, ArrayList<EventFilter>> entry : eventFilter.entrySet()) {
-		EventCallback cb = entry.getKey();
-		for (EventFilter filter : entry.getValue()) {
-		    // when there is a filter match, then fire out the event (only once!)
-		    if (filter.matches(t, o)) {
-			LOG.debug("Sending event notification {} to EventCallback {}.", t, cb);
-			ExecutorService executor = threadPools.get(cb);
-			executor.execute(() -> cb.signalEvent(t, o));
-			break;
+    public void notify(EventType t, EventObject o) {
+	SubscriptionTable table = subscriptions;
+	if (initialized && table != null) {
+	    // callbacks only filtering the event type are known to match
+	    for (Subscription sub : table.getIndexed(t)) {
+		sub.deliver(t, o);
+	    }
+	    for (Subscription sub : table.unindexed) {
+		if (sub.matches(t, o)) {
+		    sub.deliver(t, o);
+		}
+	    }
+	}
+    }
+
+
+    /**
+     * Immutable table of all registered callbacks.
+     */
+    private static class SubscriptionTable {
+
+	private final Map<EventCallback, Subscription> byCallback;
+	private final EnumMap<EventType, List<Subscription>> byType;
+	private final List<Subscription> unindexed;
+
+	SubscriptionTable(Map<EventCallback, Subscription> subs) {
+	    this.byCallback = Collections.unmodifiableMap(new LinkedHashMap<>(subs));
+	    this.byType = new EnumMap<>(EventType.class);
+	    ArrayList<Subscription> unindexedTmp = new ArrayList<>();
+
+	    for (Subscription sub : subs.values()) {
+		Set<EventType> types = sub.getEventTypes();
+		if (types == null) {
+		    unindexedTmp.add(sub);
+		} else {
+		    for (EventType type : types) {
+			byType.computeIfAbsent(type, k -> new ArrayList<>()).add(sub);
 		    }
 		}
 	    }
+	    this.unindexed = unindexedTmp;
+	}
+
+	List<Subscription> getIndexed(EventType t) {
+	    List<Subscription> result = byType.get(t);
+	    return result != null ? result : Collections.emptyList();
+	}
+
+    }
+
+    /**
+     * Callback with its filters and its delivery queue.
+     */
+    private static class Subscription {
+
+	private final EventCallback cb;
+	private final List<EventFilter> filters;
+	private final SerialExecutor exec;
+
+	Subscription(EventCallback cb, List<EventFilter> filters, SerialExecutor exec) {
+	    this.cb = cb;
+	    this.filters = filters;
+	    this.exec = exec;
+	}
+
+	Subscription withFilter(EventFilter filter) {
+	    ArrayList<EventFilter> newFilters = new ArrayList<>(filters);
+	    newFilters.add(filter);
+	    return new Subscription(cb, Collections.unmodifiableList(newFilters), exec);
+	}
+
+	/**
+	 * Gets the event types matched by this callback.
+	 *
+	 * @return The event types, or {@code null} if at least one filter is not a plain {@link EventTypeFilter}.
+	 */
+	Set<EventType> getEventTypes() {
+	    LinkedHashSet<EventType> types = new LinkedHashSet<>();
+	    for (EventFilter filter : filters) {
+		if (filter.getClass() != EventTypeFilter.class) {
+		    return null;
+		}
+		types.addAll(((EventTypeFilter) filter).getEventTypes());
+	    }
+	    return types;
+	}
+
+	boolean matches(EventType t, EventObject o) {
+	    for (EventFilter filter : filters) {
+		if (filter.matches(t, o)) {
+		    return true;
+		}
+	    }
+	    return false;
 	}
+
+	void deliver(EventType t, EventObject o) {
+	    // fire out the event (only once!)
+	    LOG.debug("Sending event notification {} to EventCallback {}.", t, cb);
+	    exec.execute(() -> cb.signalEvent(t, o));
+	}
+
     }
 
-    private void createExecutorService(EventCallback cb) {
-	ExecutorService executor = Executors.newSingleThreadExecutor(threadFactory);
-	threadPools.put(cb, executor);
+    /**
+     * Executor running its tasks sequentially in the shared thread pool.
+     * The next task is submitted to the pool when the previous one is finished, so no thread is occupied while the
+     * callback has nothing to do.
+     */
+    private static class SerialExecutor implements Executor {
+
+	private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+	private final Executor executor;
+	private Runnable active;
+	private boolean cancelled;
+
+	SerialExecutor(Executor executor) {
+	    this.executor = executor;
+	}
+
+	@Override
+	public void execute(Runnable r) {
+	    Runnable next;
+	    synchronized (this) {
+		if (cancelled) {
+		    return;
+		}
+		tasks.add(() -> {
+		    try {
+			r.run();
+		    } catch (RuntimeException ex) {
+			LOG.error("Error in EventCallback.", ex);
+		    } finally {
+			scheduleNext();
+		    }
+		});
+		if (active != null) {
+		    return;
+		}
+		next = active = tasks.poll();
+	    }
+	    executor.execute(next);
+	}
+
+	private void scheduleNext() {
+	    Runnable next;
+	    synchronized (this) {
+		next = active = cancelled ? null : tasks.poll();
+	    }
+	    if (next != null) {
+		// tasks of a terminated dispatcher are discarded by the pool
+		executor.execute(next);
+	    }
+	}
+
+	synchronized void cancel() {
+	    cancelled = true;
+	    active = null;
+	    tasks.clear();
+	}
+
     }
 
 }
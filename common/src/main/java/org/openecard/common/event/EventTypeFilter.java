@@ -24,6 +24,8 @@ package org.openecard.common.event;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.openecard.common.interfaces.EventFilter;
 
 /**
@@ -43,6 +45,15 @@ public class EventTypeFilter implements EventFilter {
     }
 
 
+    /**
+     * Gets the event types matched by this filter.
+     *
+     * @return Unmodifiable list of the event types.
+     */
+    public List<EventType> getEventTypes() {
+	return Collections.unmodifiableList(eventType);
+    }
+
     @Override
     public boolean matches(EventType t, EventObject o) {
 	for (EventType next : eventType) {
@@ -23,6 +23,8 @@
 package org.openecard.common.interfaces;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.xml.validation.Schema;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -50,4 +52,14 @@ public interface DocumentSchemaValidator {
      */
     void validate(@Nonnull Element doc) throws DocumentValidatorException;
 
+    /**
+     * Gets the schema definition of the instance.
+     * The schema can be used to validate documents while they are processed, e.g. when they are unmarshalled from a
+     * stream, so that no separate validation pass is needed.
+     *
+     * @return The compiled schema, or {@code null} if the instance performs no validation.
+     */
+    @Nullable
+    Schema getSchema();
+
 }
@@ -137,10 +137,8 @@ public class Parser {
 
 	// set new next element
 	next = nextTLV.getNext();
-	// make copy and remove forward link
-	nextTLV = new TLV(nextTLV);
-	nextTLV.next = null;
-	return nextTLV;
+	// make copy without forward link
+	return nextTLV.copyWithoutNext();
     }
 
     private TLV LA(int i) {
@@ -159,10 +157,8 @@ public class Parser {
 	    }
 	}
 
-	// make copy and remove forward link
-	nextTLV = new TLV(nextTLV);
-	nextTLV.next = null;
-	return nextTLV;
+	// make copy without forward link
+	return nextTLV.copyWithoutNext();
     }
 
 }
@@ -22,8 +22,6 @@
 
 package org.openecard.common.tlv;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 import org.openecard.common.util.ByteUtils;
@@ -32,6 +30,10 @@ import org.openecard.common.util.ByteUtils;
 /**
  * Class representing a TLV object according to the ASN1 specification.
  * This class is capable of representing sequences and has features to navigation in an ASN1 tree.
+ * <p>
+ * Objects parsed from BER reference the parsed array instead of copying the values up front. The array must
+ * therefore not be modified as long as the objects created from it are in use.
+ * </p>
  *
  * @author Tobias Wich
  */
@@ -41,6 +43,8 @@ public class TLV {
     //protected TLV parent = null;
     TLV next = null;
     TLV child = null;
+    // length of the value calculated in the first pass of the encoding
+    private int encodedValueLength;
 
     public TLV() {
 	tag = new TagLengthValue();
@@ -52,6 +56,20 @@ public class TLV {
 	this.child = (obj.child != null) ? new TLV(obj.child) : null;
     }
 
+    private TLV(TagLengthValue tag, TLV child) {
+	this.tag = tag;
+	this.child = child;
+    }
+
+    /**
+     * Creates a copy of this element without its successors.
+     *
+     * @return Copy of this element and its children.
+     */
+    TLV copyWithoutNext() {
+	return new TLV(tag, (child != null) ? new TLV(child) : null);
+    }
+
 
     ///
     /// deferred setters for TLV container
@@ -169,9 +187,7 @@ public class TLV {
 
 	TLV nextTag = this;
 	while (nextTag != null) {
-	    TLV toAdd = new TLV(nextTag);
-	    toAdd.next = null; // delete reference to next
-	    result.add(toAdd);
+	    result.add(nextTag.copyWithoutNext());
 
 	    nextTag = nextTag.next;
 	}
@@ -205,42 +221,66 @@ public class TLV {
     /// TLV construction from and to different encodings
     ///
 
+    /**
+     * Parses the TLV structure contained in the given array.
+     * The values are not copied until they are requested, so the array is referenced by the returned object and must
+     * not be modified while the object is in use. Callers reusing the array must pass a copy.
+     *
+     * @param input Array containing the BER encoded structure.
+     * @return First element of the structure.
+     * @throws TLVException Thrown in case the data is not a valid BER-TLV structure.
+     */
     public static TLV fromBER(byte[] input) throws TLVException {
-	byte[] rest = input;
+	return fromBER(input, 0, input.length);
+    }
+
+    /**
+     * Parses the TLV structure contained in a region of the given array.
+     * The values are not copied until they are requested, so the array must not be modified while the returned
+     * object is in use.
+     *
+     * @param input Array containing the BER encoded structure.
+     * @param offset Offset of the structure in the array.
+     * @param length Length of the structure.
+     * @return First element of the structure.
+     * @throws TLVException Thrown in case the data is not a valid BER-TLV structure.
+     */
+    public static TLV fromBER(byte[] input, int offset, int length) throws TLVException {
+	if (offset < 0 || length < 0 || offset + length > input.length) {
+	    throw new IndexOutOfBoundsException("Region is not contained in the given array.");
+	}
+	return fromBERInt(input, offset, offset + length);
+    }
 
+    private static TLV fromBERInt(byte[] input, int offset, int limit) throws TLVException {
 	TLV first = new TLV();
-	boolean isFirst = true;
-	TLV last = first;
+	TLV last = null;
+	int pos = offset;
 	// build as long as there is input left
-	while (rest.length > 0) {
-	    TLV next;
-	    if (isFirst) {
-		next = first;
-	    } else {
-		next = new TLV();
-	    }
-
+	while (pos < limit) {
 	    // break execution when 0 tag encountered
-	    if (rest[0] == (byte) 0) {
+	    if (input[pos] == (byte) 0) {
 		return first;
 	    }
-	    // convert bytes to flat TLV data
-	    next.tag = TagLengthValue.fromBER(rest);
+
+	    TLV next = (last == null) ? first : new TLV();
+	    // reference the flat TLV data in the input
+	    TLVView view = TLVView.parse(input, pos, limit);
+	    next.tag = TagLengthValue.fromView(view);
 	    // if constructed build child structure
-	    if (!next.tag.isPrimitive() && next.tag.getValueLength() > 0) {
-		next.child = fromBER(next.tag.getValue());
+	    if (! view.isPrimitive() && view.getValueLength() > 0) {
+		int valueOffset = view.getValueOffset();
+		next.child = fromBERInt(input, valueOffset, valueOffset + view.getValueLength());
 	    }
 
 	    // set next as sibling in last
-	    if (isFirst) {
-		isFirst = false;
-	    } else {
+	    if (last != null) {
 		last.next = next;
 	    }
 	    last = next;
 
-	    // get rest of the bytes for next iteration
-	    rest = last.tag.extractRest(rest);
+	    // continue behind the current element
+	    pos = view.getEndOffset();
 	}
 
 	return first;
@@ -252,31 +292,46 @@ public class TLV {
     }
 
     public byte[] toBER(boolean withSuccessors) {
-	try {
-	    ByteArrayOutputStream out = new ByteArrayOutputStream();
-	    // value calculated from child if any
-	    toBER(out, withSuccessors);
-	    return out.toByteArray();
-	} catch (IOException ex) {
-	    // IOException depends solely on the stream. The only thing that can happen here is OOM.
-	    throw new RuntimeException(ex);
-	}
+	// calculate the size first, so the result can be written into a single array
+	byte[] out = new byte[calculateSize(withSuccessors)];
+	writeBER(out, 0, withSuccessors);
+	return out;
     }
 
-    private void toBER(ByteArrayOutputStream out, boolean withSuccessors) throws IOException {
-	if (child != null) {
-	    byte[] childBytes = child.toBER(true);
-	    tag.setPrimitive(false);
-	    tag.setValue(childBytes);
-	} else {
-	    tag.setPrimitive(true);
-	}
-	// write child to output stream
-	out.write(tag.toBER());
-
-	if (withSuccessors && next != null) {
-	    next.toBER(out, withSuccessors);
-	}
+    private int calculateSize(boolean withSuccessors) {
+	int size = 0;
+	TLV nextTLV = this;
+	do {
+	    // value calculated from child if any
+	    if (nextTLV.child != null) {
+		nextTLV.encodedValueLength = nextTLV.child.calculateSize(true);
+		nextTLV.tag.setPrimitive(false);
+	    } else {
+		nextTLV.encodedValueLength = nextTLV.tag.getValueLength();
+		nextTLV.tag.setPrimitive(true);
+	    }
+	    size += TLVView.getEncodedSize(nextTLV.tag.getTagNumWithClass(), nextTLV.encodedValueLength);
+	    nextTLV = nextTLV.next;
+	} while (withSuccessors && nextTLV != null);
+	return size;
+    }
+
+    private int writeBER(byte[] out, int offset, boolean withSuccessors) {
+	int pos = offset;
+	TLV nextTLV = this;
+	do {
+	    pos = TLVView.writeHeader(out, pos, nextTLV.tag.getTagNumWithClass(), nextTLV.encodedValueLength);
+	    if (nextTLV.child != null) {
+		pos = nextTLV.child.writeBER(out, pos, true);
+		// the value of constructed elements reflects the encoded children, it is only built when requested, as
+		// the output belongs to the caller and may be modified
+		nextTLV.tag.setValue(nextTLV.child);
+	    } else {
+		pos = nextTLV.tag.writeValue(out, pos);
+	    }
+	    nextTLV = nextTLV.next;
+	} while (withSuccessors && nextTLV != null);
+	return pos;
     }
 
 
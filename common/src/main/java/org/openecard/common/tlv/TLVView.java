@@ -0,0 +1,478 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Read-only view of a single BER-TLV element inside a backing byte array.
+ * The view only records the offsets of the tag, length and value fields, so neither the value nor the rest of the
+ * buffer is copied while navigating the structure. Copies are made only when explicitly requested, e.g. by
+ * {@link #getValue()}.
+ * <p>
+ * The backing array must not be modified as long as views or {@link TLV} objects created from it are in use.
+ * </p>
+ *
+ * @author Tobias Wich
+ */
+public final class TLVView {
+
+    private final byte[] data;
+    private final int offset;
+    private final int limit;
+
+    private final TagClass tagClass;
+    private final boolean primitive;
+    private final long tagNum;
+    private final long tagNumWithClass;
+
+    private final int valueOffset;
+    private final int valueLength;
+    private final int endOffset;
+
+    private TLVView(byte[] data, int offset, int limit, TagClass tagClass, boolean primitive, long tagNum,
+	    int valueOffset, int valueLength, int endOffset) {
+	this.data = data;
+	this.offset = offset;
+	this.limit = limit;
+	this.tagClass = tagClass;
+	this.primitive = primitive;
+	this.tagNum = tagNum;
+	this.tagNumWithClass = Tag.calculateTagNumWithClass(tagClass, primitive, tagNum);
+	this.valueOffset = valueOffset;
+	this.valueLength = valueLength;
+	this.endOffset = endOffset;
+    }
+
+
+    ///
+    /// Parsing
+    ///
+
+    /**
+     * Parses the first TLV element in the given array.
+     *
+     * @param data Array containing the BER encoded element.
+     * @return View on the first element of the array.
+     * @throws TLVException Thrown in case the data is not a valid BER-TLV structure.
+     */
+    public static TLVView fromBER(byte[] data) throws TLVException {
+	return fromBER(data, 0, data.length);
+    }
+
+    /**
+     * Parses the first TLV element in the given region of the array.
+     * Siblings of the element are looked for only in the given region.
+     *
+     * @param data Array containing the BER encoded element.
+     * @param offset Offset of the element in the array.
+     * @param length Number of bytes available for the element and its siblings.
+     * @return View on the first element in the region.
+     * @throws TLVException Thrown in case the data is not a valid BER-TLV structure.
+     */
+    public static TLVView fromBER(byte[] data, int offset, int length) throws TLVException {
+	if (offset < 0 || length < 0 || offset + length > data.length) {
+	    throw new IndexOutOfBoundsException("Region is not contained in the given array.");
+	}
+	return parse(data, offset, offset + length);
+    }
+
+    /**
+     * Parses the first TLV element in the remaining bytes of the given buffer.
+     * Buffers backed by an accessible array are used without copying the data. For all other buffers the remaining
+     * bytes are copied once. The position of the buffer is not changed.
+     *
+     * @param buffer Buffer containing the BER encoded element.
+     * @return View on the first element of the buffer.
+     * @throws TLVException Thrown in case the data is not a valid BER-TLV structure.
+     */
+    public static TLVView fromBER(ByteBuffer buffer) throws TLVException {
+	if (buffer.hasArray()) {
+	    return fromBER(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+	} else {
+	    byte[] copy = new byte[buffer.remaining()];
+	    buffer.duplicate().get(copy);
+	    return fromBER(copy);
+	}
+    }
+
+    static TLVView parse(byte[] data, int offset, int limit) throws TLVException {
+	if (offset >= limit) {
+	    throw new TLVException("Not enough bytes in input bytes to build TLV tag.");
+	}
+
+	// tag
+	int pos = offset;
+	byte first = data[pos++];
+	TagClass tagClass = TagClass.getTagClass(first);
+	boolean primitive = ((first >> 5) & 0x01) == 0x00;
+	long tagNum = first & 0x1F;
+	if (tagNum > 30) {
+	    // long form
+	    tagNum = 0;
+	    int numOctets = 1;
+	    byte next;
+	    do {
+		if (numOctets * 7 > 64) {
+		    throw new TLVException("Tag number doesn't fit into a 64 bit word.");
+		} else if (pos >= limit) {
+		    throw new TLVException("Not enough bytes in input bytes to build TLV tag.");
+		}
+		next = data[pos++];
+		numOctets++;
+		tagNum = (tagNum << 7) | (next & 0x7F);
+	    } while ((next & 0x80) == 0x80);
+	}
+
+	// length
+	if (pos >= limit) {
+	    throw new TLVException("Not enough bytes in input to read TLV length.");
+	}
+	int lenByte = data[pos++] & 0xFF;
+	int valueLength;
+	int eocLength = 0;
+	if (lenByte < 0x80) {
+	    // short form
+	    valueLength = lenByte;
+	} else if (lenByte == 0x80) {
+	    // indefinite form, value is terminated by two zero bytes
+	    int i = pos;
+	    boolean zeroFound = false;
+	    while (true) {
+		if (i >= limit) {
+		    throw new TLVException("Not enough bytes in input to read TLV length.");
+		}
+		if (data[i++] == 0x00) {
+		    if (zeroFound) {
+			break;
+		    }
+		    zeroFound = true;
+		} else {
+		    zeroFound = false;
+		}
+	    }
+	    valueLength = i - pos - 2;
+	    eocLength = 2;
+	} else {
+	    // long form, first byte indicates number of length bytes
+	    int numLengthBytes = lenByte & 0x7F;
+	    if (numLengthBytes > 4) {
+		throw new TLVException("Length doesn't fit into a 32 bit word.");
+	    } else if (pos + numLengthBytes > limit) {
+		throw new TLVException("Not enough bytes in input to read TLV length.");
+	    }
+	    valueLength = 0;
+	    for (int i = 0; i < numLengthBytes; i++) {
+		valueLength = (valueLength << 8) | (data[pos++] & 0xFF);
+	    }
+	    if (valueLength < 0) {
+		throw new TLVException("Length doesn't fit into a 32 bit word.");
+	    }
+	}
+
+	int endOffset = pos + valueLength + eocLength;
+	if (endOffset > limit || endOffset < pos) {
+	    throw new TLVException("Data length and claimed length do not match.");
+	}
+
+	return new TLVView(data, offset, limit, tagClass, primitive, tagNum, pos, valueLength, endOffset);
+    }
+
+
+    ///
+    /// Tag accessors
+    ///
+
+    public Tag getTag() {
+	return new Tag(tagClass, primitive, tagNum);
+    }
+
+    public TagClass getTagClass() {
+	return tagClass;
+    }
+
+    public boolean isPrimitive() {
+	return primitive;
+    }
+
+    public long getTagNum() {
+	return tagNum;
+    }
+
+    public long getTagNumWithClass() {
+	return tagNumWithClass;
+    }
+
+
+    ///
+    /// Value accessors
+    ///
+
+    /**
+     * Gets the backing array of this view.
+     * The array is returned as is and must not be modified.
+     *
+     * @return The array the view has been parsed from.
+     */
+    byte[] getData() {
+	return data;
+    }
+
+    /**
+     * Gets the offset of the first tag byte of this element in the backing array.
+     *
+     * @return Offset in the backing array.
+     */
+    public int getOffset() {
+	return offset;
+    }
+
+    /**
+     * Gets the offset of the first value byte of this element in the backing array.
+     *
+     * @return Offset in the backing array.
+     */
+    public int getValueOffset() {
+	return valueOffset;
+    }
+
+    public int getValueLength() {
+	return valueLength;
+    }
+
+    /**
+     * Gets the number of bytes this element occupies in the backing array, including tag, length and end-of-content
+     * octets.
+     *
+     * @return Length of the encoded element.
+     */
+    public int getRawLength() {
+	return endOffset - offset;
+    }
+
+    /**
+     * Gets the offset of the first byte behind this element in the backing array.
+     *
+     * @return Offset in the backing array.
+     */
+    public int getEndOffset() {
+	return endOffset;
+    }
+
+    /**
+     * Gets a copy of the value of this element.
+     *
+     * @return Newly allocated array containing the value.
+     */
+    public byte[] getValue() {
+	return Arrays.copyOfRange(data, valueOffset, valueOffset + valueLength);
+    }
+
+    /**
+     * Gets a read-only buffer containing the value of this element.
+     * The buffer shares its content with the backing array.
+     *
+     * @return Buffer with position 0 and limit set to the value length.
+     */
+    public ByteBuffer getValueBuffer() {
+	return ByteBuffer.wrap(data, valueOffset, valueLength).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets a copy of the complete encoding of this element.
+     *
+     * @return Newly allocated array containing tag, length and value of this element.
+     */
+    public byte[] getEncoded() {
+	return Arrays.copyOfRange(data, offset, endOffset);
+    }
+
+    /**
+     * Copies the value of this element into the given array.
+     *
+     * @param dest Destination array.
+     * @param destPos Position in the destination array.
+     * @return Position behind the last copied byte.
+     */
+    public int copyValueTo(byte[] dest, int destPos) {
+	System.arraycopy(data, valueOffset, dest, destPos, valueLength);
+	return destPos + valueLength;
+    }
+
+
+    ///
+    /// Navigation
+    ///
+
+    /**
+     * Gets the first element contained in the value of this constructed element.
+     *
+     * @return View on the first child, or {@code null} if the element is primitive or has no content.
+     * @throws TLVException Thrown in case the value is not a valid BER-TLV structure.
+     */
+    public TLVView getChild() throws TLVException {
+	if (primitive || valueLength == 0) {
+	    return null;
+	} else {
+	    return parse(data, valueOffset, valueOffset + valueLength);
+	}
+    }
+
+    /**
+     * Gets the element following this element in the region the view has been parsed from.
+     *
+     * @return View on the next sibling, or {@code null} if there are no bytes left in the region.
+     * @throws TLVException Thrown in case the following data is not a valid BER-TLV structure.
+     */
+    public TLVView getNext() throws TLVException {
+	if (endOffset >= limit) {
+	    return null;
+	} else {
+	    return parse(data, endOffset, limit);
+	}
+    }
+
+    /**
+     * Finds the first child element with the given tag.
+     *
+     * @param tagNumWithClass Tag of the element to look for.
+     * @return View on the child, or {@code null} if no matching child exists.
+     * @throws TLVException Thrown in case the value is not a valid BER-TLV structure.
+     */
+    public TLVView findChild(long tagNumWithClass) throws TLVException {
+	TLVView next = getChild();
+	while (next != null) {
+	    if (next.tagNumWithClass == tagNumWithClass) {
+		return next;
+	    }
+	    next = next.getNext();
+	}
+	return null;
+    }
+
+
+    ///
+    /// Encoding
+    ///
+
+    /**
+     * Calculates the number of bytes needed to encode the given tag.
+     *
+     * @param tagNumWithClass Tag including class and constructed bit.
+     * @return Number of tag bytes.
+     */
+    public static int getTagSize(long tagNumWithClass) {
+	int bits = 64 - Long.numberOfLeadingZeros(tagNumWithClass);
+	return Math.max(1, (bits + 7) / 8);
+    }
+
+    /**
+     * Calculates the number of bytes needed to encode the given length in definite form.
+     *
+     * @param length Length of the value.
+     * @return Number of length bytes.
+     */
+    public static int getLengthSize(int length) {
+	if (length <= 127) {
+	    return 1;
+	} else {
+	    int bits = 32 - Integer.numberOfLeadingZeros(length);
+	    return 1 + (bits + 7) / 8;
+	}
+    }
+
+    /**
+     * Calculates the number of bytes of a TLV element with the given tag and value length.
+     *
+     * @param tagNumWithClass Tag including class and constructed bit.
+     * @param valueLength Length of the value.
+     * @return Number of bytes of the encoded element.
+     */
+    public static int getEncodedSize(long tagNumWithClass, int valueLength) {
+	return getTagSize(tagNumWithClass) + getLengthSize(valueLength) + valueLength;
+    }
+
+    /**
+     * Writes the given tag into the given array.
+     *
+     * @param dest Destination array.
+     * @param destPos Position in the destination array.
+     * @param tagNumWithClass Tag including class and constructed bit.
+     * @return Position behind the tag.
+     */
+    static int writeTag(byte[] dest, int destPos, long tagNumWithClass) {
+	int pos = destPos;
+	for (int i = getTagSize(tagNumWithClass) - 1; i >= 0; i--) {
+	    dest[pos++] = (byte) (tagNumWithClass >> (i * 8));
+	}
+	return pos;
+    }
+
+    /**
+     * Writes tag and definite length of a TLV element into the given array.
+     *
+     * @param dest Destination array.
+     * @param destPos Position in the destination array.
+     * @param tagNumWithClass Tag including class and constructed bit.
+     * @param valueLength Length of the value following the header.
+     * @return Position behind the header where the value must be written.
+     */
+    public static int writeHeader(byte[] dest, int destPos, long tagNumWithClass, int valueLength) {
+	int pos = writeTag(dest, destPos, tagNumWithClass);
+
+	int numLengthBytes = getLengthSize(valueLength) - 1;
+	if (numLengthBytes == 0) {
+	    dest[pos++] = (byte) valueLength;
+	} else {
+	    dest[pos++] = (byte) (0x80 | numLengthBytes);
+	    for (int i = numLengthBytes - 1; i >= 0; i--) {
+		dest[pos++] = (byte) (valueLength >> (i * 8));
+	    }
+	}
+	return pos;
+    }
+
+    /**
+     * Encodes a TLV element with the given tag and the value taken from a region of an array.
+     *
+     * @param tagNumWithClass Tag including class and constructed bit.
+     * @param value Array containing the value.
+     * @param offset Offset of the value in the array.
+     * @param length Length of the value.
+     * @return Newly allocated array containing the encoded element.
+     */
+    public static byte[] encode(long tagNumWithClass, byte[] value, int offset, int length) {
+	byte[] result = new byte[getEncodedSize(tagNumWithClass, length)];
+	int pos = writeHeader(result, 0, tagNumWithClass, length);
+	System.arraycopy(value, offset, result, pos, length);
+	return result;
+    }
+
+    @Override
+    public String toString() {
+	return getTag() + " " + valueLength + " bytes at offset " + valueOffset;
+    }
+
+}
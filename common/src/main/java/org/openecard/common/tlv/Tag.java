@@ -22,9 +22,6 @@
 
 package org.openecard.common.tlv;
 
-import org.openecard.common.util.ByteUtils;
-import org.openecard.common.util.LongUtils;
-
 
 /**
  *
@@ -117,7 +114,7 @@ public class Tag {
 	return this.tagNumWithClass;
     }
     public void setTagNumWithClass(long tagNumWithClass) throws TLVException {
-	Tag newTag = Tag.fromBER(LongUtils.toByteArray(tagNumWithClass));
+	Tag newTag = Tag.fromBER(toBER(tagNumWithClass));
 	this.tagClass = newTag.tagClass;
 	this.primitive = newTag.primitive;
 	this.tagNum = newTag.tagNum;
@@ -126,25 +123,32 @@ public class Tag {
 
 
     private void calculateTagNumWithClass() {
-	byte leading = this.tagClass.num;
-	leading = (byte) ((leading << 1) | ((this.primitive) ? 0 : 1));
-
-	byte[] rest;
-	if (this.tagNum >= 31) {
-	    // long
-	    leading = (byte) ((leading << 5) | 0x1F);
-	    rest = LongUtils.toByteArray(this.tagNum, 7);
-	    for (int i=0; i < rest.length-1; i++) {
-		rest[i] |= 0x80;
+	this.tagNumWithClass = calculateTagNumWithClass(this.tagClass, this.primitive, this.tagNum);
+    }
+
+    static long calculateTagNumWithClass(TagClass tagClass, boolean primitive, long tagNum) {
+	int leading = tagClass.num;
+	leading = (leading << 1) | ((primitive) ? 0 : 1);
+
+	if (tagNum >= 31) {
+	    // long, tag number is split into 7 bit groups with the high bit set on all but the last group
+	    int numGroups = (64 - Long.numberOfLeadingZeros(tagNum) + 6) / 7;
+	    if (numGroups + 1 > 8) {
+		throw new IllegalArgumentException("Size of byte array must be between 1 and 8.");
 	    }
+	    long result = ((leading << 5) | 0x1F) & 0xFF;
+	    for (int i = numGroups - 1; i >= 0; i--) {
+		long group = (tagNum >>> (i * 7)) & 0x7F;
+		if (i > 0) {
+		    group |= 0x80;
+		}
+		result = (result << 8) | group;
+	    }
+	    return result;
 	} else {
 	    // short
-	    leading = (byte) ((leading << 5) | this.tagNum);
-	    rest = new byte[0];
+	    return ((leading << 5) | tagNum) & 0xFF;
 	}
-
-	byte[] resultBytes = ByteUtils.concatenate(leading, rest);
-	this.tagNumWithClass = ByteUtils.toLong(resultBytes);
     }
 
 
@@ -187,7 +191,13 @@ public class Tag {
     }
 
     public byte[] toBER() {
-	return LongUtils.toByteArray(tagNumWithClass);
+	return toBER(tagNumWithClass);
+    }
+
+    private static byte[] toBER(long tagNumWithClass) {
+	byte[] result = new byte[TLVView.getTagSize(tagNumWithClass)];
+	TLVView.writeTag(result, 0, tagNumWithClass);
+	return result;
     }
 
     @Override
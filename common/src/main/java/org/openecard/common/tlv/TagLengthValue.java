@@ -22,24 +22,32 @@
 
 package org.openecard.common.tlv;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Arrays;
-import org.openecard.common.util.IntegerUtils;
 
 
 /**
  * Internal class representing one entry with a TLV definition.
+ * When created from BER, the value is only referenced in the input data and copied when it is first requested.
+ * Likewise the value of an encoded constructed element is only built from its children when it is requested.
  *
  * @author Tobias Wich
  */
 class TagLengthValue {
 
+    private static final byte[] EMPTY = new byte[0];
+
     private int numOctets;
 
     private Tag tag;
     private byte[] value;
 
+    // lazily copied value in the data the instance was created from
+    private byte[] data;
+    private int valueOffset;
+    private int valueLength;
+    // lazily encoded children forming the value
+    private TLV children;
+
 
     private TagLengthValue(int numOctets, Tag tag, byte[] value) {
 	this.numOctets = numOctets;
@@ -60,7 +68,7 @@ class TagLengthValue {
     }
 
     public TagLengthValue() {
-	this(0, new Tag(), new byte[]{});
+	this(0, new Tag(), EMPTY);
     }
 
 
@@ -103,147 +111,112 @@ class TagLengthValue {
     }
 
     public int getValueLength() {
-	return this.value.length;
+	if (this.value != null) {
+	    return this.value.length;
+	} else if (this.children != null) {
+	    return getValue().length;
+	} else {
+	    return this.valueLength;
+	}
     }
 
     public byte[] getValue() {
+	if (this.value == null) {
+	    if (this.children != null) {
+		this.value = this.children.toBER(true);
+		this.children = null;
+	    } else {
+		this.value = Arrays.copyOfRange(this.data, this.valueOffset, this.valueOffset + this.valueLength);
+		this.data = null;
+	    }
+	}
 	return this.value;
     }
     public void setValue(byte[] value) {
 	this.value = value;
+	this.data = null;
+	this.children = null;
     }
 
+    /**
+     * Sets the value to a region of the given array without copying it.
+     * The region is copied when the value is requested the first time. Until then the array is referenced by this
+     * instance, so the caller must not modify the region afterwards.
+     *
+     * @param data Array containing the value.
+     * @param offset Offset of the value in the array.
+     * @param length Length of the value.
+     */
+    void setValue(byte[] data, int offset, int length) {
+	this.value = null;
+	this.children = null;
+	this.data = data;
+	this.valueOffset = offset;
+	this.valueLength = length;
+    }
 
     /**
-     * Get number of the bytes from which this TLV was created.<br>
-     * Only makes sense if created from bytes.
-     * @return
+     * Sets the value to the encoding of the given elements without encoding them.
+     * The elements are encoded when the value is requested the first time, so that encoding a structure does not
+     * copy the value of each constructed element.
+     *
+     * @param children First element of the sequence forming the value.
      */
-    int getRawLength() {
-	return this.numOctets;
+    void setValue(TLV children) {
+	this.value = null;
+	this.data = null;
+	this.children = children;
     }
+
     /**
-     * When fed with a large input stream, cut off the portion which makes up this TLV.
-     * @param inputWithThisTag
-     * @return
+     * Copies the value into the given array.
+     * A value referencing the data the instance was created from is copied without materializing it in this instance.
+     *
+     * @param dest Destination array.
+     * @param destPos Position in the destination array.
+     * @return Position behind the last copied byte.
      */
-    byte[] extractRest(byte[] inputWithThisTag) throws TLVException {
-	try {
-	    int from = getRawLength();
-	    int to = inputWithThisTag.length;
-	    return Arrays.copyOfRange(inputWithThisTag, from, to);
-	} catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex) {
-	    throw new TLVException("Data length and claimed length do not match.", ex);
+    int writeValue(byte[] dest, int destPos) {
+	if (this.value != null || this.children != null) {
+	    byte[] encoded = getValue();
+	    System.arraycopy(encoded, 0, dest, destPos, encoded.length);
+	    return destPos + encoded.length;
+	} else {
+	    System.arraycopy(this.data, this.valueOffset, dest, destPos, this.valueLength);
+	    return destPos + this.valueLength;
 	}
     }
 
 
-    static TagLengthValue fromBER(byte[] data) throws TLVException {
-	Tag tag = Tag.fromBER(data);
-	// how many octets made up this tag?
-	int numOctets = tag.numOctets;
-
-	// get length
-	int dataLength = 0;
-	boolean endOfLine = false;
-	if (((data[numOctets] >> 7) & 0x01) == 0) {
-	    // short form
-	    dataLength = data[numOctets];
-	    numOctets++;
-	} else {
-	    // has end-of-line octets
-	    if ((data[numOctets] & 0x7F) == 0x00) {
-		endOfLine = true;
-		numOctets++;
-		// loop through content to find termination point
-		int i = 0;
-		boolean endFound = false;
-		boolean zeroFound = false;
-		do {
-		    if (data.length <= numOctets+i) {
-			throw new TLVException("Not enough bytes in input to read TLV length.");
-		    }
-		    byte next = data[numOctets+i];
-		    if (next == 0x00) {
-			if (zeroFound) {
-			    endFound = true;
-			} else {
-			    zeroFound = true;
-			}
-		    } else {
-			zeroFound = false;
-		    }
-		    i++;
-		} while (! endFound);
-		// calculate data length
-		dataLength = i-2;
-	    } else {
-		// long form
-		// first byte indicates number of length bytes
-		int numLengthBytes = data[numOctets] & 0x7F;
-		numOctets++;
-
-		int i = 0;
-		while (i < numLengthBytes) {
-		    if (i*8 > 32) {
-			throw new TLVException("Length doesn't fit into a 32 bit word.");
-		    } else if (data.length < numOctets+i+1) {
-			throw new TLVException("Not enough bytes in input to read TLV length.");
-		    }
-		    if (data[numOctets+i] < 0) {
-			// correct bytes wich are interpreted as negative numbers by java
-			dataLength = (dataLength << 8) | (256+data[numOctets+i]);
-		    } else {
-			dataLength = (dataLength << 8) | data[numOctets+i];
-		    }
-		    i++;
-		}
-		numOctets += i;
-	    }
-	}
+    /**
+     * Get number of the bytes from which this TLV was created.<br>
+     * Only makes sense if created from bytes.
+     * @return
+     */
+    int getRawLength() {
+	return this.numOctets;
+    }
 
-	// extract data based on calculated length
-	byte[] dataField = Arrays.copyOfRange(data, numOctets, numOctets+dataLength);
 
-	// recalculate total length of datablock
-	numOctets = numOctets + dataLength;
-	if (endOfLine) {
-	    numOctets += 2;
-	}
+    static TagLengthValue fromBER(byte[] data) throws TLVException {
+	return fromView(TLVView.parse(data, 0, data.length));
+    }
 
-	// we have all values, build Tag object and return
-	TagLengthValue result = new TagLengthValue(numOctets, tag, dataField);
+    static TagLengthValue fromView(TLVView view) {
+	Tag tag = view.getTag();
+	TagLengthValue result = new TagLengthValue(view.getRawLength(), tag, null);
+	result.setValue(view.getData(), view.getValueOffset(), view.getValueLength());
 	return result;
     }
 
 
     byte[] toBER() {
-	try {
-	    ByteArrayOutputStream out = new ByteArrayOutputStream();
-
-	    byte[] tagBytes = tag.toBER();
-	    out.write(tagBytes);
-
-	    // calculate length according to input data
-	    int len = getValueLength();
-	    if (len <= 127) {
-		// short form
-		out.write((byte)len);
-	    } else {
-		byte[] lenBytes = IntegerUtils.toByteArray(len);
-		byte lenHeader = (byte) (0x80 | lenBytes.length);
-		out.write(lenHeader);
-		out.write(lenBytes);
-	    }
-
-	    // write actual data
-	    out.write(getValue());
-
-	    return out.toByteArray();
-	} catch (IOException ex) {
-	    // IOException depends solely on the stream. The only thing that can happen here is OOM.
-	    throw new RuntimeException(ex);
-	}
+	long tagNumWithClass = getTagNumWithClass();
+	int len = getValueLength();
+	byte[] result = new byte[TLVView.getEncodedSize(tagNumWithClass, len)];
+	int pos = TLVView.writeHeader(result, 0, tagNumWithClass, len);
+	writeValue(result, pos);
+	return result;
     }
 
 }
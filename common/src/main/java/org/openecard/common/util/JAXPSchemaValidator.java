@@ -26,6 +26,13 @@ import org.openecard.common.interfaces.DocumentValidatorException;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nonnull;
 import javax.xml.XMLConstants;
 import javax.xml.transform.Source;
@@ -47,6 +54,8 @@ import org.w3c.dom.Node;
 
 /**
  * Utility class which allows to validate documents against the eCard schemas.
+ * Compiled schemas are cached for the lifetime of the process, so that the same set of schema resources is only
+ * compiled once. The validators created from a schema are pooled and shared between all instances using the schema.
  *
  * @author Hans-Martin Haase
  * @author Tobias Wich
@@ -57,7 +66,14 @@ public class JAXPSchemaValidator implements DocumentSchemaValidator {
 
     private static final String XERCES_FACTORY = "org.apache.xerces.jaxp.validation.XMLSchemaFactory";
 
-    private final Schema schema;
+    /** Maximum number of idle validators kept per schema */
+    private static final int MAX_POOLED_VALIDATORS = 8;
+
+    /** Key is the list of schema resource names */
+    private static final ConcurrentHashMap<List<String>, FutureTask<CompiledSchema>> SCHEMA_CACHE =
+	    new ConcurrentHashMap<>();
+
+    private final CompiledSchema schema;
 
     /**
      * Loads a ECardSchemaValidator instance based on the given schemas.
@@ -72,8 +88,7 @@ public class JAXPSchemaValidator implements DocumentSchemaValidator {
 	    if (schemaNames == null || schemaNames.length == 0) {
 		throw new IOException("No schemas given to validate the object.");
 	    } else {
-		StreamSource[] schemaDocuments = convertSchemaStrings2StreamSources(schemaNames);
-		return new JAXPSchemaValidator(schemaDocuments);
+		return new JAXPSchemaValidator(getSchema(schemaNames));
 	    }
 	} catch (IOException ex) {
 	    LOG.error("Not all schemas could not be found or loaded.", ex);
@@ -81,12 +96,54 @@ public class JAXPSchemaValidator implements DocumentSchemaValidator {
 	}
     }
 
-    private JAXPSchemaValidator(URL schemaURL) throws SAXException {
-	schema = getSchemaFactory().newSchema(schemaURL);
+    private JAXPSchemaValidator(CompiledSchema schema) {
+	this.schema = schema;
     }
 
-    private JAXPSchemaValidator(StreamSource[] schemaDocuments) throws SAXException {
-	schema = getSchemaFactory().newSchema(schemaDocuments);
+    /**
+     * Gets the compiled schema for the given schema resources from the cache.
+     * If the schema is not in the cache yet, it is compiled by the calling thread. Other threads requesting the same
+     * schema in the meantime wait for the result instead of compiling it again. Failed compilations are not cached.
+     *
+     * @param schemaNames Resource names of the schemas.
+     * @return The compiled schema.
+     * @throws IOException Thrown in case the schemas could not be loaded from the given resources.
+     * @throws SAXException Thrown in case the XML schemas are errornous.
+     */
+    private static CompiledSchema getSchema(String[] schemaNames) throws IOException, SAXException {
+	List<String> key = Arrays.asList(schemaNames.clone());
+	FutureTask<CompiledSchema> task = SCHEMA_CACHE.get(key);
+	if (task == null) {
+	    FutureTask<CompiledSchema> newTask = new FutureTask<>(() -> {
+		StreamSource[] schemaDocuments = convertSchemaStrings2StreamSources(schemaNames);
+		return new CompiledSchema(getSchemaFactory().newSchema(schemaDocuments));
+	    });
+	    task = SCHEMA_CACHE.putIfAbsent(key, newTask);
+	    if (task == null) {
+		task = newTask;
+		LOG.debug("Compiling schemas {}.", key);
+		task.run();
+	    }
+	}
+
+	try {
+	    return task.get();
+	} catch (ExecutionException ex) {
+	    SCHEMA_CACHE.remove(key, task);
+	    Throwable cause = ex.getCause();
+	    if (cause instanceof IOException) {
+		throw (IOException) cause;
+	    } else if (cause instanceof SAXException) {
+		throw (SAXException) cause;
+	    } else if (cause instanceof RuntimeException) {
+		throw (RuntimeException) cause;
+	    } else {
+		throw new SAXException("Failed to compile schemas.", (Exception) cause);
+	    }
+	} catch (InterruptedException ex) {
+	    Thread.currentThread().interrupt();
+	    throw new IOException("Interrupted while waiting for the schemas to be compiled.", ex);
+	}
     }
 
 
@@ -100,17 +157,24 @@ public class JAXPSchemaValidator implements DocumentSchemaValidator {
 	validateNode(doc);
     }
 
+    @Nonnull
+    @Override
+    public Schema getSchema() {
+	return schema.schema;
+    }
+
     private void validateNode(@Nonnull Node doc) throws DocumentValidatorException {
+	Validator validator = schema.takeValidator();
 	try {
 	    Source source = new DOMSource(doc);
-	    Validator validator= schema.newValidator();
-	    validator.setErrorHandler(new CustomErrorHandler());
 	    validator.validate(source);
 	} catch (SAXException ex) {
 	    LOG.error("Validation of the input object failed.", ex);
 	    throw new DocumentValidatorException("Failed to validate eCard message.", ex);
 	} catch (IOException ex) {
 	    throw new IllegalArgumentException("Given object contains errors.", ex);
+	} finally {
+	    schema.returnValidator(validator);
 	}
     }
 
@@ -127,6 +191,9 @@ public class JAXPSchemaValidator implements DocumentSchemaValidator {
 
 	for(String sname : schemaNames) {
 	    URL surl = FileUtils.resolveResourceAsURL(JAXPSchemaValidator.class, sname);
+	    if (surl == null) {
+		throw new IOException("Schema " + sname + " could not be found.");
+	    }
 	    StreamSource ssource = new StreamSource(surl.toExternalForm());
 	    ssources.add(ssource);
 	}
@@ -152,6 +219,46 @@ public class JAXPSchemaValidator implements DocumentSchemaValidator {
 	}
     }
 
+    /**
+     * Compiled schema together with the pool of validators created from it.
+     * Validators are not thread safe, so each validator is used by one thread at a time only.
+     */
+    private static class CompiledSchema {
+
+	private static final ErrorHandler ERROR_HANDLER = new CustomErrorHandler();
+
+	private final Schema schema;
+	private final ConcurrentLinkedQueue<Validator> pool;
+	private final AtomicInteger poolSize;
+
+	CompiledSchema(Schema schema) {
+	    this.schema = schema;
+	    this.pool = new ConcurrentLinkedQueue<>();
+	    this.poolSize = new AtomicInteger();
+	}
+
+	Validator takeValidator() {
+	    Validator validator = pool.poll();
+	    if (validator != null) {
+		poolSize.decrementAndGet();
+	    } else {
+		validator = schema.newValidator();
+	    }
+	    validator.setErrorHandler(ERROR_HANDLER);
+	    return validator;
+	}
+
+	void returnValidator(Validator validator) {
+	    if (poolSize.incrementAndGet() <= MAX_POOLED_VALIDATORS) {
+		validator.reset();
+		pool.offer(validator);
+	    } else {
+		poolSize.decrementAndGet();
+	    }
+	}
+
+    }
+
     private static class CustomErrorHandler implements ErrorHandler {
 
 	@Override
@@ -24,14 +24,16 @@ package org.openecard.common.util;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 
 /**
+ * Map removing entries which have not been accessed for a certain time.
+ * The expiry of the entries is driven by the {@link SharedTimer}, so that no thread is needed per map instance.
  *
  * @author Tobias Wich
  * @param <K>
@@ -39,8 +41,6 @@ import java.util.concurrent.atomic.AtomicInteger;
  */
 public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 
-    private static final long RERUN = 30 * 1000;
-    private static final AtomicInteger THREAD_NUM = new AtomicInteger(1);
     private final long kill;
     private final RemoveActionFactory<V> actionFactory;
 
@@ -61,7 +61,7 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
      *
      * @param <M>
      * @param c
-     * @param lifetime in minutes
+     * @param lifetime in seconds
      * @throws InstantiationException
      * @throws NoSuchMethodException
      * @throws IllegalAccessException
@@ -74,7 +74,7 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 
     public <M extends Map> SelfCleaningMap(Class<M> c, RemoveActionFactory<V> actionFactory, int lifetime)
 	    throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-	this.kill = lifetime * 1000;
+	this.kill = TimeUnit.SECONDS.toNanos(lifetime);
 	this.actionFactory = actionFactory;
 	this._map = c.getDeclaredConstructor().newInstance();
     };
@@ -86,65 +86,61 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 	return actionFactory.create(v);
     }
 
-    private class Entry {
+    private class Entry implements Runnable {
 
+	public final K k;
 	public final V v;
-	public final Date d;
+	private long lastAccess;
+	private ScheduledFuture<?> timeout;
 
-	public Entry(V v) {
+	public Entry(K k, V v) {
+	    this.k = k;
 	    this.v = v;
-	    this.d = new Date();
+	    this.lastAccess = System.nanoTime();
+	    this.timeout = SharedTimer.schedule(this, kill, TimeUnit.NANOSECONDS);
 	}
 
-	public Entry(V v, Date d) {
-	    this.v = v;
-	    this.d = d;
+	public void touch() {
+	    // the timeout is not moved here, but checked again when it fires
+	    lastAccess = System.nanoTime();
 	}
 
-    };
-
-    private Cleaner cleaner = null;
-
-    private class Cleaner extends Thread {
-
-	public Cleaner() {
-	    super(String.format("MapCleaner-%d", THREAD_NUM.getAndIncrement()));
+	public void cancel() {
+	    timeout.cancel(false);
 	}
 
 	@Override
 	public void run() {
-	    synchronized (this) {
-		while (!_map.isEmpty()) { // only run as long as there are entries in the map
-		    try {
-			wait(RERUN); // block 30 seconds
-			long now = System.currentTimeMillis();
-			Iterator<Map.Entry<K, Entry>> i = _map.entrySet().iterator();
-			while (i.hasNext()) {
-			    Map.Entry<K, Entry> e = i.next();
-			    long old = e.getValue().d.getTime();
-			    if ((now - old) > kill) {
-				// remove entry
-				if (hasAction()) {
-				    getAction(e.getValue().v).perform();
-				}
-				i.remove();
-				// notify all listening objects
-				V v = e.getValue().v;
-				synchronized (v) {
-				    v.notifyAll();
-				}
-			    }
-			}
-		    } catch (InterruptedException ex) {
-			// nobody cares
-		    }
+	    synchronized (SelfCleaningMap.this) {
+		if (_map.get(k) != this) {
+		    // entry has been replaced or removed in the meantime
+		    return;
+		}
+		long remaining = kill - (System.nanoTime() - lastAccess);
+		if (remaining > 0) {
+		    timeout = SharedTimer.schedule(this, remaining, TimeUnit.NANOSECONDS);
+		} else {
+		    _map.remove(k);
+		    removed(this);
 		}
-		// done delete this thread from outer class
-		cleaner = null;
 	    }
 	}
+
     };
 
+    private void removed(Entry e) {
+	if (hasAction()) {
+	    getAction(e.v).perform();
+	}
+	// notify all listening objects
+	V v = e.v;
+	if (v != null) {
+	    synchronized (v) {
+		v.notifyAll();
+	    }
+	}
+    }
+
 
 
     @Override
@@ -162,8 +158,7 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 	Iterator<Map.Entry> i = m.entrySet().iterator();
 	while (i.hasNext()) {
 	    Map.Entry next = i.next();
-	    SelfCleaningMap.Entry e = new SelfCleaningMap.Entry(next.getValue());
-	    _map.put((K) next.getKey(), e);
+	    put((K) next.getKey(), (V) next.getValue());
 	}
     }
 
@@ -173,15 +168,9 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 	while (i.hasNext()) {
 	    Map.Entry<K, Entry> e = i.next();
 	    // remove entry
-	    if (hasAction()) {
-		getAction(e.getValue().v).perform();
-	    }
+	    e.getValue().cancel();
 	    i.remove();
-	    // notify all listening objects
-	    V v = e.getValue().v;
-	    synchronized (v) {
-		v.notifyAll();
-	    }
+	    removed(e.getValue());
 	}
     }
 
@@ -219,7 +208,7 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 	    if ((value == null && v == null) ||
 		(value != null && value.equals(v))) {
 		// update access time
-		next.getValue().d.setTime(System.currentTimeMillis());
+		next.getValue().touch();
 		return true;
 	    }
 	}
@@ -231,7 +220,7 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 	Entry e = _map.get((K) key);
 	if (e != null) {
 	    // update access time
-	    e.d.setTime(System.currentTimeMillis());
+	    e.touch();
 	    return e.v;
 	}
 	return null;
@@ -239,26 +228,20 @@ public class SelfCleaningMap<K extends Comparable, V> implements Map<K, V> {
 
     @Override
     public synchronized V put(K key, V value) {
-	// start killer thread if non is running
-	if (cleaner == null) {
-	    cleaner = new Cleaner();
-	    cleaner.start();
+	Entry result = _map.put(key, new Entry(key, value));
+	if (result != null) {
+	    result.cancel();
+	    return result.v;
 	}
-
-	Entry result = _map.put(key, new Entry(value));
-	return (result == null) ? null : result.v;
+	return null;
     }
 
     @Override
     public synchronized V remove(Object key) {
 	Entry e = _map.remove((K) key);
-	if (hasAction()) {
-	    getAction(e.v).perform();
-	}
 	if (e != null) {
-	    synchronized (e.v) {
-		e.v.notifyAll();
-	    }
+	    e.cancel();
+	    removed(e);
 	    return e.v;
 	}
 	return null;
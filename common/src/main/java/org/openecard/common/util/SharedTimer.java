@@ -0,0 +1,91 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.util;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Process wide timer for short running timeout and cleanup tasks.
+ * All tasks are executed by a single daemon thread, which is only alive as long as tasks are scheduled. Tasks must
+ * therefore not block, longer running actions must be handed over to a different thread.
+ *
+ * @author Tobias Wich
+ */
+public class SharedTimer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedTimer.class);
+
+    private static final long THREAD_KEEPALIVE = 60;
+    private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+    static {
+	ThreadFactory tf = new ThreadFactory() {
+	    private final AtomicInteger num = new AtomicInteger(1);
+
+	    @Override
+	    public Thread newThread(Runnable r) {
+		Thread t = new Thread(r, String.format("Shared-Timer-%d", num.getAndIncrement()));
+		t.setDaemon(true);
+		return t;
+	    }
+	};
+
+	EXECUTOR = new ScheduledThreadPoolExecutor(1, tf);
+	// cancelled tasks must not pile up in the queue, as timeouts are rescheduled frequently
+	EXECUTOR.setRemoveOnCancelPolicy(true);
+	EXECUTOR.setKeepAliveTime(THREAD_KEEPALIVE, TimeUnit.SECONDS);
+	EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private SharedTimer() {
+    }
+
+    /**
+     * Executes the given task once after the given delay.
+     * Exceptions thrown by the task are logged.
+     *
+     * @param task Task to execute.
+     * @param delay Time from now after which the task is executed.
+     * @param unit Unit of the delay value.
+     * @return Future which can be used to cancel the task.
+     */
+    @Nonnull
+    public static ScheduledFuture<?> schedule(@Nonnull Runnable task, long delay, @Nonnull TimeUnit unit) {
+	return EXECUTOR.schedule(() -> {
+	    try {
+		task.run();
+	    } catch (RuntimeException ex) {
+		LOG.error("Timer task failed.", ex);
+	    }
+	}, delay, unit);
+    }
+
+}
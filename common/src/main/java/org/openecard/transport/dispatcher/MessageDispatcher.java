@@ -25,13 +25,18 @@ package org.openecard.transport.dispatcher;
 import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
 import iso.std.iso_iec._24727.tech.schema.RequestType;
 import iso.std.iso_iec._24727.tech.schema.ResponseType;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.TreeSet;
 import org.openecard.common.event.ApiCallEventObject;
 import org.openecard.common.event.EventType;
@@ -49,7 +54,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of the {@code Dispatcher} interface.
- * This implementation defers its actual reflection work to the {@link Service} class.
+ * This implementation defers its actual reflection work to the {@link Service} class. All lookups are performed once
+ * when the dispatcher is created and result in a table mapping each request class to the method handles of the
+ * environment getter and the webservice method.
  *
  * @author Tobias Wich
  * @author Hans-Martin Haase
@@ -58,11 +65,11 @@ public class MessageDispatcher implements Dispatcher {
 
     private static final Logger LOG = LoggerFactory.getLogger(MessageDispatcher.class);
 
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class);
+
     private final Environment environment;
-    /** Key is parameter classname */
-    private final TreeMap<String, Service> serviceMap;
-    /** Key is service interface classname */
-    private final TreeMap<String, Method> serviceInstMap;
+    /** Key is parameter class */
+    private final HashMap<Class<?>, Route> routes;
 
     private final List<String> availableServiceNames;
 
@@ -77,8 +84,7 @@ public class MessageDispatcher implements Dispatcher {
     public MessageDispatcher(Environment environment) {
 	this.environment = environment;
 	isFilter = false;
-	serviceMap = new TreeMap<>();
-	serviceInstMap = new TreeMap<>();
+	routes = new HashMap<>();
 	initDefinitions();
 	availableServiceNames = new ArrayList<>();
 	createServiceList();
@@ -87,8 +93,7 @@ public class MessageDispatcher implements Dispatcher {
     private MessageDispatcher(Environment environment, boolean isFilter) {
 	this.environment = environment;
 	this.isFilter = isFilter;
-	serviceMap = new TreeMap<>();
-	serviceInstMap = new TreeMap<>();
+	routes = new HashMap<>();
 	initDefinitions();
 	availableServiceNames = new ArrayList<>();
 	createServiceList();
@@ -107,13 +112,12 @@ public class MessageDispatcher implements Dispatcher {
 	}
 
 	try {
-	    Class<?> reqClass = req.getClass();
-	    Service s = getService(reqClass);
-	    Object serviceImpl = getServiceImpl(s);
+	    Route r = getRoute(req.getClass());
+	    Object serviceImpl = r.getServiceImpl();
 
 	    LOG.debug("Delivering message of type: {}", req.getClass().getName());
 
-	    Object result =  s.invoke(serviceImpl, req);
+	    Object result = r.service.invoke(r.method, serviceImpl, req);
 
 	    // send API CALL FINISHED event
 	    if (disp != null && req instanceof RequestType && result instanceof ResponseType) {
@@ -124,7 +128,7 @@ public class MessageDispatcher implements Dispatcher {
 	    }
 
 	    return result;
-	} catch (IllegalAccessException | IllegalArgumentException ex) {
+	} catch (IllegalAccessException ex) {
 	    throw new DispatcherException(ex);
 	}
     }
@@ -140,22 +144,13 @@ public class MessageDispatcher implements Dispatcher {
 	}
     }
 
-    private Service getService(Class<?> reqClass) throws IllegalAccessException {
-	if (! serviceMap.containsKey(reqClass.getName())) {
+    private Route getRoute(Class<?> reqClass) throws IllegalAccessException {
+	Route r = routes.get(reqClass);
+	if (r == null) {
 	    String msg = "No service with a method containing parameter type " + reqClass.getName() + " present.";
 	    throw new IllegalAccessException(msg);
 	}
-	return serviceMap.get(reqClass.getName());
-    }
-
-    private Object getServiceImpl(Service s) throws IllegalAccessException, InvocationTargetException {
-	Method m = serviceInstMap.get(s.getServiceInterface().getName());
-	if (m == null) {
-	    String msg = "The environment does not contain a service for class " + s.getServiceInterface().getName();
-	    throw new IllegalAccessException(msg);
-	}
-	Object impl = m.invoke(environment);
-	return impl;
+	return r;
     }
 
 
@@ -163,6 +158,7 @@ public class MessageDispatcher implements Dispatcher {
 	// load all annotated service methods from environment
 	Class<?> envClass = this.environment.getClass();
 	Method[] envMethods = envClass.getMethods();
+	Set<Class<?>> serviceIfaces = new HashSet<>();
 
 	// loop over methods and build index structure
 	for (Method nextAccessor : envMethods) {
@@ -183,22 +179,23 @@ public class MessageDispatcher implements Dispatcher {
 		Class<?> returnType = methodAnnotation.interfaceClass();
 
 		// check if the service is already defined
-		if (this.serviceInstMap.containsKey(returnType.getName())) {
+		if (! serviceIfaces.add(returnType)) {
 		    String msg = "Omitting service type {}, because its type already associated with another service.";
 		    LOG.warn(msg, returnType.getName());
 		    continue;
 		}
 
-		// add env method mapping
-		this.serviceInstMap.put(returnType.getName(), nextAccessor);
-
 		// update type mentioned in Dispatchable annotation to the actual type returned by the function
 		Class<?> returnTypeImpl = returnType;
+		MethodHandle getter;
 		try {
 		    Object result = nextAccessor.invoke(environment);
 		    if (result != null) {
 			returnTypeImpl = result.getClass();
 		    }
+		    // the method handle is bound to the environment, as this never changes
+		    getter = MethodHandles.publicLookup().unreflect(nextAccessor);
+		    getter = getter.bindTo(environment).asType(GETTER_TYPE);
 		} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
 		    LOG.error("Actual type could not be retrieved from method {}.", nextAccessor, ex);
 		    continue;
@@ -208,12 +205,17 @@ public class MessageDispatcher implements Dispatcher {
 		Service service = new Service(returnType, returnTypeImpl, isFilter);
 
 		for (Class<?> reqClass : service.getRequestClasses()) {
-		    if (serviceMap.containsKey(reqClass.getName())) {
+		    if (routes.containsKey(reqClass)) {
 			String msg = "Omitting method with parameter type {} in service interface {} because its ";
 			msg += "type already associated with another service.";
 			LOG.warn(msg, reqClass.getName(), returnType.getName());
 		    } else {
-			serviceMap.put(reqClass.getName(), service);
+			try {
+			    routes.put(reqClass, new Route(service, getter, service.getMethod(reqClass)));
+			} catch (NoSuchMethodException ex) {
+			    // can not happen as the request classes are taken from the service
+			    throw new IllegalStateException(ex);
+			}
 		    }
 		}
 	    }
@@ -235,10 +237,38 @@ public class MessageDispatcher implements Dispatcher {
 
     private void createServiceList() {
 	TreeSet<Service> services = new TreeSet<>();
-	services.addAll(serviceMap.values());
+	for (Route r : routes.values()) {
+	    services.add(r.service);
+	}
 	for (Service service : services) {
 	    availableServiceNames.addAll(service.getActionList());
 	}
     }
 
+
+    /**
+     * Entry of the dispatch table containing everything needed to deliver a request of a specific class.
+     */
+    private static class Route {
+
+	private final Service service;
+	private final MethodHandle serviceGetter;
+	private final MethodHandle method;
+
+	Route(Service service, MethodHandle serviceGetter, MethodHandle method) {
+	    this.service = service;
+	    this.serviceGetter = serviceGetter;
+	    this.method = method;
+	}
+
+	Object getServiceImpl() throws InvocationTargetException {
+	    try {
+		return (Object) serviceGetter.invokeExact();
+	    } catch (Throwable ex) {
+		throw new InvocationTargetException(ex);
+	    }
+	}
+
+    }
+
 }
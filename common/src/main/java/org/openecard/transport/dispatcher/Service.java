@@ -23,6 +23,9 @@
 package org.openecard.transport.dispatcher;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -30,7 +33,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.transform.TransformerException;
 import org.openecard.common.interfaces.DispatcherException;
 import org.openecard.common.interfaces.Publish;
@@ -44,7 +47,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Service class encapsulating one webservice for the {@link MessageDispatcher}.
- * This class takes care of the actual interface analysis and reflection part.
+ * This class takes care of the actual interface analysis and reflection part. The webservice methods are converted
+ * to method handles once when the service is created, so that no reflection is needed when a request is dispatched.
  *
  * @author Tobias Wich
  */
@@ -52,11 +56,15 @@ class Service implements Comparable<Service> {
 
     private static final Logger LOG = LoggerFactory.getLogger(Service.class);
 
+    /** Type of all method handles, (Object impl, Object request) -> Object response */
+    static final MethodType INVOKE_TYPE = MethodType.methodType(Object.class, Object.class, Object.class);
+
     private final Class<?> iface;
     private final Class<?> impl;
     private final ArrayList<Class<?>> requestClasses;
-    private final TreeMap<String, Method> requestMethods;
-    private final HashMap<Class<?>, MessageLogger> objectLoggers;
+    /** Key is parameter class */
+    private final HashMap<Class<?>, MethodHandle> requestMethods;
+    private final ConcurrentHashMap<Class<?>, MessageLogger> objectLoggers;
     private final List<String> actions;
     private final boolean isFilter;
 
@@ -74,8 +82,8 @@ class Service implements Comparable<Service> {
 	this.impl = impl;
 
 	requestClasses = new ArrayList<>();
-	requestMethods = new TreeMap<>();
-	objectLoggers = new HashMap<>();
+	requestMethods = new HashMap<>();
+	objectLoggers = new ConcurrentHashMap<>();
 	actions = new ArrayList<>();
 	this.isFilter = isFilter;
 
@@ -88,28 +96,46 @@ class Service implements Comparable<Service> {
 	    ECardApiMethod webAnnotation = getAnnotation(m, ECardApiMethod.class);
 	    if (isReqParam(m) &&  webAnnotation != null) {
 		Class<?> reqClass = getReqParamClass(m);
-		if (requestMethods.containsKey(reqClass.getName())) {
+		if (requestMethods.containsKey(reqClass)) {
 		    String msg = "Omitting method {} in service interface {}, because its parameter type is ";
 		    msg += "already associated with another method.";
 		    LOG.warn(msg, m.getName(), impl.getName());
-		} else {
-		    String action = webAnnotation.action();
-		    if (isFilter) {
-			if (getAnnotation(m, Publish.class) != null) {
-			    requestClasses.add(reqClass);
-			    requestMethods.put(reqClass.getName(), m);
-			    actions.add(action);
-			}
-		    } else {
+		} else if (! isFilter || getAnnotation(m, Publish.class) != null) {
+		    MethodHandle handle = getMethodHandle(m);
+		    if (handle != null) {
 			requestClasses.add(reqClass);
-			requestMethods.put(reqClass.getName(), m);
-			actions.add(action);
+			requestMethods.put(reqClass, handle);
+			actions.add(webAnnotation.action());
 		    }
 		}
 	    }
 	}
     }
 
+    /**
+     * Converts the given webservice method to a method handle with the type {@link #INVOKE_TYPE}.
+     * If the method is not accessible, which is the case for public methods of non public classes, the same method
+     * from the webservice interface is used instead.
+     *
+     * @param m The webservice method.
+     * @return The method handle, or {@code null} if the method is not accessible.
+     */
+    private MethodHandle getMethodHandle(Method m) {
+	MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+	try {
+	    return lookup.unreflect(m).asType(INVOKE_TYPE);
+	} catch (IllegalAccessException ex) {
+	    try {
+		Method ifaceMethod = iface.getMethod(m.getName(), m.getParameterTypes());
+		return lookup.unreflect(ifaceMethod).asType(INVOKE_TYPE);
+	    } catch (IllegalAccessException | NoSuchMethodException ex2) {
+		LOG.warn("Omitting method {} in service interface {}, because it is not accessible.",
+			m.getName(), impl.getName());
+		return null;
+	    }
+	}
+    }
+
     private static <A extends Annotation> A getAnnotation(Method m, final Class<? extends A> aClass) {
 	// direct lookup
 	A a = m.getAnnotation(aClass);
@@ -162,15 +188,11 @@ class Service implements Comparable<Service> {
      */
     private MessageLogger getLogger(Object ifaceImpl) {
 	Class<?> implClass = ifaceImpl.getClass();
-	if (objectLoggers.containsKey(implClass)) {
-	    return objectLoggers.get(implClass);
-	} else {
-	    synchronized (this) {
-		MessageLogger implLogger = new MessageLogger(ifaceImpl.getClass());
-		objectLoggers.put(implClass, implLogger);
-		return implLogger;
-	    }
+	MessageLogger implLogger = objectLoggers.get(implClass);
+	if (implLogger == null) {
+	    implLogger = objectLoggers.computeIfAbsent(implClass, MessageLogger::new);
 	}
+	return implLogger;
     }
 
     /**
@@ -184,19 +206,42 @@ class Service implements Comparable<Service> {
      */
     public Object invoke(Object ifaceImpl, Object req) throws DispatcherException, InvocationTargetException {
 	try {
-	    MessageLogger l = getLogger(ifaceImpl);
-	    Class<?> reqClass = req.getClass();
-	    Method m = getMethod(reqClass.getName());
-	    // invoke method
-	    l.logRequest(req);
-	    Object res = m.invoke(ifaceImpl, req);
-	    l.logResponse(res);
-	    return res;
-	} catch (IllegalAccessException | NoSuchMethodException | IllegalArgumentException ex) {
+	    MethodHandle m = getMethod(req.getClass());
+	    return invoke(m, ifaceImpl, req);
+	} catch (NoSuchMethodException ex) {
 	    throw new DispatcherException(ex);
 	}
     }
 
+    /**
+     * Invokes the given webservice method handle of this service in the given webservice class instance.
+     *
+     * @param m The method handle as returned by {@link #getMethod(Class)}.
+     * @param ifaceImpl The instance implementing the webservice interface this instance is responsible for.
+     * @param req The request object to dispatch.
+     * @return The result of the method invocation.
+     * @throws DispatcherException In case the instance does not match the analysed implementation class.
+     * @throws InvocationTargetException In case the dispatched method throws en exception.
+     */
+    Object invoke(MethodHandle m, Object ifaceImpl, Object req) throws DispatcherException,
+	    InvocationTargetException {
+	if (! impl.isInstance(ifaceImpl)) {
+	    String msg = "The service implementation is not an instance of class " + impl.getName() + ".";
+	    throw new DispatcherException(msg);
+	}
+
+	MessageLogger l = getLogger(ifaceImpl);
+	l.logRequest(req);
+	Object res;
+	try {
+	    res = (Object) m.invokeExact(ifaceImpl, req);
+	} catch (Throwable ex) {
+	    throw new InvocationTargetException(ex);
+	}
+	l.logResponse(res);
+	return res;
+    }
+
 
     private Class<?> getReqParamClass(Method m) {
 	// get parameters of this method
@@ -218,10 +263,18 @@ class Service implements Comparable<Service> {
 	return Collections.unmodifiableList(requestClasses);
     }
 
-    private Method getMethod(String paramClass) throws NoSuchMethodException {
-	Method m = requestMethods.get(paramClass);
+    /**
+     * Gets the method handle of the webservice method accepting the given request class.
+     *
+     * @param paramClass The class of the request object.
+     * @return The method handle with the type {@link #INVOKE_TYPE}.
+     * @throws NoSuchMethodException In case the service has no method for the request class.
+     */
+    MethodHandle getMethod(Class<?> paramClass) throws NoSuchMethodException {
+	MethodHandle m = requestMethods.get(paramClass);
 	if (m == null) {
-	    String msg = "Method containing parameter with class '" + paramClass + "' does not exist in interface '";
+	    String msg = "Method containing parameter with class '" + paramClass.getName();
+	    msg += "' does not exist in interface '";
 	    msg += iface.getName() + "'.";
 	    throw new NoSuchMethodException(msg);
 	}
@@ -267,12 +320,12 @@ class Service implements Comparable<Service> {
 	    try {
 		if (l.isTraceEnabled()) {
 		    WSMarshaller m = WSMarshallerFactory.createInstance();
-		    String msgObjStr = m.doc2str(m.marshal(msgObj));
+		    String msgObjStr = m.doc2str(m.marshal(msgObj), true);
 		    l.trace("{}\n{}", msg, msgObjStr);
 		} else if (LOG.isTraceEnabled()) {
 		    // check if the message needs to be logged in the dispatcher class
 		    WSMarshaller m = WSMarshallerFactory.createInstance();
-		    String msgObjStr = m.doc2str(m.marshal(msgObj));
+		    String msgObjStr = m.doc2str(m.marshal(msgObj), true);
 		    LOG.trace("{}\n{}", msg, msgObjStr);
 		}
 	    } catch (TransformerException | WSMarshallerException ex) {
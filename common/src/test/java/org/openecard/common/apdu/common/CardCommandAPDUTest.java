@@ -24,6 +24,7 @@ package org.openecard.common.apdu.common;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Random;
 import org.openecard.common.apdu.GeneralAuthenticate;
 import org.openecard.common.apdu.ReadBinary;
@@ -202,6 +203,39 @@ public class CardCommandAPDUTest {
 	assertEquals(copyBytes, origBytes);
     }
 
+    @Test
+    public void testChaining() throws IOException {
+	byte[] data = fillBytes(600);
+	CardCommandAPDU apdu = new CardCommandAPDU((byte) 0x00, (byte) 0x2A, (byte) 0x9E, (byte) 0x9A, data, 256);
+
+	ByteArrayOutputStream baos = new ByteArrayOutputStream();
+	int num = 0;
+	for (CardCommandAPDU part : apdu.getChainingIterator()) {
+	    num++;
+	    baos.write(part.getData());
+	    assertEquals(part.getINS(), (byte) 0x2A);
+	    assertEquals(part.getP1P2(), new byte[] { (byte) 0x9E, (byte) 0x9A });
+	    if (num < 3) {
+		assertEquals(part.getCLA(), (byte) 0x10);
+		assertEquals(part.getLC(), 255);
+		assertEquals(part.getLE(), -1);
+	    } else {
+		assertEquals(part.getCLA(), (byte) 0x00);
+		assertEquals(part.getLC(), 90);
+		assertEquals(part.getLE(), 256);
+	    }
+	}
+	assertEquals(num, 3);
+	assertEquals(baos.toByteArray(), data);
+	// the original APDU is not modified
+	assertEquals(apdu.getCLA(), (byte) 0x00);
+
+	// no chaining needed
+	Iterator<CardCommandAPDU> it = apdu.getChainingIterator(1000).iterator();
+	assertSame(it.next(), apdu);
+	assertFalse(it.hasNext());
+    }
+
     private byte[] fillBytesWithLength(int i) throws IOException {
 	ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
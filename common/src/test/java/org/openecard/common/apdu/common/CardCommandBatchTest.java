@@ -0,0 +1,190 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.apdu.common;
+
+import iso.std.iso_iec._24727.tech.schema.InputAPDUInfoType;
+import iso.std.iso_iec._24727.tech.schema.Transmit;
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse;
+import java.util.Collections;
+import java.util.List;
+import org.mockito.Mockito;
+import org.openecard.common.ECardConstants;
+import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.exception.APDUException;
+import org.openecard.common.apdu.utils.CardCapabilities;
+import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.util.ByteUtils;
+import org.testng.annotations.Test;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class CardCommandBatchTest {
+
+    private static final byte[] SLOT = new byte[] { 0x01 };
+    private static final byte[] OK = new byte[] { (byte) 0x90, 0x00 };
+    private static final byte[] DENIED = new byte[] { 0x69, (byte) 0x82 };
+
+    @Test
+    public void testAllCommandsProcessed() throws APDUException {
+	Dispatcher dispatcher = makeDispatcher();
+	CardCommandBatch batch = new CardCommandBatch()
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x22, (byte) 0x81, (byte) 0xB6))
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x2A, (byte) 0x00, (byte) 0xBE), Collections.<byte[]>emptyList());
+
+	Transmit t = batch.makeTransmit(SLOT);
+	assertEquals(t.getSlotHandle(), SLOT);
+	assertEquals(t.getInputAPDUInfo().size(), 2);
+	assertEquals(t.getInputAPDUInfo().get(0).getAcceptableStatusCode().get(0), OK);
+	assertTrue(t.getInputAPDUInfo().get(1).getAcceptableStatusCode().isEmpty());
+
+	List<CardResponseAPDU> responses = batch.transmit(dispatcher, SLOT);
+	assertEquals(responses.size(), 2);
+	assertEquals(responses.get(0).getTrailer(), OK);
+	assertEquals(responses.get(1).getTrailer(), DENIED);
+	assertEquals(responses.get(1).getData(), new byte[] { 0x2A });
+    }
+
+    @Test
+    public void testUnexpectedStatus() {
+	Dispatcher dispatcher = makeDispatcher();
+	CardCommandBatch batch = new CardCommandBatch()
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x22, (byte) 0x81, (byte) 0xB6))
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x2A, (byte) 0x00, (byte) 0xBE))
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x22, (byte) 0x81, (byte) 0xA4));
+
+	try {
+	    batch.transmit(dispatcher, SLOT);
+	    fail("Unexpected status word not detected.");
+	} catch (APDUException ex) {
+	    // the response of the failed command is reported, not the one of the first command
+	    assertEquals(ex.getTransmitResponse().getOutputAPDU().size(), 2);
+	    assertEquals(ex.getResponseAPDU().getTrailer(), DENIED);
+	}
+    }
+
+    @Test
+    public void testTransmissionError() {
+	Dispatcher dispatcher = makeDispatcher();
+	CardCommandBatch batch = new CardCommandBatch()
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x22, (byte) 0x81, (byte) 0xB6))
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x2C, (byte) 0x00, (byte) 0xBE))
+		.add(new CardCommandAPDU((byte) 0x00, (byte) 0x22, (byte) 0x81, (byte) 0xA4));
+
+	try {
+	    batch.transmit(dispatcher, SLOT);
+	    fail("Transmission error not detected.");
+	} catch (APDUException ex) {
+	    // the output of the previous command must not be reported as the response of the failed command
+	    assertEquals(ex.getTransmitResponse().getOutputAPDU().size(), 1);
+	    assertNull(ex.getResponseAPDU());
+	}
+    }
+
+    @Test
+    public void testChainedCommand() throws APDUException {
+	Dispatcher dispatcher = makeDispatcher();
+	CardCommandAPDU large = new CardCommandAPDU((byte) 0x00, (byte) 0x2B, (byte) 0x00, (byte) 0xBE, new byte[300]);
+	CardCommandAPDU small = new CardCommandAPDU((byte) 0x00, (byte) 0x22, (byte) 0x81, (byte) 0xB6);
+
+	// extended length, no chaining
+	CardCommandBatch batch = new CardCommandBatch(new CardCapabilities(true), false).add(large).add(small);
+	assertEquals(batch.makeTransmit(SLOT).getInputAPDUInfo().size(), 2);
+	// unknown capabilities, no chaining
+	batch = new CardCommandBatch(null, true).add(large).add(small);
+	assertEquals(batch.makeTransmit(SLOT).getInputAPDUInfo().size(), 2);
+
+	batch = new CardCommandBatch(CardCapabilities.shortLength(), false).add(large).add(small);
+	assertEquals(batch.size(), 2);
+	Transmit t = batch.makeTransmit(SLOT);
+	assertEquals(t.getInputAPDUInfo().size(), 3);
+	assertEquals(t.getInputAPDUInfo().get(0).getInputAPDU()[0], (byte) 0x10);
+	assertEquals(t.getInputAPDUInfo().get(1).getInputAPDU()[0], (byte) 0x00);
+
+	List<CardResponseAPDU> responses = batch.transmit(dispatcher, SLOT);
+	assertEquals(responses.size(), 2);
+	assertEquals(responses.get(0).getData(), new byte[] { 0x2B });
+	assertEquals(responses.get(1).getData(), new byte[] { 0x22 });
+    }
+
+    @Test
+    public void testChainedCommandWithSM() {
+	CardCommandAPDU large = new CardCommandAPDU((byte) 0x00, (byte) 0x2B, (byte) 0x00, (byte) 0xBE, new byte[300]);
+
+	CardCommandBatch batch = new CardCommandBatch(CardCapabilities.shortLength(), true).add(large);
+	List<InputAPDUInfoType> apdus = batch.makeTransmit(SLOT).getInputAPDUInfo();
+	assertEquals(apdus.size(), 2);
+	// padded to 224 bytes, the wrapped APDU contains 87 81 E1 01 <224> 97 01 00 8E 08 <8>
+	assertEquals(apdus.get(0).getInputAPDU()[4] & 0xFF, 223);
+	assertEquals(apdus.get(1).getInputAPDU()[4] & 0xFF, 300 - 223);
+
+	// the unwrapped maximum is kept for extended length as well
+	large = new CardCommandAPDU((byte) 0x00, (byte) 0x2B, (byte) 0x00, (byte) 0xBE, new byte[65535]);
+	batch = new CardCommandBatch(new CardCapabilities(true), true).add(large);
+	apdus = batch.makeTransmit(SLOT).getInputAPDUInfo();
+	assertEquals(apdus.size(), 2);
+	assertEquals(new CardCommandAPDU(apdus.get(0).getInputAPDU()).getData().length, 65503);
+    }
+
+    @Test
+    public void testEmptyBatch() throws APDUException {
+	Dispatcher dispatcher = mock(Dispatcher.class);
+	assertTrue(new CardCommandBatch().transmit(dispatcher, SLOT).isEmpty());
+    }
+
+    /**
+     * Creates a dispatcher which answers all commands with 0x9000 except for INS 0x2A which is denied and INS 0x2C which
+     * fails without response. Like the IFD, the processing is stopped at the first response not matching the
+     * acceptable status codes.
+     */
+    private static Dispatcher makeDispatcher() {
+	Dispatcher dispatcher = mock(Dispatcher.class);
+	Mockito.when(dispatcher.safeDeliver(any(Transmit.class))).thenAnswer(invocation -> {
+	    Transmit t = (Transmit) invocation.getArguments()[0];
+	    TransmitResponse res = WSHelper.makeResponse(TransmitResponse.class, WSHelper.makeResultOK());
+	    for (InputAPDUInfoType next : t.getInputAPDUInfo()) {
+		byte ins = next.getInputAPDU()[1];
+		if (ins == 0x2C) {
+		    res.setResult(WSHelper.makeResultUnknownIFDError("Error during transmit of command at index 1."));
+		    break;
+		}
+		byte[] sw = ins == 0x2A ? DENIED : OK;
+		res.getOutputAPDU().add(ByteUtils.concatenate(new byte[] { ins }, sw));
+
+		List<byte[]> accepted = next.getAcceptableStatusCode();
+		if (! accepted.isEmpty() && accepted.stream().noneMatch(code -> ByteUtils.isPrefix(code, sw))) {
+		    String msg = "Unexpected status word.";
+		    res.setResult(WSHelper.makeResultError(ECardConstants.Minor.IFD.UNKNOWN_ERROR, msg));
+		    break;
+		}
+	    }
+	    return res;
+	});
+	return dispatcher;
+    }
+
+}
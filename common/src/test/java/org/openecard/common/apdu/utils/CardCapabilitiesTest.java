@@ -0,0 +1,66 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.apdu.utils;
+
+import org.openecard.common.util.StringUtils;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class CardCapabilitiesTest {
+
+    @Test
+    public void testExtendedLengthATR() {
+	// contactless nPA, card capabilities F7 41 E0
+	byte[] atr = StringUtils.toByteArray("3B 8A 80 01 80 31 F8 73 F7 41 E0 82 90 00 75", true);
+	CardCapabilities caps = CardCapabilities.fromATR(atr);
+	assertTrue(caps.isExtendedLengthSupported());
+	assertEquals(caps.getMaxResponseLength(), CardCapabilities.EXTENDED_LENGTH);
+    }
+
+    @Test
+    public void testShortLengthATR() {
+	// card capabilities without extended length bit, followed by status indicator
+	byte[] atr = StringUtils.toByteArray("3B 88 00 00 73 00 00 80 00 90 00", true);
+	assertFalse(CardCapabilities.fromATR(atr).isExtendedLengthSupported());
+    }
+
+    @Test
+    public void testUnknownCapabilities() {
+	// no historical bytes
+	byte[] atr = StringUtils.toByteArray("3B 80 80 01 01", true);
+	assertNull(CardCapabilities.fromATR(atr));
+	// ATR of a contactless card built from an ATS without card capabilities
+	atr = StringUtils.toByteArray("3B 88 80 01 00 00 00 00 00 00 00 00 09", true);
+	assertNull(CardCapabilities.fromATR(atr));
+	// truncated
+	atr = StringUtils.toByteArray("3B 8A 80", true);
+	assertNull(CardCapabilities.fromATR(atr));
+	assertNull(CardCapabilities.fromATR(null));
+    }
+
+}
@@ -0,0 +1,124 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+
+package org.openecard.common.apdu.utils;
+
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType.RecognitionInfo;
+import java.math.BigInteger;
+import org.mockito.Mockito;
+import org.openecard.common.event.EventType;
+import org.openecard.common.event.IfdEventObject;
+import org.openecard.common.interfaces.EventDispatcher;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class CardFileCacheTest {
+
+    private static final byte[] ATR_1 = new byte[] { 0x3B, (byte) 0x8A, (byte) 0x80, 0x01 };
+    private static final byte[] ATR_2 = new byte[] { 0x3B, (byte) 0x88, (byte) 0x80, 0x01 };
+    private static final byte[] CONTENT = new byte[] { 0x30, 0x03, 0x02, 0x01, 0x01 };
+
+    @Test
+    public void testDisabledWithoutEvents() {
+	CardFileCache cache = new CardFileCache();
+	ConnectionHandleType handle = handle("Reader 1", 0);
+	cache.put(handle, "EF:011D", CONTENT);
+	assertNull(cache.get(handle, "EF:011D"));
+    }
+
+    @Test
+    public void testCardRemoval() {
+	CardFileCache cache = new CardFileCache();
+	cache.register(Mockito.mock(EventDispatcher.class));
+
+	ConnectionHandleType card1 = handle("Reader 1", 0);
+	ConnectionHandleType card2 = handle("Reader 2", 0);
+	String name = CardFileCache.fileName(new byte[] { 0x01, 0x1D });
+	cache.put(card1, name, CONTENT);
+	cache.put(card2, name, CONTENT);
+
+	// the slot handle of a new connection to the same card does not matter
+	ConnectionHandleType card1Conn = handle("Reader 1", 0);
+	card1Conn.setSlotHandle(new byte[] { 0x01 });
+	byte[] result = cache.get(card1Conn, name);
+	assertEquals(result, CONTENT);
+	// modifications must not change the cached content
+	result[0] = 0;
+	assertEquals(cache.get(card1, name), CONTENT);
+	assertNull(cache.get(card1, CardFileCache.fileName(null, "EF.C.CH.AUT")));
+
+	cache.signalEvent(EventType.CARD_REMOVED, new IfdEventObject(handle("Reader 1", 0)));
+	assertNull(cache.get(card1, name));
+	assertNotNull(cache.get(card2, name));
+
+	ConnectionHandleType terminal = new ConnectionHandleType();
+	terminal.setIFDName("Reader 2");
+	cache.signalEvent(EventType.TERMINAL_REMOVED, new IfdEventObject(terminal));
+	assertNull(cache.get(card2, name));
+    }
+
+    @Test
+    public void testSwappedCard() {
+	CardFileCache cache = new CardFileCache();
+	cache.register(Mockito.mock(EventDispatcher.class));
+
+	String name = CardFileCache.fileName(new byte[] { 0x01, 0x1D });
+	ConnectionHandleType card1 = handle("Reader 1", 0, ATR_1);
+	cache.put(card1, name, CONTENT);
+	assertEquals(cache.get(card1, name), CONTENT);
+
+	// a different card in the same slot whose insert event has not been processed yet
+	ConnectionHandleType card2 = handle("Reader 1", 0, ATR_2);
+	assertNull(cache.get(card2, name));
+	byte[] content2 = new byte[] { 0x30, 0x00 };
+	cache.put(card2, name, content2);
+	assertEquals(cache.get(card2, name), content2);
+	assertNull(cache.get(card1, name));
+
+	// handles without card identifier can not be matched to a card
+	ConnectionHandleType noId = handle("Reader 1", 0);
+	noId.setRecognitionInfo(null);
+	assertNull(cache.get(noId, name));
+    }
+
+    private static ConnectionHandleType handle(String ifdName, int slotIdx) {
+	return handle(ifdName, slotIdx, ATR_1);
+    }
+
+    private static ConnectionHandleType handle(String ifdName, int slotIdx, byte[] atr) {
+	ConnectionHandleType handle = new ConnectionHandleType();
+	handle.setIFDName(ifdName);
+	handle.setSlotIndex(BigInteger.valueOf(slotIdx));
+	RecognitionInfo recInfo = new RecognitionInfo();
+	recInfo.setCardIdentifier(atr);
+	handle.setRecognitionInfo(recInfo);
+	return handle;
+    }
+
+}
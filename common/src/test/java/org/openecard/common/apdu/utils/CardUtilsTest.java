@@ -0,0 +1,128 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.apdu.utils;
+
+import iso.std.iso_iec._24727.tech.schema.InputAPDUInfoType;
+import iso.std.iso_iec._24727.tech.schema.Transmit;
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse;
+import java.util.Arrays;
+import java.util.Random;
+import org.mockito.Mockito;
+import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.common.CardCommandAPDU;
+import org.openecard.common.apdu.exception.APDUException;
+import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.tlv.TLVView;
+import org.openecard.common.util.ByteUtils;
+import org.testng.annotations.Test;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class CardUtilsTest {
+
+    private static final byte[] SLOT = new byte[] { 0x01 };
+
+    // largest response data field returned by the card
+    private final int[] maxResponse = new int[1];
+
+    @Test
+    public void testReadBeyondShortOffset() throws APDUException {
+	byte[] file = new byte[0x8000 + 600];
+	new Random(42).nextBytes(file);
+	int[] numOddIns = new int[1];
+	Dispatcher dispatcher = makeCard(file, numOddIns);
+
+	byte[] result = CardUtils.readFile(null, dispatcher, SLOT, CardCapabilities.shortLength());
+	assertEquals(result, file);
+	assertTrue(numOddIns[0] > 0);
+	assertTrue(maxResponse[0] <= CardCapabilities.SHORT_LENGTH);
+    }
+
+    @Test
+    public void testReadBeyondShortOffsetExtendedLength() throws APDUException {
+	byte[] file = new byte[0x8000 + 5000];
+	new Random(42).nextBytes(file);
+	int[] numOddIns = new int[1];
+	Dispatcher dispatcher = makeCard(file, numOddIns);
+
+	// length limits of the eGK
+	CardCapabilities caps = new CardCapabilities(true, 2100, 2098);
+	byte[] result = CardUtils.readFile(null, dispatcher, SLOT, caps);
+	assertEquals(result, file);
+	// the part beyond the short offset is read in chunks filling the responses, plus the read at the end of file
+	assertEquals(numOddIns[0], 4);
+	assertTrue(maxResponse[0] <= caps.getMaxResponseLength());
+    }
+
+    /**
+     * Creates a dispatcher behaving like a card with the given transparent EF selected.
+     */
+    private Dispatcher makeCard(byte[] file, int[] numOddIns) {
+	maxResponse[0] = 0;
+	Dispatcher dispatcher = mock(Dispatcher.class);
+	Mockito.when(dispatcher.safeDeliver(any(Transmit.class))).thenAnswer(invocation -> {
+	    Transmit t = (Transmit) invocation.getArguments()[0];
+	    TransmitResponse res = WSHelper.makeResponse(TransmitResponse.class, WSHelper.makeResultOK());
+	    for (InputAPDUInfoType next : t.getInputAPDUInfo()) {
+		CardCommandAPDU cmd = new CardCommandAPDU(next.getInputAPDU());
+		int offset;
+		int le = cmd.getLE();
+		boolean oddIns = cmd.getINS() == (byte) 0xB1;
+		if (oddIns) {
+		    numOddIns[0]++;
+		    byte[] offsetBytes = TLVView.fromBER(cmd.getData()).getValue();
+		    offset = ByteUtils.toInteger(offsetBytes);
+		} else {
+		    assertTrue(cmd.getP1() >= 0);
+		    offset = ((cmd.getP1() & 0xFF) << 8) | (cmd.getP2() & 0xFF);
+		}
+
+		if (offset >= file.length) {
+		    res.getOutputAPDU().add(new byte[] { 0x6B, 0x00 });
+		} else {
+		    int length = Math.min(file.length - offset, le);
+		    byte[] data;
+		    if (oddIns) {
+			// the header of the discretionary data object counts towards Le
+			while (TLVView.getEncodedSize(0x53, length) > le) {
+			    length--;
+			}
+			data = TLVView.encode(0x53, file, offset, length);
+		    } else {
+			data = Arrays.copyOfRange(file, offset, offset + length);
+		    }
+		    maxResponse[0] = Math.max(maxResponse[0], data.length);
+		    res.getOutputAPDU().add(ByteUtils.concatenate(data, new byte[] { (byte) 0x90, 0x00 }));
+		}
+	    }
+	    return res;
+	});
+	return dispatcher;
+    }
+
+}
@@ -0,0 +1,243 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openecard.common.interfaces.EventCallback;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class EventDispatcherImplTest {
+
+    private EventDispatcherImpl dispatcher;
+
+    @BeforeMethod
+    public void setUp() {
+	dispatcher = new EventDispatcherImpl();
+	dispatcher.start();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+	dispatcher.terminate();
+    }
+
+    @Test
+    public void testOrderPerCallback() throws InterruptedException {
+	int numEvents = 500;
+	RecordingCallback cb1 = new RecordingCallback(numEvents);
+	RecordingCallback cb2 = new RecordingCallback(numEvents);
+	dispatcher.add(cb1);
+	dispatcher.add(cb2, EventType.CARD_INSERTED);
+
+	for (int i = 0; i < numEvents; i++) {
+	    dispatcher.notify(EventType.CARD_INSERTED, new NumberedEvent(i));
+	}
+
+	assertTrue(cb1.await());
+	assertTrue(cb2.await());
+	for (int i = 0; i < numEvents; i++) {
+	    assertEquals(cb1.getEvents().get(i).num, i);
+	    assertEquals(cb2.getEvents().get(i).num, i);
+	}
+    }
+
+    @Test
+    public void testFiltering() throws InterruptedException {
+	RecordingCallback typeCb = new RecordingCallback(2);
+	RecordingCallback customCb = new RecordingCallback(1);
+	dispatcher.add(typeCb, EventType.CARD_INSERTED, EventType.CARD_REMOVED);
+	dispatcher.add(customCb, (t, o) -> o instanceof NumberedEvent && ((NumberedEvent) o).num == 2);
+
+	dispatcher.notify(EventType.TERMINAL_ADDED, new NumberedEvent(0));
+	dispatcher.notify(EventType.CARD_INSERTED, new NumberedEvent(1));
+	dispatcher.notify(EventType.CARD_REMOVED, new NumberedEvent(2));
+
+	assertTrue(typeCb.await());
+	assertTrue(customCb.await());
+	assertEquals(typeCb.getEvents().size(), 2);
+	assertEquals(typeCb.getEvents().get(0).num, 1);
+	assertEquals(typeCb.getEvents().get(1).num, 2);
+	assertEquals(customCb.getEvents().size(), 1);
+	assertEquals(customCb.getEvents().get(0).num, 2);
+    }
+
+    @Test
+    public void testSingleDelivery() throws InterruptedException {
+	RecordingCallback cb = new RecordingCallback(2);
+	// overlapping filters must not result in multiple deliveries
+	dispatcher.add(cb, EventType.CARD_INSERTED);
+	dispatcher.add(cb);
+	dispatcher.add(cb, (t, o) -> true);
+
+	dispatcher.notify(EventType.CARD_INSERTED, new NumberedEvent(0));
+	dispatcher.notify(EventType.CARD_REMOVED, new NumberedEvent(1));
+	assertTrue(cb.await());
+	// give a potential duplicate the chance to arrive
+	Thread.sleep(100);
+	assertEquals(cb.getEvents().size(), 2);
+    }
+
+    @Test
+    public void testDelete() throws InterruptedException {
+	RecordingCallback cb = new RecordingCallback(1);
+	RecordingCallback other = new RecordingCallback(2);
+	dispatcher.add(cb);
+	dispatcher.add(other);
+
+	dispatcher.notify(EventType.CARD_INSERTED, new NumberedEvent(0));
+	assertTrue(cb.await());
+	dispatcher.del(cb);
+	dispatcher.notify(EventType.CARD_INSERTED, new NumberedEvent(1));
+	assertTrue(other.await());
+
+	assertEquals(cb.getEvents().size(), 1);
+	assertEquals(other.getEvents().size(), 2);
+    }
+
+    @Test
+    public void testBlockingCallbacks() throws InterruptedException {
+	CountDownLatch release = new CountDownLatch(1);
+	CountDownLatch blocked = new CountDownLatch(32);
+	try {
+	    for (int i = 0; i < 32; i++) {
+		dispatcher.add((t, o) -> {
+		    blocked.countDown();
+		    try {
+			release.await();
+		    } catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		    }
+		}, EventType.CARD_INSERTED);
+	    }
+	    RecordingCallback cb = new RecordingCallback(2);
+	    dispatcher.add(cb);
+
+	    dispatcher.notify(EventType.CARD_INSERTED, new NumberedEvent(0));
+	    dispatcher.notify(EventType.CARD_REMOVED, new NumberedEvent(1));
+	    // all callbacks block at the same time, still the other callback receives its events
+	    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+	    assertTrue(cb.await());
+	} finally {
+	    release.countDown();
+	}
+    }
+
+    @Test
+    public void testSaturatedPool() throws InterruptedException {
+	int numBlocking = EventDispatcherImpl.MAX_THREADS + 8;
+	CountDownLatch release = new CountDownLatch(1);
+	CountDownLatch blocked = new CountDownLatch(EventDispatcherImpl.MAX_THREADS);
+	try {
+	    for (int i = 0; i < numBlocking; i++) {
+		dispatcher.add((t, o) -> {
+		    blocked.countDown();
+		    try {
+			release.await();
+		    } catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		    }
+		}, EventType.CARD_INSERTED);
+	    }
+	    RecordingCallback cb = new RecordingCallback(3);
+	    dispatcher.add(cb);
+
+	    Thread producer = new Thread(() -> {
+		for (int i = 0; i < 3; i++) {
+		    dispatcher.notify(EventType.CARD_INSERTED, new NumberedEvent(i));
+		}
+	    }, "Event Producer");
+	    producer.start();
+	    // the producer is not blocked, even though more callbacks block than there are threads
+	    producer.join(5000);
+	    assertFalse(producer.isAlive());
+	    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+	    assertTrue(cb.getEvents().isEmpty());
+
+	    // the queued deliveries are performed as soon as threads become free
+	    release.countDown();
+	    assertTrue(cb.await());
+	    for (int i = 0; i < 3; i++) {
+		assertEquals(cb.getEvents().get(i).num, i);
+	    }
+	    assertFalse(cb.getThreads().contains(producer));
+	} finally {
+	    release.countDown();
+	}
+    }
+
+
+    private static class NumberedEvent extends EventObject {
+
+	private final int num;
+
+	NumberedEvent(int num) {
+	    super(null);
+	    this.num = num;
+	}
+
+    }
+
+    private static class RecordingCallback implements EventCallback {
+
+	private final List<NumberedEvent> events = Collections.synchronizedList(new ArrayList<>());
+	private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch latch;
+
+	RecordingCallback(int expected) {
+	    this.latch = new CountDownLatch(expected);
+	}
+
+	@Override
+	public void signalEvent(EventType eventType, EventObject eventData) {
+	    events.add((NumberedEvent) eventData);
+	    threads.add(Thread.currentThread());
+	    latch.countDown();
+	}
+
+	boolean await() throws InterruptedException {
+	    return latch.await(10, TimeUnit.SECONDS);
+	}
+
+	List<NumberedEvent> getEvents() {
+	    return events;
+	}
+
+	List<Thread> getThreads() {
+	    return threads;
+	}
+
+    }
+
+}
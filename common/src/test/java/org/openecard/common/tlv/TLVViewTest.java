@@ -0,0 +1,178 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.tlv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.openecard.common.util.StringUtils;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class TLVViewTest {
+
+    private static final String FCP =
+	    "62 25" +
+	      "82 01 78" +
+	      "83 02 3F 00" +
+	      "84 07 D2 76 00 01 44 80 00" +
+	      "85 02 B1 26" +
+	      "8A 01 05" +
+	      "8B 0A 00 0A 01 08 02 08 03 00 04 00" +
+	      "A0 00";
+
+    @Test
+    public void testNavigate() throws TLVException {
+	byte[] input = StringUtils.toByteArray(FCP, true);
+
+	TLVView v = TLVView.fromBER(input);
+	assertEquals(v.getTagNumWithClass(), 0x62);
+	assertFalse(v.isPrimitive());
+	assertEquals(v.getRawLength(), input.length);
+	assertNull(v.getNext());
+
+	TLVView fid = v.findChild(0x83);
+	assertNotNull(fid);
+	assertEquals(fid.getValueOffset(), 7);
+	assertEquals(fid.getValue(), new byte[] { 0x3F, 0x00 });
+
+	TLVView last = v.findChild(0xA0);
+	assertNotNull(last);
+	assertEquals(last.getValueLength(), 0);
+	assertNull(last.getChild());
+	assertNull(last.getNext());
+	assertNull(v.findChild(0x99));
+    }
+
+    @Test
+    public void testRegionAndBuffer() throws TLVException {
+	byte[] input = StringUtils.toByteArray("FF FF 81 01 AA 82 02 BB CC FF", true);
+
+	TLVView v = TLVView.fromBER(input, 2, 7);
+	assertEquals(v.getTagNumWithClass(), 0x81);
+	assertEquals(v.getValueBuffer().get(0), (byte) 0xAA);
+	TLVView next = v.getNext();
+	assertEquals(next.getTagNumWithClass(), 0x82);
+	assertEquals(next.getValue(), new byte[] { (byte) 0xBB, (byte) 0xCC });
+	assertNull(next.getNext());
+
+	ByteBuffer buf = ByteBuffer.wrap(input);
+	buf.position(5);
+	v = TLVView.fromBER(buf);
+	assertEquals(v.getTagNumWithClass(), 0x82);
+	assertEquals(buf.position(), 5);
+
+	ByteBuffer direct = ByteBuffer.allocateDirect(input.length);
+	direct.put(input).position(2);
+	v = TLVView.fromBER(direct);
+	assertEquals(v.getTagNumWithClass(), 0x81);
+    }
+
+    @Test
+    public void testLongTagAndLength() throws TLVException {
+	byte[] input = new byte[4 + 200];
+	input[0] = (byte) 0x5F;
+	input[1] = 0x29;
+	input[2] = (byte) 0x81;
+	input[3] = (byte) 200;
+
+	TLVView v = TLVView.fromBER(input);
+	assertEquals(v.getTagNumWithClass(), 0x5F29);
+	assertEquals(v.getTagNum(), 0x29);
+	assertEquals(v.getTagClass(), TagClass.APPLICATION);
+	assertEquals(v.getValueLength(), 200);
+	assertEquals(v.getEncoded(), input);
+    }
+
+    @Test(expectedExceptions = TLVException.class)
+    public void testTruncatedValue() throws TLVException {
+	TLVView.fromBER(StringUtils.toByteArray("04 05 01 02", true));
+    }
+
+    @Test(expectedExceptions = TLVException.class)
+    public void testTruncatedHeader() throws TLVException {
+	TLVView.fromBER(StringUtils.toByteArray("5F", true));
+    }
+
+    @Test
+    public void testEncode() throws TLVException {
+	byte[] value = new byte[300];
+	value[299] = 0x01;
+
+	byte[] result = TLVView.encode(0x5F21, value, 0, value.length);
+	assertEquals(result.length, TLVView.getEncodedSize(0x5F21, value.length));
+	assertEquals(result.length, 2 + 3 + 300);
+
+	TLVView v = TLVView.fromBER(result);
+	assertEquals(v.getTagNumWithClass(), 0x5F21);
+	assertEquals(v.getValue(), value);
+	assertEquals(TLV.fromBER(result).toBER(), result);
+    }
+
+    @Test
+    public void testTLVFromRegion() throws TLVException {
+	byte[] input = StringUtils.toByteArray("00 " + FCP + " 00 00", true);
+
+	TLV t = TLV.fromBER(input, 1, input.length - 1);
+	assertNull(t.getNext());
+	assertEquals(t.findChildTags(0x8A).get(0).getValue(), new byte[] { 0x05 });
+	assertEquals(t.findChildTags(0x84).get(0).getValue(), StringUtils.toByteArray("D2 76 00 01 44 80 00", true));
+    }
+
+    @Test
+    public void testEncodingIsDetached() throws TLVException {
+	TLV t = TLV.fromBER(StringUtils.toByteArray(FCP, true));
+	byte[] encoded = t.toBER();
+	byte[] expectedValue = Arrays.copyOfRange(encoded, 2, encoded.length);
+
+	// modifying the returned encoding must not change the structure
+	Arrays.fill(encoded, (byte) 0);
+	assertEquals(t.getValue(), expectedValue);
+	assertEquals(t.toBER()[0], (byte) 0x62);
+    }
+
+    @Test
+    public void testConstructedValue() throws TLVException {
+	TLV outer = new TLV();
+	outer.setTagNumWithClass(0x7C);
+	TLV middle = new TLV();
+	middle.setTagNumWithClass(0xA0);
+	TLV inner = new TLV();
+	inner.setTagNumWithClass(0x81);
+	inner.setValue(new byte[] { 0x01, 0x02 });
+	middle.setChild(inner);
+	outer.setChild(middle);
+
+	byte[] encoded = outer.toBER();
+	assertEquals(encoded, StringUtils.toByteArray("7C 06 A0 04 81 02 01 02", true));
+	// the values of the constructed elements are built from the children when requested
+	assertEquals(outer.getValueLength(), 6);
+	assertEquals(outer.getValue(), StringUtils.toByteArray("A0 04 81 02 01 02", true));
+	assertEquals(middle.getValue(), StringUtils.toByteArray("81 02 01 02", true));
+    }
+
+}
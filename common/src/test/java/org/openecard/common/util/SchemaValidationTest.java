@@ -29,6 +29,12 @@ import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Unmarshaller;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -40,6 +46,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 import org.openecard.common.interfaces.DocumentSchemaValidator;
+import static org.testng.Assert.*;
 
 
 /**
@@ -114,4 +121,35 @@ public class SchemaValidationTest {
 	validator.validate(initFrame);
     }
 
+    @Test
+    public void testConcurrentValidation() throws Exception {
+	// the compiled schema is shared, so validators must not interfere with each other
+	DocumentSchemaValidator validator2 = JAXPSchemaValidator.load("Management.xsd");
+	ExecutorService exec = Executors.newFixedThreadPool(4);
+	try {
+	    List<Future<Boolean>> results = new ArrayList<>();
+	    for (int i = 0; i < 16; i++) {
+		final DocumentSchemaValidator v = i % 2 == 0 ? validator : validator2;
+		final String file = i % 4 < 2 ? "InitializeFramework.xml" : "DIDAuthenticate_EACInput1_nocert.xml";
+		results.add(exec.submit((Callable<Boolean>) () -> {
+		    Document doc;
+		    synchronized (builder) {
+			doc = builder.parse(FileUtils.resolveResourceAsStream(SchemaValidationTest.class, file));
+		    }
+		    try {
+			v.validate(doc);
+			return true;
+		    } catch (DocumentValidatorException ex) {
+			return false;
+		    }
+		}));
+	    }
+	    for (int i = 0; i < results.size(); i++) {
+		assertEquals((boolean) results.get(i).get(), i % 4 < 2);
+	    }
+	} finally {
+	    exec.shutdown();
+	}
+    }
+
 }
@@ -0,0 +1,92 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.util;
+
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class SelfCleaningMapTest {
+
+    @Test
+    public void testExpiry() throws Exception {
+	final CountDownLatch removed = new CountDownLatch(1);
+	SelfCleaningMap<String, String> m = new SelfCleaningMap<>(HashMap.class, v -> new RemoveAction<String>(v) {
+	    @Override
+	    public void perform() {
+		removed.countDown();
+	    }
+	}, 1);
+
+	long start = System.nanoTime();
+	m.put("key", "value");
+	assertEquals(m.get("key"), "value");
+	assertTrue(removed.await(5, TimeUnit.SECONDS));
+	long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+	// only a lower bound can be checked, as the timer thread may be delayed arbitrarily
+	assertTrue(duration >= 1000, "Entry removed too early.");
+	assertNull(m.get("key"));
+	assertTrue(m.isEmpty());
+    }
+
+    @Test
+    public void testAccessExtendsLifetime() throws Exception {
+	final CountDownLatch removed = new CountDownLatch(1);
+	SelfCleaningMap<String, String> m = new SelfCleaningMap<>(HashMap.class, v -> new RemoveAction<String>(v) {
+	    @Override
+	    public void perform() {
+		removed.countDown();
+	    }
+	}, 1);
+
+	m.put("key", "value");
+	Thread.sleep(500);
+	long lastAccess = System.nanoTime();
+	assertTrue(m.containsKey("key"));
+	assertTrue(removed.await(5, TimeUnit.SECONDS));
+	long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastAccess);
+
+	// the lifetime starts again with the last access
+	assertTrue(duration >= 1000, "Entry removed too early.");
+	assertNull(m.get("key"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+	SelfCleaningMap<String, String> m = new SelfCleaningMap<>(HashMap.class, 1);
+	assertNull(m.remove("key"));
+	m.put("key", "value");
+	assertEquals(m.put("key", "value2"), "value");
+	assertEquals(m.remove("key"), "value2");
+	assertTrue(m.isEmpty());
+    }
+
+}
@@ -0,0 +1,63 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class SharedTimerTest {
+
+    @Test
+    public void testFailingTask() throws InterruptedException {
+	CountDownLatch executed = new CountDownLatch(2);
+	SharedTimer.schedule(() -> {
+	    executed.countDown();
+	    throw new IllegalStateException("Expected failure.");
+	}, 0, TimeUnit.MILLISECONDS);
+	// the timer must survive the exception of the previous task
+	SharedTimer.schedule(executed::countDown, 10, TimeUnit.MILLISECONDS);
+	assertTrue(executed.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+	AtomicBoolean cancelledRan = new AtomicBoolean(false);
+	CountDownLatch later = new CountDownLatch(1);
+	ScheduledFuture<?> f = SharedTimer.schedule(() -> cancelledRan.set(true), 50, TimeUnit.MILLISECONDS);
+	assertTrue(f.cancel(false));
+	// tasks are executed in the order of their due time, so the cancelled task would have run before this one
+	SharedTimer.schedule(later::countDown, 100, TimeUnit.MILLISECONDS);
+	assertTrue(later.await(10, TimeUnit.SECONDS));
+	assertFalse(cancelledRan.get());
+    }
+
+}
@@ -0,0 +1,94 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.transport.dispatcher;
+
+import iso.std.iso_iec._24727.tech.schema.EstablishContext;
+import iso.std.iso_iec._24727.tech.schema.EstablishContextResponse;
+import java.lang.reflect.Method;
+import java.util.TreeMap;
+import org.openecard.common.interfaces.Environment;
+import org.openecard.ws.IFD;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ * Microbenchmark comparing the dispatcher with plain reflective dispatching.
+ * The reflective variant resembles the lookup and invocation steps performed by the dispatcher before the method
+ * handle based dispatch table was introduced. The test is in the {@code benchmark} group, which is excluded from the
+ * regular test runs as its result depends on the machine.
+ *
+ * @author Tobias Wich
+ */
+public class DispatcherBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DispatcherBenchmark.class);
+
+    private static final int WARMUP = 200_000;
+    private static final int ROUNDS = 2_000_000;
+
+    @Test(groups = "benchmark")
+    public void benchmarkDispatch() throws Exception {
+	Environment env = new TestEnv1();
+	env.setIFD(new TestIFD());
+	MessageDispatcher disp = new MessageDispatcher(env);
+	Object req = new EstablishContext();
+
+	TreeMap<String, Method> serviceMethods = new TreeMap<>();
+	serviceMethods.put(req.getClass().getName(), IFD.class.getMethod("establishContext", EstablishContext.class));
+	TreeMap<String, Method> envMethods = new TreeMap<>();
+	envMethods.put(IFD.class.getName(), env.getClass().getMethod("getIFD"));
+
+	for (int i = 0; i < WARMUP; i++) {
+	    reflectiveDeliver(env, envMethods, serviceMethods, req);
+	    disp.deliver(req);
+	}
+
+	long start = System.nanoTime();
+	for (int i = 0; i < ROUNDS; i++) {
+	    assertNotNull(reflectiveDeliver(env, envMethods, serviceMethods, req));
+	}
+	long reflective = System.nanoTime() - start;
+
+	start = System.nanoTime();
+	for (int i = 0; i < ROUNDS; i++) {
+	    assertNotNull(disp.deliver(req));
+	}
+	long handles = System.nanoTime() - start;
+
+	LOG.info("Reflective dispatch: {} ns/call", (double) reflective / ROUNDS);
+	LOG.info("MessageDispatcher:   {} ns/call", (double) handles / ROUNDS);
+    }
+
+    private static Object reflectiveDeliver(Environment env, TreeMap<String, Method> envMethods,
+	    TreeMap<String, Method> serviceMethods, Object req) throws Exception {
+	Method m = serviceMethods.get(req.getClass().getName());
+	Object impl = envMethods.get(m.getDeclaringClass().getName()).invoke(env);
+	Object res = m.invoke(impl, req);
+	assertTrue(res instanceof EstablishContextResponse);
+	return res;
+    }
+
+}
@@ -78,4 +78,33 @@ public class TestDispatcher {
 	assertTrue(res instanceof EstablishContextResponse);
     }
 
+    /**
+     * Test that services replaced in the environment after the dispatcher has been created are used.
+     *
+     * @throws Exception If the test is a failure.
+     */
+    @Test
+    public void testReplacedService() throws Exception {
+	Environment env = new TestEnv1();
+	MessageDispatcher disp = new MessageDispatcher(env);
+	EstablishContextResponse res1 = new EstablishContextResponse();
+	EstablishContextResponse res2 = new EstablishContextResponse();
+
+	env.setIFD(new TestIFD() {
+	    @Override
+	    public EstablishContextResponse establishContext(EstablishContext parameters) {
+		return res1;
+	    }
+	});
+	assertSame(disp.deliver(new EstablishContext()), res1);
+
+	env.setIFD(new TestIFD() {
+	    @Override
+	    public EstablishContextResponse establishContext(EstablishContext parameters) {
+		return res2;
+	    }
+	});
+	assertSame(disp.deliver(new EstablishContext()), res2);
+    }
+
 }
@@ -0,0 +1,257 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.common;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.openecard.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.openecard.bouncycastle.crypto.params.ECDomainParameters;
+import org.openecard.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.openecard.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.openecard.bouncycastle.jce.spec.ECParameterSpec;
+import org.openecard.bouncycastle.math.ec.ECPoint;
+import org.openecard.bouncycastle.util.BigIntegers;
+import org.openecard.common.OpenecardProperties;
+import org.openecard.common.util.SecureRandomFactory;
+import org.openecard.crypto.common.asn1.eac.StandardizedDomainParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+
+/**
+ * Pool of pregenerated ephemeral EC key pairs for standardized domain parameters.
+ * The key pairs are generated by a low priority background thread, so that the key generation does not happen while
+ * the user waits for the result of a protocol such as PACE.
+ * Currently only the ephemeral key of the generic PACE mapping is taken from the pool.
+ * <p>
+ * The pool is opt-in and only started by {@link #start()} when the property {@value #ENABLED_PROPERTY} is set. Each
+ * key pair is handed out only once and the private key kept by the pool is overwritten when the key pair is taken
+ * or the pool is stopped. If the pool is not running or empty, callers generate the key pair themselves.
+ * </p>
+ *
+ * @author Tobias Wich
+ */
+public final class EphemeralKeyPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EphemeralKeyPool.class);
+
+    private static final EphemeralKeyPool INSTANCE = new EphemeralKeyPool();
+
+    static final String ENABLED_PROPERTY = "ephemeral-key-pool";
+    // BrainpoolP256r1, used for the PACE mapping by the German eID card
+    private static final int[] DEFAULT_PARAMETER_IDS = { 13 };
+    static final int POOL_SIZE = 4;
+
+    private final SecureRandom rand = SecureRandomFactory.create(32);
+    // parameters of the mapped PACE generator never match the standardized ones, so no pooled key is returned for them
+    private final ConcurrentHashMap<ECParameterSpec, Pool> pools = new ConcurrentHashMap<>();
+    private volatile ExecutorService executor;
+
+    EphemeralKeyPool() {
+    }
+
+    /**
+     * Gets the process wide key pool.
+     *
+     * @return The pool instance.
+     */
+    @Nonnull
+    public static EphemeralKeyPool getInstance() {
+	return INSTANCE;
+    }
+
+    /**
+     * Starts the pregeneration for the default domain parameters if it is enabled in the configuration.
+     */
+    public void start() {
+	if (Boolean.valueOf(OpenecardProperties.getProperty(ENABLED_PROPERTY))) {
+	    start(DEFAULT_PARAMETER_IDS);
+	}
+    }
+
+    /**
+     * Starts the pregeneration of key pairs for the given standardized domain parameters.
+     *
+     * @param parameterIds Indices of the standardized EC domain parameters.
+     * @see StandardizedDomainParameters
+     */
+    public synchronized void start(int... parameterIds) {
+	if (executor == null) {
+	    AtomicInteger num = new AtomicInteger(1);
+	    executor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "Ephemeral-Key-Pool-" + num.getAndIncrement());
+		t.setDaemon(true);
+		t.setPriority(Thread.MIN_PRIORITY);
+		return t;
+	    });
+	}
+
+	for (int id : parameterIds) {
+	    AlgorithmParameterSpec spec = new StandardizedDomainParameters(id).getParameter();
+	    if (spec instanceof ECParameterSpec) {
+		Pool p = pools.computeIfAbsent((ECParameterSpec) spec, Pool::new);
+		scheduleRefill(p);
+	    } else {
+		LOG.warn("Standardized domain parameters {} are no EC parameters, no key pairs are pregenerated.", id);
+	    }
+	}
+    }
+
+    /**
+     * Stops the pregeneration and destroys all key pairs in the pool.
+     */
+    public synchronized void stop() {
+	if (executor != null) {
+	    executor.shutdownNow();
+	    executor = null;
+	}
+	for (Pool p : pools.values()) {
+	    p.close();
+	}
+	pools.clear();
+    }
+
+    /**
+     * Takes a pregenerated key pair for the given domain parameters from the pool.
+     * The pool generates a replacement in the background.
+     *
+     * @param spec Domain parameters the key pair must belong to.
+     * @return A key pair which has not been handed out before, or {@code null} if no key pair is available.
+     */
+    @Nullable
+    public AsymmetricCipherKeyPair take(@Nonnull AlgorithmParameterSpec spec) {
+	Pool p = pools.get(spec);
+	if (p == null) {
+	    return null;
+	}
+
+	PooledKey key = p.keys.poll();
+	scheduleRefill(p);
+	if (key == null) {
+	    LOG.debug("No pregenerated key pair available.");
+	    return null;
+	}
+	return key.toKeyPair(p.domain);
+    }
+
+    private void scheduleRefill(Pool p) {
+	ExecutorService e = executor;
+	if (e != null && p.keys.size() < POOL_SIZE && p.refillScheduled.compareAndSet(false, true)) {
+	    try {
+		e.execute(() -> refill(p));
+	    } catch (RejectedExecutionException ex) {
+		// pool has been stopped in the meantime
+		p.refillScheduled.set(false);
+	    }
+	}
+    }
+
+    private void refill(Pool p) {
+	try {
+	    while (p.keys.size() < POOL_SIZE && ! p.closed && ! Thread.currentThread().isInterrupted()) {
+		p.keys.add(generate(p.spec));
+		// a key added after the pool has been closed would never be destroyed
+		if (p.closed) {
+		    p.destroyKeys();
+		}
+	    }
+	} catch (RuntimeException ex) {
+	    LOG.error("Failed to pregenerate ephemeral key pair.", ex);
+	} finally {
+	    p.refillScheduled.set(false);
+	}
+    }
+
+    private PooledKey generate(ECParameterSpec spec) {
+	BigInteger n = spec.getN();
+	BigInteger d;
+	do {
+	    d = new BigInteger(n.bitLength(), rand);
+	} while (d.signum() == 0 || d.compareTo(n) >= 0);
+
+	ECPoint q = StandardizedDomainParameters.multiplyGenerator(spec, d).normalize();
+	return new PooledKey(BigIntegers.asUnsignedByteArray(d), q);
+    }
+
+
+    private static class Pool {
+
+	private final ECParameterSpec spec;
+	private final ECDomainParameters domain;
+	private final ConcurrentLinkedQueue<PooledKey> keys = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean refillScheduled = new AtomicBoolean(false);
+	private volatile boolean closed = false;
+
+	Pool(ECParameterSpec spec) {
+	    this.spec = spec;
+	    this.domain = new ECDomainParameters(spec.getCurve(), spec.getG(), spec.getN(), spec.getH());
+	}
+
+	void close() {
+	    closed = true;
+	    destroyKeys();
+	}
+
+	void destroyKeys() {
+	    PooledKey next;
+	    while ((next = keys.poll()) != null) {
+		next.destroy();
+	    }
+	}
+
+    }
+
+    private static class PooledKey {
+
+	private final byte[] d;
+	private final ECPoint q;
+
+	PooledKey(byte[] d, ECPoint q) {
+	    this.d = d;
+	    this.q = q;
+	}
+
+	AsymmetricCipherKeyPair toKeyPair(ECDomainParameters domain) {
+	    BigInteger sk = new BigInteger(1, d);
+	    destroy();
+	    return new AsymmetricCipherKeyPair(new ECPublicKeyParameters(q, domain), new ECPrivateKeyParameters(sk, domain));
+	}
+
+	void destroy() {
+	    Arrays.fill(d, (byte) 0);
+	}
+
+    }
+
+}
@@ -26,8 +26,13 @@ import java.math.BigInteger;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.openecard.bouncycastle.jce.ECNamedCurveTable;
+import org.openecard.bouncycastle.jce.spec.ECParameterSpec;
 import org.openecard.bouncycastle.jce.spec.ElGamalParameterSpec;
+import org.openecard.bouncycastle.math.ec.ECPoint;
+import org.openecard.bouncycastle.math.ec.FixedPointCombMultiplier;
+import org.openecard.bouncycastle.math.ec.FixedPointUtil;
 
 
 /**
@@ -38,6 +43,8 @@ import org.openecard.bouncycastle.jce.spec.ElGamalParameterSpec;
 public final class StandardizedDomainParameters extends DomainParameters {
 
     private final static Map<Integer, Object> map = new HashMap<>();
+    // EC parameters are created once per curve, so that the precomputed generator multiples are shared
+    private final static ConcurrentHashMap<Integer, ECParameterSpec> ecParams = new ConcurrentHashMap<>();
 
     // See RFC 5114, Section 2.1. 1024-bit MODP Group with 160-bit Prime Order Subgroup
     static {
@@ -97,9 +104,44 @@ public final class StandardizedDomainParameters extends DomainParameters {
 	    if (index >= 0 && index <= 2) {
 		domainParameter = (AlgorithmParameterSpec) value;
 	    } else if (index >= 8 && index <= 18) {
-		domainParameter = ECNamedCurveTable.getParameterSpec(value.toString());
+		domainParameter = ecParams.computeIfAbsent(index, i -> createECParameter(value.toString()));
 	    }
 	}
     }
 
+    private static ECParameterSpec createECParameter(String curveName) {
+	ECParameterSpec spec = ECNamedCurveTable.getParameterSpec(curveName);
+	// the comb table is saved in the generator point and used by all multiplications with FixedPointCombMultiplier
+	FixedPointUtil.precompute(spec.getG());
+	return spec;
+    }
+
+    /**
+     * Multiplies the generator of the given EC domain parameters with a scalar.
+     * If the parameters are standardized domain parameters obtained from this class, the precomputed fixed-base table
+     * of the generator is used. Otherwise a regular point multiplication is performed.
+     *
+     * @param spec EC domain parameters
+     * @param k Scalar
+     * @return The point k*G.
+     */
+    public static ECPoint multiplyGenerator(ECParameterSpec spec, BigInteger k) {
+	ECPoint g = spec.getG();
+	if (isStandardizedGenerator(g)) {
+	    // the comb only covers scalars up to the bit length of the order
+	    return new FixedPointCombMultiplier().multiply(g, k.mod(spec.getN()));
+	} else {
+	    return g.multiply(k);
+	}
+    }
+
+    private static boolean isStandardizedGenerator(ECPoint g) {
+	for (ECParameterSpec next : ecParams.values()) {
+	    if (next.getG() == g) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
 }
@@ -34,9 +34,11 @@ import iso.std.iso_iec._24727.tech.schema.DataSetSelectResponse;
 import iso.std.iso_iec._24727.tech.schema.TargetNameType;
 import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.SecurityConditionUnsatisfiable;
 import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.utils.CardFileCache;
 import org.openecard.common.util.ByteUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -171,6 +173,58 @@ public class DataSetInfo {
 	return ByteUtils.clone(cachedData);
     }
 
+    /**
+     * Gets the content of the data set saved in the {@link CardFileCache} by {@link #readImmutable()}.
+     * The content is only returned if the access conditions of the data set are satisfied, just as if it was read from
+     * the card. No card application needs to be connected and no PIN entered in order to use the saved content.
+     *
+     * @return The content of the data set, or {@code null} if it is not saved for this card or may not be read.
+     * @throws WSHelper.WSException Thrown in case the access conditions could not be evaluated.
+     */
+    @Nullable
+    public byte[] readCachedImmutable() throws WSHelper.WSException {
+	if (cachedData == null) {
+	    byte[] cached = CardFileCache.getInstance().get(didInfos.getHandle(application), getCacheName());
+	    if (cached == null || ! isAccessible()) {
+		return null;
+	    }
+	    cachedData = cached;
+	}
+
+	// copy to be safe from cache manipulation
+	return ByteUtils.clone(cachedData);
+    }
+
+    /**
+     * Reads the data set and saves its content in the {@link CardFileCache}.
+     * This method must only be used for data sets which can not be modified, such as certificates. The content saved
+     * for this card is only returned if the access conditions of the data set are satisfied, just as if it was read
+     * from the card.
+     *
+     * @return The content of the data set.
+     * @throws WSHelper.WSException Thrown in case reading the data set failed.
+     */
+    public byte[] readImmutable() throws WSHelper.WSException {
+	byte[] data = readCachedImmutable();
+	if (data == null) {
+	    data = read();
+	    CardFileCache.getInstance().put(didInfos.getHandle(application), getCacheName(), data);
+	}
+	return data;
+    }
+
+    private boolean isAccessible() throws WSHelper.WSException {
+	try {
+	    return getMissingDids().isEmpty();
+	} catch (SecurityConditionUnsatisfiable ex) {
+	    return false;
+	}
+    }
+
+    private String getCacheName() {
+	return CardFileCache.fileName(application, datasetNameTarget.getDataSetName());
+    }
+
     private void select() throws WSHelper.WSException {
 	DataSetSelect req = new DataSetSelect();
 	req.setConnectionHandle(didInfos.getHandle(application));
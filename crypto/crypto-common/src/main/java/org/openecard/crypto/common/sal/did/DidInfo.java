@@ -374,9 +374,13 @@ public class DidInfo {
 		ArrayList<byte[]> rawCerts = new ArrayList<>();
 		for (DataSetInfo dsi : getRelatedDataSets()) {
 		    if (dsi.isPinSufficient()) {
-			dsi.connectApplication();
-			dsi.authenticate();
-			byte[] data = dsi.read();
+			// certificates do not change, so they are not read again when the card is still the same
+			byte[] data = dsi.readCachedImmutable();
+			if (data == null) {
+			    dsi.connectApplication();
+			    dsi.authenticate();
+			    data = dsi.readImmutable();
+			}
 			rawCerts.add(data);
 		    } else {
 			allCertsRead = false;
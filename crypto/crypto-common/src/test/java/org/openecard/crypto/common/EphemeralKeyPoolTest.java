@@ -0,0 +1,77 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.common;
+
+import java.security.spec.AlgorithmParameterSpec;
+import org.openecard.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.openecard.bouncycastle.crypto.params.ECPrivateKeyParameters;
+import org.openecard.bouncycastle.crypto.params.ECPublicKeyParameters;
+import org.openecard.crypto.common.asn1.eac.StandardizedDomainParameters;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class EphemeralKeyPoolTest {
+
+    private static final AlgorithmParameterSpec BRAINPOOL_P256 = new StandardizedDomainParameters(13).getParameter();
+    private static final AlgorithmParameterSpec BRAINPOOL_P384 = new StandardizedDomainParameters(16).getParameter();
+
+    @Test
+    public void testPooledKeys() throws InterruptedException {
+	EphemeralKeyPool pool = new EphemeralKeyPool();
+	try {
+	    assertNull(pool.take(BRAINPOOL_P256));
+	    pool.start(13);
+
+	    AsymmetricCipherKeyPair first = takeWait(pool, BRAINPOOL_P256);
+	    AsymmetricCipherKeyPair second = takeWait(pool, BRAINPOOL_P256);
+	    ECPrivateKeyParameters sk = (ECPrivateKeyParameters) first.getPrivate();
+	    ECPublicKeyParameters pk = (ECPublicKeyParameters) first.getPublic();
+	    assertEquals(pk.getQ(), sk.getParameters().getG().multiply(sk.getD()));
+	    assertNotEquals(((ECPrivateKeyParameters) second.getPrivate()).getD(), sk.getD());
+
+	    // other parameters are not pooled
+	    assertNull(pool.take(BRAINPOOL_P384));
+	} finally {
+	    pool.stop();
+	}
+	assertNull(pool.take(BRAINPOOL_P256));
+    }
+
+    private static AsymmetricCipherKeyPair takeWait(EphemeralKeyPool pool, AlgorithmParameterSpec spec)
+	    throws InterruptedException {
+	for (int i = 0; i < 200; i++) {
+	    AsymmetricCipherKeyPair result = pool.take(spec);
+	    if (result != null) {
+		return result;
+	    }
+	    Thread.sleep(50);
+	}
+	throw new AssertionError("No key pair has been generated.");
+    }
+
+}
@@ -0,0 +1,84 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.crypto.common.asn1.eac;
+
+import java.math.BigInteger;
+import java.util.Random;
+import org.openecard.bouncycastle.jce.spec.ECParameterSpec;
+import org.openecard.bouncycastle.math.ec.ECPoint;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class StandardizedDomainParametersTest {
+
+    private final Random rnd = new Random(42);
+
+    @Test
+    public void testParametersAreShared() {
+	for (int i = 8; i <= 18; i++) {
+	    assertSame(new StandardizedDomainParameters(i).getParameter(),
+		    new StandardizedDomainParameters(i).getParameter());
+	}
+    }
+
+    @Test
+    public void testFixedBaseMultiplication() {
+	for (int i = 8; i <= 18; i++) {
+	    ECParameterSpec spec = (ECParameterSpec) new StandardizedDomainParameters(i).getParameter();
+	    BigInteger n = spec.getN();
+
+	    BigInteger[] scalars = {
+		BigInteger.ONE,
+		n.subtract(BigInteger.ONE),
+		new BigInteger(128, rnd),
+		new BigInteger(n.bitLength(), rnd),
+		new BigInteger(n.bitLength(), rnd),
+		// not reduced
+		n.add(BigInteger.TEN),
+	    };
+	    for (BigInteger k : scalars) {
+		ECPoint expected = spec.getG().multiply(k).normalize();
+		ECPoint actual = StandardizedDomainParameters.multiplyGenerator(spec, k).normalize();
+		assertEquals(actual, expected, "Wrong result for domain parameter " + i + " and k=" + k);
+	    }
+	    assertTrue(StandardizedDomainParameters.multiplyGenerator(spec, n).isInfinity());
+	}
+    }
+
+    @Test
+    public void testOtherGenerator() {
+	ECParameterSpec std = (ECParameterSpec) new StandardizedDomainParameters(13).getParameter();
+	ECPoint g = std.getG().twice().normalize();
+	ECParameterSpec mapped = new ECParameterSpec(std.getCurve(), g, std.getN(), std.getH());
+
+	BigInteger k = new BigInteger(std.getN().bitLength(), rnd);
+	ECPoint expected = std.getG().multiply(k.shiftLeft(1)).normalize();
+	assertEquals(StandardizedDomainParameters.multiplyGenerator(mapped, k).normalize(), expected);
+    }
+
+}
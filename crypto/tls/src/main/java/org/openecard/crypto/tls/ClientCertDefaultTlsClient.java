@@ -72,6 +72,8 @@ public class ClientCertDefaultTlsClient extends DefaultTlsClient implements Clie
     private boolean enforceSameSession = false;
     private TlsSession firstSession;
     private TlsSession lastSession;
+    private TlsSession cachedSession;
+    private boolean sessionResumed = false;
 
     protected ArrayList<ServerName> serverNames;
     protected ProtocolVersion clientVersion = ProtocolVersion.TLSv12;
@@ -156,6 +158,37 @@ public class ClientCertDefaultTlsClient extends DefaultTlsClient implements Clie
 	this.enforceSameSession = enforceSameSession;
     }
 
+    /**
+     * Sets a session from an earlier connection to the same server, which is offered for resumption in the next
+     * handshake.
+     * If the server does not accept the session, a full handshake is performed.
+     *
+     * @param session Session to offer, or {@code null} to perform a full handshake.
+     */
+    public void setSessionToResume(@Nullable TlsSession session) {
+	this.cachedSession = session;
+    }
+
+    /**
+     * Gets the resumable session established in the last handshake.
+     *
+     * @return The session, or {@code null} if no handshake has been performed or the session is not resumable.
+     */
+    @Nullable
+    public TlsSession getLastSession() {
+	return lastSession;
+    }
+
+    /**
+     * Determines whether the server accepted the offered session in the last handshake.
+     * In this case the server has not sent its certificate in the handshake.
+     *
+     * @return {@code true} if the last handshake resumed a session, {@code false} otherwise.
+     */
+    public boolean isSessionResumed() {
+	return sessionResumed;
+    }
+
 
     @Override
     public synchronized TlsAuthentication getAuthentication() throws IOException {
@@ -360,6 +393,8 @@ public class ClientCertDefaultTlsClient extends DefaultTlsClient implements Clie
     public TlsSession getSessionToResume() {
 	if (firstSession != null) {
 	    return firstSession;
+	} else if (cachedSession != null) {
+	    return cachedSession;
 	} else {
 	    return super.getSessionToResume();
 	}
@@ -367,6 +402,10 @@ public class ClientCertDefaultTlsClient extends DefaultTlsClient implements Clie
 
     @Override
     public void notifySessionID(byte[] sessionID) {
+	TlsSession offered = getSessionToResume();
+	sessionResumed = offered != null && sessionID != null && sessionID.length > 0
+		&& ByteUtils.compare(offered.getSessionID(), sessionID);
+
 	if (enforceSameSession) {
 	    // check if someone tries to resume and raise error
 	    TlsSession s = getSessionToResume();
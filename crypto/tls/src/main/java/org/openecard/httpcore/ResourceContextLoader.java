@@ -19,19 +19,23 @@ import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import org.apache.http.ConnectionReuseStrategy;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
 import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
 import org.apache.http.protocol.BasicHttpContext;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.util.EntityUtils;
 import org.openecard.bouncycastle.tls.ProtocolVersion;
 import org.openecard.bouncycastle.tls.TlsClientProtocol;
 import org.openecard.bouncycastle.tls.TlsServerCertificate;
+import org.openecard.bouncycastle.tls.TlsSession;
 import org.openecard.bouncycastle.tls.crypto.TlsCrypto;
 import org.openecard.bouncycastle.tls.crypto.impl.bc.BcTlsCrypto;
 import org.openecard.common.io.LimitedInputStream;
@@ -58,6 +62,10 @@ public class ResourceContextLoader {
 
     private static final Logger LOG = LoggerFactory.getLogger(ResourceContextLoader.class);
 
+    private static final TlsCrypto TLS_CRYPTO = new BcTlsCrypto(ReusableSecureRandom.getInstance());
+    private static final TlsSessionCache SESSION_CACHE = new TlsSessionCache();
+    private static final ConnectionReuseStrategy REUSE_STRATEGY = DefaultConnectionReuseStrategy.INSTANCE;
+
     private CookieManager cookieManager;
 
     /**
@@ -110,6 +118,13 @@ public class ResourceContextLoader {
     protected ResourceContext getStreamInt(URL url, CertificateValidator v, List<Pair<URL,
 	    TlsServerCertificate>> serverCerts, int maxRedirects) throws IOException, GeneralHttpResourceException, ValidationError,
 	    InsecureUrlException, InvalidRedirectChain, InvalidProxyException, InvalidRedirectResponseSyntax, RedirectionDepthException {
+	return getStreamInt(url, v, serverCerts, maxRedirects, null);
+    }
+
+    private ResourceContext getStreamInt(URL url, CertificateValidator v, List<Pair<URL, TlsServerCertificate>> serverCerts,
+	    int maxRedirects, @Nullable TlsConnection lastConn) throws IOException, GeneralHttpResourceException,
+	    ValidationError, InsecureUrlException, InvalidRedirectChain, InvalidProxyException,
+	    InvalidRedirectResponseSyntax, RedirectionDepthException {
 	try {
 	    CookieManager cManager = getCookieManager();
 	    LOG.info("Trying to load resource from: {}", url);
@@ -132,36 +147,29 @@ public class ResourceContextLoader {
 		throw new InsecureUrlException("Non HTTPS based protocol requested.");
 	    }
 
-	    // open a TLS connection, retrieve the server certificate and save it
-	    TlsClientProtocol h;
-	    DynamicAuthentication tlsAuth = new DynamicAuthentication(hostname);
-	    // add PKIX validator if not doin nPA auth
-	    if (isPKIXVerify()) {
-		tlsAuth.addCertificateVerifier(new JavaSecVerifier());
+	    // reuse the connection of the previous redirect if it points to the same server
+	    TlsConnection tlsConn;
+	    if (lastConn != null && lastConn.isConnectedTo(hostname, port)) {
+		LOG.debug("Reusing TLS connection to {}:{}.", hostname, port);
+		tlsConn = lastConn;
+	    } else {
+		if (lastConn != null) {
+		    lastConn.close();
+		}
+		tlsConn = openConnection(protocol, hostname, port);
 	    }
-	    // FIXME: validate certificate chain as soon as a usable solution exists for the trust problem
-	    // tlsAuth.setCertificateVerifier(new JavaSecVerifier());
-	    TlsCrypto crypto = new BcTlsCrypto(ReusableSecureRandom.getInstance());
-	    ClientCertTlsClient tlsClient = new ClientCertDefaultTlsClient(crypto, hostname, true);
-	    tlsClient.setAuthentication(tlsAuth);
-
-	    // connect tls client
-	    tlsClient.setClientVersion(ProtocolVersion.TLSv12);
-	    Socket socket = ProxySettings.getDefault().getSocket(protocol, hostname, port);
-	    h = new TlsClientProtocol(socket.getInputStream(), socket.getOutputStream());
-	    LOG.debug("Performing TLS handshake.");
-	    h.connect(tlsClient);
-	    LOG.debug("TLS handshake performed.");
+	    ClientCertTlsClient tlsClient = tlsConn.tlsClient;
+	    TlsClientProtocol h = tlsConn.tlsProto;
 
-	    serverCerts.add(new Pair<>(url, tlsAuth.getServerCertificate()));
+	    serverCerts.add(new Pair<>(url, tlsConn.serverCert));
 	    // check result
-	    CertificateValidator.VerifierResult verifyResult = v.validate(url, tlsAuth.getServerCertificate());
+	    CertificateValidator.VerifierResult verifyResult = v.validate(url, tlsConn.serverCert);
 	    if (verifyResult == CertificateValidator.VerifierResult.FINISH) {
 		List<Pair<URL, TlsServerCertificate>> pairs = Collections.unmodifiableList(serverCerts);
 		return new ResourceContext(tlsClient, h, pairs);
 	    }
 
-	    StreamHttpClientConnection conn = new StreamHttpClientConnection(h.getInputStream(), h.getOutputStream());
+	    StreamHttpClientConnection conn = tlsConn.httpConn;
 
 	    HttpContext ctx = new BasicHttpContext();
 	    HttpRequestExecutor httpexecutor = new HttpRequestExecutor();
@@ -213,9 +221,14 @@ public class ResourceContextLoader {
 		LimitedInputStream is = new LimitedInputStream(entity.getContent());
 		ResourceContext result = new ResourceContext(tlsClient, h, serverCerts, is);
 		return result;
+	    } else if (REUSE_STRATEGY.keepAlive(response, ctx)) {
+		// read the body of the redirect, so the next request can be sent over the same connection
+		conn.receiveResponseEntity(response);
+		EntityUtils.consume(response.getEntity());
+		return getStreamInt(url, v, serverCerts, maxRedirects, tlsConn);
 	    } else {
 		h.close();
-		return getStreamInt(url, v, serverCerts, maxRedirects);
+		return getStreamInt(url, v, serverCerts, maxRedirects, null);
 	    }
 	} catch (URISyntaxException ex) {
 	    throw new InvalidProxyException("Proxy URL is invalid.", ex);
@@ -225,6 +238,69 @@ public class ResourceContextLoader {
 	}
     }
 
+    /**
+     * Opens a TLS connection to the given server.
+     * If a session of an earlier connection to the server is available, it is resumed. In this case the certificate
+     * saved with the session is verified again, as the server does not send its certificate in the abbreviated
+     * handshake.
+     *
+     * @param protocol Protocol of the URL, used to determine the proxy.
+     * @param hostname Hostname of the server.
+     * @param port Port of the server.
+     * @return The established connection.
+     * @throws IOException Thrown in case the connection could not be established or the certificate is invalid.
+     * @throws URISyntaxException Thrown in case the proxy URL is invalid.
+     */
+    private TlsConnection openConnection(String protocol, String hostname, int port) throws IOException,
+	    URISyntaxException {
+	DynamicAuthentication tlsAuth = new DynamicAuthentication(hostname);
+	// add PKIX validator if not doin nPA auth
+	if (isPKIXVerify()) {
+	    tlsAuth.addCertificateVerifier(new JavaSecVerifier());
+	}
+	// FIXME: validate certificate chain as soon as a usable solution exists for the trust problem
+	// tlsAuth.setCertificateVerifier(new JavaSecVerifier());
+	ClientCertDefaultTlsClient tlsClient = new ClientCertDefaultTlsClient(TLS_CRYPTO, hostname, true);
+	tlsClient.setAuthentication(tlsAuth);
+	TlsSessionCache.Entry cachedSession = SESSION_CACHE.get(hostname, port);
+	if (cachedSession != null) {
+	    tlsClient.setSessionToResume(cachedSession.getSession());
+	}
+
+	// connect tls client
+	tlsClient.setClientVersion(ProtocolVersion.TLSv12);
+	Socket socket = ProxySettings.getDefault().getSocket(protocol, hostname, port);
+	TlsClientProtocol h = new TlsClientProtocol(socket.getInputStream(), socket.getOutputStream());
+	LOG.debug("Performing TLS handshake.");
+	try {
+	    h.connect(tlsClient);
+	} catch (IOException ex) {
+	    // don't try the session again
+	    SESSION_CACHE.remove(hostname, port);
+	    throw ex;
+	}
+
+	if (cachedSession != null && tlsClient.isSessionResumed()) {
+	    LOG.debug("TLS session resumed.");
+	    try {
+		tlsAuth.notifyServerCertificate(cachedSession.getServerCertificate());
+	    } catch (IOException ex) {
+		SESSION_CACHE.remove(hostname, port);
+		h.close();
+		throw ex;
+	    }
+	} else {
+	    LOG.debug("TLS handshake performed.");
+	    TlsSession session = tlsClient.getLastSession();
+	    TlsServerCertificate serverCert = tlsAuth.getServerCertificate();
+	    if (session != null && serverCert != null) {
+		SESSION_CACHE.put(hostname, port, session, serverCert);
+	    }
+	}
+
+	return new TlsConnection(hostname, port, tlsClient, h, tlsAuth.getServerCertificate());
+    }
+
     public String getAcceptsHeader() {
 	return "text/xml, */*;q=0.8";
     }
@@ -290,4 +366,38 @@ public class ResourceContextLoader {
 	return true;
     }
 
+
+
+    /**
+     * Open TLS connection which can be used for further requests to the same server.
+     */
+    private static class TlsConnection {
+
+	private final String hostname;
+	private final int port;
+	private final ClientCertTlsClient tlsClient;
+	private final TlsClientProtocol tlsProto;
+	private final TlsServerCertificate serverCert;
+	private final StreamHttpClientConnection httpConn;
+
+	TlsConnection(String hostname, int port, ClientCertTlsClient tlsClient, TlsClientProtocol tlsProto,
+		TlsServerCertificate serverCert) {
+	    this.hostname = hostname;
+	    this.port = port;
+	    this.tlsClient = tlsClient;
+	    this.tlsProto = tlsProto;
+	    this.serverCert = serverCert;
+	    this.httpConn = new StreamHttpClientConnection(tlsProto.getInputStream(), tlsProto.getOutputStream());
+	}
+
+	boolean isConnectedTo(String hostname, int port) {
+	    return this.hostname.equalsIgnoreCase(hostname) && this.port == port && ! tlsProto.isClosed();
+	}
+
+	void close() throws IOException {
+	    tlsProto.close();
+	}
+
+    }
+
 }
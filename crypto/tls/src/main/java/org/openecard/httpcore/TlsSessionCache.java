@@ -0,0 +1,121 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.httpcore;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import org.openecard.bouncycastle.tls.TlsServerCertificate;
+import org.openecard.bouncycastle.tls.TlsSession;
+
+
+/**
+ * Cache of resumable TLS sessions indexed by host and port.
+ * Besides the session, the server certificate received in the full handshake is saved, as the server does not send
+ * its certificate again when the session is resumed.
+ *
+ * @author Tobias Wich
+ */
+class TlsSessionCache {
+
+    private static final int MAX_ENTRIES = 32;
+    private static final long MAX_AGE = 5 * 60 * 1000;
+
+    private final Map<String, Entry> sessions = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+	@Override
+	protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+	    return size() > MAX_ENTRIES;
+	}
+    };
+
+    /**
+     * Gets the session of the last connection to the given server.
+     *
+     * @param host Hostname of the server.
+     * @param port Port of the server.
+     * @return The cache entry, or {@code null} if there is no session or it is too old to be resumed.
+     */
+    @Nullable
+    public synchronized Entry get(@Nonnull String host, int port) {
+	String key = makeKey(host, port);
+	Entry e = sessions.get(key);
+	if (e != null && System.currentTimeMillis() - e.created > MAX_AGE) {
+	    sessions.remove(key);
+	    e = null;
+	}
+	return e;
+    }
+
+    /**
+     * Saves the session established with the given server.
+     *
+     * @param host Hostname of the server.
+     * @param port Port of the server.
+     * @param session Resumable session of the connection.
+     * @param serverCert Certificate sent by the server in the handshake establishing the session.
+     */
+    public synchronized void put(@Nonnull String host, int port, @Nonnull TlsSession session,
+	    @Nonnull TlsServerCertificate serverCert) {
+	sessions.put(makeKey(host, port), new Entry(session, serverCert));
+    }
+
+    /**
+     * Removes the session of the given server, so that the next connection performs a full handshake.
+     *
+     * @param host Hostname of the server.
+     * @param port Port of the server.
+     */
+    public synchronized void remove(@Nonnull String host, int port) {
+	sessions.remove(makeKey(host, port));
+    }
+
+    private static String makeKey(String host, int port) {
+	return host.toLowerCase(Locale.ROOT) + ":" + port;
+    }
+
+
+    public static class Entry {
+
+	private final TlsSession session;
+	private final TlsServerCertificate serverCert;
+	private final long created;
+
+	private Entry(TlsSession session, TlsServerCertificate serverCert) {
+	    this.session = session;
+	    this.serverCert = serverCert;
+	    this.created = System.currentTimeMillis();
+	}
+
+	public TlsSession getSession() {
+	    return session;
+	}
+
+	public TlsServerCertificate getServerCertificate() {
+	    return serverCert;
+	}
+
+    }
+
+}
@@ -24,6 +24,8 @@ package org.openecard.common.ifd;
 
 import iso.std.iso_iec._24727.tech.schema.EstablishChannel;
 import iso.std.iso_iec._24727.tech.schema.EstablishChannelResponse;
+import javax.annotation.Nullable;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.interfaces.Dispatcher;
 import org.openecard.gui.UserConsent;
 
@@ -45,6 +47,21 @@ public interface Protocol {
      */
     EstablishChannelResponse establish(EstablishChannel req, Dispatcher dispatcher, UserConsent gui);
 
+    /**
+     * Perform protocol and thereby set up a secure messaging channel.
+     * The default implementation ignores the capabilities of the card.
+     *
+     * @param req Request data needed for the protocol
+     * @param dispatcher Dispatcher containing IFD instance to perform commands on the terminal
+     * @param gui UserConsent GUI which can be used to get secrets (e.g. PIN) from the user
+     * @param caps Capabilities of the card, or {@code null} if they are unknown
+     * @return Protocol response data
+     */
+    default EstablishChannelResponse establish(EstablishChannel req, Dispatcher dispatcher, UserConsent gui,
+	    @Nullable CardCapabilities caps) {
+	return establish(req, dispatcher, gui);
+    }
+
     /**
      * Filter function to perform secure messaging after the protocol has been established.<br>
      * Apply secure messaging encryption to APDU.
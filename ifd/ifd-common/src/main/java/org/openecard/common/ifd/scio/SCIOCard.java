@@ -133,4 +133,15 @@ public interface SCIOCard {
      */
     void disconnect(boolean reset) throws SCIOException;
 
+    /**
+     * Returns whether all operations on this card and its channels must be performed by the same thread.
+     * This is the case for backends binding transactions or handles to the calling thread, such as PC/SC. Backends
+     * without this restriction can be used directly by any thread, as long as the calls are not interleaved.
+     *
+     * @return {@code true} if the card must be used from a single thread, {@code false} otherwise.
+     */
+    default boolean isThreadConfined() {
+	return true;
+    }
+
 }
@@ -35,13 +35,16 @@ import iso.std.iso_iec._24727.tech.schema.ListIFDsResponse;
 import iso.std.iso_iec._24727.tech.schema.SlotStatusType;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.WSHelper;
 import org.openecard.common.WSHelper.WSException;
+import org.openecard.common.apdu.utils.CardFileCache;
 import org.openecard.common.event.EventType;
 import org.openecard.common.interfaces.Environment;
 import org.openecard.common.event.IfdEventObject;
@@ -68,6 +71,8 @@ public class IfdEventRunner implements Runnable {
 
     private final List<IFDStatusType> initialState;
     private final List<IFDStatusType> currentState;
+    // capabilities of the connected terminals, only accessed by the event thread
+    private final Map<String, IFDCapabilitiesType> capabilities;
 
     private boolean stopped;
 
@@ -79,6 +84,7 @@ public class IfdEventRunner implements Runnable {
 	this.ctxHandle = ctxHandle;
 	this.initialState = new ArrayList<>(ifdStatus());
 	this.currentState = new ArrayList<>();
+	this.capabilities = new HashMap<>();
 	this.stopped = false;
     }
 
@@ -232,7 +238,7 @@ public class IfdEventRunner implements Runnable {
 		    LOG.debug("Found a card insert event ({}).", ifdName);
 		    LOG.info("Card with ATR={} inserted.", ByteUtils.toHexString(slot.getATRorATS()));
 		    ConnectionHandleType handle = makeUnknownCardHandle(ifdName, newSlot, slotCapabilities);
-		    env.getEventDispatcher().notify(EventType.CARD_INSERTED, new IfdEventObject(handle));
+		    notifyCardEvent(EventType.CARD_INSERTED, new IfdEventObject(handle));
 
 		} else if (! terminalAdded && ! cardPresent && cardWasPresent) {
 		    // this makes only sense when the terminal was already there
@@ -249,7 +255,7 @@ public class IfdEventRunner implements Runnable {
 		    }
 		    LOG.debug("Found a card removed event ({}).", ifdName);
 		    ConnectionHandleType h = makeConnectionHandle(ifdName, idx, slotCapabilities);
-		    env.getEventDispatcher().notify(EventType.CARD_REMOVED, new IfdEventObject(h));
+		    notifyCardEvent(EventType.CARD_REMOVED, new IfdEventObject(h));
 		}
 	    }
 
@@ -264,22 +270,39 @@ public class IfdEventRunner implements Runnable {
 			it.remove();
 		    }
 		}
+		capabilities.remove(ifdName);
 		ConnectionHandleType h = makeConnectionHandle(ifdName, null, slotCapabilities);
 		LOG.debug("Found a terminal removed event ({}).", ifdName);
-		env.getEventDispatcher().notify(EventType.TERMINAL_REMOVED, new IfdEventObject(h));
+		notifyCardEvent(EventType.TERMINAL_REMOVED, new IfdEventObject(h));
 	    }
 	}
     }
 
+    private void notifyCardEvent(@Nonnull EventType type, @Nonnull IfdEventObject evt) {
+	// the events are delivered asynchronously, so the cached files must be discarded before a new card can be used
+	CardFileCache.getInstance().signalEvent(type, evt);
+	env.getEventDispatcher().notify(type, evt);
+    }
+
     @Nullable
     private IFDCapabilitiesType getCapabilities(String ifdName) {
+	IFDCapabilitiesType cached = capabilities.get(ifdName);
+	if (cached != null) {
+	    return cached;
+	}
+
 	try {
 	    GetIFDCapabilities req = new GetIFDCapabilities();
 	    req.setContextHandle(ctxHandle);
 	    req.setIFDName(ifdName);
 	    GetIFDCapabilitiesResponse res = (GetIFDCapabilitiesResponse) env.getDispatcher().safeDeliver(req);
 	    WSHelper.checkResult(res);
-	    return res.getIFDCapabilities();
+	    IFDCapabilitiesType result = res.getIFDCapabilities();
+	    // errors are not cached, so the request is repeated with the next event of the terminal
+	    if (result != null) {
+		capabilities.put(ifdName, result);
+	    }
+	    return result;
 	} catch (WSException ex) {
 	    LOG.warn("Error while requesting infos from terminal {}.", ifdName);
 	}
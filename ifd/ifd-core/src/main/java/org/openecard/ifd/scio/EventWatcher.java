@@ -27,7 +27,8 @@ import iso.std.iso_iec._24727.tech.schema.IFDStatusType;
 import iso.std.iso_iec._24727.tech.schema.SlotStatusType;
 import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.concurrent.Callable;
 import javax.annotation.Nonnull;
@@ -55,7 +56,8 @@ public class EventWatcher implements Callable<List<IFDStatusType>> {
     private final ChannelHandleType callback;
     private final TerminalWatcher watcher;
 
-    private ArrayList<IFDStatusType> currentState;
+    // terminal name -> state, in the order the terminals appeared
+    private LinkedHashMap<String, IFDStatusType> currentState;
     private List<IFDStatusType> expectedState;
 
     public EventWatcher(@Nonnull ChannelManager cm, long timeout, @Nullable ChannelHandleType callback)
@@ -69,7 +71,10 @@ public class EventWatcher implements Callable<List<IFDStatusType>> {
     @Nonnull
     public List<IFDStatusType> start() throws SCIOException {
 	List<TerminalState> initialState = watcher.start();
-	currentState = convert(initialState);
+	currentState = new LinkedHashMap<>();
+	for (IFDStatusType next : convert(initialState)) {
+	    currentState.put(next.getIFDName(), next);
+	}
 	// convert again to be safe from manipulation from the outside
 	return convert(initialState);
     }
@@ -117,36 +122,31 @@ public class EventWatcher implements Callable<List<IFDStatusType>> {
     private void updateState(TerminalWatcher.StateChangeEvent event) {
 	String name = event.getTerminal();
 	if (event.getState() == TerminalWatcher.EventType.TERMINAL_ADDED) {
-	    currentState.add(createEmptyState(name));
+	    currentState.put(name, createEmptyState(name));
 	} else {
-	    Iterator<IFDStatusType> it = currentState.iterator();
-	    while (it.hasNext()) {
-		IFDStatusType next = it.next();
+	    IFDStatusType next = currentState.get(name);
+	    if (next != null) {
 		SlotStatusType slot = next.getSlotStatus().get(0);
-		if (next.getIFDName().equals(name)) {
-		    switch (event.getState()) {
-			case CARD_INSERTED:
-			    try {
-				SingleThreadChannel ch = cm.openMasterChannel(name);
-				slot.setCardAvailable(true);
-				slot.setATRorATS(ch.getChannel().getCard().getATR().getBytes());
-			    } catch (NoSuchTerminal | SCIOException ex) {
-				LOG.error("Failed to open master channel for terminal '{}'.", name, ex);
-				slot.setCardAvailable(false);
-				cm.closeMasterChannel(name);
-			    }
-			    break;
-			case CARD_REMOVED:
-			    cm.closeMasterChannel(name);
+		switch (event.getState()) {
+		    case CARD_INSERTED:
+			try {
+			    SingleThreadChannel ch = cm.openMasterChannel(name);
+			    slot.setCardAvailable(true);
+			    slot.setATRorATS(ch.getChannel().getCard().getATR().getBytes());
+			} catch (NoSuchTerminal | SCIOException ex) {
+			    LOG.error("Failed to open master channel for terminal '{}'.", name, ex);
 			    slot.setCardAvailable(false);
-			    break;
-			case TERMINAL_REMOVED:
-			    slot.setCardAvailable(false); // just in case
-			    next.setConnected(false);
-			    break;
-		    }
-		    // no need to look any further
-		    break;
+			    cm.closeMasterChannel(name);
+			}
+			break;
+		    case CARD_REMOVED:
+			cm.closeMasterChannel(name);
+			slot.setCardAvailable(false);
+			break;
+		    case TERMINAL_REMOVED:
+			slot.setCardAvailable(false); // just in case
+			next.setConnected(false);
+			break;
 		}
 	    }
 	}
@@ -163,36 +163,31 @@ public class EventWatcher implements Callable<List<IFDStatusType>> {
      */
     @Nonnull
     public List<IFDStatusType> compare(@Nonnull List<IFDStatusType> expectedStatus) {
-	ArrayList<IFDStatusType> remaining = new ArrayList<>(currentState);
+	LinkedHashMap<String, IFDStatusType> remaining = new LinkedHashMap<>(currentState);
+	ArrayList<IFDStatusType> removedTerminals = new ArrayList<>();
 
 	for (IFDStatusType nextExpect : expectedStatus) {
-	    Iterator<IFDStatusType> it = remaining.iterator();
-	    boolean matchFound = false;
 	    // see if the current state contains the terminal that is expected to be present
-	    while (it.hasNext()) {
-		IFDStatusType nextRemain = it.next();
-		// found matching terminal
-		if (nextRemain.getIFDName().equals(nextExpect.getIFDName())) {
-		    matchFound = true;
-		    // see if there is any difference between the two
-		    if (isStateEqual(nextRemain, nextExpect)) {
-			// no difference, so delete this entry
-			it.remove();
-		    }
-		    break;
+	    IFDStatusType nextRemain = remaining.get(nextExpect.getIFDName());
+	    if (nextRemain != null) {
+		// see if there is any difference between the two
+		if (isStateEqual(nextRemain, nextExpect)) {
+		    // no difference, so delete this entry
+		    remaining.remove(nextExpect.getIFDName());
 		}
-	    }
-	    // if remaining does not contain the expected status, the terminal was removed
-	    if (! matchFound) {
+	    } else if (! currentState.containsKey(nextExpect.getIFDName())) {
+		// if the current state does not contain the expected status, the terminal was removed
 		IFDStatusType removed = clone(nextExpect);
 		removed.setIFDName(nextExpect.getIFDName());
 		removed.setConnected(false);
-		remaining.add(removed);
+		removedTerminals.add(removed);
 	    }
 	}
 
 	// clone entries, to prevent altering the state of this object from the outside
-	return clone(remaining);
+	List<IFDStatusType> result = clone(remaining.values());
+	result.addAll(removedTerminals);
+	return result;
     }
 
 
@@ -218,7 +213,7 @@ public class EventWatcher implements Callable<List<IFDStatusType>> {
     }
 
     @Nonnull
-    private static List<IFDStatusType> clone(@Nonnull List<IFDStatusType> orig) {
+    private static List<IFDStatusType> clone(@Nonnull Collection<IFDStatusType> orig) {
 	ArrayList<IFDStatusType> result = new ArrayList<>(orig.size());
 	for (IFDStatusType next : orig) {
 	    result.add(clone(next));
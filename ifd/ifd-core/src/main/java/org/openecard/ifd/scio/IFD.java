@@ -92,6 +92,7 @@ import oasis.names.tc.dss._1_0.core.schema.Result;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.ThreadTerminateException;
 import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.event.EventType;
 import org.openecard.common.event.IfdEventObject;
 import org.openecard.common.ifd.PACECapabilities;
@@ -1042,22 +1043,26 @@ public class IFD implements org.openecard.ws.IFD {
 		    }
 		    result = WSHelper.makeResultOK();
 		} catch (TransmitException ex) {
+		    // the response of the failed command is the last output
 		    rapdus.add(ex.getResponseAPDU());
 		    result = ex.getResult();
 		} catch (SCIOException ex) {
-		    String msg = "Error during transmit.";
+		    // no response is available for the failed command, so the outputs end with the previous command
+		    String msg = String.format("Error during transmit of command at index %d.", rapdus.size());
 		    LOG.warn(msg, ex);
 		    result = WSHelper.makeResultUnknownIFDError(msg);
 		} catch (IllegalStateException ex) {
-		    String msg = "Card removed during transmit.";
+		    String msg = String.format("Card removed during transmit of command at index %d.",
+			    rapdus.size());
 		    LOG.warn(msg, ex);
 		    result = WSHelper.makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg);
 		} catch (IllegalArgumentException ex) {
-		    String msg = "Given command contains a MANAGE CHANNEL APDU.";
+		    String msg = String.format("Command at index %d contains a MANAGE CHANNEL APDU.", rapdus.size());
 		    LOG.error(msg, ex);
 		    result = WSHelper.makeResultError(ECardConstants.Minor.IFD.INVALID_SLOT_HANDLE, msg);
 		} catch (InterruptedException ex) {
-		    String msg = String.format("Cancellation by user.");
+		    String msg = String.format("Cancellation by user during transmit of command at index %d.",
+			    rapdus.size());
 		    LOG.error(msg, ex);
 		    result = WSHelper.makeResultError(ECardConstants.Minor.IFD.CANCELLATION_BY_USER, msg);
 		}
@@ -1198,7 +1203,10 @@ public class IFD implements org.openecard.ws.IFD {
 	    if (this.protocolFactories.contains(protocol)) {
 		ProtocolFactory factory = this.protocolFactories.get(protocol);
 		Protocol protoImpl = factory.createInstance();
-		EstablishChannelResponse response = protoImpl.establish(parameters, env.getDispatcher(), env.getGUI());
+		byte[] atr = channel.getChannel().getCard().getATR().getBytes();
+		CardCapabilities caps = CardCapabilities.fromATR(atr);
+		EstablishChannelResponse response = protoImpl.establish(parameters, env.getDispatcher(), env.getGUI(),
+			caps);
 		// register protocol instance for secure messaging when protocol was processed successful
 		if (response.getResult().getResultMajor().equals(ECardConstants.Major.OK)) {
 		    channel.addSecureMessaging(protoImpl);
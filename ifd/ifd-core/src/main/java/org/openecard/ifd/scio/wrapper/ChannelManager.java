@@ -22,11 +22,9 @@
 
 package org.openecard.ifd.scio.wrapper;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.annotation.Nonnull;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.ifd.scio.NoSuchTerminal;
@@ -34,6 +32,7 @@ import org.openecard.common.ifd.scio.SCIOException;
 import org.openecard.common.ifd.scio.SCIOTerminal;
 import org.openecard.common.ifd.scio.SCIOTerminals;
 import org.openecard.common.ifd.scio.TerminalFactory;
+import org.openecard.common.util.ByteArrayWrapper;
 import org.openecard.common.util.ByteUtils;
 import org.openecard.common.util.Pair;
 import org.openecard.common.util.ValueGenerators;
@@ -43,6 +42,9 @@ import org.slf4j.LoggerFactory;
 
 
 /**
+ * Registry of the channels opened to the cards in the terminals.
+ * Channel lookups do not lock at all. Opening and closing channels is serialized per terminal, so that establishing
+ * or shutting down a connection in one terminal does not stall the operations on other terminals.
  *
  * @author Tobias Wich
  * @author Benedikt Biallowons
@@ -53,15 +55,15 @@ public class ChannelManager {
 
     private final TerminalFactory termFact;
 
-    private final HashMap<String, SingleThreadChannel> baseChannels;
-    private final TreeMap<byte[], SingleThreadChannel> handledChannels;
-    private final HashMap<String, Set<byte[]>> ifdNameToHandles;
+    private final ConcurrentHashMap<String, TerminalChannels> baseChannels;
+    private final ConcurrentHashMap<ByteArrayWrapper, SlaveChannel> handledChannels;
+    private final ConcurrentHashMap<String, Object> terminalLocks;
 
     public ChannelManager(TerminalFactory termFact) throws IFDException {
 	this.termFact = termFact;
-	this.baseChannels = new HashMap<>();
-	this.handledChannels = new TreeMap<>(new ByteArrayComparator());
-	this.ifdNameToHandles = new HashMap<>();
+	this.baseChannels = new ConcurrentHashMap<>();
+	this.handledChannels = new ConcurrentHashMap<>();
+	this.terminalLocks = new ConcurrentHashMap<>();
     }
 
     public static byte[] createHandle(int size) {
@@ -87,84 +89,140 @@ public class ChannelManager {
     public boolean powerDownDevices() {
 	return getTerminals().powerDownDevices();
     }
-    public synchronized SingleThreadChannel openMasterChannel(@Nonnull String ifdName) throws NoSuchTerminal,
+
+    private Object getTerminalLock(String ifdName) {
+	return terminalLocks.computeIfAbsent(ifdName, k -> new Object());
+    }
+
+    public SingleThreadChannel openMasterChannel(@Nonnull String ifdName) throws NoSuchTerminal, SCIOException {
+	synchronized (getTerminalLock(ifdName)) {
+	    TerminalChannels channels = baseChannels.get(ifdName);
+	    if (channels != null) {
+		LOG.warn("Terminal '{}' is already connected.", ifdName);
+		return channels.master;
+	    }
+	    SCIOTerminal t = getTerminals().getTerminal(ifdName);
+	    SingleThreadChannel ch = new SingleThreadChannel(t);
+	    baseChannels.put(ifdName, new TerminalChannels(ch));
+	    return ch;
+	}
+    }
+
+    public Pair<byte[], SingleThreadChannel> openSlaveChannel(@Nonnull String ifdName) throws NoSuchTerminal,
 	    SCIOException {
-	if (baseChannels.containsKey(ifdName)) {
-	    LOG.warn("Terminal '{}' is already connected.", ifdName);
-	    return baseChannels.get(ifdName);
+	synchronized (getTerminalLock(ifdName)) {
+	    TerminalChannels channels = getTerminalChannels(ifdName);
+	    SingleThreadChannel slaveCh = new SingleThreadChannel(channels.master, true);
+	    byte[] slotHandle;
+	    ByteArrayWrapper key;
+	    do {
+		slotHandle = createSlotHandle();
+		key = new ByteArrayWrapper(slotHandle);
+	    } while (handledChannels.putIfAbsent(key, new SlaveChannel(ifdName, slaveCh)) != null);
+	    channels.slotHandles.add(key);
+	    return new Pair<>(slotHandle, slaveCh);
 	}
-	SCIOTerminal t = getTerminals().getTerminal(ifdName);
-	SingleThreadChannel ch = new SingleThreadChannel(t);
-	baseChannels.put(ifdName, ch);
-	ifdNameToHandles.put(ifdName, new TreeSet<>(new ByteArrayComparator()));
-	return ch;
     }
 
-    public synchronized Pair<byte[], SingleThreadChannel> openSlaveChannel(@Nonnull String ifdName)
-	    throws NoSuchTerminal, SCIOException {
-	SingleThreadChannel baseCh = getMasterChannel(ifdName);
-	SingleThreadChannel slaveCh = new SingleThreadChannel(baseCh, true);
-	byte[] slotHandle = createSlotHandle();
-	handledChannels.put(slotHandle, slaveCh);
-	ifdNameToHandles.get(ifdName).add(slotHandle);
-	return new Pair<>(slotHandle, slaveCh);
+    public SingleThreadChannel getMasterChannel(@Nonnull String ifdName) throws NoSuchTerminal {
+	return getTerminalChannels(ifdName).master;
     }
 
-    public synchronized SingleThreadChannel getMasterChannel(@Nonnull String ifdName) throws NoSuchTerminal {
-	SingleThreadChannel ch = baseChannels.get(ifdName);
-	if (ch == null) {
+    private TerminalChannels getTerminalChannels(String ifdName) throws NoSuchTerminal {
+	TerminalChannels channels = baseChannels.get(ifdName);
+	if (channels == null) {
 	    throw new NoSuchTerminal("No terminal with name '" + ifdName + "' available.");
 	} else {
-	    return ch;
+	    return channels;
 	}
     }
 
-    public synchronized SingleThreadChannel getSlaveChannel(@Nonnull byte[] slotHandle) throws NoSuchChannel {
-	SingleThreadChannel ch = handledChannels.get(slotHandle);
+    public SingleThreadChannel getSlaveChannel(@Nonnull byte[] slotHandle) throws NoSuchChannel {
+	SlaveChannel ch = handledChannels.get(new ByteArrayWrapper(slotHandle));
 	if (ch == null) {
 	    throw new NoSuchChannel("No channel for slot '" + ByteUtils.toHexString(slotHandle) + "' available.");
 	} else {
-	    return ch;
+	    return ch.channel;
 	}
     }
 
-    public synchronized void closeMasterChannel(String ifdName) {
+    public void closeMasterChannel(String ifdName) {
 	LOG.debug("Closing MasterChannel");
-	Set<byte[]> slotHandles = ifdNameToHandles.get(ifdName);
-	if (slotHandles != null) {
-	    // iterate over copy of the list as the closeSlaveHandle call modifies the original slotHandles list
-	    for (byte[] slotHandle : new HashSet<>(slotHandles)) {
-		try {
-		    closeSlaveChannel(slotHandle);
-		} catch (NoSuchChannel | SCIOException ex) {
-		    LOG.warn("Failed to close channel for terminal '{}'.", ifdName, ex);
+	synchronized (getTerminalLock(ifdName)) {
+	    TerminalChannels channels = baseChannels.remove(ifdName);
+	    if (channels == null) {
+		LOG.warn("No master channel for terminal '{}' available.", ifdName);
+		return;
+	    }
+
+	    // closeSlaveChannel holds the same lock, so the slave channels can not be closed while iterating
+	    for (ByteArrayWrapper slotHandle : channels.slotHandles) {
+		SlaveChannel ch = handledChannels.remove(slotHandle);
+		if (ch != null) {
+		    try {
+			ch.channel.shutdown();
+		    } catch (SCIOException ex) {
+			LOG.warn("Failed to close channel for terminal '{}'.", ifdName, ex);
+		    }
 		}
 	    }
-	    ifdNameToHandles.remove(ifdName);
-	}
+	    channels.slotHandles.clear();
 
-	SingleThreadChannel ch = baseChannels.remove(ifdName);
-	if (ch == null) {
-	    LOG.warn("No master channel for terminal '{}' available.", ifdName);
-	} else {
 	    try {
-		ch.shutdown();
+		channels.master.shutdown();
 	    } catch (SCIOException ex) {
 		LOG.warn("Failed to shut down master channel for terminal '{}'.", ifdName);
 	    }
 	}
     }
 
-    public synchronized void closeSlaveChannel(@Nonnull byte[] slotHandle) throws NoSuchChannel, SCIOException {
+    public void closeSlaveChannel(@Nonnull byte[] slotHandle) throws NoSuchChannel, SCIOException {
 	LOG.debug("Closing SlaveChannel");
-	SingleThreadChannel ch = handledChannels.remove(slotHandle);
-	if (ch == null) {
-	    throw new NoSuchChannel("No channel for slot '" + ByteUtils.toHexString(slotHandle) + "' available.");
-	} else {
-	    String ifdName = ch.getChannel().getCard().getTerminal().getName();
-	    ifdNameToHandles.get(ifdName).remove(slotHandle);
-	    ch.shutdown();
+	ByteArrayWrapper key = new ByteArrayWrapper(slotHandle);
+	SlaveChannel ch = handledChannels.get(key);
+	if (ch != null) {
+	    // same lock as for the master channel, so the channel is not closed twice by closeMasterChannel
+	    synchronized (getTerminalLock(ch.ifdName)) {
+		// only the thread removing the entry closes the channel
+		if (handledChannels.remove(key, ch)) {
+		    TerminalChannels channels = baseChannels.get(ch.ifdName);
+		    if (channels != null) {
+			channels.slotHandles.remove(key);
+		    }
+		    ch.channel.shutdown();
+		    return;
+		}
+	    }
 	}
+	throw new NoSuchChannel("No channel for slot '" + ByteUtils.toHexString(slotHandle) + "' available.");
+    }
+
+
+    /**
+     * Master channel of a terminal and the handles of the slave channels derived from it.
+     * The set of handles is guarded by the lock of the terminal.
+     */
+    private static class TerminalChannels {
+
+	private final SingleThreadChannel master;
+	private final Set<ByteArrayWrapper> slotHandles = new HashSet<>();
+
+	TerminalChannels(SingleThreadChannel master) {
+	    this.master = master;
+	}
+
+    }
+
+    private static class SlaveChannel {
+
+	private final String ifdName;
+	private final SingleThreadChannel channel;
+
+	SlaveChannel(String ifdName, SingleThreadChannel channel) {
+	    this.ifdName = ifdName;
+	    this.channel = channel;
+	}
+
     }
 
 }
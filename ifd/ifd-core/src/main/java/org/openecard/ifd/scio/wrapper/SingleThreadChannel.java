@@ -22,7 +22,9 @@
 
 package org.openecard.ifd.scio.wrapper;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -49,6 +51,11 @@ import org.slf4j.LoggerFactory;
  * Implementation of a channel executing all commands in the same thread.
  * Executing commands in the same thread has the effect, that transactions are not broken when the IFD is called from
  * different threads which is the case almost every time.
+ * <p>
+ * When the card backend does not bind its resources to a thread (see {@link SCIOCard#isThreadConfined()}), the
+ * commands are executed directly in the calling thread instead. The calls are then serialized by a lock of the
+ * channel, which saves the two thread switches per command.
+ * </p>
  *
  * @author Tobias Wich
  */
@@ -57,9 +64,20 @@ public class SingleThreadChannel implements IfdChannel {
     private static final Logger LOG = LoggerFactory.getLogger(SingleThreadChannel.class);
 
     private static final AtomicInteger THREAD_NUM = new AtomicInteger(1);
+    private static final SCIOProtocol[] PROTOCOL_ORDER = {
+	SCIOProtocol.T1, SCIOProtocol.TCL, SCIOProtocol.T0, SCIOProtocol.ANY
+    };
+    /**
+     * Protocol which worked for the last card in each terminal.
+     * Failed connect attempts may reset the card in some readers, so the protocol is only negotiated again when the
+     * card changes.
+     */
+    private static final ConcurrentHashMap<String, NegotiatedProtocol> PROTOCOL_CACHE = new ConcurrentHashMap<>();
 
+    // null if the commands are executed in the calling thread
     private final ExecutorService exec;
-    private SCIOChannel channel;
+    private final Object directLock = new Object();
+    private volatile SCIOChannel channel;
     /**
      * Currently active secure messaging protocol.
      */
@@ -73,10 +91,9 @@ public class SingleThreadChannel implements IfdChannel {
      * @throws SCIOException Thrown in case the channel could not be established.
      */
     public SingleThreadChannel(SCIOTerminal term) throws SCIOException {
-	this.exec = createExecutor();
-
 	SCIOCard card = connectCard(term);
 	this.channel = card.getBasicChannel();
+	this.exec = createExecutor(card);
     }
 
     /**
@@ -88,8 +105,6 @@ public class SingleThreadChannel implements IfdChannel {
      */
     public SingleThreadChannel(SingleThreadChannel master, boolean isBasic)
 	    throws SCIOException {
-	this.exec = createExecutor();
-
 	SCIOCard baseCard = master.channel.getCard();
 	// connect with protocol that worked for the base card
 	SCIOCard card = baseCard.getTerminal().connect(baseCard.getProtocol());
@@ -98,9 +113,13 @@ public class SingleThreadChannel implements IfdChannel {
 	} else {
 	    this.channel = card.openLogicalChannel();
 	}
+	this.exec = createExecutor(card);
     }
 
-    private ExecutorService createExecutor() {
+    private ExecutorService createExecutor(SCIOCard card) {
+	if (! card.isThreadConfined()) {
+	    return null;
+	}
 	return Executors.newSingleThreadExecutor((Runnable r) -> {
 	    int num = SingleThreadChannel.this.channel.getChannelNumber();
 	    String termName = SingleThreadChannel.this.channel.getCard().getTerminal().getName();
@@ -113,31 +132,57 @@ public class SingleThreadChannel implements IfdChannel {
 
     @Override
     public void shutdown() throws SCIOException {
-	exec.shutdown();
+	if (exec != null) {
+	    exec.shutdown();
+	}
 	channel.close();
     }
 
     private static SCIOCard connectCard(SCIOTerminal term) throws SCIOException {
-	SCIOCard card;
-	try {
-	    card = term.connect(SCIOProtocol.T1);
-	} catch (SCIOException e1) {
+	String termName = term.getName();
+	NegotiatedProtocol cached = PROTOCOL_CACHE.get(termName);
+	SCIOProtocol failedProtocol = null;
+	SCIOException lastError = null;
+	if (cached != null) {
 	    try {
-		card = term.connect(SCIOProtocol.TCL);
-	    } catch (SCIOException e2) {
-		try {
-		    card = term.connect(SCIOProtocol.T0);
-		} catch (SCIOException e3) {
-		    try {
-			card = term.connect(SCIOProtocol.ANY);
-		    } catch (SCIOException ex) {
-			throw new SCIOException("Reader refused to connect card with any protocol.", ex.getCode());
-		    }
+		SCIOCard card = term.connect(cached.protocol);
+		byte[] atr = card.getATR().getBytes();
+		if (Arrays.equals(cached.atr, atr)) {
+		    LOG.info("Card connected with previously negotiated protocol {}.", card.getProtocol());
+		    return card;
+		} else if (cached.protocol == PROTOCOL_ORDER[0]) {
+		    // the preferred protocol would have been chosen for the new card anyway
+		    PROTOCOL_CACHE.put(termName, new NegotiatedProtocol(atr, cached.protocol));
+		    LOG.info("Card connected with protocol {}.", card.getProtocol());
+		    return card;
+		} else {
+		    // a different card which possibly supports a better protocol
+		    LOG.debug("Card in terminal '{}' changed, negotiating protocol again.", termName);
+		    card.disconnect(false);
 		}
+	    } catch (SCIOException ex) {
+		LOG.debug("Failed to connect card with previously negotiated protocol {}.", cached.protocol);
+		// no need to try the same protocol again
+		failedProtocol = cached.protocol;
+		lastError = ex;
+	    }
+	    PROTOCOL_CACHE.remove(termName, cached);
+	}
+
+	for (SCIOProtocol protocol : PROTOCOL_ORDER) {
+	    if (protocol == failedProtocol) {
+		continue;
+	    }
+	    try {
+		SCIOCard card = term.connect(protocol);
+		PROTOCOL_CACHE.put(termName, new NegotiatedProtocol(card.getATR().getBytes(), protocol));
+		LOG.info("Card connected with protocol {}.", card.getProtocol());
+		return card;
+	    } catch (SCIOException ex) {
+		lastError = ex;
 	    }
 	}
-	LOG.info("Card connected with protocol {}.", card.getProtocol());
-	return card;
+	throw new SCIOException("Reader refused to connect card with any protocol.", lastError.getCode());
     }
 
     @Override
@@ -186,29 +231,7 @@ public class SingleThreadChannel implements IfdChannel {
     @Nonnull
     private CardResponseAPDU transmit(final @Nonnull byte[] command) throws SCIOException, IllegalStateException, InterruptedException {
 	// send command
-	Future<CardResponseAPDU> result = exec.submit(() -> channel.transmit(command));
-	// return result or evaluate errors
-	try {
-	    return result.get();
-	} catch (ExecutionException ex) {
-	    // check out the real cause of the error
-	    Throwable cause = ex.getCause();
-	    if (cause instanceof SCIOException) {
-		throw (SCIOException) cause;
-	    } else if (cause instanceof IllegalStateException) {
-		throw (IllegalStateException) cause;
-	    } else if (cause instanceof IllegalArgumentException) {
-		throw (IllegalArgumentException) cause;
-	    } else if (cause instanceof NullPointerException) {
-		throw (NullPointerException) cause;
-	    } else {
-		String msg = "Unknown error during APDU submission.";
-		throw new SCIOException(msg, SCIOErrorCode.SCARD_F_UNKNOWN_ERROR, cause);
-	    }
-	} catch (InterruptedException ex) {
-	    result.cancel(true);
-	    throw new InterruptedException("Interruption during transmit.");
-	}
+	return execute(() -> channel.transmit(command), "APDU submission", "transmit");
     }
 
     /**
@@ -243,18 +266,27 @@ public class SingleThreadChannel implements IfdChannel {
     @Override
     public byte[] transmit(@Nonnull byte[] input, @Nonnull List<byte[]> responses) throws TransmitException,
 	    SCIOException, IllegalStateException, InterruptedException {
+	boolean debug = LOG.isDebugEnabled();
 	byte[] inputAPDU = input;
 	if (isSM()) {
-	    LOG.debug("Apply secure messaging to APDU: {}", ByteUtils.toHexString(inputAPDU, false));
+	    if (debug) {
+		LOG.debug("Apply secure messaging to APDU: {}", ByteUtils.toHexString(inputAPDU, false));
+	    }
 	    inputAPDU = smProtocol.applySM(inputAPDU);
 	}
-	LOG.debug("Send APDU: {}", ByteUtils.toHexString(inputAPDU, false));
+	if (debug) {
+	    LOG.debug("Send APDU: {}", ByteUtils.toHexString(inputAPDU, false));
+	}
 	CardResponseAPDU rapdu = transmit(inputAPDU);
 	byte[] result = rapdu.toByteArray();
-	LOG.debug("Receive APDU: {}", ByteUtils.toHexString(result, false));
+	if (debug) {
+	    LOG.debug("Receive APDU: {}", ByteUtils.toHexString(result, false));
+	}
 	if (isSM()) {
 	    result = smProtocol.removeSM(result);
-	    LOG.debug("Remove secure messaging from APDU: {}", ByteUtils.toHexString(result, false));
+	    if (debug) {
+		LOG.debug("Remove secure messaging from APDU: {}", ByteUtils.toHexString(result, false));
+	    }
 	}
 	// get status word
 	byte[] sw = new byte[2];
@@ -285,27 +317,8 @@ public class SingleThreadChannel implements IfdChannel {
     public byte[] transmitControlCommand(final int controlCode, final @Nonnull byte[] command) throws SCIOException,
 	    IllegalStateException, NullPointerException, InterruptedException {
 	// send command
-	Future<byte[]> result = exec.submit(() -> channel.getCard().transmitControlCommand(controlCode, command));
-	// return result or evaluate errors
-	try {
-	    return result.get();
-	} catch (ExecutionException ex) {
-	    // check out the real cause of the error
-	    Throwable cause = ex.getCause();
-	    if (cause instanceof SCIOException) {
-		throw (SCIOException) cause;
-	    } else if (cause instanceof IllegalStateException) {
-		throw (IllegalStateException) cause;
-	    } else if (cause instanceof NullPointerException) {
-		throw (NullPointerException) cause;
-	    } else {
-		String msg = "Unknown error during control command submission.";
-		throw new SCIOException(msg, SCIOErrorCode.SCARD_F_UNKNOWN_ERROR, cause);
-	    }
-	} catch (InterruptedException ex) {
-	    result.cancel(true);
-	    throw new InterruptedException("Interruption during transmit control command.");
-	}
+	return execute(() -> channel.getCard().transmitControlCommand(controlCode, command),
+		"control command submission", "transmit control command");
     }
 
     @Override
@@ -320,7 +333,7 @@ public class SingleThreadChannel implements IfdChannel {
 
     private void submitTransaction(final boolean start) throws SCIOException, IllegalStateException, InterruptedException {
 	// send command
-	Future<Void> result = exec.submit(() -> {
+	execute(() -> {
 	    SCIOCard card = channel.getCard();
 	    if (start) {
 		card.beginExclusive();
@@ -328,10 +341,32 @@ public class SingleThreadChannel implements IfdChannel {
 		card.endExclusive();
 	    }
 	    return null;
-	});
+	}, String.format("transaction submission (start=%b)", start), "transaction submit");
+    }
+
+    /**
+     * Executes the given task either in the thread of this channel or directly in the calling thread.
+     *
+     * @param <T> Type of the result.
+     * @param task Task to execute.
+     * @param action Description of the action used in the error message for unknown errors.
+     * @param interruptAction Description of the action used in the error message for interruptions.
+     * @return The result of the task.
+     * @throws SCIOException Thrown if the operation failed.
+     * @throws InterruptedException Thrown if the calling thread has been interrupted while waiting for the result.
+     */
+    private <T> T execute(ChannelTask<T> task, String action, String interruptAction) throws SCIOException,
+	    InterruptedException {
+	if (exec == null) {
+	    synchronized (directLock) {
+		return task.call();
+	    }
+	}
+
+	Future<T> result = exec.submit(task::call);
 	// return result or evaluate errors
 	try {
-	    result.get();
+	    return result.get();
 	} catch (ExecutionException ex) {
 	    // check out the real cause of the error
 	    Throwable cause = ex.getCause();
@@ -339,16 +374,36 @@ public class SingleThreadChannel implements IfdChannel {
 		throw (SCIOException) cause;
 	    } else if (cause instanceof IllegalStateException) {
 		throw (IllegalStateException) cause;
+	    } else if (cause instanceof IllegalArgumentException) {
+		throw (IllegalArgumentException) cause;
+	    } else if (cause instanceof NullPointerException) {
+		throw (NullPointerException) cause;
 	    } else {
-		String msg = String.format("Unknown error during transaction submission (start=%b).", start);
+		String msg = "Unknown error during " + action + ".";
 		throw new SCIOException(msg, SCIOErrorCode.SCARD_F_UNKNOWN_ERROR, cause);
 	    }
 	} catch (InterruptedException ex) {
 	    result.cancel(true);
-	    throw new InterruptedException("Interruption during transaction submit.");
+	    throw new InterruptedException("Interruption during " + interruptAction + ".");
 	}
     }
 
+    private interface ChannelTask<T> {
+	T call() throws SCIOException;
+    }
+
+    private static class NegotiatedProtocol {
+
+	private final byte[] atr;
+	private final SCIOProtocol protocol;
+
+	NegotiatedProtocol(byte[] atr, SCIOProtocol protocol) {
+	    this.atr = atr;
+	    this.protocol = protocol;
+	}
+
+    }
+
     @Override
     public boolean isSM() {
 	boolean result = this.smProtocol != null;
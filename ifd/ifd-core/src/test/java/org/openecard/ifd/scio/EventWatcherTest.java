@@ -0,0 +1,103 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+
+package org.openecard.ifd.scio;
+
+import iso.std.iso_iec._24727.tech.schema.IFDStatusType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import org.mockito.Mockito;
+import org.openecard.common.ifd.scio.SCIOTerminals;
+import org.openecard.common.ifd.scio.TerminalFactory;
+import org.openecard.common.ifd.scio.TerminalState;
+import org.openecard.common.ifd.scio.TerminalWatcher;
+import org.openecard.common.ifd.scio.TerminalWatcher.EventType;
+import org.openecard.common.ifd.scio.TerminalWatcher.StateChangeEvent;
+import org.openecard.ifd.scio.wrapper.ChannelManager;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class EventWatcherTest {
+
+    @Test
+    public void testTerminalEvents() throws Exception {
+	Queue<StateChangeEvent> events = new ArrayDeque<>();
+	events.add(new StateChangeEvent(EventType.TERMINAL_ADDED, "Reader C"));
+	events.add(new StateChangeEvent(EventType.TERMINAL_REMOVED, "Reader B"));
+	EventWatcher watcher = createWatcher(events);
+
+	List<IFDStatusType> initial = watcher.start();
+	assertEquals(initial.size(), 2);
+	watcher.setExpectedState(initial);
+	assertTrue(watcher.compare(initial).isEmpty());
+
+	List<IFDStatusType> diff = watcher.call();
+	assertEquals(diff.size(), 2);
+	assertEquals(diff.get(0).getIFDName(), "Reader B");
+	assertFalse(diff.get(0).isConnected());
+	assertEquals(diff.get(1).getIFDName(), "Reader C");
+	assertTrue(diff.get(1).isConnected());
+	assertFalse(diff.get(1).getSlotStatus().get(0).isCardAvailable());
+
+	// returned entries must not alter the state of the watcher
+	diff.get(1).setConnected(false);
+	assertTrue(watcher.compare(initial).get(1).isConnected());
+    }
+
+    @Test
+    public void testUnknownTerminal() throws Exception {
+	EventWatcher watcher = createWatcher(new ArrayDeque<>());
+	List<IFDStatusType> initial = watcher.start();
+	IFDStatusType unknown = watcher.start().get(0);
+	unknown.setIFDName("Reader X");
+
+	List<IFDStatusType> diff = watcher.compare(Arrays.asList(initial.get(0), initial.get(1), unknown));
+	assertEquals(diff.size(), 1);
+	assertEquals(diff.get(0).getIFDName(), "Reader X");
+	assertFalse(diff.get(0).isConnected());
+    }
+
+    private static EventWatcher createWatcher(Queue<StateChangeEvent> events) throws Exception {
+	TerminalWatcher tw = Mockito.mock(TerminalWatcher.class);
+	Mockito.when(tw.start()).thenReturn(Collections.unmodifiableList(Arrays.asList(
+		new TerminalState("Reader A", true), new TerminalState("Reader B", false))));
+	Mockito.when(tw.waitForChange(Mockito.anyLong())).thenAnswer(i -> {
+	    StateChangeEvent next = events.poll();
+	    return next != null ? next : new StateChangeEvent();
+	});
+	SCIOTerminals terminals = Mockito.mock(SCIOTerminals.class);
+	Mockito.when(terminals.getWatcher()).thenReturn(tw);
+	TerminalFactory factory = Mockito.mock(TerminalFactory.class);
+	Mockito.when(factory.terminals()).thenReturn(terminals);
+	return new EventWatcher(new ChannelManager(factory), 1000, null);
+    }
+
+}
@@ -0,0 +1,179 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.ifd.scio.wrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.mockito.Mockito;
+import org.openecard.common.ifd.scio.NoSuchTerminal;
+import org.openecard.common.ifd.scio.SCIOATR;
+import org.openecard.common.ifd.scio.SCIOCard;
+import org.openecard.common.ifd.scio.SCIOChannel;
+import org.openecard.common.ifd.scio.SCIOException;
+import org.openecard.common.ifd.scio.SCIOProtocol;
+import org.openecard.common.ifd.scio.SCIOTerminal;
+import org.openecard.common.ifd.scio.SCIOTerminals;
+import org.openecard.common.ifd.scio.TerminalFactory;
+import org.openecard.common.util.Pair;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class ChannelManagerTest {
+
+    private static final int NUM_TERMINALS = 4;
+    private static final int NUM_ROUNDS = 50;
+
+    @Test(timeOut = 60000)
+    public void testConcurrentTerminals() throws Exception {
+	SCIOTerminals terminals = Mockito.mock(SCIOTerminals.class);
+	for (int i = 0; i < NUM_TERMINALS; i++) {
+	    String name = "Reader " + i;
+	    SCIOTerminal t = mockTerminal(name, null);
+	    Mockito.when(terminals.getTerminal(name)).thenReturn(t);
+	}
+	final ChannelManager manager = new ChannelManager(mockFactory(terminals));
+
+	ExecutorService exec = Executors.newFixedThreadPool(NUM_TERMINALS * 2);
+	try {
+	    List<Future<Void>> results = new ArrayList<>();
+	    for (int i = 0; i < NUM_TERMINALS * 2; i++) {
+		// two threads per terminal compete for the same master channel
+		final String name = "Reader " + (i % NUM_TERMINALS);
+		results.add(exec.submit((Callable<Void>) () -> {
+		    SingleThreadChannel master = manager.openMasterChannel(name);
+		    for (int j = 0; j < NUM_ROUNDS; j++) {
+			Pair<byte[], SingleThreadChannel> slave = manager.openSlaveChannel(name);
+			assertSame(manager.getSlaveChannel(slave.p1), slave.p2);
+			assertSame(manager.getMasterChannel(name), master);
+			manager.closeSlaveChannel(slave.p1);
+			try {
+			    manager.getSlaveChannel(slave.p1);
+			    fail("Closed channel is still available.");
+			} catch (NoSuchChannel ex) {
+			    // expected
+			}
+		    }
+		    return null;
+		}));
+	    }
+	    for (Future<Void> f : results) {
+		f.get(30, TimeUnit.SECONDS);
+	    }
+	} finally {
+	    exec.shutdownNow();
+	}
+
+	for (int i = 0; i < NUM_TERMINALS; i++) {
+	    String name = "Reader " + i;
+	    Pair<byte[], SingleThreadChannel> slave = manager.openSlaveChannel(name);
+	    manager.closeMasterChannel(name);
+	    try {
+		manager.getSlaveChannel(slave.p1);
+		fail("Slave channel survived closing of the master channel.");
+	    } catch (NoSuchChannel ex) {
+		// expected
+	    }
+	    try {
+		manager.getMasterChannel(name);
+		fail("Master channel is still available.");
+	    } catch (NoSuchTerminal ex) {
+		// expected
+	    }
+	}
+    }
+
+    @Test(timeOut = 60000)
+    public void testSlowTerminalDoesNotBlockOthers() throws Exception {
+	CountDownLatch connecting = new CountDownLatch(1);
+	CountDownLatch release = new CountDownLatch(1);
+	SCIOTerminals terminals = Mockito.mock(SCIOTerminals.class);
+	SCIOTerminal fast = mockTerminal("Fast Reader", null);
+	SCIOTerminal slow = mockTerminal("Slow Reader", () -> {
+	    connecting.countDown();
+	    release.await();
+	    return null;
+	});
+	Mockito.when(terminals.getTerminal("Fast Reader")).thenReturn(fast);
+	Mockito.when(terminals.getTerminal("Slow Reader")).thenReturn(slow);
+	final ChannelManager manager = new ChannelManager(mockFactory(terminals));
+
+	manager.openMasterChannel("Fast Reader");
+	Pair<byte[], SingleThreadChannel> slave = manager.openSlaveChannel("Fast Reader");
+
+	ExecutorService exec = Executors.newSingleThreadExecutor();
+	try {
+	    Future<SingleThreadChannel> slowOpen = exec.submit(() -> manager.openMasterChannel("Slow Reader"));
+	    assertTrue(connecting.await(10, TimeUnit.SECONDS));
+
+	    // the connect in the other terminal is still running
+	    assertSame(manager.getSlaveChannel(slave.p1), slave.p2);
+	    Pair<byte[], SingleThreadChannel> slave2 = manager.openSlaveChannel("Fast Reader");
+	    manager.closeSlaveChannel(slave2.p1);
+	    assertFalse(slowOpen.isDone());
+
+	    release.countDown();
+	    assertNotNull(slowOpen.get(10, TimeUnit.SECONDS));
+	} finally {
+	    release.countDown();
+	    exec.shutdownNow();
+	}
+    }
+
+
+    private static TerminalFactory mockFactory(SCIOTerminals terminals) {
+	TerminalFactory factory = Mockito.mock(TerminalFactory.class);
+	Mockito.when(factory.terminals()).thenReturn(terminals);
+	return factory;
+    }
+
+    private static SCIOTerminal mockTerminal(String name, Callable<Void> onConnect) throws SCIOException {
+	SCIOTerminal t = Mockito.mock(SCIOTerminal.class);
+	SCIOCard card = Mockito.mock(SCIOCard.class);
+	SCIOChannel ch = Mockito.mock(SCIOChannel.class);
+	Mockito.when(t.getName()).thenReturn(name);
+	Mockito.when(card.getTerminal()).thenReturn(t);
+	Mockito.when(card.getProtocol()).thenReturn(SCIOProtocol.T1);
+	Mockito.when(card.getATR()).thenReturn(new SCIOATR(new byte[] { 0x3B, 0x00 }));
+	Mockito.when(card.getBasicChannel()).thenReturn(ch);
+	Mockito.when(ch.getCard()).thenReturn(card);
+	Mockito.when(t.connect(Mockito.any(SCIOProtocol.class))).thenAnswer(inv -> {
+	    if (onConnect != null) {
+		onConnect.call();
+	    }
+	    return card;
+	});
+	return t;
+    }
+
+}
@@ -0,0 +1,135 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.ifd.scio.wrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.mockito.Mockito;
+import org.openecard.common.ifd.scio.SCIOATR;
+import org.openecard.common.ifd.scio.SCIOCard;
+import org.openecard.common.ifd.scio.SCIOChannel;
+import org.openecard.common.ifd.scio.SCIOErrorCode;
+import org.openecard.common.ifd.scio.SCIOException;
+import org.openecard.common.ifd.scio.SCIOProtocol;
+import org.openecard.common.ifd.scio.SCIOTerminal;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ *
+ * @author Tobias Wich
+ */
+public class SingleThreadChannelTest {
+
+    private static final byte[] ATR_1 = new byte[] { 0x3B, 0x01 };
+    private static final byte[] ATR_2 = new byte[] { 0x3B, 0x02 };
+
+    @Test
+    public void testProtocolIsCached() throws SCIOException {
+	FakeReader reader = new FakeReader("Cache Reader 1", SCIOProtocol.T0, ATR_1);
+
+	new SingleThreadChannel(reader.terminal).shutdown();
+	assertEquals(reader.attempts, list(SCIOProtocol.T1, SCIOProtocol.TCL, SCIOProtocol.T0));
+
+	// same card, only the negotiated protocol is tried
+	reader.attempts.clear();
+	SingleThreadChannel ch = new SingleThreadChannel(reader.terminal);
+	assertEquals(reader.attempts, list(SCIOProtocol.T0));
+	reader.attempts.clear();
+	ch.reconnect();
+	assertEquals(reader.attempts, list(SCIOProtocol.T0));
+	ch.shutdown();
+    }
+
+    @Test
+    public void testChangedCard() throws SCIOException {
+	FakeReader reader = new FakeReader("Cache Reader 2", SCIOProtocol.T0, ATR_1);
+	new SingleThreadChannel(reader.terminal).shutdown();
+
+	// the new card speaks T=1 which must be preferred again
+	reader.protocol = SCIOProtocol.T1;
+	reader.atr = ATR_2;
+	reader.attempts.clear();
+	new SingleThreadChannel(reader.terminal).shutdown();
+	assertEquals(reader.attempts, list(SCIOProtocol.T0, SCIOProtocol.T1));
+
+	// T=1 is the first choice, so another card is accepted with it directly
+	reader.atr = ATR_1;
+	reader.attempts.clear();
+	new SingleThreadChannel(reader.terminal).shutdown();
+	assertEquals(reader.attempts, list(SCIOProtocol.T1));
+
+	// cached protocol fails for the next card, so it is not tried again
+	reader.protocol = SCIOProtocol.TCL;
+	reader.attempts.clear();
+	new SingleThreadChannel(reader.terminal).shutdown();
+	assertEquals(reader.attempts, list(SCIOProtocol.T1, SCIOProtocol.TCL));
+    }
+
+    private static List<SCIOProtocol> list(SCIOProtocol... protocols) {
+	List<SCIOProtocol> result = new ArrayList<>();
+	for (SCIOProtocol p : protocols) {
+	    result.add(p);
+	}
+	return result;
+    }
+
+
+    private static class FakeReader {
+
+	private final SCIOTerminal terminal;
+	private final List<SCIOProtocol> attempts = new ArrayList<>();
+	private SCIOProtocol protocol;
+	private byte[] atr;
+
+	FakeReader(String name, SCIOProtocol protocol, byte[] atr) throws SCIOException {
+	    this.protocol = protocol;
+	    this.atr = atr;
+	    this.terminal = Mockito.mock(SCIOTerminal.class);
+	    Mockito.when(terminal.getName()).thenReturn(name);
+	    Mockito.when(terminal.connect(Mockito.any(SCIOProtocol.class))).thenAnswer(inv -> {
+		SCIOProtocol requested = (SCIOProtocol) inv.getArguments()[0];
+		attempts.add(requested);
+		if (requested != this.protocol) {
+		    throw new SCIOException("Protocol not supported.", SCIOErrorCode.SCARD_E_PROTO_MISMATCH);
+		}
+		return createCard();
+	    });
+	}
+
+	private SCIOCard createCard() {
+	    SCIOCard card = Mockito.mock(SCIOCard.class);
+	    SCIOChannel ch = Mockito.mock(SCIOChannel.class);
+	    Mockito.when(card.getTerminal()).thenReturn(terminal);
+	    Mockito.when(card.getProtocol()).thenReturn(protocol);
+	    Mockito.when(card.getATR()).thenReturn(new SCIOATR(atr));
+	    Mockito.when(card.getBasicChannel()).thenReturn(ch);
+	    Mockito.when(ch.getCard()).thenReturn(card);
+	    Mockito.when(ch.isBasicChannel()).thenReturn(true);
+	    return card;
+	}
+
+    }
+
+}
@@ -25,10 +25,12 @@ package org.openecard.ifd.protocol.pace;
 import iso.std.iso_iec._24727.tech.schema.EstablishChannel;
 import iso.std.iso_iec._24727.tech.schema.EstablishChannelResponse;
 import java.io.UnsupportedEncodingException;
+import javax.annotation.Nullable;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.ECardException;
 import org.openecard.common.WSHelper;
 import org.openecard.common.apdu.common.CardResponseAPDU;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.apdu.utils.CardUtils;
 import org.openecard.common.ifd.Protocol;
 import org.openecard.common.ifd.anytype.PACEInputType;
@@ -58,6 +60,12 @@ public class PACEProtocol implements Protocol {
 
     @Override
     public EstablishChannelResponse establish(EstablishChannel req, Dispatcher dispatcher, UserConsent gui) {
+	return establish(req, dispatcher, gui, null);
+    }
+
+    @Override
+    public EstablishChannelResponse establish(EstablishChannel req, Dispatcher dispatcher, UserConsent gui,
+	    @Nullable CardCapabilities caps) {
 	EstablishChannelResponse response = new EstablishChannelResponse();
 
 	try {
@@ -91,7 +99,8 @@ public class PACEProtocol implements Protocol {
 	    CardResponseAPDU resp = CardUtils.selectFileWithOptions(dispatcher, slotHandle,
 		    ShortUtils.toByteArray(PACEConstants.EF_CARDACCESS_FID), null, CardUtils.FCP_RESPONSE_DATA);
 	    FCP efCardAccessFCP = new FCP(TLV.fromBER(resp.getData()));
-	    byte[] efcadata = CardUtils.readFile(efCardAccessFCP, dispatcher, slotHandle);
+	    byte[] efcadata = CardUtils.readFile(efCardAccessFCP, dispatcher, slotHandle,
+		    caps != null ? caps : CardCapabilities.shortLength());
 
 	    // Parse SecurityInfos and get PACESecurityInfos
 	    SecurityInfos sis = SecurityInfos.getInstance(efcadata);
@@ -22,13 +22,9 @@
 
 package org.openecard.ifd.protocol.pace;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.security.GeneralSecurityException;
-import java.security.Key;
-import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
@@ -36,25 +32,42 @@ import org.openecard.bouncycastle.crypto.engines.AESEngine;
 import org.openecard.bouncycastle.crypto.macs.CMac;
 import org.openecard.bouncycastle.crypto.params.KeyParameter;
 import org.openecard.common.apdu.common.CardCommandAPDU;
-import org.openecard.common.tlv.TLV;
-import org.openecard.common.util.ByteUtils;
+import org.openecard.common.tlv.TLVView;
 
 
 /**
  * Implements Secure Messaging according to ISO/IEC 7816-4.
+ * <p>
+ * The cipher and CMAC instances are created once and reused for all APDUs of the secure messaging session. The
+ * protected data objects are written directly into the resulting APDU body, so no intermediate TLV structures are
+ * created.
+ * </p>
  *
  * @author Moritz Horsch
  */
 public class SecureMessaging {
 
-    private static final byte[] NULL = new byte[]{0x00};
     // ISO/IEC 7816-4 padding tag
     private static final byte PAD = (byte) 0x80;
+    // ISO/IEC 7816-4 padding for a complete block
+    private static final byte[] PADDING = new byte[]{PAD, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    private static final int BLOCK_SIZE = 16;
+    private static final int MAC_SIZE = 8;
     // Send Sequence Counter. See BSI-TR-03110 section F.3.
     private final byte[] secureMessagingSSC;
     // Keys for encryption and message authentication.
     private final byte[] keyMAC, keyENC;
 
+    // Crypto primitives reused for the lifetime of the session, initialized on first use
+    private SecretKeySpec encKey;
+    private Cipher cbcCipher;
+    private Cipher ivCipher;
+    private CMac cmac;
+    // Scratch buffers
+    private final byte[] iv = new byte[BLOCK_SIZE];
+    private final byte[] mac = new byte[BLOCK_SIZE];
+    private byte[] plainBuffer = new byte[0];
+
     /**
      * Instantiates a new secure messaging.
      *
@@ -75,7 +88,7 @@ public class SecureMessaging {
      * @return Encrypted APDU
      * @throws Exception
      */
-    public byte[] encrypt(byte[] apdu) throws Exception {
+    public synchronized byte[] encrypt(byte[] apdu) throws Exception {
 	incrementSSC(secureMessagingSSC);
 	byte[] commandAPDU = encrypt(apdu, secureMessagingSSC);
 	incrementSSC(secureMessagingSSC);
@@ -92,7 +105,6 @@ public class SecureMessaging {
      * @throws Exception
      */
     private byte[] encrypt(byte[] apdu, byte[] secureMessagingSSC) throws Exception {
-	ByteArrayOutputStream baos = new ByteArrayOutputStream();
 	CardCommandAPDU cAPDU = new CardCommandAPDU(apdu);
 
 	if (cAPDU.isSecureMessaging()) {
@@ -104,34 +116,37 @@ public class SecureMessaging {
 	int lc = cAPDU.getLC();
 	int le = cAPDU.getLE();
 
-	if (data.length > 0) {
-	    data = pad(data, 16);
-
-	    // Encrypt data
-	    Cipher c = getCipher(secureMessagingSSC, Cipher.ENCRYPT_MODE);
-	    byte[] dataEncrypted = c.doFinal(data);
-
+	// calculate size of the data objects, so the body can be written in one go
+	int encLength = data.length > 0 ? paddedLength(data.length) : 0;
+	int leLength = le > 0x100 ? 2 : 1;
+	int do87Length = encLength > 0 ? TLVView.getEncodedSize(0x87, encLength + 1) : 0;
+	int do97Length = le >= 0 ? TLVView.getEncodedSize(0x97, leLength) : 0;
+	int macDataLength = do87Length + do97Length;
+	byte[] secureData = new byte[macDataLength + 2 + MAC_SIZE];
+
+	int pos = 0;
+	if (encLength > 0) {
+	    pos = TLVView.writeHeader(secureData, pos, 0x87, encLength + 1);
 	    // Add padding indicator 0x01
-	    dataEncrypted = ByteUtils.concatenate((byte) 0x01, dataEncrypted);
-
-	    TLV dataObject = new TLV();
-	    dataObject.setTagNumWithClass((byte) 0x87);
-	    dataObject.setValue(dataEncrypted);
-	    baos.write(dataObject.toBER());
+	    secureData[pos++] = 0x01;
+	    // Encrypt padded data in place
+	    System.arraycopy(data, 0, secureData, pos, data.length);
+	    secureData[pos + data.length] = PAD;
+	    Cipher c = getCipher(secureMessagingSSC, Cipher.ENCRYPT_MODE);
+	    pos += c.doFinal(secureData, pos, encLength, secureData, pos);
 	}
 
 	// Write protected LE
 	if (le >= 0) {
-	    TLV leObject = new TLV();
-	    leObject.setTagNumWithClass((byte) 0x97);
+	    pos = TLVView.writeHeader(secureData, pos, 0x97, leLength);
 	    if (le == 0x100) {
-		leObject.setValue(NULL);
+		secureData[pos++] = 0x00;
 	    } else if (le > 0x100) {
-		leObject.setValue(new byte[]{(byte) ((le >> 8) & 0xFF), (byte) (le & 0xFF)});
+		secureData[pos++] = (byte) ((le >> 8) & 0xFF);
+		secureData[pos++] = (byte) (le & 0xFF);
 	    } else {
-		leObject.setValue(new byte[]{(byte) le});
+		secureData[pos++] = (byte) le;
 	    }
-	    baos.write(leObject.toBER());
 	}
 
 	// Indicate Secure Messaging
@@ -141,26 +156,17 @@ public class SecureMessaging {
 	/*
 	 * Calculate MAC
 	 */
-	byte[] mac = new byte[16];
 	CMac cmac = getCMAC(secureMessagingSSC);
-
-	byte[] paddedHeader = pad(header, 16);
-	cmac.update(paddedHeader, 0, paddedHeader.length);
-
-	if (baos.size() > 0) {
-	    byte[] paddedData = pad(baos.toByteArray(), 16);
-	    cmac.update(paddedData, 0, paddedData.length);
+	updatePadded(cmac, header, 0, header.length);
+	if (macDataLength > 0) {
+	    updatePadded(cmac, secureData, 0, macDataLength);
 	}
-
 	cmac.doFinal(mac, 0);
-	mac = ByteUtils.copy(mac, 0, 8);
 
 	//
 	// Build APDU
-	TLV macStructure = new TLV();
-	macStructure.setTagNumWithClass((byte) 0x8E);
-	macStructure.setValue(mac);
-	byte[] secureData = ByteUtils.concatenate(baos.toByteArray(), macStructure.toBER());
+	pos = TLVView.writeHeader(secureData, pos, 0x8E, MAC_SIZE);
+	System.arraycopy(mac, 0, secureData, pos, MAC_SIZE);
 
 	CardCommandAPDU secureCommand = new CardCommandAPDU(header[0], header[1], header[2], header[3], secureData);
 	// set LE explicitely to 0x00 or in case of extended length 0x00 0x00
@@ -180,7 +186,7 @@ public class SecureMessaging {
      * @return the byte[]
      * @throws Exception the exception
      */
-    public byte[] decrypt(byte[] response) throws Exception {
+    public synchronized byte[] decrypt(byte[] response) throws Exception {
 	if (response.length < 12) {
 	    throw new IllegalArgumentException("Malformed Secure Messaging APDU.");
 	}
@@ -196,15 +202,15 @@ public class SecureMessaging {
      * @throws Exception the exception
      */
     private byte[] decrypt(byte[] response, byte[] secureMessagingSSC) throws Exception {
-	ByteArrayInputStream bais = new ByteArrayInputStream(response);
-	ByteArrayOutputStream baos = new ByteArrayOutputStream(response.length - 10);
-
-	// Status bytes of the response APDU. MUST be 2 bytes.
-	byte[] statusBytes = new byte[2];
-	// Padding-content indicator followed by cryptogram 0x87.
-	byte[] dataObject = null;
-	// Cryptographic checksum 0x8E. MUST be 8 bytes.
-	byte[] macObject = new byte[8];
+	// Offset of the cryptogram in the data object 0x87 (without padding-content indicator)
+	int dataOffset = -1;
+	int dataLength = 0;
+	// Offset of the status bytes in the processing status 0x99. MUST be 2 bytes.
+	int statusOffset;
+	// Offset of the data object 0x8E which is the end of the MACed data
+	int macObjectOffset;
+	// Offset of the cryptographic checksum in 0x8E. MUST be 8 bytes.
+	int macOffset;
 
 	/*
 	 * Read APDU structure
@@ -213,90 +219,85 @@ public class SecureMessaging {
 	 * Case 3: DO99|DO8E|SW1SW2
 	 * Case 4: DO87|DO99|DO8E|SW1SW2
 	 */
-	byte tag = (byte) bais.read();
-
-	// Read data object (OPTIONAL)
-	if (tag == (byte) 0x87) {
-	    int size = bais.read();
-	    if (size > 0x80) {
-		byte[] sizeBytes = new byte[size & 0x0F];
-		bais.read(sizeBytes, 0, sizeBytes.length);
-		size = new BigInteger(1, sizeBytes).intValue();
+	try {
+	    int pos = 0;
+	    byte tag = response[pos++];
+
+	    // Read data object (OPTIONAL)
+	    if (tag == (byte) 0x87) {
+		int size = response[pos++] & 0xFF;
+		if (size > 0x80) {
+		    int numSizeBytes = size & 0x0F;
+		    size = 0;
+		    for (int i = 0; i < numSizeBytes; i++) {
+			size = (size << 8) | (response[pos++] & 0xFF);
+		    }
+		}
+		if (size < 1) {
+		    throw new IOException("Malformed Secure Messaging APDU");
+		}
+		pos++; // Skip encryption header
+		dataOffset = pos;
+		dataLength = size - 1;
+		pos += dataLength;
+
+		tag = response[pos++];
 	    }
-	    bais.skip(1); // Skip encryption header
-	    dataObject = new byte[size - 1];
-	    bais.read(dataObject, 0, dataObject.length);
-
-	    tag = (byte) bais.read();
-	}
 
-	// Read processing status (REQUIRED)
-	if (tag == (byte) 0x99) {
-	    if (bais.read() == (byte) 0x02) {
-		bais.read(statusBytes, 0, 2);
-		tag = (byte) bais.read();
+	    // Read processing status (REQUIRED)
+	    if (tag != (byte) 0x99 || response[pos++] != 0x02) {
+		throw new IOException("Malformed Secure Messaging APDU");
 	    }
-	} else {
-	    throw new IOException("Malformed Secure Messaging APDU");
-	}
+	    statusOffset = pos;
+	    pos += 2;
 
-	// Read MAC (REQUIRED)
-	if (tag == (byte) 0x8E) {
-	    if (bais.read() == (byte) 0x08) {
-		bais.read(macObject, 0, 8);
+	    // Read MAC (REQUIRED)
+	    macObjectOffset = pos;
+	    if (response[pos++] != (byte) 0x8E || response[pos++] != MAC_SIZE) {
+		throw new IOException("Malformed Secure Messaging APDU");
 	    }
-	} else {
-	    throw new IOException("Malformed Secure Messaging APDU");
-	}
+	    macOffset = pos;
+	    pos += MAC_SIZE;
 
-	// Only 2 bytes status should remain
-	if (bais.available() != 2) {
-	    throw new IOException("Malformed Secure Messaging APDU");
+	    // Only 2 bytes status should remain
+	    if (response.length - pos != 2) {
+		throw new IOException("Malformed Secure Messaging APDU");
+	    }
+	} catch (ArrayIndexOutOfBoundsException ex) {
+	    throw new IOException("Malformed Secure Messaging APDU", ex);
 	}
 
-	// Calculate MAC for verification
+	// Calculate MAC for verification over the padding-content and status bytes objects
 	CMac cmac = getCMAC(secureMessagingSSC);
-	byte[] mac = new byte[16];
-
-	synchronized (cmac) {
-	    ByteArrayOutputStream macData = new ByteArrayOutputStream();
-
-	    // Write padding-content
-	    if (dataObject != null) {
-		TLV paddedDataObject = new TLV();
-		paddedDataObject.setTagNumWithClass((byte) 0x87);
-		paddedDataObject.setValue(ByteUtils.concatenate((byte) 0x01, dataObject));
-		macData.write(paddedDataObject.toBER());
-	    }
-	    // Write status bytes
-	    TLV statusBytesObject = new TLV();
-	    statusBytesObject.setTagNumWithClass((byte) 0x99);
-	    statusBytesObject.setValue(statusBytes);
-	    macData.write(statusBytesObject.toBER());
-
-	    byte[] paddedData = pad(macData.toByteArray(), 16);
-	    cmac.update(paddedData, 0, paddedData.length);
-
-	    cmac.doFinal(mac, 0);
-	    mac = ByteUtils.copy(mac, 0, 8);
-	}
+	updatePadded(cmac, response, 0, macObjectOffset);
+	cmac.doFinal(mac, 0);
 
 	// Verify MAC
-	if (!ByteUtils.compare(mac, macObject)) {
+	int diff = 0;
+	for (int i = 0; i < MAC_SIZE; i++) {
+	    diff |= mac[i] ^ response[macOffset + i];
+	}
+	if (diff != 0) {
 	    throw new GeneralSecurityException("Secure Messaging MAC verification failed");
 	}
 
 	// Decrypt data
-	if (dataObject != null) {
+	int plainLength = 0;
+	if (dataOffset >= 0) {
+	    if (plainBuffer.length < dataLength) {
+		plainBuffer = new byte[dataLength];
+	    }
 	    Cipher c = getCipher(secureMessagingSSC, Cipher.DECRYPT_MODE);
-	    byte[] data_decrypted = c.doFinal(dataObject);
-	    baos.write(unpad(data_decrypted));
+	    plainLength = unpad(plainBuffer, c.doFinal(response, dataOffset, dataLength, plainBuffer, 0));
 	}
 
 	// Add status code
-	baos.write(statusBytes);
+	byte[] result = new byte[plainLength + 2];
+	System.arraycopy(plainBuffer, 0, result, 0, plainLength);
+	System.arraycopy(response, statusOffset, result, plainLength, 2);
+	Arrays.fill(plainBuffer, 0, plainLength, (byte) 0);
 
-	return baos.toByteArray();
+	return result;
     }
 
     /**
@@ -318,48 +319,42 @@ public class SecureMessaging {
      */
     /**
      * Gets the cipher for de/encryption.
+     * The cipher is initialized with the IV belonging to the given Send Sequence Counter.
      *
      * @param smssc the Secure Messaging Send Sequence Counter
      * @param mode the mode indicating de/encryption
      * @return the cipher
-     * @throws Exception the exception
-     */
-    private Cipher getCipher(byte[] smssc, int mode) throws Exception {
-	Cipher c = Cipher.getInstance("AES/CBC/NoPadding");
-	Key key = new SecretKeySpec(keyENC, "AES");
-	byte[] iv = getCipherIV(smssc);
-	AlgorithmParameterSpec algoPara = new IvParameterSpec(iv);
-
-	c.init(mode, key, algoPara);
-
-	return c;
-    }
-
-    /**
-     * Gets the Initialization Vector (IV) for the cipher.
-     *
-     * @param smssc Secure Messaging Send Sequence Counter
-     * @return Initialization Vector
-     * @throws Exception
+     * @throws GeneralSecurityException the exception
      */
-    private byte[] getCipherIV(byte[] smssc) throws Exception {
-	Cipher c = Cipher.getInstance("AES/ECB/NoPadding");
-	Key key = new SecretKeySpec(keyENC, "AES");
+    private Cipher getCipher(byte[] smssc, int mode) throws GeneralSecurityException {
+	if (cbcCipher == null) {
+	    encKey = new SecretKeySpec(keyENC, "AES");
+	    ivCipher = Cipher.getInstance("AES/ECB/NoPadding");
+	    ivCipher.init(Cipher.ENCRYPT_MODE, encKey);
+	    cbcCipher = Cipher.getInstance("AES/CBC/NoPadding");
+	}
 
-	c.init(Cipher.ENCRYPT_MODE, key);
+	// Calculate the Initialization Vector (IV) from the SSC
+	ivCipher.doFinal(smssc, 0, smssc.length, iv, 0);
+	cbcCipher.init(mode, encKey, new IvParameterSpec(iv));
 
-	return c.doFinal(smssc);
+	return cbcCipher;
     }
 
     /**
      * Gets the CMAC.
+     * The returned instance already contains the Send Sequence Counter.
      *
      * @param smssc Secure Messaging Send Sequence Counter
      * @return CMAC
      */
     private CMac getCMAC(byte[] smssc) {
-	CMac cmac = new CMac(new AESEngine());
-	cmac.init(new KeyParameter(keyMAC));
+	if (cmac == null) {
+	    cmac = new CMac(new AESEngine());
+	    cmac.init(new KeyParameter(keyMAC));
+	} else {
+	    cmac.reset();
+	}
 	cmac.update(smssc, 0, smssc.length);
 
 	return cmac;
@@ -369,34 +364,43 @@ public class SecureMessaging {
      * ISO/IEC 7816-4 padding functions
      */
     /**
-     * Padding the data.
+     * Calculates the length of the data after padding.
      *
-     * @param data Unpadded data
-     * @param blockSize Block size
-     * @return Padded data
+     * @param length Length of the unpadded data
+     * @return Length of the padded data
      */
-    private byte[] pad(byte[] data, int blockSize) {
-	byte[] result = new byte[data.length + (blockSize - data.length % blockSize)];
-	System.arraycopy(data, 0, result, 0, data.length);
-	result[data.length] = PAD;
+    private static int paddedLength(int length) {
+	return length + (BLOCK_SIZE - length % BLOCK_SIZE);
+    }
 
-	return result;
+    /**
+     * Updates the CMAC with the data followed by its padding.
+     *
+     * @param cmac CMAC
+     * @param data Array containing the unpadded data
+     * @param offset Offset of the data
+     * @param length Length of the data
+     */
+    private static void updatePadded(CMac cmac, byte[] data, int offset, int length) {
+	cmac.update(data, offset, length);
+	cmac.update(PADDING, 0, BLOCK_SIZE - length % BLOCK_SIZE);
     }
 
     /**
      * Unpadding the data.
      *
      * @param data Padded data
-     * @return Unpadded data
+     * @param length Length of the padded data
+     * @return Length of the unpadded data
      */
-    private byte[] unpad(byte[] data) {
-	for (int i = data.length - 1; i >= 0; i--) {
+    private static int unpad(byte[] data, int length) {
+	for (int i = length - 1; i >= 0; i--) {
 	    if (data[i] == PAD) {
-		return ByteUtils.copy(data, 0, i);
+		return i;
 	    }
 	}
 
-	return data;
+	return length;
     }
 
 }
@@ -27,6 +27,7 @@ import org.openecard.bouncycastle.crypto.params.ECPrivateKeyParameters;
 import org.openecard.bouncycastle.jce.spec.ECParameterSpec;
 import org.openecard.bouncycastle.math.ec.ECPoint;
 import org.openecard.crypto.common.asn1.eac.PACEDomainParameter;
+import org.openecard.crypto.common.asn1.eac.StandardizedDomainParameters;
 
 
 /**
@@ -63,7 +64,7 @@ public final class PACEGenericMapping extends PACEMapping {
 	    BigInteger s = new BigInteger(1, keyPCD);
 
 	    ECPoint h = pkMapPICC.multiply(p.getH().multiply(d));
-	    ECPoint newG = p.getG().multiply(s).add(h);
+	    ECPoint newG = StandardizedDomainParameters.multiplyGenerator(p, s).add(h);
 
 	    ECParameterSpec parameter = new ECParameterSpec(p.getCurve(), newG, p.getN(), p.getH());
 	    pdp.setParameter(parameter);
@@ -26,6 +26,7 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import org.openecard.bouncycastle.crypto.AsymmetricCipherKeyPair;
 import org.openecard.bouncycastle.crypto.params.AsymmetricKeyParameter;
 import org.openecard.bouncycastle.crypto.params.ECDomainParameters;
 import org.openecard.bouncycastle.crypto.params.ECPrivateKeyParameters;
@@ -39,7 +40,9 @@ import org.openecard.bouncycastle.math.ec.ECPoint;
 import org.openecard.common.tlv.TLV;
 import org.openecard.common.util.ByteUtils;
 import org.openecard.common.util.SecureRandomFactory;
+import org.openecard.crypto.common.EphemeralKeyPool;
 import org.openecard.crypto.common.asn1.eac.PACEDomainParameter;
+import org.openecard.crypto.common.asn1.eac.StandardizedDomainParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -129,12 +132,20 @@ public final class PACEKey {
 
 	} else if (pdp.isECDH()) {
 	    ECParameterSpec p = (ECParameterSpec) pdp.getParameter();
+	    // only the mapping key uses the standardized generator, keys for the mapped generator are never pooled
+	    AsymmetricCipherKeyPair pooled = EphemeralKeyPool.getInstance().take(p);
+	    if (pooled != null) {
+		sk = pooled.getPrivate();
+		pk = pooled.getPublic();
+		return;
+	    }
+
 	    int numBits = p.getN().bitLength();
 	    BigInteger d = new BigInteger(numBits, rand);
 	    ECDomainParameters ecp = new ECDomainParameters(p.getCurve(), p.getG(), p.getN(), p.getH());
 
 	    sk = new ECPrivateKeyParameters(d, ecp);
-	    pk = new ECPublicKeyParameters(ecp.getG().multiply(d), ecp);
+	    pk = new ECPublicKeyParameters(StandardizedDomainParameters.multiplyGenerator(p, d), ecp);
 	} else {
 	    throw new IllegalArgumentException();
 	}
@@ -89,6 +89,12 @@ public abstract class AbstractNFCCard implements SCIOCard {
 	return true;
     }
 
+    @Override
+    public boolean isThreadConfined() {
+	// the tag implementations synchronize the access themselves
+	return false;
+    }
+
     @Override
     public SCIOChannel openLogicalChannel() throws SCIOException {
 	throw new SCIOException("Logical channels are not supported.", SCIOErrorCode.SCARD_E_UNSUPPORTED_FEATURE);
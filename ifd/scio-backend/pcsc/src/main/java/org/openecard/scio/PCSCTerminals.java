@@ -23,11 +23,11 @@
 package org.openecard.scio;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import javax.annotation.Nonnull;
 import javax.smartcardio.CardException;
@@ -56,7 +56,10 @@ import org.slf4j.LoggerFactory;
 public class PCSCTerminals implements SCIOTerminals {
 
     private static final Logger LOG = LoggerFactory.getLogger(PCSCTerminals.class);
+    // poll interval while the PCSC system or its readers are not available
     private static final long WAIT_DELTA = 1500;
+    // maximum time to block in the PCSC system before checking for interruption and changed terminal lists
+    private static final long WAIT_SLICE = 5000;
 
     private final PCSCFactory terminalFactory;
     private CardTerminals terminals;
@@ -200,8 +203,8 @@ public class PCSCTerminals implements SCIOTerminals {
 	private final PCSCTerminals own;
 
 	private Queue<StateChangeEvent> pendingEvents;
-	private Collection<String> terminals;
-	private Collection<String> cardPresent;
+	// terminal name -> card present
+	private Map<String, Boolean> terminals;
 
 	public PCSCWatcher(@Nonnull PCSCTerminals parent) {
 	    this.parent = parent;
@@ -221,8 +224,7 @@ public class PCSCTerminals implements SCIOTerminals {
 		throw new IllegalStateException("Trying to initialize already initialized watcher instance.");
 	    }
 	    pendingEvents = new LinkedList<>();
-	    terminals = new HashSet<>();
-	    cardPresent = new HashSet<>();
+	    terminals = new HashMap<>();
 
 	    try {
 		// call wait for change and directly afterwards get current list of cards
@@ -230,19 +232,14 @@ public class PCSCTerminals implements SCIOTerminals {
 		own.terminals.waitForChange(1);
 		List<CardTerminal> javaTerminals = own.terminals.list();
 		ArrayList<TerminalState> result = new ArrayList<>(javaTerminals.size());
-		// fill sets according to state of the terminals
+		// fill map according to state of the terminals
 		LOG.debug("Detecting initial terminal status.");
 		for (CardTerminal next : javaTerminals) {
 		    String name = next.getName();
 		    boolean cardInserted = next.isCardPresent();
 		    LOG.debug("Terminal='{}' cardPresent={}", name, cardInserted);
-		    terminals.add(name);
-		    if (cardInserted) {
-			cardPresent.add(name);
-			result.add(new TerminalState(name, true));
-		    } else {
-			result.add(new TerminalState(name, false));
-		    }
+		    terminals.put(name, cardInserted);
+		    result.add(new TerminalState(name, cardInserted));
 		}
 		// return list of our terminals
 		LOG.trace("Leaving start() with {} states.", result.size());
@@ -309,18 +306,12 @@ public class PCSCTerminals implements SCIOTerminals {
 			return new StateChangeEvent();
 		    } else {
 			// something has changed, retrieve actual terminals from the system and see what has changed
-			Collection<String> newTerminals = new HashSet<>();
-			Collection<String> newCardPresent = new HashSet<>();
+			Map<String, Boolean> newTerminals = new HashMap<>();
 			// only ask for terminals if there is no error
 			if (! error) {
 			    try {
-				List<CardTerminal> newStates = own.terminals.list();
-				for (CardTerminal next : newStates) {
-				    String name = next.getName();
-				    newTerminals.add(name);
-				    if (next.isCardPresent()) {
-					newCardPresent.add(name);
-				    }
+				for (CardTerminal next : own.terminals.list()) {
+				    newTerminals.put(next.getName(), next.isCardPresent());
 				}
 			    } catch (CardException ex) {
 				String msg = "Failed to retrieve status of the observed terminals.";
@@ -329,31 +320,11 @@ public class PCSCTerminals implements SCIOTerminals {
 			    }
 			}
 
-			// calculate what has actually happened
-			// removed cards
-			Collection<String> cardRemoved = subtract(cardPresent, newCardPresent);
-			Collection<StateChangeEvent> crEvents = createEvents(EventType.CARD_REMOVED, cardRemoved);
-			// removed terminals
-			Collection<String> termRemoved = subtract(terminals, newTerminals);
-			Collection<StateChangeEvent> trEvents = createEvents(EventType.TERMINAL_REMOVED, termRemoved);
-			// added terminals
-			Collection<String> termAdded = subtract(newTerminals, terminals);
-			Collection<StateChangeEvent> taEvents = createEvents(EventType.TERMINAL_ADDED, termAdded);
-			// added cards
-			Collection<String> cardAdded = subtract(newCardPresent, cardPresent);
-			Collection<StateChangeEvent> caEvents = createEvents(EventType.CARD_INSERTED, cardAdded);
-
 			// update internal status with the calculated state
+			addEvents(terminals, newTerminals);
 			terminals = newTerminals;
-			cardPresent = newCardPresent;
-			pendingEvents.addAll(crEvents);
-			pendingEvents.addAll(trEvents);
-			pendingEvents.addAll(taEvents);
-			pendingEvents.addAll(caEvents);
-			// use remove so we get an exception when no event has been recorded
-			// this would mean our algorithm is corrupt
 			if (! pendingEvents.isEmpty()) {
-			LOG.trace("Leaving waitForChange() with fresh event.");
+			    LOG.trace("Leaving waitForChange() with fresh event.");
 			    return pendingEvents.remove();
 			}
 		    }
@@ -370,6 +341,47 @@ public class PCSCTerminals implements SCIOTerminals {
 	    return new StateChangeEvent();
 	}
 
+	/**
+	 * Calculates the events leading from the old to the new terminal states and adds them to the pending events.
+	 * The events are ordered, so that removals come before additions and card events are emitted while their
+	 * terminal is present.
+	 *
+	 * @param oldStates Previous state of the terminals.
+	 * @param newStates Current state of the terminals.
+	 */
+	private void addEvents(Map<String, Boolean> oldStates, Map<String, Boolean> newStates) {
+	    ArrayList<StateChangeEvent> cardRemoved = new ArrayList<>();
+	    ArrayList<StateChangeEvent> termRemoved = new ArrayList<>();
+	    ArrayList<StateChangeEvent> termAdded = new ArrayList<>();
+	    ArrayList<StateChangeEvent> cardAdded = new ArrayList<>();
+
+	    for (Map.Entry<String, Boolean> next : oldStates.entrySet()) {
+		String name = next.getKey();
+		Boolean newCard = newStates.get(name);
+		if (next.getValue() && ! Boolean.TRUE.equals(newCard)) {
+		    cardRemoved.add(new StateChangeEvent(EventType.CARD_REMOVED, name));
+		}
+		if (newCard == null) {
+		    termRemoved.add(new StateChangeEvent(EventType.TERMINAL_REMOVED, name));
+		}
+	    }
+	    for (Map.Entry<String, Boolean> next : newStates.entrySet()) {
+		String name = next.getKey();
+		Boolean oldCard = oldStates.get(name);
+		if (oldCard == null) {
+		    termAdded.add(new StateChangeEvent(EventType.TERMINAL_ADDED, name));
+		}
+		if (next.getValue() && ! Boolean.TRUE.equals(oldCard)) {
+		    cardAdded.add(new StateChangeEvent(EventType.CARD_INSERTED, name));
+		}
+	    }
+
+	    pendingEvents.addAll(cardRemoved);
+	    pendingEvents.addAll(termRemoved);
+	    pendingEvents.addAll(termAdded);
+	    pendingEvents.addAll(cardAdded);
+	}
+
 	private void sleep(long millis) throws SCIOException {
 	    try {
 		Thread.sleep(millis);
@@ -381,8 +393,10 @@ public class PCSCTerminals implements SCIOTerminals {
 
 	/**
 	 * Wait for events in the system.
-	 * The SmartcardIO wait function only reacts on card events, new and removed terminals go unseen. in order to
-	 * fix this, we wait only a short time and check the terminal list periodically.
+	 * The wait blocks in the PC/SC system until the state of any terminal or the list of terminals changes, so
+	 * events are seen as soon as they happen. The wait is split in slices of {@link #WAIT_SLICE} milliseconds, so
+	 * that an interrupted thread is noticed and that added or removed terminals are also seen on systems without
+	 * support for the PnP notification reader.
 	 *
 	 * @param timeout Timeout values as in {@link #waitForChange(long)}.
 	 * @return The first value is the changed flag . It is {@code true} if a change the terminals happened,
@@ -394,8 +408,6 @@ public class PCSCTerminals implements SCIOTerminals {
 	 *   {@link SCIOErrorCode#SCARD_E_SERVICE_STOPPED}.
 	 */
 	private Pair<Boolean, Boolean> internalWait(long timeout) throws CardException, SCIOException {
-	    // the SmartcardIO wait function only reacts on card events, new and removed terminals go unseen
-	    // to fix this, we wait only a short time and check the terminal list periodically
 	    if (timeout < 0) {
 		throw new IllegalArgumentException("Negative timeout value given.");
 	    } else if (timeout == 0) {
@@ -407,27 +419,16 @@ public class PCSCTerminals implements SCIOTerminals {
 		    // waited for all time and nothing happened
 		    return new Pair<>(false, false);
 		}
-		// calculate next wait slice
-		long waitTime;
-		if (timeout < WAIT_DELTA) {
-		    waitTime = timeout;
-		    timeout = 0;
-		} else {
-		    timeout = timeout - WAIT_DELTA;
-		    waitTime = WAIT_DELTA;
+		if (Thread.interrupted()) {
+		    String msg = "Wait interrupted by another thread.";
+		    throw new SCIOException(msg, SCIOErrorCode.SCARD_E_SERVICE_STOPPED);
 		}
 
 		try {
-		    // check if there is something new on the card side
-		    // due to the wait call blocking every other smartcard operation, we only wait for the actual events
-		    // very shortly and sleep for the rest of the time
-		    boolean change = own.terminals.waitForChange(1);
-		    if (change) {
-			return new Pair<>(true, false);
-		    }
-		    sleep(waitTime);
-		    // try again after sleeping
-		    change = own.terminals.waitForChange(1);
+		    // block until something happens in one of the terminals or the PnP reader reports a new terminal
+		    long waitTime = Math.min(timeout, WAIT_SLICE);
+		    boolean change = own.terminals.waitForChange(waitTime);
+		    timeout -= waitTime;
 		    if (change) {
 			return new Pair<>(true, false);
 		    }
@@ -445,7 +446,7 @@ public class PCSCTerminals implements SCIOTerminals {
 			    } else {
 				LOG.debug("Waiting for PCSC system to become available again.");
 				// if nothing changed, wait a bit and try again
-				sleep(waitTime);
+				timeout = sleepSlice(timeout);
 				continue;
 			    }
 			default:
@@ -458,45 +459,28 @@ public class PCSCTerminals implements SCIOTerminals {
 		    } else {
 			LOG.debug("Waiting for PCSC system to become available again.");
 			// if nothing changed, wait a bit and try again
-			sleep(waitTime);
+			timeout = sleepSlice(timeout);
 			continue;
 		    }
 		}
 
-		// check if there is something new on the terminal side
-		ArrayList<CardTerminal> currentTerms = new ArrayList<>(own.terminals.list());
+		// the wait timed out, check if there is something new on the terminal side in case PnP is not supported
+		List<CardTerminal> currentTerms = own.terminals.list();
 		if (currentTerms.size() != terminals.size()) {
 		    return new Pair<>(true, false);
 		}
-		// same size, but still compare terminal names
-		HashSet<String> newTermNames = new HashSet<>();
 		for (CardTerminal next : currentTerms) {
-		    newTermNames.add(next.getName());
-		}
-		int sizeBefore = newTermNames.size();
-		if (sizeBefore != terminals.size()) {
-		    return new Pair<>(false, false);
-		}
-		newTermNames.addAll(terminals);
-		int sizeAfter = newTermNames.size();
-		if (sizeBefore != sizeAfter) {
-		    return new Pair<>(false, false);
+		    if (! terminals.containsKey(next.getName())) {
+			return new Pair<>(true, false);
+		    }
 		}
 	    }
 	}
 
-	private static <T> Collection<T> subtract(Collection<T> a, Collection<T> b) {
-	    HashSet<T> result = new HashSet<>(a);
-	    result.removeAll(b);
-	    return result;
-	}
-
-	private static Collection<StateChangeEvent> createEvents(EventType type, Collection<String> list) {
-	    Collection<StateChangeEvent> result = new ArrayList<>(list.size());
-	    for (String next : list) {
-		result.add(new StateChangeEvent(type, next));
-	    }
-	    return result;
+	private long sleepSlice(long timeout) throws SCIOException {
+	    long waitTime = Math.min(timeout, WAIT_DELTA);
+	    sleep(waitTime);
+	    return timeout - waitTime;
 	}
 
     }
@@ -40,6 +40,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.Semaphore;
@@ -87,7 +88,11 @@ public class MiddleWareWrapper {
     private final CryptokiLibrary lib;
     private static int libIdx = 0;
 
+    // global lock used for module wide functions and for all functions if the module is not thread safe
     private final Semaphore threadLock;
+    private final ConcurrentHashMap<Long, Semaphore> slotLocks;
+    private final ConcurrentHashMap<Long, Long> sessionSlots;
+    private volatile boolean threadSafe;
 
     public MiddleWareWrapper(MiddlewareSALConfig mwSALConfig) throws UnsatisfiedLinkError, CryptokiException {
         String libName = mwSALConfig.getLibName();
@@ -124,6 +129,9 @@ public class MiddleWareWrapper {
 	nl = NativeLibrary.getInstance(libName, options);
 
 	threadLock = new Semaphore(1, true);
+	slotLocks = new ConcurrentHashMap<>();
+	sessionSlots = new ConcurrentHashMap<>();
+	threadSafe = false;
 
 	// determine whether we have to use the function pointers from C_GetFunctionList
 	boolean hasInitialize = true;
@@ -140,18 +148,71 @@ public class MiddleWareWrapper {
 	lib = tmpLib;
     }
 
+    /**
+     * Gets the lock guarding the functions operating on the given slot.
+     * When the module performs its own locking, each slot has its own lock, so that calls to different tokens do not
+     * block each other. Otherwise the global lock is returned.
+     *
+     * @param slotID Slot the function operates on.
+     * @return The lock for the slot.
+     */
+    private Semaphore getSlotLock(long slotID) {
+	if (threadSafe) {
+	    return slotLocks.computeIfAbsent(slotID, k -> new Semaphore(1, true));
+	} else {
+	    return threadLock;
+	}
+    }
+
+    /**
+     * Gets the lock guarding the functions operating on the given session.
+     * This is the lock of the slot the session has been opened on. Sessions not opened through this instance are
+     * guarded by the global lock.
+     *
+     * @param hSession Session the function operates on.
+     * @return The lock for the session.
+     */
+    private Semaphore getSessionLock(long hSession) {
+	Long slotID = threadSafe ? sessionSlots.get(hSession) : null;
+	if (slotID != null) {
+	    return getSlotLock(slotID);
+	} else {
+	    return threadLock;
+	}
+    }
+
     private LockedObject lockInternal() throws InterruptedException {
+	return lockInternal(threadLock);
+    }
+
+    private LockedObject lockInternal(Semaphore lock) throws InterruptedException {
 	try {
-	    threadLock.acquire();
-	    return new LockedObject();
+	    lock.acquire();
+	    return new LockedObject(lock);
 	} catch (InterruptedException ex) {
 	    throw new ThreadTerminateException("Waiting for middleware mutex failed.");
 	}
     }
 
-    public LockedMiddlewareWrapper lock() throws InterruptedException {
-	threadLock.acquire();
-	return new LockedMiddlewareWrapper();
+    private LockedObject lockSlot(long slotID) throws InterruptedException {
+	return lockInternal(getSlotLock(slotID));
+    }
+
+    private LockedObject lockSession(long hSession) throws InterruptedException {
+	return lockInternal(getSessionLock(hSession));
+    }
+
+    /**
+     * Acquires the lock for a sequence of functions operating on the given session.
+     *
+     * @param hSession Session the functions operate on.
+     * @return Wrapper providing the functions, which must be closed to release the lock.
+     * @throws InterruptedException Thrown in case the thread is interrupted while waiting for the lock.
+     */
+    public LockedMiddlewareWrapper lock(long hSession) throws InterruptedException {
+	Semaphore lock = getSessionLock(hSession);
+	lock.acquire();
+	return new LockedMiddlewareWrapper(lock);
     }
 
     public void initialize(@Nullable CK_C_INITIALIZE_ARGS arg) throws CryptokiException {
@@ -174,6 +235,7 @@ public class MiddleWareWrapper {
 	    arg.setFlags(CryptokiLibrary.CKF_OS_LOCKING_OK);
 
 	    initialize(arg);
+	    threadSafe = true;
 
 	    return;
 	} catch (CryptokiException ex) {
@@ -191,6 +253,7 @@ public class MiddleWareWrapper {
 	    arg.setUnlockMutex(mutexStore.getUnlockMutexFun());
 
 	    initialize(arg);
+	    threadSafe = true;
 
 	    return;
 	} catch (CryptokiException ex) {
@@ -199,10 +262,17 @@ public class MiddleWareWrapper {
 
 	LOG.warn("Initializing middleware without thread safety values.");
 	initialize(null);
+	threadSafe = false;
     }
 
     public void destroy(@Nullable Pointer arg) throws CryptokiException {
-	check("C_Finalize", () -> lib.C_Finalize(arg));
+	try {
+	    check("C_Finalize", () -> lib.C_Finalize(arg));
+	} finally {
+	    threadSafe = false;
+	    sessionSlots.clear();
+	    slotLocks.clear();
+	}
     }
 
     public void destroy() throws CryptokiException {
@@ -265,7 +335,7 @@ public class MiddleWareWrapper {
     public CkSlot getSlotInfo(long slotID) throws CryptokiException {
 	// init slot info
 	CK_SLOT_INFO info = new CK_SLOT_INFO();
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSlot(slotID)) {
 	    // fill slot info with data recieved from lib
 	    check("C_GetSlotInfo", () -> lib.C_GetSlotInfo(new NativeLong(slotID), info));
 	    // return new info
@@ -278,7 +348,7 @@ public class MiddleWareWrapper {
     public MwToken getTokenInfo(long slotID) throws CryptokiException {
 	// init token info
 	CK_TOKEN_INFO pInfo = new CK_TOKEN_INFO();
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSlot(slotID)) {
 	    // fill token info
 	    check("C_GetTokenInfo", () -> lib.C_GetTokenInfo(new NativeLong(slotID), pInfo));
 	    // return new token info
@@ -291,7 +361,7 @@ public class MiddleWareWrapper {
     public MwMechanism getMechanismInfo(long slotID, long type) throws CryptokiException {
 	// init new mecha info
 	CK_MECHANISM_INFO info = new CK_MECHANISM_INFO();
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSlot(slotID)) {
 	    // fill info
 	    check("C_GetMechanismInfo", () -> lib.C_GetMechanismInfo(new NativeLong(slotID), new NativeLong(type), info));
 	    // return new mecha info
@@ -308,7 +378,7 @@ public class MiddleWareWrapper {
 
     private long getMechanismListCnt(long slotID) throws CryptokiException {
 	NativeLongByReference pulCount = new NativeLongByReference(new NativeLong(0));
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSlot(slotID)) {
 	    // get number
 	    check("C_GetMechanismList", () -> lib.C_GetMechanismList(new NativeLong(slotID), null, pulCount));
 	    // return number
@@ -326,7 +396,7 @@ public class MiddleWareWrapper {
 	    NativeLongArray pMechanismList = new NativeLongArray((int) cnt);
 	    NativeLongByReference pulCount = new NativeLongByReference(new NativeLong(cnt));
 
-	    try (LockedObject lo = lockInternal()) {
+	    try (LockedObject lo = lockSlot(slotID)) {
 		check("C_GetMechanismList", () -> lib.C_GetMechanismList(new NativeLong(slotID), pMechanismList.getReference(), pulCount));
 
 		// convert to array
@@ -345,23 +415,28 @@ public class MiddleWareWrapper {
 	NativeLongByReference session = new NativeLongByReference();
 	Pointer pApplication = new Memory(NativeLong.SIZE);
 
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSlot(slotID)) {
 	    // open session
 	    check("C_OpenSession", () -> lib.C_OpenSession(new NativeLong(slotID), new NativeLong(flags), pApplication, null, session));
 
+	    // remember slot of the session, so that session functions use the same lock
+	    long hSession = session.getValue().longValue();
+	    sessionSlots.put(hSession, slotID);
 	    // return session id
-	    return session.getValue().longValue();
+	    return hSession;
 	} catch (InterruptedException ex) {
 	    throw new IllegalStateException("Failed to release lock for middleware access.");
 	}
     }
 
     public void closeSession(long session) throws CryptokiException {
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSession(session)) {
 	    // close session
 	    check("C_CloseSession", () -> lib.C_CloseSession(new NativeLong(session)));
 	} catch (InterruptedException ex) {
 	    throw new IllegalStateException("Failed to release lock for middleware access.");
+	} finally {
+	    sessionSlots.remove(session);
 	}
     }
 
@@ -369,7 +444,7 @@ public class MiddleWareWrapper {
 	// TODO: convert result to own struct
 	NativeLong sessionId = new NativeLong(session);
 	CK_SESSION_INFO sessionInfo = new CK_SESSION_INFO();
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSession(session)) {
 	    // close session
 	    check("C_CloseSession", () -> lib.C_GetSessionInfo(sessionId, sessionInfo));
 	    return sessionInfo;
@@ -387,7 +462,7 @@ public class MiddleWareWrapper {
 	} else {
 	    pinBytes = null;
 	}
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSession(hSession)) {
 	    // login to session with pin and usertype
 	    check("C_InitPIN", () -> lib.C_InitPIN(new NativeLong(hSession), pinBytes, pinLen));
 	} catch (InterruptedException ex) {
@@ -396,7 +471,7 @@ public class MiddleWareWrapper {
     }
 
     public void setPin(long hSession, @Nullable byte[] oldPin, @Nullable byte[] newPin) throws CryptokiException {
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSession(hSession)) {
 	    if (oldPin != null && oldPin.length > 0 && newPin != null && newPin.length > 0) {
 		NativeLong oldPinlen = new NativeLong(oldPin.length);
 		ByteBuffer oldPinBytes = ByteBuffer.wrap(oldPin);
@@ -423,7 +498,7 @@ public class MiddleWareWrapper {
 	}
 	final ByteBuffer pinBytes = pinBytesTmp;
 
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSession(hSession)) {
 	    FutureTask<Void> task = new FutureTask<>(() -> {
 		// login to session with pin and usertype
 		check("C_Login", () -> MiddleWareWrapper.this.lib.C_Login(new NativeLong(hSession),
@@ -458,7 +533,7 @@ public class MiddleWareWrapper {
     }
 
     public void logout(long hSession) throws CryptokiException {
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSession(hSession)) {
 	    // logout from session
 	    check("C_Logout", () -> lib.C_Logout(new NativeLong(hSession)));
 	} catch (InterruptedException ex) {
@@ -480,7 +555,7 @@ public class MiddleWareWrapper {
 	    attr.setUlValueLen(new NativeLong(0));
 	}
 
-	try (LockedObject lo = lockInternal()) {
+	try (LockedObject lo = lockSession(hSession)) {
 	    // determine size of data to read and allocate space
 	    check("C_GetAttributeValue", () -> lib.C_GetAttributeValue(new NativeLong(hSession), new NativeLong(hObject),
 		    baseAttr, new NativeLong(attrs.length)));
@@ -706,15 +781,25 @@ public class MiddleWareWrapper {
 
     private class LockedObject implements Closeable {
 
+	private final Semaphore lock;
+
+	private LockedObject(Semaphore lock) {
+	    this.lock = lock;
+	}
+
 	@Override
 	public void close() {
-	    threadLock.release();
+	    lock.release();
 	}
 
     }
 
     public class LockedMiddlewareWrapper extends LockedObject {
 
+	private LockedMiddlewareWrapper(Semaphore lock) {
+	    super(lock);
+	}
+
 	public void findObjectsInit(long hSession, CK_ATTRIBUTE pTemplate, int ulCount) throws CryptokiException {
 	    NativeLong arraySizeRef = new NativeLong(ulCount);
 
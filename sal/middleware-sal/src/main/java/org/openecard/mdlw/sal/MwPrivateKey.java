@@ -245,7 +245,7 @@ public class MwPrivateKey extends MwAbstractKey {
      */
     public byte[] sign(byte[] data) throws CryptokiException {
 
-	try (MiddleWareWrapper.LockedMiddlewareWrapper lmw = mw.lock()) {
+	try (MiddleWareWrapper.LockedMiddlewareWrapper lmw = mw.lock(session.getSessionId())) {
 	    return lmw.sign(session.getSessionId(), data);
 	} catch (InterruptedException ex) {
 	    throw new ThreadTerminateException("Thread interrupted while waiting for Middleware lock.", ex);
@@ -281,7 +281,7 @@ public class MwPrivateKey extends MwAbstractKey {
 
         CK_MECHANISM pMechanism = new CK_MECHANISM(new NativeLong(mechanism, true), paramsPtr, paramsPtrSize);
 
-	try (MiddleWareWrapper.LockedMiddlewareWrapper lmw = mw.lock()) {
+	try (MiddleWareWrapper.LockedMiddlewareWrapper lmw = mw.lock(session.getSessionId())) {
 	    lmw.signInit(session.getSessionId(), pMechanism, objectHandle);
 	} catch (InterruptedException ex) {
 	    throw new ThreadTerminateException("Thread interrupted while waiting for Middleware lock.", ex);
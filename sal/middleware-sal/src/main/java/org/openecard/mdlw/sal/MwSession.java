@@ -318,7 +318,7 @@ public class MwSession {
     }
 
     private List<Long> findObjects(CK_ATTRIBUTE pTemplate) throws CryptokiException {
-	try (MiddleWareWrapper.LockedMiddlewareWrapper lmw = mw.lock()) {
+	try (MiddleWareWrapper.LockedMiddlewareWrapper lmw = mw.lock(sessionHandle)) {
 	    lmw.findObjectsInit(sessionHandle, pTemplate, 1);
 	    List<Long> res = lmw.findObjects(sessionHandle);
 	    lmw.findObjectsFinalize(sessionHandle);
@@ -13,6 +13,8 @@ package org.openecard.common.sal.state;
 import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
 import java.math.BigInteger;
 import java.util.Arrays;
+import javax.annotation.Nullable;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.sal.state.cif.CardInfoWrapper;
 import org.openecard.common.util.ByteUtils;
 
@@ -27,12 +29,34 @@ public class CardEntry implements Comparable<CardEntry> {
     protected String ifdName;
     protected BigInteger slotIdx;
     protected CardInfoWrapper cif;
+    protected byte[] cardIdentifier;
+    protected CardCapabilities capabilities;
 
     public CardEntry(byte[] ctxHandle, String ifdName, BigInteger slotIdx, CardInfoWrapper cif) {
+	this(ctxHandle, ifdName, slotIdx, cif, null);
+    }
+
+    /**
+     * Creates a card entry.
+     *
+     * @param ctxHandle Context handle of the IFD.
+     * @param ifdName Name of the terminal the card is inserted in.
+     * @param slotIdx Index of the slot the card is inserted in.
+     * @param cif CardInfo of the card.
+     * @param cardIdentifier ATR or ATS of the card, may be {@code null} if not known.
+     */
+    public CardEntry(byte[] ctxHandle, String ifdName, BigInteger slotIdx, CardInfoWrapper cif,
+	    @Nullable byte[] cardIdentifier) {
 	this.ctxHandle = ByteUtils.clone(ctxHandle);
 	this.ifdName = ifdName;
 	this.slotIdx = slotIdx;
 	this.cif = new CardInfoWrapper(cif);
+	this.cardIdentifier = ByteUtils.clone(cardIdentifier);
+	this.capabilities = CardCapabilities.fromATR(cardIdentifier);
+	if (this.capabilities == null) {
+	    // contactless cards usually do not state their capabilities in the ATS
+	    this.capabilities = this.cif.getLengthCapabilities();
+	}
     }
 
     public boolean matches(byte[] ctxHandle, String ifdName, BigInteger slotIdx) {
@@ -79,10 +103,31 @@ public class CardEntry implements Comparable<CardEntry> {
 	return cif;
     }
 
+    /**
+     * Gets the ATR or ATS of the card.
+     *
+     * @return The card identifier, or {@code null} if it is not known.
+     */
+    @Nullable
+    public byte[] getCardIdentifier() {
+	return ByteUtils.clone(cardIdentifier);
+    }
+
     public byte[] getCardApplication() {
 	return null;
     }
 
+    /**
+     * Gets the capabilities of the card relevant for the APDU encoding.
+     * They are taken from the ATR of the card, or from the CardInfo if the ATR does not contain them.
+     *
+     * @return The capabilities of the card, or {@code null} if they are unknown.
+     */
+    @Nullable
+    public CardCapabilities getCardCapabilities() {
+	return capabilities;
+    }
+
     public boolean matchesContextHandle(byte[] ctxHandle) {
 	return Arrays.equals(this.ctxHandle, ctxHandle);
     }
@@ -103,6 +148,9 @@ public class CardEntry implements Comparable<CardEntry> {
 	    connectionHandle.setRecognitionInfo(recogInfo);
 	}
 	recogInfo.setCardType(this.cif.getCardType());
+	if (this.cardIdentifier != null) {
+	    recogInfo.setCardIdentifier(ByteUtils.clone(this.cardIdentifier));
+	}
     }
 
     @Override
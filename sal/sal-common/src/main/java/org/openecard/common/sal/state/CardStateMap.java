@@ -31,19 +31,24 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import org.openecard.addon.AddonSelector;
 import org.openecard.addon.sal.SALProtocol;
-import org.openecard.common.util.ByteComparator;
+import org.openecard.common.util.ByteArrayWrapper;
 import org.openecard.common.util.ByteUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 /**
+ * Index of the card state entries.
+ * The entries are indexed by session, context handle, slot handle and IFD name with slot index. Lookups are performed
+ * without locking by iterating the smallest matching index and checking the remaining criteria on these entries only.
+ * Modifications of the indexes are serialized.
  *
  * @author Tobias Wich
  */
@@ -51,10 +56,15 @@ public class CardStateMap {
 
     private static final Logger LOG = LoggerFactory.getLogger(CardStateMap.class);
 
-    private final TreeSet<CardStateEntry> allEntries = new TreeSet<>();
-    private final ConcurrentSkipListMap<String,Set<CardStateEntry>> sessionMap = new ConcurrentSkipListMap<>();
-    private final ConcurrentSkipListMap<byte[],Set<CardStateEntry>> contextMap = new ConcurrentSkipListMap<>(new ByteComparator());
-    private final ConcurrentSkipListMap<byte[],Set<CardStateEntry>> slothandleMap = new ConcurrentSkipListMap<>(new ByteComparator());
+    private final Set<CardStateEntry> allEntries = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<String,Set<CardStateEntry>> sessionMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ByteArrayWrapper,Set<CardStateEntry>> contextMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<ByteArrayWrapper,Set<CardStateEntry>> slothandleMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<IfdSlotKey,Set<CardStateEntry>> ifdSlotMap = new ConcurrentHashMap<>();
+    // entries without IFD name or slot index match every terminal slot
+    private final Set<CardStateEntry> unslottedEntries = ConcurrentHashMap.newKeySet();
+    // slot handles each entry is indexed with, needed to remove all of them at once
+    private final ConcurrentHashMap<CardStateEntry,Set<ByteArrayWrapper>> entrySlotHandles = new ConcurrentHashMap<>();
 
     private AddonSelector protocolSelector;
 
@@ -63,16 +73,18 @@ public class CardStateMap {
     }
 
 
-    public synchronized CardStateEntry getEntry(ConnectionHandleType handle) {
+    public CardStateEntry getEntry(ConnectionHandleType handle) {
 	return getEntry(handle, true);
     }
-    public synchronized CardStateEntry getEntry(ConnectionHandleType handle, boolean filterAppId) {
+    public CardStateEntry getEntry(ConnectionHandleType handle, boolean filterAppId) {
 	if (LOG.isDebugEnabled()) {
 	    LOG.debug("Requesting entry (filterAppId={}) for handle:{}{}",
 		    filterAppId, System.lineSeparator(), HandlePrinter.printHandle(handle));
-	    LOG.debug("Current state entries are:");
+	}
+	if (LOG.isTraceEnabled()) {
+	    LOG.trace("Current state entries are:");
 	    for (CardStateEntry e : allEntries) {
-		LOG.debug("{}{}", e, System.lineSeparator());
+		LOG.trace("{}{}", e, System.lineSeparator());
 	    }
 	}
 
@@ -98,8 +110,18 @@ public class CardStateMap {
 	if (channel != null) {
 	    addMapEntry(channel.getSessionIdentifier(), sessionMap, entry);
 	}
-	addMapEntry(handle.getContextHandle(), contextMap, entry);
-	addMapEntry(handle.getSlotHandle(), slothandleMap, entry);
+	addMapEntry(wrap(handle.getContextHandle()), contextMap, entry);
+	ByteArrayWrapper slotHandle = wrap(handle.getSlotHandle());
+	if (slotHandle != null) {
+	    addMapEntry(slotHandle, slothandleMap, entry);
+	    entrySlotHandles.computeIfAbsent(entry, k -> ConcurrentHashMap.newKeySet()).add(slotHandle);
+	}
+	IfdSlotKey ifdSlot = IfdSlotKey.create(handle.getIFDName(), handle.getSlotIndex());
+	if (ifdSlot != null) {
+	    addMapEntry(ifdSlot, ifdSlotMap, entry);
+	} else {
+	    unslottedEntries.add(entry);
+	}
 	allEntries.add(entry);
     }
 
@@ -115,11 +137,9 @@ public class CardStateMap {
 		    System.lineSeparator(), HandlePrinter.printHandle(handle));
 	}
 	Set<CardStateEntry> entries = getMatchingEntries(handle);
-	Iterator<CardStateEntry> it = entries.iterator();
 	boolean removeSlotHandles = handle.getSlotHandle() == null;
 
-	while (it.hasNext()) {
-	    CardStateEntry entry = it.next();
+	for (CardStateEntry entry : entries) {
 	    removeEntry(entry, removeSlotHandles);
 	}
     }
@@ -166,20 +186,30 @@ public class CardStateMap {
 	    removeMapEntry(channel.getSessionIdentifier(), sessionMap, entry);
 	}
 	LOG.debug("Removing entry from context map for ctx={}.", ByteUtils.toHexString(handle.getContextHandle()));
-	removeMapEntry(handle.getContextHandle(), contextMap, entry);
+	removeMapEntry(wrap(handle.getContextHandle()), contextMap, entry);
 	// remove all or just the one a key is given for
 	if (removeSlotHandles) {
 	    LOG.debug("Removing all entries for SlotHandles.");
-	    Iterator<byte[]> it = slothandleMap.keySet().iterator();
-	    while (it.hasNext()) {
-		byte[] key = it.next();
-		LOG.debug("Removing entry for slot={}.", ByteUtils.toHexString(key));
-		removeMapEntry(key, slothandleMap, entry);
+	    Set<ByteArrayWrapper> slotHandles = entrySlotHandles.remove(entry);
+	    if (slotHandles != null) {
+		for (ByteArrayWrapper key : slotHandles) {
+		    removeMapEntry(key, slothandleMap, entry);
+		}
 	    }
 	} else {
 	    LOG.debug("Removing entry for slot={}.", ByteUtils.toHexString(handle.getSlotHandle()));
-	    removeMapEntry(handle.getSlotHandle(), slothandleMap, entry);
+	    ByteArrayWrapper key = wrap(handle.getSlotHandle());
+	    removeMapEntry(key, slothandleMap, entry);
+	    Set<ByteArrayWrapper> slotHandles = entrySlotHandles.get(entry);
+	    if (key != null && slotHandles != null) {
+		slotHandles.remove(key);
+		if (slotHandles.isEmpty()) {
+		    entrySlotHandles.remove(entry);
+		}
+	    }
 	}
+	removeMapEntry(IfdSlotKey.create(handle.getIFDName(), handle.getSlotIndex()), ifdSlotMap, entry);
+	unslottedEntries.remove(entry);
 
 	LOG.debug("Removing all protocol instances.");
 	clearProtocolsForEntry(entry);
@@ -189,29 +219,25 @@ public class CardStateMap {
     }
 
 
-    private <K> void addMapEntry(K key, ConcurrentSkipListMap<K,Set<CardStateEntry>> map, CardStateEntry entry) {
+    private static <K> void addMapEntry(K key, ConcurrentHashMap<K,Set<CardStateEntry>> map, CardStateEntry entry) {
 	if (key != null) {
-	    Set<CardStateEntry> entrySet = setFromMap(map, key);
-	    boolean empty = entrySet.isEmpty();
-	    entrySet.add(entry);
-	    if (empty) {
-		map.put(key, entrySet);
-	    }
+	    map.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(entry);
 	}
     }
 
-    private <K> void removeMapEntry(K key, ConcurrentSkipListMap<K,Set<CardStateEntry>> map, CardStateEntry entry) {
+    private static <K> void removeMapEntry(K key, ConcurrentHashMap<K,Set<CardStateEntry>> map, CardStateEntry entry) {
 	if (key != null) {
-	    if (map.containsKey(key)) {
-		Set<CardStateEntry> entrySet = map.get(key);
+	    map.computeIfPresent(key, (k, entrySet) -> {
 		entrySet.remove(entry);
-		if (entrySet.isEmpty()) {
-		    map.remove(key);
-		}
-	    }
+		return entrySet.isEmpty() ? null : entrySet;
+	    });
 	}
     }
 
+    private static ByteArrayWrapper wrap(byte[] value) {
+	return value != null ? new ByteArrayWrapper(value) : null;
+    }
+
 
     public Set<CardStateEntry> getMatchingEntries(ConnectionHandleType cHandle) {
 	return getMatchingEntries(cHandle, true);
@@ -227,7 +253,7 @@ public class CardStateMap {
 	return getMatchingEntries(cHandle, null, null, filterAppId);
     }
 
-    private synchronized Set<CardStateEntry> getMatchingEntries(CardApplicationPathType cHandle, byte[] slotHandle,
+    private Set<CardStateEntry> getMatchingEntries(CardApplicationPathType cHandle, byte[] slotHandle,
 	    RecognitionInfo recInfo, boolean filterAppId) {
 	// extract values from map
 	ChannelHandleType channel = cHandle.getChannelHandle();
@@ -236,166 +262,160 @@ public class CardStateMap {
 	String ifdname = cHandle.getIFDName();
 	BigInteger slotIdx = cHandle.getSlotIndex();
 	byte[] cardApplication = cHandle.getCardApplication();
+	String cardType = (recInfo != null) ? recInfo.getCardType() : null;
 
-	// when nothing has been specified, return all elements
-	Set<CardStateEntry> mergedSets;
-	if (session == null && ctx == null && slotHandle == null) {
-	    mergedSets = new TreeSet<>(allEntries);
-	} else {
-	    // fetch applicable lists from maps
-	    Set<CardStateEntry> sessionEntries = setFromMap(sessionMap, session);
-	    Set<CardStateEntry> ctxEntries = setFromMap(contextMap, ctx);
-	    Set<CardStateEntry> slothandleEntries = setFromMap(slothandleMap, slotHandle);
-
-	    // merge entries
-	    ArrayList<Set<CardStateEntry>> setsToMerge = new ArrayList<>(3);
-	    if (session != null) {
-		setsToMerge.add(sessionEntries);
-	    }
-	    if (ctx != null) {
-		setsToMerge.add(ctxEntries);
-	    }
-	    if (slotHandle != null) {
-		setsToMerge.add(slothandleEntries);
-	    }
-
-	    mergedSets = mergeSets(setsToMerge);
+	// fetch the index sets an entry must be contained in
+	ArrayList<Set<CardStateEntry>> requiredSets = new ArrayList<>(3);
+	if (session != null) {
+	    requiredSets.add(setFromMap(sessionMap, session));
 	}
-
-	// filter maps for slotIndex if any is given
-	if (slotIdx != null) {
-	    filterIdx(mergedSets, slotIdx);
+	if (ctx != null) {
+	    requiredSets.add(setFromMap(contextMap, new ByteArrayWrapper(ctx)));
 	}
-	if (ifdname != null) {
-	    filterIfdname(mergedSets, ifdname);
+	if (slotHandle != null) {
+	    requiredSets.add(setFromMap(slothandleMap, new ByteArrayWrapper(slotHandle)));
 	}
 
-	if (filterAppId && cardApplication != null) {
-	    filterCardApplication(mergedSets, cardApplication);
+	// only walk the smallest set of candidates
+	Collection<Set<CardStateEntry>> candidates;
+	if (! requiredSets.isEmpty()) {
+	    Set<CardStateEntry> smallest = requiredSets.get(0);
+	    for (Set<CardStateEntry> next : requiredSets) {
+		if (next.size() < smallest.size()) {
+		    smallest = next;
+		}
+	    }
+	    candidates = Collections.singletonList(smallest);
+	} else if (ifdname != null && slotIdx != null) {
+	    candidates = Arrays.asList(setFromMap(ifdSlotMap, new IfdSlotKey(ifdname, slotIdx)), unslottedEntries);
 	} else {
-	    // [TR-03112-4] If no card application is specified, paths to all
-	    // available cards (alpha-card applications) and unused card
-	    // terminal slots are returned.
+	    // when nothing has been specified, check all elements
+	    candidates = Collections.singletonList(allEntries);
 	}
 
-	if (recInfo != null && recInfo.getCardType() != null) {
-	    filterCardType(mergedSets, recInfo.getCardType());
+	TreeSet<CardStateEntry> result = new TreeSet<>();
+	for (Set<CardStateEntry> candidateSet : candidates) {
+	    for (CardStateEntry next : candidateSet) {
+		if (containedInAll(next, requiredSets)
+			&& matchesIdx(next, slotIdx)
+			&& matchesIfdname(next, ifdname)
+			// [TR-03112-4] If no card application is specified, paths to all
+			// available cards (alpha-card applications) and unused card
+			// terminal slots are returned.
+			&& (! filterAppId || matchesCardApplication(next, cardApplication))
+			&& matchesCardType(next, cardType)) {
+		    result.add(next);
+		}
+	    }
 	}
 
-	return mergedSets;
+	return result;
     }
 
 
     /**
      * Simplify returning a result from the map.<br>
-     * If key is null or no key is present, the empty list is returned.
+     * If no key is present, the empty set is returned.
      *
      * @param <K>
      * @param map
      * @param key
      * @return
      */
-    private static <K> Set<CardStateEntry> setFromMap(ConcurrentSkipListMap<K, Set<CardStateEntry>> map, K key) {
-	Set<CardStateEntry> result = null;
-	if (key != null) {
-	    result = map.get(key);
-	}
+    private static <K> Set<CardStateEntry> setFromMap(ConcurrentHashMap<K, Set<CardStateEntry>> map, K key) {
+	Set<CardStateEntry> result = map.get(key);
+	return (result != null) ? result : Collections.<CardStateEntry>emptySet();
+    }
 
-	return (result != null) ? result : new TreeSet<>();
+    private static boolean containedInAll(CardStateEntry entry, Collection<Set<CardStateEntry>> sets) {
+	for (Set<CardStateEntry> next : sets) {
+	    if (! next.contains(entry)) {
+		return false;
+	    }
+	}
+	return true;
     }
 
     /**
-     * Remove non matching entries (slotIndex) from given list.
+     * Check whether the entry matches the given slotIndex.
      *
-     * @param entries
+     * @param entry
      * @param idx
+     * @return
      */
-    private static void filterIdx(Set<CardStateEntry> entries, BigInteger idx) {
-	Iterator<CardStateEntry> it = entries.iterator();
-	while (it.hasNext()) {
-	    CardStateEntry next = it.next();
-	    // other index is not equal to this one
-	    if (next.hasSlotIdx() && ! next.matchSlotIdx(idx)) {
-		it.remove();
-	    }
-	}
+    private static boolean matchesIdx(CardStateEntry entry, BigInteger idx) {
+	// other index is not equal to this one
+	return idx == null || ! entry.hasSlotIdx() || entry.matchSlotIdx(idx);
     }
 
     /**
-     * Remove non matching entries (cardApplication) from given list.
+     * Check whether the entry matches the given cardApplication.
      *
-     * @param entries
+     * @param entry
      * @param cardApplication
+     * @return
      */
-    private static void filterCardApplication(Set<CardStateEntry> entries, byte[] cardApplication) {
-	Iterator<CardStateEntry> it = entries.iterator();
-	while (it.hasNext()) {
-	    CardStateEntry next = it.next();
-	    if (! Arrays.equals(next.getCurrentCardApplication().getApplicationIdentifier(), cardApplication)) {
-		it.remove();
-	    }
-	}
+    private static boolean matchesCardApplication(CardStateEntry entry, byte[] cardApplication) {
+	return cardApplication == null
+		|| Arrays.equals(entry.getCurrentCardApplication().getApplicationIdentifier(), cardApplication);
     }
 
     /**
-     * Remove non matching entries (ifdName) from given list.
+     * Check whether the entry matches the given ifdName.
      *
-     * @param entries
-     * @param ifdname
+     * @param entry
+     * @param ifdName
+     * @return
      */
-    private static void filterIfdname(Set<CardStateEntry> entries, String ifdName) {
-	Iterator<CardStateEntry> it = entries.iterator();
-	while (it.hasNext()) {
-	    CardStateEntry next = it.next();
-	    String otherName = next.getIfdName();
-	    // other ifdName is not equal to this one
-	    if (otherName != null && ! otherName.equals(ifdName)) {
-		it.remove();
-	    }
-	}
+    private static boolean matchesIfdname(CardStateEntry entry, String ifdName) {
+	String otherName = entry.getIfdName();
+	// other ifdName is not equal to this one
+	return ifdName == null || otherName == null || otherName.equals(ifdName);
     }
 
     /**
-     * Remove non matching entries (cardType) from given list.
+     * Check whether the entry matches the given cardType.
      *
-     * @param entries
+     * @param entry
      * @param cardType
+     * @return
      */
-    private static void filterCardType(Set<CardStateEntry> entries, String cardType) {
-	Iterator<CardStateEntry> it = entries.iterator();
-	while (it.hasNext()) {
-	    CardStateEntry next = it.next();
-	    String otherType = next.getCardType();
-	    // other ifdName is not equal to this one
-	    if (! otherType.equals(cardType)) {
-		it.remove();
-	    }
-	}
+    private static boolean matchesCardType(CardStateEntry entry, String cardType) {
+	return cardType == null || entry.getCardType().equals(cardType);
     }
 
-    private static Set<CardStateEntry> mergeSets(ArrayList<Set<CardStateEntry>> setsToMerge) {
-	TreeSet<CardStateEntry> result = new TreeSet<>();
 
-	if (setsToMerge.isEmpty()) {
-	    return Collections.emptySet();
-	} else {
-	    // add first then try to merge the others
-	    result.addAll(setsToMerge.get(0));
-	    if (setsToMerge.size() >= 2) {
-		for (Set<CardStateEntry> nextSet : setsToMerge.subList(1, setsToMerge.size())) {
-		    Iterator<CardStateEntry> it = result.iterator();
-		    while (it.hasNext()) {
-			CardStateEntry nextEntry = it.next();
-			// remove entry from results if it is not present in the next set
-			if (! nextSet.contains(nextEntry)) {
-			    it.remove();
-			}
-		    }
-		}
+    /**
+     * Key of the IFD name and slot index index.
+     */
+    private static final class IfdSlotKey {
+
+	private final String ifdName;
+	private final BigInteger slotIdx;
+
+	IfdSlotKey(String ifdName, BigInteger slotIdx) {
+	    this.ifdName = ifdName;
+	    this.slotIdx = slotIdx;
+	}
+
+	static IfdSlotKey create(String ifdName, BigInteger slotIdx) {
+	    return (ifdName != null && slotIdx != null) ? new IfdSlotKey(ifdName, slotIdx) : null;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    if (obj instanceof IfdSlotKey) {
+		IfdSlotKey other = (IfdSlotKey) obj;
+		return ifdName.equals(other.ifdName) && slotIdx.equals(other.slotIdx);
 	    }
-	    // done
-	    return result;
+	    return false;
 	}
+
+	@Override
+	public int hashCode() {
+	    return Objects.hash(ifdName, slotIdx);
+	}
+
     }
 
 }
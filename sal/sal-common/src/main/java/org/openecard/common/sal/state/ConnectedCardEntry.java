@@ -35,7 +35,7 @@ public class ConnectedCardEntry extends CardEntry {
     private FCP lastSelectedEfFCP;
 
     public ConnectedCardEntry(byte[] slotHandle, byte[] cardApplication, CardEntry base) {
-	super(base.ctxHandle, base.ifdName, base.slotIdx, base.cif);
+	super(base.ctxHandle, base.ifdName, base.slotIdx, base.cif, base.cardIdentifier);
 	this.slotHandle = ByteUtils.clone(slotHandle);
 	this.cardApplication = ByteUtils.clone(cardApplication);
     }
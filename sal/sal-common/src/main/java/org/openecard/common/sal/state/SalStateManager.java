@@ -14,13 +14,15 @@ import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import javax.annotation.Nullable;
 import org.openecard.common.sal.state.cif.CardInfoWrapper;
+import org.openecard.common.util.ByteArrayWrapper;
 import org.openecard.common.util.ByteUtils;
 import org.openecard.common.util.ValueGenerators;
 import org.slf4j.Logger;
@@ -38,47 +40,71 @@ public class SalStateManager implements SalStateView {
     private static final Logger LOG = LoggerFactory.getLogger(SalStateManager.class);
 
     private final Set<CardEntry> cards;
+    private final Map<CardKey, CardEntry> cardIndex;
+    private final Map<ByteArrayWrapper, ConnectedCardEntry> connectedCards;
     private final Map<String, StateEntry> sessions;
+    private final Map<ByteArrayWrapper, StateEntry> sessionsBySlotHandle;
 
     public SalStateManager() {
-	this.cards = new TreeSet<>();
-	this.sessions = new HashMap<>();
+	this.cards = new ConcurrentSkipListSet<>();
+	this.cardIndex = new ConcurrentHashMap<>();
+	this.connectedCards = new ConcurrentHashMap<>();
+	this.sessions = new ConcurrentHashMap<>();
+	this.sessionsBySlotHandle = new ConcurrentHashMap<>();
     }
 
     // card handling
     public CardEntry addCard(byte[] ctx, String ifdName, BigInteger slotIdx, CardInfoWrapper cif) throws DuplicateCardEntry {
-	CardEntry ce = new CardEntry(ctx, ifdName, slotIdx, cif);
-	if (cards.contains(ce)) {
+	return addCard(ctx, ifdName, slotIdx, cif, null);
+    }
+
+    public synchronized CardEntry addCard(byte[] ctx, String ifdName, BigInteger slotIdx, CardInfoWrapper cif,
+	    @Nullable byte[] cardIdentifier) throws DuplicateCardEntry {
+	CardKey key = new CardKey(ctx, ifdName, slotIdx);
+	if (cardIndex.containsKey(key)) {
 	    LOG.error("Failed to add duplicate card entry.");
 	    throw new DuplicateCardEntry(String.format("Failed to add duplicate card entry for device=%s.", ifdName));
 	} else {
+	    CardEntry ce = new CardEntry(ctx, ifdName, slotIdx, cif, cardIdentifier);
+	    cardIndex.put(key, ce);
 	    cards.add(ce);
 	    return ce;
 	}
     }
 
-    public void addCard(ConnectedCardEntry connectedCardEntry) {
-	if (!this.cards.add(connectedCardEntry)) {
-	    this.cards.remove(connectedCardEntry);
-	    this.cards.add(connectedCardEntry);
+    public synchronized void addCard(ConnectedCardEntry connectedCardEntry) {
+	CardKey key = new CardKey(connectedCardEntry);
+	CardEntry oldEntry = cardIndex.put(key, connectedCardEntry);
+	if (oldEntry != null) {
+	    cards.remove(oldEntry);
+	    unindexConnectedCard(oldEntry);
 	    LOG.debug("Added card: {}", connectedCardEntry);
 	}
+	cards.add(connectedCardEntry);
+	byte[] slotHandle = connectedCardEntry.getSlotHandle();
+	if (slotHandle != null) {
+	    connectedCards.put(new ByteArrayWrapper(slotHandle), connectedCardEntry);
+	}
+    }
+
+    private void unindexConnectedCard(CardEntry entry) {
+	if (entry instanceof ConnectedCardEntry) {
+	    byte[] slotHandle = ((ConnectedCardEntry) entry).getSlotHandle();
+	    if (slotHandle != null) {
+		connectedCards.remove(new ByteArrayWrapper(slotHandle), entry);
+	    }
+	}
     }
 
-    public boolean removeCard(byte[] ctx, String ifdName, BigInteger idx) {
+    public synchronized boolean removeCard(byte[] ctx, String ifdName, BigInteger idx) {
 	LOG.debug("Request remove card: {}", new HexShim(ctx), ifdName, idx);
-	Iterator<CardEntry> it = cards.iterator();
 	boolean removed = false;
-	while (it.hasNext()) {
-	    CardEntry next = it.next();
-	    if (next.matches(ctx, ifdName, idx)) {
-		LOG.debug("Removing known matching card [{}, {}, {}]", new HexShim(ctx), ifdName, idx);
-		it.remove();
-
-		removed = true;
-	    } else {
-		LOG.debug("Did not match for removal: [{}, {}, {}]", new HexShim(next.ctxHandle), next.ifdName, next.slotIdx);
-	    }
+	CardEntry removedEntry = cardIndex.remove(new CardKey(ctx, ifdName, idx));
+	if (removedEntry != null) {
+	    LOG.debug("Removing known matching card [{}, {}, {}]", new HexShim(ctx), ifdName, idx);
+	    cards.remove(removedEntry);
+	    unindexConnectedCard(removedEntry);
+	    removed = true;
 	}
 	Map.Entry<String, StateEntry> matchingState = this.getStateEntry(ctx);
 	if (matchingState != null) {
@@ -107,24 +133,12 @@ public class SalStateManager implements SalStateView {
 	    return true;
 	}
 
-	for (ConnectionHandleType cardHandle : this.listCardHandles()) {
-	    if (ByteUtils.compare(contextHandle, cardHandle.getContextHandle())
-		    &&  givenIfdName.equals(cardHandle.getIFDName())
-		    && ByteUtils.compare(givenSlotIndex, cardHandle.getSlotHandle())) {
-		return false;
-	    }
-	}
-	return true;
+	ConnectedCardEntry card = connectedCards.get(new ByteArrayWrapper(givenSlotIndex));
+	return card == null || ! card.matchesContextHandle(contextHandle) || ! givenIfdName.equals(card.getIfdName());
     }
 
     public CardEntry getCardEntry(byte[] ctx, String ifdName, BigInteger slotIdx) {
-	for (CardEntry next : cards) {
-	    if (next.matches(ctx, ifdName, slotIdx)) {
-		return next;
-	    }
-	}
-	// no match
-	return null;
+	return cardIndex.get(new CardKey(ctx, ifdName, slotIdx));
     }
 
     public CardEntry getCardEntry(byte[] ctx) {
@@ -163,24 +177,46 @@ public class SalStateManager implements SalStateView {
 
 
     public StateEntry createSession(String session, byte[] contextHandle) throws SessionAlreadyExists {
-	if (sessions.containsKey(session)) {
+	StateEntry newEntry = new StateEntry(session, contextHandle, this);
+	if (sessions.putIfAbsent(session, newEntry) != null) {
 	    throw new SessionAlreadyExists(String.format("The requested session=%s already exists.", session));
 	} else {
-	    StateEntry newEntry = new StateEntry(session, contextHandle);
-	    sessions.put(session, newEntry);
 	    return newEntry;
 	}
     }
 
     public StateEntry getSessionBySlotHandle(byte[] slotHandle) throws NoSuchSession {
-	StateEntry found = null;
-	for (StateEntry currentSession : this.sessions.values()) {
-	    ConnectedCardEntry currentEntry = currentSession.getCardEntry();
-	    if (currentEntry != null && ByteUtils.compare(slotHandle, currentEntry.getSlotHandle())) {
-		return currentSession;
+	if (slotHandle != null) {
+	    StateEntry found = sessionsBySlotHandle.get(new ByteArrayWrapper(slotHandle));
+	    if (found != null) {
+		return found;
+	    }
+	    // the index only holds the last session connected to a slot, so look for others sharing the slot handle
+	    for (StateEntry currentSession : this.sessions.values()) {
+		ConnectedCardEntry currentEntry = currentSession.getCardEntry();
+		if (currentEntry != null && ByteUtils.compare(slotHandle, currentEntry.getSlotHandle())) {
+		    return currentSession;
+		}
 	    }
 	}
-	throw new NoSuchSession(String.format("The requested session=%s does not exist.", slotHandle));
+	throw new NoSuchSession(String.format("The requested session=%s does not exist.", ByteUtils.toHexString(slotHandle)));
+    }
+
+    /**
+     * Updates the slot handle index after the card of a session changed.
+     *
+     * @param session Session whose card changed.
+     * @param oldCard Card the session was connected to before.
+     * @param newCard Card the session is connected to now.
+     */
+    void updateSlotHandleIndex(StateEntry session, @Nullable ConnectedCardEntry oldCard,
+	    @Nullable ConnectedCardEntry newCard) {
+	if (oldCard != null && oldCard.getSlotHandle() != null) {
+	    sessionsBySlotHandle.remove(new ByteArrayWrapper(oldCard.getSlotHandle()), session);
+	}
+	if (newCard != null && newCard.getSlotHandle() != null && sessions.get(session.getSession()) == session) {
+	    sessionsBySlotHandle.put(new ByteArrayWrapper(newCard.getSlotHandle()), session);
+	}
     }
 
     public StateEntry getSession(String session) throws NoSuchSession {
@@ -202,7 +238,12 @@ public class SalStateManager implements SalStateView {
     }
 
     private boolean destroySession(String session) {
-	return sessions.remove(session) != null;
+	StateEntry removed = sessions.remove(session);
+	if (removed != null) {
+	    updateSlotHandleIndex(removed, removed.getCardEntry(), null);
+	    return true;
+	}
+	return false;
     }
 
     @Override
@@ -216,4 +257,41 @@ public class SalStateManager implements SalStateView {
     }
 
 
+    /**
+     * Key identifying a card by context handle, IFD name and slot index.
+     */
+    private static final class CardKey {
+
+	private final byte[] ctx;
+	private final String ifdName;
+	private final BigInteger slotIdx;
+
+	CardKey(byte[] ctx, String ifdName, BigInteger slotIdx) {
+	    this.ctx = ctx;
+	    this.ifdName = ifdName;
+	    this.slotIdx = slotIdx;
+	}
+
+	CardKey(CardEntry entry) {
+	    this(entry.ctxHandle, entry.ifdName, entry.slotIdx);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+	    if (obj instanceof CardKey) {
+		CardKey other = (CardKey) obj;
+		return Arrays.equals(ctx, other.ctx)
+			&& Objects.equals(ifdName, other.ifdName)
+			&& Objects.equals(slotIdx, other.slotIdx);
+	    }
+	    return false;
+	}
+
+	@Override
+	public int hashCode() {
+	    return 31 * (31 * Arrays.hashCode(ctx) + Objects.hashCode(ifdName)) + Objects.hashCode(slotIdx);
+	}
+
+    }
+
 }
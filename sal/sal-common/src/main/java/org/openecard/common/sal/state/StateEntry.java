@@ -12,6 +12,7 @@ package org.openecard.common.sal.state;
 
 import iso.std.iso_iec._24727.tech.schema.ChannelHandleType;
 import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
+import javax.annotation.Nullable;
 import org.openecard.addon.sal.SALProtocol;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,10 +31,16 @@ public class StateEntry {
     private String protocolName;
     private ConnectedCardEntry cardEntry;
     private byte[] ctxHandle;
+    private final SalStateManager manager;
 
     public StateEntry(String session, byte[] ctxHandle) {
+	this(session, ctxHandle, null);
+    }
+
+    StateEntry(String session, byte[] ctxHandle, @Nullable SalStateManager manager) {
 	this.session = session;
 	this.ctxHandle = ctxHandle;
+	this.manager = manager;
     }
 
     public String getSession() {
@@ -44,13 +51,21 @@ public class StateEntry {
 	if (this.cardEntry != null) {
 	    LOG.warn("Session {} already connected to a card {}. Replacing with card {}.", this.cardEntry, card);
 	}
+	ConnectedCardEntry oldEntry = this.cardEntry;
 	this.cardEntry = new ConnectedCardEntry(slotHandle, cardApplication, card);
 	this.ctxHandle = card.ctxHandle;
+	if (manager != null) {
+	    manager.updateSlotHandleIndex(this, oldEntry, this.cardEntry);
+	}
 	return this.cardEntry;
     }
 
     public void removeCard() {
+	ConnectedCardEntry oldEntry = cardEntry;
 	cardEntry = null;
+	if (manager != null) {
+	    manager.updateSlotHandleIndex(this, oldEntry, null);
+	}
     }
 
     public void setProtocol(SALProtocol protocol, String protocolName) {
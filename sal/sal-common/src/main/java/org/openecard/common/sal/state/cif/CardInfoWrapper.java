@@ -24,6 +24,7 @@ package org.openecard.common.sal.state.cif;
 
 import iso.std.iso_iec._24727.tech.schema.ApplicationCapabilitiesType;
 import iso.std.iso_iec._24727.tech.schema.CardApplicationType;
+import iso.std.iso_iec._24727.tech.schema.CardCapabilitiesType;
 import iso.std.iso_iec._24727.tech.schema.CardInfoType;
 import iso.std.iso_iec._24727.tech.schema.DIDInfoType;
 import iso.std.iso_iec._24727.tech.schema.DIDMarkerType;
@@ -32,12 +33,16 @@ import iso.std.iso_iec._24727.tech.schema.DIDStructureType;
 import iso.std.iso_iec._24727.tech.schema.DSIType;
 import iso.std.iso_iec._24727.tech.schema.DataSetInfoType;
 import iso.std.iso_iec._24727.tech.schema.DataSetNameListType;
+import iso.std.iso_iec._24727.tech.schema.EFATRorINFOType;
+import iso.std.iso_iec._24727.tech.schema.ExtendedLengthInfoType;
+import iso.std.iso_iec._24727.tech.schema.LengthInfoType;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.util.ByteArrayWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -56,6 +61,7 @@ public class CardInfoWrapper {
     private static final Logger LOG = LoggerFactory.getLogger(CardInfoWrapper.class);
 
     private final CardInfoType cif;
+    private final ApplicationCapabilitiesType appCapabilities;
     private final Map<ByteArrayWrapper, CardApplicationWrapper> cardApplications = new HashMap<>();
     private final List<byte[]> cardApplicationNames = new ArrayList<>();
     private final String interfaceProtocol;
@@ -68,8 +74,7 @@ public class CardInfoWrapper {
     public CardInfoWrapper(CardInfoType cif, String interfaceProtocol) {
 	this.cif = cif;
 	this.interfaceProtocol = interfaceProtocol;
-
-	filterForProtocol();
+	this.appCapabilities = filterForProtocol(cif.getApplicationCapabilities());
     }
 
     public CardInfoWrapper(CardInfoWrapper other) {
@@ -89,7 +94,7 @@ public class CardInfoWrapper {
      * @return the implicitly selected application of this card
      */
     public byte[] getImplicitlySelectedApplication() {
-	return cif.getApplicationCapabilities().getImplicitlySelectedApplication();
+	return appCapabilities.getImplicitlySelectedApplication();
     }
 
     /**
@@ -97,7 +102,30 @@ public class CardInfoWrapper {
      * @return the application capabilities of this card
      */
     public ApplicationCapabilitiesType getApplicationCapabilities() {
-	return cif.getApplicationCapabilities();
+	return appCapabilities;
+    }
+
+    /**
+     * Gets the APDU length limits stated in the global length information of EF.ATR/INFO in the CardInfo.
+     *
+     * @return The capabilities of the card, or {@code null} if the CardInfo does not contain length information.
+     */
+    @Nullable
+    public CardCapabilities getLengthCapabilities() {
+	CardCapabilitiesType caps = cif.getCardCapabilities();
+	EFATRorINFOType atrInfo = caps != null ? caps.getEFATRorINFO() : null;
+	ExtendedLengthInfoType lengthInfo = atrInfo != null ? atrInfo.getExtendedLengthInfo() : null;
+	LengthInfoType globalInfo = lengthInfo != null ? lengthInfo.getGlobalLengthInfo() : null;
+	if (globalInfo == null || globalInfo.getMaxNc() == null || globalInfo.getMaxNe() == null) {
+	    return null;
+	}
+
+	BigInteger maxLength = BigInteger.valueOf(CardCapabilities.EXTENDED_LENGTH);
+	int maxNc = globalInfo.getMaxNc().min(maxLength).intValue();
+	int maxNe = globalInfo.getMaxNe().min(maxLength).intValue();
+	// short length allows at most 255 bytes of command data
+	boolean extendedLength = maxNc >= CardCapabilities.SHORT_LENGTH || maxNe > CardCapabilities.SHORT_LENGTH;
+	return new CardCapabilities(extendedLength, maxNc, maxNe);
     }
 
     /**
@@ -407,11 +435,17 @@ public class CardInfoWrapper {
 	return null;
     }
 
-    private void filterForProtocol() {
-	List<CardApplicationType> apps = getApplicationCapabilities().getCardApplication();
-	Iterator<CardApplicationType> it = apps.iterator();
-	while (it.hasNext()) {
-	    CardApplicationType app = it.next();
+    /**
+     * Removes all applications not available with the interface protocol of the card.
+     * The CIF may be shared with other cards, so the application list is filtered in a copy of the capabilities.
+     *
+     * @param caps Application capabilities of the CIF.
+     * @return The given capabilities if all applications are available, a filtered copy otherwise.
+     */
+    private ApplicationCapabilitiesType filterForProtocol(ApplicationCapabilitiesType caps) {
+	List<CardApplicationType> apps = caps.getCardApplication();
+	ArrayList<CardApplicationType> filteredApps = new ArrayList<>(apps.size());
+	for (CardApplicationType app : apps) {
 	    List<String> interfaceProtos = app.getInterfaceProtocol();
 	    // remove when there is a protocol list not containing the current protocol
 	    if (! interfaceProtos.isEmpty()) {
@@ -422,9 +456,21 @@ public class CardInfoWrapper {
 		}
 
 		if (! interfaceProtos.contains(interfaceProtocol)) {
-		    it.remove();
+		    continue;
 		}
 	    }
+	    filteredApps.add(app);
+	}
+
+	if (filteredApps.size() == apps.size()) {
+	    return caps;
+	} else {
+	    ApplicationCapabilitiesType filteredCaps = new ApplicationCapabilitiesType();
+	    filteredCaps.setId(caps.getId());
+	    filteredCaps.setImplicitlySelectedApplication(caps.getImplicitlySelectedApplication());
+	    filteredCaps.getCardApplication().addAll(filteredApps);
+	    filteredCaps.setOther(caps.getOther());
+	    return filteredCaps;
 	}
     }
 
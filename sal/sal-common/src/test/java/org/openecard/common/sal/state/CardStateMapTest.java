@@ -0,0 +1,210 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.sal.state;
+
+import iso.std.iso_iec._24727.tech.schema.CardApplicationPathType;
+import iso.std.iso_iec._24727.tech.schema.CardInfoType;
+import iso.std.iso_iec._24727.tech.schema.ChannelHandleType;
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.openecard.common.ECardConstants;
+import org.openecard.common.sal.state.cif.CifLoader;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ * Tests the indexes of the CardStateMap.
+ *
+ * @author Tobias Wich
+ */
+public class CardStateMapTest {
+
+    private static final byte[] CTX = new byte[] { 0x01, 0x02, 0x03, 0x04 };
+    private static final byte[] OTHER_CTX = new byte[] { 0x05, 0x06, 0x07, 0x08 };
+    private static final byte[] SLOT_HANDLE = new byte[] { 0x0A, 0x0B, 0x0C };
+    private static final byte[] OTHER_SLOT_HANDLE = new byte[] { 0x0D, 0x0E, 0x0F };
+    private static final String SESSION = "session-1";
+    private static final String IFD_NAME = "Reader 1";
+
+    private CardInfoType cif;
+
+    @BeforeClass
+    public void loadCif() {
+	cif = new CifLoader().getNpaCif();
+    }
+
+    @Test
+    public void testLookupByIndexes() {
+	CardStateMap states = new CardStateMap();
+	CardStateEntry entry = createEntry(SESSION, CTX, SLOT_HANDLE, IFD_NAME, BigInteger.ZERO);
+	CardStateEntry other = createEntry("session-2", OTHER_CTX, OTHER_SLOT_HANDLE, IFD_NAME, BigInteger.ONE);
+	states.addEntry(entry);
+	states.addEntry(other);
+
+	assertSame(states.getEntry(handle(SESSION, null, null)), entry);
+	assertSame(states.getEntry(handle(null, CTX, null)), entry);
+	assertSame(states.getEntry(handle(null, null, SLOT_HANDLE)), entry);
+	assertSame(states.getEntry(handle(SESSION, CTX, SLOT_HANDLE)), entry);
+	assertSame(states.getEntry(handle(null, OTHER_CTX, OTHER_SLOT_HANDLE)), other);
+	assertEquals(states.getMatchingEntries(path(IFD_NAME, BigInteger.ZERO)).size(), 1);
+	assertSame(states.getMatchingEntries(path(IFD_NAME, BigInteger.ZERO)).iterator().next(), entry);
+	assertSame(states.getMatchingEntries(path(IFD_NAME, BigInteger.ONE)).iterator().next(), other);
+
+	// all given criteria must match
+	assertNull(states.getEntry(handle(SESSION, OTHER_CTX, null)));
+	assertNull(states.getEntry(handle(null, CTX, OTHER_SLOT_HANDLE)));
+	assertNull(states.getEntry(handle("unknown", null, null)));
+	assertTrue(states.getMatchingEntries(path("Reader 2", BigInteger.ZERO)).isEmpty());
+	// no criteria match all entries
+	assertEquals(states.getMatchingEntries(new ConnectionHandleType()).size(), 2);
+    }
+
+    @Test
+    public void testUnslottedEntry() {
+	CardStateMap states = new CardStateMap();
+	CardStateEntry entry = createEntry(SESSION, CTX, null, null, null);
+	states.addEntry(entry);
+
+	// entries without terminal slot match every terminal slot
+	assertSame(states.getMatchingEntries(path(IFD_NAME, BigInteger.ZERO)).iterator().next(), entry);
+	assertSame(states.getMatchingEntries(path("Reader 2", BigInteger.ONE)).iterator().next(), entry);
+	assertNull(states.getEntry(handle(null, null, SLOT_HANDLE)));
+
+	states.removeEntry(handle(SESSION, null, null));
+	assertTrue(states.getMatchingEntries(path(IFD_NAME, BigInteger.ZERO)).isEmpty());
+    }
+
+    @Test
+    public void testRemoveEntry() {
+	CardStateMap states = new CardStateMap();
+	CardStateEntry entry = createEntry(SESSION, CTX, SLOT_HANDLE, IFD_NAME, BigInteger.ZERO);
+	CardStateEntry other = createEntry("session-2", OTHER_CTX, OTHER_SLOT_HANDLE, IFD_NAME, BigInteger.ONE);
+	states.addEntry(entry);
+	states.addEntry(other);
+
+	states.removeEntry(handle(null, CTX, null));
+	assertNull(states.getEntry(handle(SESSION, null, null)));
+	assertNull(states.getEntry(handle(null, CTX, null)));
+	assertNull(states.getEntry(handle(null, null, SLOT_HANDLE)));
+	assertTrue(states.getMatchingEntries(path(IFD_NAME, BigInteger.ZERO)).isEmpty());
+	// other entries are not affected
+	assertSame(states.getEntry(handle(null, null, OTHER_SLOT_HANDLE)), other);
+	assertEquals(states.getMatchingEntries(new ConnectionHandleType()).size(), 1);
+    }
+
+    @Test
+    public void testRemoveSlotHandleEntry() {
+	CardStateMap states = new CardStateMap();
+	CardStateEntry entry = createEntry(SESSION, CTX, SLOT_HANDLE, IFD_NAME, BigInteger.ZERO);
+	states.addEntry(entry);
+
+	states.removeSlotHandleEntry(OTHER_CTX, SLOT_HANDLE);
+	// context handle does not match, so nothing is removed
+	assertSame(states.getEntry(handle(null, null, SLOT_HANDLE)), entry);
+
+	states.removeSlotHandleEntry(CTX, SLOT_HANDLE);
+	assertNull(states.getEntry(handle(null, null, SLOT_HANDLE)));
+	assertNull(states.getEntry(handle(SESSION, null, null)));
+	assertTrue(states.getMatchingEntries(new ConnectionHandleType()).isEmpty());
+    }
+
+    @Test(timeOut = 60000)
+    public void testConcurrentAddRemove() throws Exception {
+	final CardStateMap states = new CardStateMap();
+	int numThreads = 8;
+	int numRounds = 200;
+
+	ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+	try {
+	    final CountDownLatch startSignal = new CountDownLatch(1);
+	    List<Future<Void>> results = new ArrayList<>();
+	    for (int i = 0; i < numThreads; i++) {
+		final byte threadNum = (byte) i;
+		final byte[] ctx = new byte[] { 0x10, threadNum };
+		final String ifdName = "Reader " + i;
+		results.add(exec.submit((Callable<Void>) () -> {
+		    startSignal.await();
+		    for (int j = 0; j < numRounds; j++) {
+			byte[] slotHandle = new byte[] { threadNum, (byte) (j >> 8), (byte) j };
+			CardStateEntry entry = createEntry("session-" + ifdName + "-" + j, ctx, slotHandle, ifdName,
+				BigInteger.ZERO);
+			states.addEntry(entry);
+			// entries of the other threads must not be found
+			assertSame(states.getEntry(handle(null, null, slotHandle)), entry);
+			assertSame(states.getEntry(handle(null, ctx, null)), entry);
+			assertSame(states.getMatchingEntries(path(ifdName, BigInteger.ZERO)).iterator().next(), entry);
+			states.removeEntry(handle(null, ctx, null));
+			assertNull(states.getEntry(handle(null, null, slotHandle)));
+		    }
+		    return null;
+		}));
+	    }
+
+	    startSignal.countDown();
+	    for (Future<Void> next : results) {
+		next.get();
+	    }
+	} finally {
+	    exec.shutdownNow();
+	}
+
+	assertTrue(states.getMatchingEntries(new ConnectionHandleType()).isEmpty());
+    }
+
+    private CardStateEntry createEntry(String session, byte[] ctx, byte[] slotHandle, String ifdName,
+	    BigInteger slotIdx) {
+	ConnectionHandleType handle = handle(session, ctx, slotHandle);
+	handle.setIFDName(ifdName);
+	handle.setSlotIndex(slotIdx);
+	return new CardStateEntry(handle, cif, ECardConstants.IFD.Protocol.TYPE_A);
+    }
+
+    private static ConnectionHandleType handle(String session, byte[] ctx, byte[] slotHandle) {
+	ConnectionHandleType handle = new ConnectionHandleType();
+	if (session != null) {
+	    ChannelHandleType channel = new ChannelHandleType();
+	    channel.setSessionIdentifier(session);
+	    handle.setChannelHandle(channel);
+	}
+	handle.setContextHandle(ctx);
+	handle.setSlotHandle(slotHandle);
+	return handle;
+    }
+
+    private static CardApplicationPathType path(String ifdName, BigInteger slotIdx) {
+	CardApplicationPathType path = new CardApplicationPathType();
+	path.setIFDName(ifdName);
+	path.setSlotIndex(slotIdx);
+	return path;
+    }
+
+}
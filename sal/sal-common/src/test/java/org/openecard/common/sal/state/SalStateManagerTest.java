@@ -0,0 +1,201 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.common.sal.state;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.openecard.common.ECardConstants;
+import org.openecard.common.sal.state.cif.CardInfoWrapper;
+import org.openecard.common.sal.state.cif.CifLoader;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import static org.testng.Assert.*;
+
+
+/**
+ * Tests the card and session indexes of the SalStateManager and their updates through StateEntry.
+ *
+ * @author Tobias Wich
+ */
+public class SalStateManagerTest {
+
+    private static final byte[] CTX = new byte[] { 0x01, 0x02, 0x03, 0x04 };
+    private static final byte[] OTHER_CTX = new byte[] { 0x05, 0x06, 0x07, 0x08 };
+    private static final byte[] SLOT_HANDLE = new byte[] { 0x0A, 0x0B, 0x0C };
+    private static final byte[] OTHER_SLOT_HANDLE = new byte[] { 0x0D, 0x0E, 0x0F };
+    private static final byte[] MF = new byte[] { 0x3F, 0x00 };
+    private static final String IFD_NAME = "Reader 1";
+
+    private CardInfoWrapper cif;
+
+    @BeforeClass
+    public void loadCif() {
+	cif = new CardInfoWrapper(new CifLoader().getNpaCif(), ECardConstants.IFD.Protocol.TYPE_A);
+    }
+
+    @Test
+    public void testCardIndex() throws Exception {
+	SalStateManager states = new SalStateManager();
+	CardEntry card = states.addCard(CTX, IFD_NAME, BigInteger.ZERO, cif);
+	CardEntry other = states.addCard(CTX, IFD_NAME, BigInteger.ONE, cif);
+
+	assertSame(states.getCardEntry(CTX, IFD_NAME, BigInteger.ZERO), card);
+	assertSame(states.getCardEntry(CTX, IFD_NAME, BigInteger.ONE), other);
+	assertNull(states.getCardEntry(OTHER_CTX, IFD_NAME, BigInteger.ZERO));
+	assertNull(states.getCardEntry(CTX, "Reader 2", BigInteger.ZERO));
+	assertEquals(states.listCardEntries().size(), 2);
+
+	assertTrue(states.removeCard(CTX, IFD_NAME, BigInteger.ZERO));
+	assertFalse(states.removeCard(CTX, IFD_NAME, BigInteger.ZERO));
+	assertNull(states.getCardEntry(CTX, IFD_NAME, BigInteger.ZERO));
+	assertSame(states.getCardEntry(CTX, IFD_NAME, BigInteger.ONE), other);
+	assertEquals(states.listCardEntries().size(), 1);
+
+	// the key can be used again after the removal
+	CardEntry replaced = states.addCard(CTX, IFD_NAME, BigInteger.ZERO, cif);
+	assertSame(states.getCardEntry(CTX, IFD_NAME, BigInteger.ZERO), replaced);
+    }
+
+    @Test(expectedExceptions = DuplicateCardEntry.class)
+    public void testDuplicateCard() throws Exception {
+	SalStateManager states = new SalStateManager();
+	states.addCard(CTX, IFD_NAME, BigInteger.ZERO, cif);
+	states.addCard(CTX, IFD_NAME, BigInteger.ZERO, cif);
+    }
+
+    @Test
+    public void testConnectedCardIndex() throws Exception {
+	SalStateManager states = new SalStateManager();
+	CardEntry card = states.addCard(CTX, IFD_NAME, BigInteger.ZERO, cif);
+	assertTrue(states.isDisconnected(CTX, IFD_NAME, SLOT_HANDLE));
+
+	StateEntry session = states.createSession(CTX);
+	ConnectedCardEntry connected = session.setConnectedCard(SLOT_HANDLE, MF, card);
+	states.addCard(connected);
+
+	assertFalse(states.isDisconnected(CTX, IFD_NAME, SLOT_HANDLE));
+	assertTrue(states.isDisconnected(OTHER_CTX, IFD_NAME, SLOT_HANDLE));
+	assertTrue(states.isDisconnected(CTX, "Reader 2", SLOT_HANDLE));
+	assertTrue(states.isDisconnected(CTX, IFD_NAME, OTHER_SLOT_HANDLE));
+	// the connected card replaces the card in the card index
+	assertSame(states.getCardEntry(CTX, IFD_NAME, BigInteger.ZERO), connected);
+	assertEquals(states.listCardEntries().size(), 1);
+
+	assertTrue(states.removeCard(CTX, IFD_NAME, BigInteger.ZERO));
+	assertTrue(states.isDisconnected(CTX, IFD_NAME, SLOT_HANDLE));
+	assertNull(session.getCardEntry());
+    }
+
+    @Test
+    public void testSessionIndex() throws Exception {
+	SalStateManager states = new SalStateManager();
+	CardEntry card = states.addCard(CTX, IFD_NAME, BigInteger.ZERO, cif);
+	CardEntry otherCard = states.addCard(CTX, IFD_NAME, BigInteger.ONE, cif);
+
+	StateEntry session = states.createSession(CTX);
+	assertSame(states.getSession(session.getSession()), session);
+	session.setConnectedCard(SLOT_HANDLE, MF, card);
+	assertSame(states.getSessionBySlotHandle(SLOT_HANDLE), session);
+	assertNoSession(states, OTHER_SLOT_HANDLE);
+
+	// connecting another card moves the session in the index
+	session.setConnectedCard(OTHER_SLOT_HANDLE, MF, otherCard);
+	assertSame(states.getSessionBySlotHandle(OTHER_SLOT_HANDLE), session);
+	assertNoSession(states, SLOT_HANDLE);
+
+	session.removeCard();
+	assertNoSession(states, OTHER_SLOT_HANDLE);
+
+	session.setConnectedCard(SLOT_HANDLE, MF, card);
+	assertTrue(states.destroySessionByContextHandle(CTX));
+	assertNoSession(states, SLOT_HANDLE);
+	assertFalse(states.destroySessionByContextHandle(CTX));
+
+	// a destroyed session is not indexed again when its card changes
+	session.setConnectedCard(SLOT_HANDLE, MF, card);
+	assertNoSession(states, SLOT_HANDLE);
+    }
+
+    @Test(timeOut = 60000)
+    public void testConcurrentSessions() throws Exception {
+	final SalStateManager states = new SalStateManager();
+	int numThreads = 8;
+	int numRounds = 200;
+
+	ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+	try {
+	    final CountDownLatch startSignal = new CountDownLatch(1);
+	    List<Future<Void>> results = new ArrayList<>();
+	    for (int i = 0; i < numThreads; i++) {
+		final byte threadNum = (byte) i;
+		final byte[] ctx = new byte[] { 0x10, threadNum };
+		final String ifdName = "Reader " + i;
+		results.add(exec.submit((Callable<Void>) () -> {
+		    startSignal.await();
+		    for (int j = 0; j < numRounds; j++) {
+			byte[] slotHandle = new byte[] { threadNum, (byte) (j >> 8), (byte) j };
+			CardEntry card = states.addCard(ctx, ifdName, BigInteger.ZERO, cif);
+			StateEntry session = states.createSession(ctx);
+			states.addCard(session.setConnectedCard(slotHandle, MF, card));
+
+			// entries of the other threads must not be found
+			assertSame(states.getSessionBySlotHandle(slotHandle), session);
+			assertFalse(states.isDisconnected(ctx, ifdName, slotHandle));
+
+			assertTrue(states.removeCard(ctx, ifdName, BigInteger.ZERO));
+			assertTrue(states.isDisconnected(ctx, ifdName, slotHandle));
+			assertNoSession(states, slotHandle);
+			assertTrue(states.destroySessionByContextHandle(ctx));
+		    }
+		    return null;
+		}));
+	    }
+
+	    startSignal.countDown();
+	    for (Future<Void> next : results) {
+		next.get();
+	    }
+	} finally {
+	    exec.shutdownNow();
+	}
+
+	assertTrue(states.listCardEntries().isEmpty());
+	assertTrue(states.listCardHandles().isEmpty());
+    }
+
+    private static void assertNoSession(SalStateManager states, byte[] slotHandle) {
+	try {
+	    states.getSessionBySlotHandle(slotHandle);
+	    fail("Session found for a slot handle which is not connected.");
+	} catch (NoSuchSession ex) {
+	    // expected
+	}
+    }
+
+}
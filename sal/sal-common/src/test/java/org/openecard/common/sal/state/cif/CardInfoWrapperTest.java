@@ -22,7 +22,10 @@
 
 package org.openecard.common.sal.state.cif;
 
+import iso.std.iso_iec._24727.tech.schema.ApplicationCapabilitiesType;
+import iso.std.iso_iec._24727.tech.schema.CardApplicationType;
 import iso.std.iso_iec._24727.tech.schema.CardInfoType;
+import java.util.List;
 import org.openecard.common.util.StringUtils;
 import org.testng.annotations.Test;
 
@@ -57,4 +60,25 @@ public class CardInfoWrapperTest {
 	// CardApplicationWrapper cardApplicationWrapper = cardInfoWrapper.getCardApplication(rootApplication);
     }
 
+    /**
+     * Filtering the applications for the interface protocol must not modify the CIF, as it is shared between cards.
+     */
+    @Test
+    public void testProtocolFilterKeepsCif() {
+	CardInfoType cardInfo = new CardInfoType();
+	cardInfo.setApplicationCapabilities(new ApplicationCapabilitiesType());
+	List<CardApplicationType> apps = cardInfo.getApplicationCapabilities().getCardApplication();
+	CardApplicationType contactApp = new CardApplicationType();
+	contactApp.getInterfaceProtocol().add("urn:iso:std:iso-iec:7816:-3:tech:protocols:T-equal-1");
+	CardApplicationType contactlessApp = new CardApplicationType();
+	contactlessApp.getInterfaceProtocol().add("urn:iso:std:iso-iec:14443:-4:tech:protocols:T-equal-CL");
+	apps.add(contactApp);
+	apps.add(contactlessApp);
+
+	CardInfoWrapper w = new CardInfoWrapper(cardInfo, "urn:iso:std:iso-iec:14443:-4:tech:protocols:T-equal-CL");
+	assertEquals(w.getApplicationCapabilities().getCardApplication().size(), 1);
+	assertSame(w.getApplicationCapabilities().getCardApplication().get(0), contactlessApp);
+	assertEquals(apps.size(), 2);
+    }
+
 }
@@ -395,7 +395,7 @@ public class CardRecognitionImpl implements CardRecognition {
 	// connect card
 	byte[] slotHandle = connect(ctx, ifdName, slot);
 	try {
-	    // recognise card
+	    // recognise card, the tree never tests the ATR, so results can not be reused for cards with the same ATR
 	    String type = treeCalls(slotHandle, getTree().getCardCall());
 	    // build result or throw exception if it is null or unsupported
 	    if (type == null || ! isSupportedCard(type)) {
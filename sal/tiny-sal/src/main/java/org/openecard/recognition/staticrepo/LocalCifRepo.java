@@ -29,18 +29,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import javax.xml.namespace.NamespaceContext;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import oasis.names.tc.dss._1_0.core.schema.Result;
 import org.openecard.common.ECardConstants;
 import org.openecard.common.WSHelper;
@@ -55,6 +49,8 @@ import org.xml.sax.SAXException;
 
 /**
  * Classpath resource based CardInfo repository.
+ * The CIFs are unmarshalled once when the repository is created. All requests return the same CardInfo instances,
+ * so callers must treat them as read-only.
  *
  * @author Tobias Wich
  */
@@ -62,11 +58,9 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 
     private static final Logger LOG = LoggerFactory.getLogger(LocalCifRepo.class);
 
-    private final WSMarshaller m;
-    private final HashMap<String, Document> cifs = new HashMap<>();
+    private final Map<String, CardInfoType> cifs;
 
     public LocalCifRepo(final WSMarshaller m) throws IOException, WSMarshallerException, SAXException {
-	this.m = m;
 	// load properties
 	InputStream propStream = getStream("repo-config.properties");
 	Properties conf = new Properties();
@@ -75,14 +69,20 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 	String fileNames = conf.getProperty("cifFiles");
 	String[] files = fileNames.split(",");
 
+	LinkedHashMap<String, CardInfoType> cifsTmp = new LinkedHashMap<>();
 	for (final String next : files) {
-	    // load and unmarshal
+	    // load and unmarshal, the DOM is only needed until the CIF is unmarshalled
 	    InputStream cifStream = getStream(next.trim());
 	    Document cifDoc = m.str2doc(cifStream);
-            String cardType = getTypeFromCIF(cifDoc);
-            // add file
-            cifs.put(cardType, cifDoc);
+	    Object cif = m.unmarshal(cifDoc);
+	    if (! (cif instanceof CardInfoType)) {
+		throw new WSMarshallerException("File " + next.trim() + " does not contain a CardInfo document.");
+	    }
+	    CardInfoType cifObj = (CardInfoType) cif;
+	    // add file
+	    cifsTmp.put(cifObj.getCardType().getObjectIdentifier(), cifObj);
 	}
+	this.cifs = Collections.unmodifiableMap(cifsTmp);
     }
 
     private static InputStream getStream(String res) throws FileNotFoundException {
@@ -97,33 +97,8 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 	return s;
     }
 
-    private String getTypeFromCIF(Document cif) {
-	try {
-	    XPath p = XPathFactory.newInstance().newXPath();
-	    p.setNamespaceContext(new NamespaceContext() {
-		@Override
-		public String getNamespaceURI(String prefix) {
-		    return "urn:iso:std:iso-iec:24727:tech:schema";
-		}
-		@Override
-		public String getPrefix(String namespaceURI) {
-		    return "iso";
-		}
-		@Override
-		public Iterator getPrefixes(String namespaceURI) {
-		    return Collections.singleton("iso").iterator();
-		}
-	    });
-	    XPathExpression exp = p.compile("/iso:CardInfo/iso:CardType/iso:ObjectIdentifier/text()");
-	    String e = (String) exp.evaluate(cif, XPathConstants.STRING);
-	    return e;
-	} catch (XPathExpressionException ex) {
-	    throw new RuntimeException("CIF input is invalid.", ex);
-	}
-    }
-
     public Set<String> getSupportedCardTypes() {
-	return Collections.unmodifiableSet(cifs.keySet());
+	return cifs.keySet();
     }
 
     @Override
@@ -133,51 +108,39 @@ public class LocalCifRepo implements GetCardInfoOrACD {
 	ArrayList<CardInfoType> cifsResult = new ArrayList<>(cardTypes.size());
 	Result result = WSHelper.makeResultOK();
 
-	try {
-	    if (ECardConstants.CIF.GET_SPECIFIED.equals(parameters.getAction())) {
-		ArrayList<String> missingTypes = new ArrayList<>();
-		for (String cardType : cardTypes) {
-		    Document cif = cifs.get(cardType);
-		    if (cif == null) {
-			missingTypes.add(cardType);
-		    } else {
-			// marshal here to receive a copy of the CIF
-			cifsResult.add((CardInfoType) m.unmarshal(cif));
-		    }
+	if (ECardConstants.CIF.GET_SPECIFIED.equals(parameters.getAction())) {
+	    ArrayList<String> missingTypes = new ArrayList<>();
+	    for (String cardType : cardTypes) {
+		CardInfoType cif = cifs.get(cardType);
+		if (cif == null) {
+		    missingTypes.add(cardType);
+		} else {
+		    cifsResult.add(cif);
 		}
+	    }
 
-		if (! missingTypes.isEmpty()) {
-		    StringBuilder error = new StringBuilder("The following card types could not be found:");
-		    for (String type : missingTypes) {
-			error.append("\n  ").append(type);
-		    }
-		    result = WSHelper.makeResultError(ECardConstants.Minor.SAL.UNKNOWN_CARDTYPE, error.toString());
-		}
-	    } else if (ECardConstants.CIF.GET_OTHER.equals(parameters.getAction())) {
-		HashMap<String, Document> cifsTmp = new HashMap<>();
-		cifsTmp.putAll(cifs);
-		for (String cardType : cardTypes) {
-		    cifsTmp.remove(cardType);
+	    if (! missingTypes.isEmpty()) {
+		StringBuilder error = new StringBuilder("The following card types could not be found:");
+		for (String type : missingTypes) {
+		    error.append("\n  ").append(type);
 		}
-		for (Map.Entry<String, Document> e : cifsTmp.entrySet()) {
-		    Document next = e.getValue();
-		    cifsResult.add((CardInfoType) m.unmarshal(next));
+		result = WSHelper.makeResultError(ECardConstants.Minor.SAL.UNKNOWN_CARDTYPE, error.toString());
+	    }
+	} else if (ECardConstants.CIF.GET_OTHER.equals(parameters.getAction())) {
+	    Set<String> excludedTypes = new HashSet<>(cardTypes);
+	    for (Map.Entry<String, CardInfoType> e : cifs.entrySet()) {
+		if (! excludedTypes.contains(e.getKey())) {
+		    cifsResult.add(e.getValue());
 		}
-	    } else {
-		result = WSHelper.makeResultError(ECardConstants.Minor.App.INT_ERROR, "Given action is unsupported.");
 	    }
-
-	    GetCardInfoOrACDResponse res = WSHelper.makeResponse(GetCardInfoOrACDResponse.class, result);
-	    res.getCardInfoOrCapabilityInfo().addAll(cifsResult);
-	    LOG.debug("Returning CIFs from GetCardInfoOrACD call.");
-	    return res;
-	} catch (WSMarshallerException ex) {
-	    String msg = "Failed to unmarshal a CIF document.";
-	    LOG.error(msg, ex);
-	    result = WSHelper.makeResultError(ECardConstants.Minor.App.INT_ERROR, msg);
-	    GetCardInfoOrACDResponse res = WSHelper.makeResponse(GetCardInfoOrACDResponse.class, result);
-	    return res;
+	} else {
+	    result = WSHelper.makeResultError(ECardConstants.Minor.App.INT_ERROR, "Given action is unsupported.");
 	}
+
+	GetCardInfoOrACDResponse res = WSHelper.makeResponse(GetCardInfoOrACDResponse.class, result);
+	res.getCardInfoOrCapabilityInfo().addAll(cifsResult);
+	LOG.debug("Returning CIFs from GetCardInfoOrACD call.");
+	return res;
     }
 
 }
@@ -316,7 +316,8 @@ public class SalEventManager {
 				    // get protocol of the slot (fails if card is not connected)
 				    String slotProto = getSlotProto(slotCapabilities);
 				    // Register card before triggering events.
-				    salStates.addCard(ctx, ifdName, handle.getSlotIndex(), new CardInfoWrapper(cif, slotProto));
+				    salStates.addCard(ctx, ifdName, handle.getSlotIndex(), new CardInfoWrapper(cif, slotProto),
+					    newSlot.getATRorATS());
 				} catch (DuplicateCardEntry ex) {
 				    LOG.error("Duplicate card entry detected, ignoring new card.");
 				}
@@ -180,6 +180,7 @@ import org.openecard.common.apdu.common.CardCommandAPDU;
 import org.openecard.common.apdu.common.CardResponseAPDU;
 import org.openecard.common.apdu.common.TrailerConstants;
 import org.openecard.common.apdu.exception.APDUException;
+import org.openecard.common.apdu.utils.CardCapabilities;
 import org.openecard.common.apdu.utils.CardUtils;
 import org.openecard.common.interfaces.Environment;
 import org.openecard.common.interfaces.InvocationTargetExceptionUnchecked;
@@ -244,8 +245,12 @@ public class TinySAL implements SAL {
      * @param env Environment
      */
     public TinySAL(Environment env) {
+	this(env, new SalStateManager());
+    }
+
+    TinySAL(Environment env, SalStateManager salStates) {
 	this.env = env;
-	this.salStates = new SalStateManager();
+	this.salStates = salStates;
     }
 
     public void setAddonManager(AddonManager manager) {
@@ -1427,7 +1432,7 @@ public class TinySAL implements SAL {
 		    }
 
 		    byte[] fileContent = CardUtils.readFile(cardStateEntry.getFCPOfSelectedEF(), env.getDispatcher(),
-			    slotHandle);
+			    slotHandle, getCardCapabilities(cardStateEntry));
 		    response.setDSIContent(fileContent);
 		} else {
 		    String msg = "The given DSIName does not related to any know DSI or DataSet.";
@@ -2360,6 +2365,11 @@ public class TinySAL implements SAL {
 	}
     }
 
+    private CardCapabilities getCardCapabilities(CardEntry cardEntry) {
+	CardCapabilities caps = cardEntry.getCardCapabilities();
+	return caps != null ? caps : CardCapabilities.shortLength();
+    }
+
     // TODO: remove function when state tracking is implemented
     private void setPinNotAuth(@Nullable ConnectedCardEntry cardStateEntry) {
 	if (cardStateEntry != null) {
@@ -0,0 +1,144 @@
+/****************************************************************************
+ * Copyright (C) 2026 ecsec GmbH.
+ * All rights reserved.
+ * Contact: ecsec GmbH (info@ecsec.de)
+ *
+ * This file is part of the Open eCard App.
+ *
+ * GNU General Public License Usage
+ * This file may be used under the terms of the GNU General Public
+ * License version 3.0 as published by the Free Software Foundation
+ * and appearing in the file LICENSE.GPL included in the packaging of
+ * this file. Please review the following information to ensure the
+ * GNU General Public License version 3.0 requirements will be met:
+ * http://www.gnu.org/copyleft/gpl.html.
+ *
+ * Other Usage
+ * Alternatively, this file may be used in accordance with the terms
+ * and conditions contained in a signed written agreement between
+ * you and ecsec GmbH.
+ *
+ ***************************************************************************/
+
+package org.openecard.sal;
+
+import iso.std.iso_iec._24727.tech.schema.CardApplicationConnect;
+import iso.std.iso_iec._24727.tech.schema.CardApplicationConnectResponse;
+import iso.std.iso_iec._24727.tech.schema.CardApplicationPathType;
+import iso.std.iso_iec._24727.tech.schema.CardInfoType;
+import iso.std.iso_iec._24727.tech.schema.Connect;
+import iso.std.iso_iec._24727.tech.schema.ConnectResponse;
+import iso.std.iso_iec._24727.tech.schema.ConnectionHandleType;
+import iso.std.iso_iec._24727.tech.schema.Transmit;
+import iso.std.iso_iec._24727.tech.schema.TransmitResponse;
+import jakarta.xml.bind.JAXBElement;
+import java.io.InputStream;
+import java.math.BigInteger;
+import org.mockito.Mockito;
+import org.openecard.common.ClientEnv;
+import org.openecard.common.ECardConstants;
+import org.openecard.common.WSHelper;
+import org.openecard.common.apdu.utils.CardFileCache;
+import org.openecard.common.interfaces.Dispatcher;
+import org.openecard.common.interfaces.EventDispatcher;
+import org.openecard.common.sal.state.SalStateManager;
+import org.openecard.common.sal.state.StateEntry;
+import org.openecard.common.sal.state.cif.CardInfoWrapper;
+import org.openecard.common.util.StringUtils;
+import org.openecard.ws.marshal.WSMarshaller;
+import org.openecard.ws.marshal.WSMarshallerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+
+/**
+ * Tests the connection handles TinySAL hands out for a card registered in its state.
+ *
+ * @author Tobias Wich
+ */
+public class TinySALHandleTest {
+
+    private static final byte[] CTX = new byte[] { 0x01, 0x02, 0x03, 0x04 };
+    private static final String IFD_NAME = "Reader 1";
+    private static final byte[] SLOT_HANDLE = new byte[] { 0x0A, 0x0B, 0x0C };
+    // ATR of a contactless card built from its ATS
+    private static final byte[] ATR = StringUtils.toByteArray("3B 88 80 01 00 00 00 00 00 00 00 00 09", true);
+
+    private SalStateManager states;
+    private TinySAL sal;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+	Dispatcher dispatcher = mock(Dispatcher.class);
+	Mockito.when(dispatcher.safeDeliver(any(Connect.class))).thenAnswer(invocation -> {
+	    ConnectResponse res = WSHelper.makeResponse(ConnectResponse.class, WSHelper.makeResultOK());
+	    res.setSlotHandle(SLOT_HANDLE.clone());
+	    return res;
+	});
+	Mockito.when(dispatcher.safeDeliver(any(Transmit.class))).thenAnswer(invocation -> {
+	    Transmit t = (Transmit) invocation.getArguments()[0];
+	    TransmitResponse res = WSHelper.makeResponse(TransmitResponse.class, WSHelper.makeResultOK());
+	    for (int i = 0; i < t.getInputAPDUInfo().size(); i++) {
+		res.getOutputAPDU().add(new byte[] { (byte) 0x90, 0x00 });
+	    }
+	    return res;
+	});
+
+	ClientEnv env = new ClientEnv();
+	env.setDispatcher(dispatcher);
+	states = new SalStateManager();
+	sal = new TinySAL(env, states);
+	sal.setIfdCtx(CTX);
+
+	// register the card as the SAL event manager does when the card is inserted
+	CardInfoWrapper cif = new CardInfoWrapper(loadNpaCif(), ECardConstants.IFD.Protocol.TYPE_A);
+	states.addCard(CTX, IFD_NAME, BigInteger.ZERO, cif, ATR);
+    }
+
+    @Test
+    public void testCardIdentifierInConnectedHandle() {
+	ConnectionHandleType handle = connect();
+	assertEquals(handle.getSlotHandle(), SLOT_HANDLE);
+	assertNotNull(handle.getRecognitionInfo());
+	assertEquals(handle.getRecognitionInfo().getCardIdentifier(), ATR);
+	// card handles listed by the SAL contain the card identifier as well
+	assertEquals(states.listCardHandles().get(0).getRecognitionInfo().getCardIdentifier(), ATR);
+    }
+
+    @Test
+    public void testFileCacheWithConnectedHandle() {
+	CardFileCache cache = CardFileCache.getInstance();
+	cache.register(mock(EventDispatcher.class));
+
+	String name = CardFileCache.fileName(new byte[] { 0x01, 0x1D });
+	byte[] content = new byte[] { 0x30, 0x03, 0x02, 0x01, 0x01 };
+	cache.put(connect(), name, content);
+	// a new connection to the same card gets the saved content
+	assertEquals(cache.get(connect(), name), content);
+    }
+
+    private ConnectionHandleType connect() {
+	StateEntry session = states.createSession(CTX);
+	CardApplicationPathType path = new CardApplicationPathType();
+	path.setChannelHandle(session.copyHandle().getChannelHandle());
+	path.setContextHandle(CTX);
+	path.setIFDName(IFD_NAME);
+	path.setSlotIndex(BigInteger.ZERO);
+	CardApplicationConnect req = new CardApplicationConnect();
+	req.setCardApplicationPath(path);
+
+	CardApplicationConnectResponse res = sal.cardApplicationConnect(req);
+	assertEquals(res.getResult().getResultMajor(), ECardConstants.Major.OK);
+	return res.getConnectionHandle();
+    }
+
+    private static CardInfoType loadNpaCif() throws Exception {
+	InputStream in = TinySALHandleTest.class.getResourceAsStream("/cif-repo/CardInfo_nPA_1-0-0.xml");
+	WSMarshaller m = WSMarshallerFactory.createInstance();
+	JAXBElement<CardInfoType> cif = m.unmarshal(m.str2doc(in), CardInfoType.class);
+	return cif.getValue();
+    }
+
+}
@@ -24,15 +24,21 @@ package org.openecard.ws.jaxb;
 
 import jakarta.xml.bind.JAXBElement;
 import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.Unmarshaller;
+import jakarta.xml.bind.ValidationEvent;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
@@ -40,6 +46,7 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.validation.Schema;
 import org.openecard.ws.marshal.MarshallingTypeException;
 import org.openecard.ws.marshal.WSMarshaller;
 import org.openecard.ws.marshal.WSMarshallerException;
@@ -55,10 +62,13 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 
 /**
  * Implementation of a WSMarshaller utilizing JAXB and Javas default XML facilities.
+ * The XML facilities are not thread safe, so each thread using the marshaller works on its own instances of them.
+ * This way the marshaller can be used by several threads in parallel without contending on a single lock.
  *
  * @author Tobias Wich
  */
@@ -68,12 +78,11 @@ public final class JAXBMarshaller implements WSMarshaller {
 
     // Marshaller and Unmarshaller
     private final MarshallerImpl marshaller;
-    // w3 factory
+    // w3 and transformer factories, guarded by their own monitor
     private final DocumentBuilderFactory w3Factory;
-    private final DocumentBuilder w3Builder;
-    private final Transformer serializer;
-    // soap
-    private final MessageFactory soapFactory;
+    private final TransformerFactory tFactory;
+    // DOM builder, serializer and soap factory of each thread
+    private final ThreadLocal<XmlTools> tools;
 
     /**
      * Creates a JAXBMarshaller capable of marshalling und unmarshalling all JAXB element types found in the classpath
@@ -82,9 +91,8 @@ public final class JAXBMarshaller implements WSMarshaller {
     public JAXBMarshaller() {
 	MarshallerImpl tmpMarshaller;
 	DocumentBuilderFactory tmpW3Factory;
-	DocumentBuilder tmpW3Builder;
-	Transformer tmpSerializer;
-	MessageFactory tmpSoapFactory;
+	TransformerFactory tmpTFactory;
+	XmlTools tmpTools;
 
 	try {
 	    tmpMarshaller = new MarshallerImpl();
@@ -122,8 +130,6 @@ public final class JAXBMarshaller implements WSMarshaller {
 		LOG.warn("Failed to disable XEE mitigations.");
 	    }
 
-	    tmpW3Builder = tmpW3Factory.newDocumentBuilder();
-
 	    TransformerFactory tfactory = TransformerFactory.newInstance();
 	    try {
 		tfactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
@@ -147,18 +153,10 @@ public final class JAXBMarshaller implements WSMarshaller {
 		//LOG.debug("Failed to disallow DTDs entirely.");
 	    }
 
-	    tmpSerializer = tfactory.newTransformer();
-	    try {
-		tmpSerializer.setOutputProperty(OutputKeys.INDENT, "yes");
-		tmpSerializer.setOutputProperty(OutputKeys.STANDALONE, "yes");
-		tmpSerializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-		tmpSerializer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-	    } catch (IllegalArgumentException ex) {
-		LOG.warn("Failed to configure output formatting.");
-	    }
+	    tmpTFactory = tfactory;
 
-	    // instantiate soap stuff
-	    tmpSoapFactory = MessageFactory.newInstance();
+	    // instantiate the tools of the creating thread, so that configuration errors are detected right away
+	    tmpTools = createTools(tmpW3Factory, tmpTFactory);
 	} catch (ParserConfigurationException | TransformerConfigurationException | IllegalArgumentException | SOAPException ex) {
 	    LOG.error("Failed to initialize XML components.", ex);
 	    System.exit(1); // non recoverable
@@ -167,9 +165,64 @@ public final class JAXBMarshaller implements WSMarshaller {
 
 	marshaller = tmpMarshaller;
 	w3Factory = tmpW3Factory;
-	w3Builder = tmpW3Builder;
-	serializer = tmpSerializer;
-	soapFactory = tmpSoapFactory;
+	tFactory = tmpTFactory;
+	tools = new ThreadLocal<>();
+	tools.set(tmpTools);
+    }
+
+    private static XmlTools createTools(DocumentBuilderFactory w3Factory, TransformerFactory tFactory)
+	    throws ParserConfigurationException, TransformerConfigurationException, SOAPException {
+	DocumentBuilder w3Builder;
+	// the factory is not guaranteed to be thread safe
+	synchronized (w3Factory) {
+	    w3Builder = w3Factory.newDocumentBuilder();
+	}
+	Transformer serializer = createSerializer(tFactory, false);
+
+	// instantiate soap stuff
+	MessageFactory soapFactory = MessageFactory.newInstance(w3Builder);
+	return new XmlTools(w3Builder, serializer, soapFactory);
+    }
+
+    private static Transformer createSerializer(TransformerFactory tFactory, boolean indent)
+	    throws TransformerConfigurationException {
+	Transformer serializer;
+	// the factory is not guaranteed to be thread safe
+	synchronized (tFactory) {
+	    serializer = tFactory.newTransformer();
+	}
+	try {
+	    serializer.setOutputProperty(OutputKeys.STANDALONE, "yes");
+	    serializer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+	    if (indent) {
+		serializer.setOutputProperty(OutputKeys.INDENT, "yes");
+		serializer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+	    } else {
+		serializer.setOutputProperty(OutputKeys.INDENT, "no");
+	    }
+	} catch (IllegalArgumentException ex) {
+	    LOG.warn("Failed to configure output formatting.");
+	}
+	return serializer;
+    }
+
+    /**
+     * Gets the XML tools of the calling thread and creates them if the thread has none yet.
+     *
+     * @return The XML tools belonging to the calling thread.
+     */
+    private XmlTools getTools() {
+	XmlTools result = tools.get();
+	if (result == null) {
+	    try {
+		result = createTools(w3Factory, tFactory);
+		tools.set(result);
+	    } catch (ParserConfigurationException | TransformerConfigurationException | SOAPException ex) {
+		// the same configuration worked in the constructor, so this should never happen
+		throw new IllegalStateException("Failed to initialize XML components.", ex);
+	    }
+	}
+	return result;
     }
 
 
@@ -190,12 +243,12 @@ public final class JAXBMarshaller implements WSMarshaller {
 
 
     @Override
-    public synchronized Document str2doc(String docStr) throws SAXException {
+    public Document str2doc(String docStr) throws SAXException {
 	try {
 	    // read dom as w3
 	    StringReader strReader = new StringReader(docStr);
 	    InputSource inSrc = new InputSource(strReader);
-	    Document doc = w3Builder.parse(inSrc);
+	    Document doc = getTools().w3Builder.parse(inSrc);
 
 	    WhitespaceFilter.filter(doc);
 
@@ -206,9 +259,9 @@ public final class JAXBMarshaller implements WSMarshaller {
     }
 
     @Override
-    public synchronized Document str2doc(InputStream docStr) throws SAXException, IOException {
+    public Document str2doc(InputStream docStr) throws SAXException, IOException {
 	// read dom as w3
-	Document doc = w3Builder.parse(docStr);
+	Document doc = getTools().w3Builder.parse(docStr);
 
 	WhitespaceFilter.filter(doc);
 
@@ -216,7 +269,22 @@ public final class JAXBMarshaller implements WSMarshaller {
     }
 
     @Override
-    public synchronized String doc2str(Node doc) throws TransformerException {
+    public String doc2str(Node doc) throws TransformerException {
+	return doc2str(doc, false);
+    }
+
+    @Override
+    public String doc2str(Node doc, boolean indent) throws TransformerException {
+	XmlTools t = getTools();
+	Transformer serializer = t.serializer;
+	if (indent) {
+	    // only needed for log output, so create it when it is requested the first time
+	    if (t.prettySerializer == null) {
+		t.prettySerializer = createSerializer(tFactory, true);
+	    }
+	    serializer = t.prettySerializer;
+	}
+
 	ByteArrayOutputStream out = new ByteArrayOutputStream();
 	serializer.transform(new DOMSource(doc), new StreamResult(out));
 	String result;
@@ -229,7 +297,7 @@ public final class JAXBMarshaller implements WSMarshaller {
     }
 
     @Override
-    public synchronized Object unmarshal(Node n) throws MarshallingTypeException, WSMarshallerException {
+    public Object unmarshal(Node n) throws MarshallingTypeException, WSMarshallerException {
 	Document newDoc = createDoc(n);
 	Object result;
 	try {
@@ -241,7 +309,7 @@ public final class JAXBMarshaller implements WSMarshaller {
     }
 
     @Override
-    public synchronized <T> JAXBElement<T> unmarshal(Node n, Class<T> c) throws MarshallingTypeException,
+    public <T> JAXBElement<T> unmarshal(Node n, Class<T> c) throws MarshallingTypeException,
 	    WSMarshallerException {
 	Document newDoc = createDoc(n);
 	JAXBElement<T> result;
@@ -258,7 +326,7 @@ public final class JAXBMarshaller implements WSMarshaller {
 	if (n instanceof Document) {
 	    newDoc = (Document) n;
 	} else if (n instanceof Element) {
-	    newDoc = w3Builder.newDocument();
+	    newDoc = getTools().w3Builder.newDocument();
 	    Node root = newDoc.importNode(n, true);
 	    newDoc.appendChild(root);
 	} else {
@@ -268,9 +336,9 @@ public final class JAXBMarshaller implements WSMarshaller {
     }
 
     @Override
-    public synchronized Document marshal(Object o) throws MarshallingTypeException {
+    public Document marshal(Object o) throws MarshallingTypeException {
 	try {
-	    Document d = w3Builder.newDocument();
+	    Document d = getTools().w3Builder.newDocument();
 	    marshaller.getMarshaller().marshal(o, d);
 	    return d;
 	} catch (JAXBException ex) {
@@ -279,18 +347,117 @@ public final class JAXBMarshaller implements WSMarshaller {
     }
 
     @Override
-    public synchronized SOAPMessage doc2soap(Document envDoc) throws SOAPException {
-	SOAPMessage msg = soapFactory.createMessage(envDoc);
+    public Object unmarshal(XMLStreamReader reader) throws MarshallingTypeException {
+	try {
+	    return marshaller.getUnmarshaller().unmarshal(reader);
+	} catch (JAXBException ex) {
+	    throw new MarshallingTypeException(ex);
+	}
+    }
+
+    @Override
+    public Object unmarshal(XMLStreamReader reader, @Nullable Schema schema) throws MarshallingTypeException {
+	if (schema == null) {
+	    return unmarshal(reader);
+	}
+
+	SAXParseException[] validationError = new SAXParseException[1];
+	try {
+	    Unmarshaller um = marshaller.getUnmarshaller();
+	    um.setSchema(schema);
+	    um.setEventHandler(event -> {
+		// errors of the validator carry its exception, all other events come from the unmarshaller itself
+		if (event.getLinkedException() instanceof SAXParseException) {
+		    validationError[0] = (SAXParseException) event.getLinkedException();
+		    return false;
+		}
+		return event.getSeverity() != ValidationEvent.FATAL_ERROR;
+	    });
+	    try {
+		return um.unmarshal(reader);
+	    } finally {
+		um.setSchema(null);
+		um.setEventHandler(null);
+	    }
+	} catch (JAXBException ex) {
+	    if (validationError[0] != null) {
+		throw new MarshallingTypeException(validationError[0]);
+	    }
+	    throw new MarshallingTypeException(ex);
+	}
+    }
+
+    @Override
+    public void marshal(Object o, XMLStreamWriter writer) throws MarshallingTypeException {
+	try {
+	    Marshaller jaxbMarshaller = marshaller.getMarshaller();
+	    // suppress start and end document events, as the object is embedded in the writer's document
+	    jaxbMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+	    try {
+		jaxbMarshaller.marshal(o, writer);
+	    } finally {
+		jaxbMarshaller.setProperty(Marshaller.JAXB_FRAGMENT, false);
+	    }
+	} catch (JAXBException ex) {
+	    throw new MarshallingTypeException(ex);
+	}
+    }
+
+    @Override
+    public void marshal(Object o, XMLStreamWriter writer, @Nullable Schema schema) throws MarshallingTypeException {
+	if (schema == null) {
+	    marshal(o, writer);
+	    return;
+	}
+
+	try {
+	    Marshaller jaxbMarshaller = marshaller.getMarshaller();
+	    jaxbMarshaller.setSchema(schema);
+	    jaxbMarshaller.setEventHandler(event -> {
+		LOG.warn("Marshalled object does not conform to the schema: {}", event.getMessage());
+		return true;
+	    });
+	    try {
+		marshal(o, writer);
+	    } finally {
+		jaxbMarshaller.setSchema(null);
+		jaxbMarshaller.setEventHandler(null);
+	    }
+	} catch (JAXBException ex) {
+	    throw new MarshallingTypeException(ex);
+	}
+    }
+
+    @Override
+    public SOAPMessage doc2soap(Document envDoc) throws SOAPException {
+	SOAPMessage msg = getTools().soapFactory.createMessage(envDoc);
 	return msg;
     }
 
     @Override
-    public synchronized SOAPMessage add2soap(Document content) throws SOAPException {
-	SOAPMessage msg = soapFactory.createMessage();
+    public SOAPMessage add2soap(Document content) throws SOAPException {
+	SOAPMessage msg = getTools().soapFactory.createMessage();
 	SOAPBody body = msg.getSOAPBody();
 	body.addDocument(content);
 
 	return msg;
     }
 
+
+
+    private static class XmlTools {
+
+	private final DocumentBuilder w3Builder;
+	private final Transformer serializer;
+	private final MessageFactory soapFactory;
+	private Transformer prettySerializer;
+
+	XmlTools(DocumentBuilder w3Builder, Transformer serializer, MessageFactory soapFactory) {
+	    this.w3Builder = w3Builder;
+	    this.serializer = serializer;
+	    this.soapFactory = soapFactory;
+	}
+
+    }
+
 }
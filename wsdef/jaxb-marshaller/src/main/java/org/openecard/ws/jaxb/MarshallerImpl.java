@@ -52,6 +52,8 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Wrapper for JAXB marshaller and unmarshaller capable of modifying the supported JAXB types on the fly.
+ * The JAXBContext is shared by all threads, while each thread gets its own marshaller and unmarshaller, as these are
+ * not thread safe.
  *
  * @author Tobias Wich
  */
@@ -66,8 +68,8 @@ public class MarshallerImpl {
     private boolean userOverride;
     private final TreeSet<Class<?>> userClasses;
 
-    private Marshaller marshaller;
-    private Unmarshaller unmarshaller;
+    private volatile JAXBContext jaxbCtx;
+    private final ThreadLocal<Instances> instances;
 
     static {
 	// load predefined classes
@@ -98,12 +100,13 @@ public class MarshallerImpl {
     public MarshallerImpl() {
 	userOverride = false;
 	userClasses = new TreeSet<>(new ClassComparator());
+	instances = new ThreadLocal<>();
     }
 
 
     /**
      * Adds the specified JAXB element types class to the list of supported JAXB types.
-     * This method triggers a recreation of the wrapped marshaller and unmarshaller.
+     * This method triggers a recreation of the wrapped marshallers and unmarshallers.
      *
      * @param c Class of the JAXB element type.
      */
@@ -137,52 +140,63 @@ public class MarshallerImpl {
 
 
     /**
-     * Gets the wrapped JAXB marshaller instance.
+     * Gets the JAXB marshaller instance of the calling thread.
      *
      * @return The wrapped JAXB marshaller instance.
      * @throws JAXBException If the marshaller could not be created.
      */
     public Marshaller getMarshaller() throws JAXBException {
-	if (marshaller == null) {
-	    loadInstances();
-	}
-	return marshaller;
+	return getInstances().marshaller;
     }
 
     /**
-     * Gets the wrapped JAXB unmarshaller instance.
+     * Gets the JAXB unmarshaller instance of the calling thread.
      *
      * @return The wrapped JAXB unmarshaller instance.
      * @throws JAXBException If the unmarshaller could not be created.
      */
     public Unmarshaller getUnmarshaller() throws JAXBException {
-	if (unmarshaller == null) {
-	    loadInstances();
-	}
-	return unmarshaller;
+	return getInstances().unmarshaller;
     }
 
 
+    private Instances getInstances() throws JAXBException {
+	JAXBContext ctx = jaxbCtx;
+	if (ctx == null) {
+	    ctx = loadContext();
+	}
+	Instances inst = instances.get();
+	// recreate the instances when the types have been changed in the meantime
+	if (inst == null || inst.ctx != ctx) {
+	    inst = new Instances(ctx);
+	    instances.set(inst);
+	}
+	return inst;
+    }
+
     private void resetMarshaller() {
-	marshaller = null;
-	unmarshaller = null;
+	jaxbCtx = null;
     }
 
-    private synchronized void loadInstances() throws JAXBException {
-	JAXBContext jaxbCtx;
+    private synchronized JAXBContext loadContext() throws JAXBException {
+	if (jaxbCtx != null) {
+	    return jaxbCtx;
+	}
+
+	JAXBContext ctx;
 	if (userOverride) {
 	    String classHash = calculateClassesHash();
 	    synchronized (specificContexts) {
 		if (! specificContexts.containsKey(classHash)) {
-		    jaxbCtx = JAXBContext.newInstance(userClasses.toArray(new Class<?>[userClasses.size()]));
-		    specificContexts.put(classHash, jaxbCtx);
+		    ctx = JAXBContext.newInstance(userClasses.toArray(new Class<?>[userClasses.size()]));
+		    specificContexts.put(classHash, ctx);
 		} else {
-		    jaxbCtx = specificContexts.get(classHash);
+		    ctx = specificContexts.get(classHash);
 		}
 	    }
 	} else {
 	    try {
-		jaxbCtx = baseJaxbContext.get();
+		ctx = baseJaxbContext.get();
 	    } catch (ExecutionException ex) {
 		LOG.error("Failed to create JAXBContext instance.", ex);
 		throw new RuntimeException("Failed to create JAXBContext.");
@@ -191,8 +205,8 @@ public class MarshallerImpl {
 		throw new RuntimeException("Thread interrupted during waiting on the creation of the JAXBContext.");
 	    }
 	}
-	marshaller = jaxbCtx.createMarshaller();
-	unmarshaller = jaxbCtx.createUnmarshaller();
+	jaxbCtx = ctx;
+	return ctx;
     }
 
 
@@ -261,4 +275,19 @@ public class MarshallerImpl {
 	return writer.toString();
     }
 
+
+    private static class Instances {
+
+	private final JAXBContext ctx;
+	private final Marshaller marshaller;
+	private final Unmarshaller unmarshaller;
+
+	Instances(JAXBContext ctx) throws JAXBException {
+	    this.ctx = ctx;
+	    this.marshaller = ctx.createMarshaller();
+	    this.unmarshaller = ctx.createUnmarshaller();
+	}
+
+    }
+
 }
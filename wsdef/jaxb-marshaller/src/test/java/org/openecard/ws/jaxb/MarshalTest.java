@@ -27,6 +27,13 @@ import de.bund.bsi.ecard.api._1.InitializeFrameworkResponse.Version;
 import iso.std.iso_iec._24727.tech.schema.DIDAuthenticateResponse;
 import iso.std.iso_iec._24727.tech.schema.EAC2OutputType;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -39,6 +46,8 @@ import org.openecard.ws.soap.MessageFactory;
 import org.openecard.ws.soap.SOAPBody;
 import org.openecard.ws.soap.SOAPException;
 import org.openecard.ws.soap.SOAPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -52,6 +61,8 @@ import static org.testng.Assert.*;
  */
 public class MarshalTest {
 
+    private static final Logger LOG = LoggerFactory.getLogger(MarshalTest.class);
+
     String xmlStr
 	= "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
 	+ "<soap11:Envelope xmlns:soap11=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:addr=\"http://www.w3.org/2005/03/addressing\" xmlns:paos20=\"urn:liberty:paos:2006-08\">\n"
@@ -195,4 +206,79 @@ public class MarshalTest {
 	System.out.println(m.doc2str(msg.getDocument()));
     }
 
+    @Test
+    public void testCompactOutput() throws Exception {
+	JAXBMarshaller m = new JAXBMarshaller();
+	Document doc = m.str2doc(xmlStr);
+
+	String compact = m.doc2str(doc);
+	String indented = m.doc2str(doc, true);
+	assertFalse(compact.contains("\n  <"));
+	assertTrue(indented.contains("\n  <"));
+	assertTrue(compact.length() < indented.length());
+	// both forms must represent the same document
+	assertEquals(m.doc2str(m.str2doc(indented)), compact);
+    }
+
+    @Test(timeOut = 120000)
+    public void testConcurrentMarshalling() throws Exception {
+	final JAXBMarshaller m = new JAXBMarshaller();
+	int numThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+	int numRounds = 200;
+
+	// each thread uses its own message, so that results mixed up between the threads are detected
+	List<String> inputs = new ArrayList<>();
+	List<String> references = new ArrayList<>();
+	for (int i = 0; i < numThreads; i++) {
+	    String input = xmlStr.replace("0123456789", "Session" + i);
+	    inputs.add(input);
+	    references.add(roundTrip(m, input));
+	}
+
+	// sequential run as baseline
+	long start = System.nanoTime();
+	for (int i = 0; i < numThreads * numRounds; i++) {
+	    roundTrip(m, inputs.get(i % numThreads));
+	}
+	long sequential = System.nanoTime() - start;
+
+	ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+	try {
+	    final CountDownLatch startSignal = new CountDownLatch(1);
+	    List<Future<Void>> results = new ArrayList<>();
+	    for (int i = 0; i < numThreads; i++) {
+		final String input = inputs.get(i);
+		final String reference = references.get(i);
+		assertTrue(reference.contains("Session" + i));
+		results.add(exec.submit((Callable<Void>) () -> {
+		    startSignal.await();
+		    for (int j = 0; j < numRounds; j++) {
+			assertEquals(roundTrip(m, input), reference);
+		    }
+		    return null;
+		}));
+	    }
+
+	    start = System.nanoTime();
+	    startSignal.countDown();
+	    for (Future<Void> next : results) {
+		next.get();
+	    }
+	    long concurrent = System.nanoTime() - start;
+
+	    int numOps = numThreads * numRounds;
+	    LOG.info("Marshalling throughput with {} threads: sequential {} ops/s, concurrent {} ops/s.", numThreads,
+		    Math.round(numOps / (sequential / 1e9)), Math.round(numOps / (concurrent / 1e9)));
+	} finally {
+	    exec.shutdownNow();
+	}
+    }
+
+    private String roundTrip(JAXBMarshaller m, String xml) throws Exception {
+	Document doc = m.str2doc(xml);
+	SOAPMessage msg = m.doc2soap(doc);
+	Object o = m.unmarshal(msg.getSOAPBody().getChildElements().get(0));
+	return m.doc2str(m.marshal(o));
+    }
+
 }
@@ -25,12 +25,17 @@ package org.openecard.ws.marshal;
 import jakarta.xml.bind.JAXBElement;
 import java.io.IOException;
 import java.io.InputStream;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.TransformerException;
+import javax.xml.validation.Schema;
 import org.openecard.ws.soap.SOAPException;
 import org.openecard.ws.soap.SOAPMessage;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 
 /**
@@ -80,13 +85,25 @@ public interface WSMarshaller {
     Document str2doc(InputStream docStr) throws SAXException, IOException;
     /**
      * Converts a DOM node into a string containing the XML document.
-     * The resulting string will contain a preamble with encoding set to UTF-8.
+     * The resulting string will contain a preamble with encoding set to UTF-8. The document is written without
+     * indentation.
      *
      * @param doc The DOM node which should be converted.
      * @return String containing the XML document.
      * @throws TransformerException If the XML document could not be serialized.
      */
     String doc2str(Node doc) throws TransformerException;
+    /**
+     * Converts a DOM node into a string containing the XML document.
+     * The resulting string will contain a preamble with encoding set to UTF-8. Indentation is meant for documents read
+     * by humans such as log output, as it increases the size of the document and the time needed to produce it.
+     *
+     * @param doc The DOM node which should be converted.
+     * @param indent {@code true} if the document should be indented, {@code false} otherwise.
+     * @return String containing the XML document.
+     * @throws TransformerException If the XML document could not be serialized.
+     */
+    String doc2str(Node doc, boolean indent) throws TransformerException;
 
     /**
      * Unmarshal the given document node.
@@ -119,6 +136,55 @@ public interface WSMarshaller {
      */
     Document marshal(Object o) throws MarshallingTypeException;
 
+    /**
+     * Unmarshal the element the given reader is positioned on.
+     * The reader must be positioned on the start tag of the element. After the call it is positioned behind the end
+     * tag of the element.
+     *
+     * @param reader The StAX reader positioned on the element to unmarshal.
+     * @return The JAXB object representing the element.
+     * @throws MarshallingTypeException If the element represents an unsupported JAXB type or can not be read.
+     */
+    Object unmarshal(XMLStreamReader reader) throws MarshallingTypeException;
+
+    /**
+     * Unmarshal the element the given reader is positioned on and validate it against the given schema.
+     * The element is validated while it is read, so it is parsed only once. The reader must be positioned on the start
+     * tag of the element. After the call it is positioned behind the end tag of the element.
+     *
+     * @param reader The StAX reader positioned on the element to unmarshal.
+     * @param schema The schema the element must conform to, or {@code null} if it should not be validated.
+     * @return The JAXB object representing the element.
+     * @throws MarshallingTypeException If the element represents an unsupported JAXB type or can not be read. If the
+     *   element does not conform to the schema, the cause of the exception is the {@link SAXParseException} reported
+     *   by the validator.
+     */
+    Object unmarshal(XMLStreamReader reader, @Nullable Schema schema) throws MarshallingTypeException;
+
+    /**
+     * Marshal the given JAXB object into the given StAX writer.
+     * The object is written as a fragment without a preamble, so that it can be embedded in a larger document such
+     * as a SOAP envelope. The writer is neither flushed nor closed.
+     *
+     * @param o JAXB object to marshal.
+     * @param writer The StAX writer receiving the element.
+     * @throws MarshallingTypeException If the given object is an unsupported JAXB type.
+     */
+    void marshal(Object o, XMLStreamWriter writer) throws MarshallingTypeException;
+
+    /**
+     * Marshal the given JAXB object into the given StAX writer and validate it against the given schema.
+     * The object is validated while it is written. Violations of the schema are logged, but do not prevent the object
+     * from being written.
+     *
+     * @param o JAXB object to marshal.
+     * @param writer The StAX writer receiving the element.
+     * @param schema The schema the element should conform to, or {@code null} if it should not be validated.
+     * @throws MarshallingTypeException If the given object is an unsupported JAXB type.
+     * @see #marshal(Object, XMLStreamWriter)
+     */
+    void marshal(Object o, XMLStreamWriter writer, @Nullable Schema schema) throws MarshallingTypeException;
+
     /**
      * Converts a DOM document representing a SOAP message to a SOAPMessage instance.
      * The SOAPMessage type is similar to the one in <a href="http://saaj.java.net/">SAAJ</a>.